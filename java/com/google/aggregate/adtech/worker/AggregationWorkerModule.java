@@ -22,17 +22,22 @@ import static com.google.aggregate.adtech.worker.model.SharedInfo.PROTECTED_AUDI
 import static com.google.aggregate.adtech.worker.model.SharedInfo.SHARED_STORAGE_API;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.aggregate.adtech.worker.Annotations.AggregationSpillDirectory;
 import com.google.aggregate.adtech.worker.Annotations.BenchmarkMode;
 import com.google.aggregate.adtech.worker.Annotations.BlockingThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.CustomForkJoinThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.DomainOptional;
 import com.google.aggregate.adtech.worker.Annotations.EnableParallelSummaryUpload;
+import com.google.aggregate.adtech.worker.Annotations.EnablePrimitiveAggregationTable;
 import com.google.aggregate.adtech.worker.Annotations.EnablePrivacyBudgetKeyFiltering;
+import com.google.aggregate.adtech.worker.Annotations.EnableSpillToDiskAggregation;
 import com.google.aggregate.adtech.worker.Annotations.EnableStackTraceInResponse;
 import com.google.aggregate.adtech.worker.Annotations.EnableThresholding;
 import com.google.aggregate.adtech.worker.Annotations.InstanceId;
 import com.google.aggregate.adtech.worker.Annotations.MaxDepthOfStackTrace;
 import com.google.aggregate.adtech.worker.Annotations.NonBlockingThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.OutputDomainCacheDirectory;
+import com.google.aggregate.adtech.worker.Annotations.OutputDomainCacheMaxBytes;
 import com.google.aggregate.adtech.worker.Annotations.OutputShardFileSizeBytes;
 import com.google.aggregate.adtech.worker.Annotations.ParallelAggregatedFactNoising;
 import com.google.aggregate.adtech.worker.Annotations.ReportErrorThresholdPercentage;
@@ -40,6 +45,7 @@ import com.google.aggregate.adtech.worker.Annotations.StreamingOutputDomainProce
 import com.google.aggregate.adtech.worker.Annotations.SupportedApis;
 import com.google.aggregate.adtech.worker.LocalFileToCloudStorageLogger.ResultWorkingDirectory;
 import com.google.aggregate.adtech.worker.aggregation.concurrent.ConcurrentAggregationProcessor;
+import com.google.aggregate.adtech.worker.aggregation.domain.DomainJoinOptions;
 import com.google.aggregate.adtech.worker.aggregation.domain.OutputDomainProcessor;
 import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.NoisingDelta;
 import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.NoisingDistribution;
@@ -49,9 +55,20 @@ import com.google.aggregate.adtech.worker.decryption.DeserializingReportDecrypte
 import com.google.aggregate.adtech.worker.decryption.RecordDecrypter;
 import com.google.aggregate.adtech.worker.model.serdes.PayloadSerdes;
 import com.google.aggregate.adtech.worker.model.serdes.cbor.CborPayloadSerdes;
+import com.google.aggregate.adtech.worker.reader.BlobPrefetchOptions;
+import com.google.aggregate.adtech.worker.reader.BlobVersionReader;
+import com.google.aggregate.adtech.worker.reader.MappedBlobReader;
+import com.google.aggregate.adtech.worker.reader.RangedBlobReader;
+import com.google.aggregate.adtech.worker.reader.ReportReadOptions;
+import com.google.aggregate.adtech.worker.reader.aws.S3BlobVersionReader;
+import com.google.aggregate.adtech.worker.reader.aws.S3RangedBlobReader;
 import com.google.aggregate.adtech.worker.util.JobUtils;
+import com.google.aggregate.adtech.worker.upload.FileSystemMultipartBlobUploader;
+import com.google.aggregate.adtech.worker.upload.MultipartBlobUploader;
+import com.google.aggregate.adtech.worker.upload.aws.S3MultipartBlobUploader;
 import com.google.aggregate.adtech.worker.validation.SimulationValidationModule;
 import com.google.aggregate.adtech.worker.validation.ValidationModule;
+import com.google.aggregate.adtech.worker.writer.avro.AvroResultsFileOptions;
 import com.google.aggregate.perf.StopwatchExporter;
 import com.google.aggregate.perf.export.AwsStopwatchExporter.StopwatchBucketName;
 import com.google.aggregate.perf.export.AwsStopwatchExporter.StopwatchKeyName;
@@ -155,9 +172,32 @@ public final class AggregationWorkerModule extends AbstractModule {
                 binder(), Key.get(Boolean.class, S3UsePartialRequests.class))
             .setBinding()
             .toInstance(true);
+        if (args.isRangedBlobReadsEnabled()) {
+          OptionalBinder.newOptionalBinder(binder(), RangedBlobReader.class)
+              .setBinding()
+              .to(S3RangedBlobReader.class);
+        }
+        OptionalBinder.newOptionalBinder(binder(), BlobVersionReader.class)
+            .setBinding()
+            .to(S3BlobVersionReader.class);
+        if (args.isDirectSummaryUploadEnabled()) {
+          OptionalBinder.newOptionalBinder(binder(), MultipartBlobUploader.class)
+              .setBinding()
+              .to(S3MultipartBlobUploader.class);
+        }
         break;
       case LOCAL_FS_CLIENT:
         bind(FileSystem.class).toInstance(FileSystems.getDefault());
+        if (args.isRangedBlobReadsEnabled()) {
+          OptionalBinder.newOptionalBinder(binder(), RangedBlobReader.class)
+              .setBinding()
+              .to(MappedBlobReader.class);
+        }
+        if (args.isDirectSummaryUploadEnabled()) {
+          OptionalBinder.newOptionalBinder(binder(), MultipartBlobUploader.class)
+              .setBinding()
+              .to(FileSystemMultipartBlobUploader.class);
+        }
     }
     install(args.getBlobStorageClientSelector().getBlobStorageClientSelectorModule());
     // Binding/installing puller-specific classes and objects, mainly based on the CLI arguments.
@@ -309,6 +349,19 @@ public final class AggregationWorkerModule extends AbstractModule {
         break;
     }
 
+    bind(AvroResultsFileOptions.class)
+        .toInstance(
+            AvroResultsFileOptions.create(
+                args.getAvroResultBlockSizeBytes(), args.getAvroResultCodec()));
+    bind(BlobPrefetchOptions.class)
+        .toInstance(
+            BlobPrefetchOptions.create(
+                args.getBlobPrefetchChunkSizeBytes(), args.getBlobPrefetchBudgetBytes()));
+    bind(ReportReadOptions.class)
+        .toInstance(ReportReadOptions.create(args.getReportReadRangeSizeBytes()));
+    bind(DomainJoinOptions.class)
+        .toInstance(DomainJoinOptions.create(args.isOutputDomainShardsSorted()));
+
     // Feature flags.
     bind(boolean.class)
         .annotatedWith(EnableParallelSummaryUpload.class)
@@ -316,6 +369,22 @@ public final class AggregationWorkerModule extends AbstractModule {
     bind(boolean.class)
         .annotatedWith(EnablePrivacyBudgetKeyFiltering.class)
         .toInstance(args.isLabeledPrivacyBudgetKeysEnabled());
+    bind(boolean.class)
+        .annotatedWith(EnablePrimitiveAggregationTable.class)
+        .toInstance(args.isPrimitiveAggregationTableEnabled());
+    bind(boolean.class)
+        .annotatedWith(EnableSpillToDiskAggregation.class)
+        .toInstance(args.isSpillToDiskAggregationEnabled());
+    bind(Path.class)
+        .annotatedWith(AggregationSpillDirectory.class)
+        .toInstance(Paths.get(args.getResultWorkingDirectoryPathString()));
+    bind(Path.class)
+        .annotatedWith(OutputDomainCacheDirectory.class)
+        .toInstance(
+            Paths.get(args.getResultWorkingDirectoryPathString()).resolve("output_domain_cache"));
+    bind(long.class)
+        .annotatedWith(OutputDomainCacheMaxBytes.class)
+        .toInstance(args.getOutputDomainCacheMaxBytes());
     bind(boolean.class)
         .annotatedWith(StreamingOutputDomainProcessing.class)
         .toInstance(args.isStreamingOutputDomainProcessingEnabled());
@@ -118,6 +118,42 @@ public final class Annotations {
   @Retention(RUNTIME)
   public @interface EnablePrivacyBudgetKeyFiltering {}
 
+  /**
+   * Annotation to enable the primitive, open-addressing aggregation table instead of the
+   * concurrent map of {@link java.math.BigInteger} buckets.
+   */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface EnablePrimitiveAggregationTable {}
+
+  /**
+   * Annotation to enable external-memory aggregation, which spills sorted runs of the aggregation
+   * to disk when heap usage is high.
+   */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface EnableSpillToDiskAggregation {}
+
+  /** Annotation for the local directory where external-memory aggregation writes sorted runs. */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface AggregationSpillDirectory {}
+
+  /** Annotation for the local directory where output domains are cached across jobs. */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface OutputDomainCacheDirectory {}
+
+  /** Annotation for the disk budget of the output domain cache, in bytes. 0 disables the cache. */
+  @BindingAnnotation
+  @Target({FIELD, PARAMETER, METHOD})
+  @Retention(RUNTIME)
+  public @interface OutputDomainCacheMaxBytes {}
+
   /** Annotation for the set of supported APIs. */
   @BindingAnnotation
   @Target({FIELD, PARAMETER, METHOD})
@@ -17,13 +17,15 @@
 package com.google.aggregate.adtech.worker;
 
 import com.google.aggregate.adtech.worker.aggregation.domain.AvroOutputDomainProcessor;
+import com.google.aggregate.adtech.worker.aggregation.domain.BinaryOutputDomainProcessor;
 import com.google.aggregate.adtech.worker.aggregation.domain.OutputDomainProcessor;
 import com.google.aggregate.adtech.worker.aggregation.domain.TextOutputDomainProcessor;
 
 /** CLI enum to select which {@link OutputDomainProcessor} implementation to use in the binary. */
 public enum DomainFormatSelector {
   TEXT_FILE(TextOutputDomainProcessor.class),
-  AVRO(AvroOutputDomainProcessor.class);
+  AVRO(AvroOutputDomainProcessor.class),
+  BINARY(BinaryOutputDomainProcessor.class);
   private final Class<? extends OutputDomainProcessor> domainProcessorClass;
 
   DomainFormatSelector(Class<? extends OutputDomainProcessor> domainProcessorClass) {
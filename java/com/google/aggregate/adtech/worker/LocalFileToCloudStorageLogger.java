@@ -29,42 +29,63 @@ import com.google.aggregate.adtech.worker.Annotations.DebugWriter;
 import com.google.aggregate.adtech.worker.Annotations.EnableParallelSummaryUpload;
 import com.google.aggregate.adtech.worker.Annotations.ResultWriter;
 import com.google.aggregate.adtech.worker.exceptions.ResultLogException;
+import com.google.aggregate.adtech.worker.upload.MultipartBlobUploader;
+import com.google.aggregate.adtech.worker.upload.PartUploadOutputStream;
 import com.google.aggregate.adtech.worker.model.AggregatedFact;
 import com.google.aggregate.adtech.worker.util.OutputShardFileHelper;
 import com.google.aggregate.adtech.worker.writer.LocalResultFileWriter;
+import com.google.aggregate.adtech.worker.writer.LocalResultFileWriter.FileWriteException;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Streams;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.errorprone.annotations.Var;
 import com.google.inject.BindingAnnotation;
 import com.google.inject.Inject;
 import com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient;
 import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
 import com.google.scp.operator.cpio.jobclient.model.Job;
+import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.UUID;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
-import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * Implementation of {@code ResultLogger} that writes a local file then uploads it to cloud storage.
+ * Implementation of {@code ResultLogger} that writes a local file then uploads it to cloud storage,
+ * or, when a {@link MultipartBlobUploader} is bound, uploads the results in parts as they are
+ * written.
  */
 public final class LocalFileToCloudStorageLogger implements ResultLogger {
 
+  private static final Logger logger = LoggerFactory.getLogger(LocalFileToCloudStorageLogger.class);
+
+  // Parts of direct uploads. The buffered parts bound the memory used by the shard being uploaded.
+  private static final int PART_SIZE_BYTES = 16 << 20;
+  private static final int MAX_BUFFERED_PARTS = 4;
+
   private final LocalResultFileWriter localResultFileWriter;
   private final LocalResultFileWriter localDebugResultFileWriter;
   private final BlobStorageClient blobStorageClient;
   private final Path workingDirectory;
   private final ListeningExecutorService blockingThreadPool;
+  private final Optional<MultipartBlobUploader> multipartBlobUploader;
 
   @Inject
   LocalFileToCloudStorageLogger(
@@ -73,7 +94,8 @@ public final class LocalFileToCloudStorageLogger implements ResultLogger {
       @BlockingThreadPool ListeningExecutorService blockingThreadPool,
       BlobStorageClient blobStorageClient,
       @ResultWorkingDirectory Path workingDirectory,
-      @EnableParallelSummaryUpload boolean enableParallelUpload) {
+      @EnableParallelSummaryUpload boolean enableParallelUpload,
+      Optional<MultipartBlobUploader> multipartBlobUploader) {
     this.localResultFileWriter = localResultFileWriter;
     this.localDebugResultFileWriter = localDebugResultFileWriter;
     this.blobStorageClient = blobStorageClient;
@@ -84,109 +106,168 @@ public final class LocalFileToCloudStorageLogger implements ResultLogger {
       this.blockingThreadPool =
           MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
     }
+    this.multipartBlobUploader = multipartBlobUploader;
+  }
+
+  @Override
+  public void logResults(ImmutableList<AggregatedFact> results, Job ctx, boolean isDebugRun)
+      throws ResultLogException {
+    logResults(results.iterator(), OptionalLong.of(results.size()), ctx, isDebugRun);
   }
 
   /**
-   * Write the results to a local file then write that local file to cloud storage Local filename
+   * Write the results to local files then write those local files to cloud storage. Local filename
    * format: job-[debug]-[JobKey]-[ShardId]-[UUID].avro Output filename format:
    * [Prefix]-[ShardId]-of-[NumShard][.avro if Prefix contains .avro extension] Note: Prefix is
    * provided by a user through a job parameter.
+   *
+   * <p>Shards are written one after the other as the results are read, and each finished shard is
+   * uploaded while the next ones are written, so only the shards in flight are ever held. Without
+   * the record count, a shard rolls over once it holds as many records as fit in the shard file
+   * size, and the finished shards wait on local disk until the number of shards naming them is
+   * known.
+   *
+   * <p>When a {@link MultipartBlobUploader} is bound and the record count is known, shards skip the
+   * local disk: each one is encoded into in-memory parts uploaded while the next ones are encoded.
    */
   @Override
-  public void logResults(ImmutableList<AggregatedFact> results, Job ctx, boolean isDebugRun)
+  public void logResults(
+      Iterator<AggregatedFact> results, OptionalLong recordCount, Job ctx, boolean isDebugRun)
       throws ResultLogException {
-    int totalRecords = results.size();
-    int totalShards = OutputShardFileHelper.getNumShards(totalRecords);
-    long recordsPerShard = totalRecords / totalShards;
-
-    // remainingRecordsAtTheEnd is the number of records left over after dividing the number of
-    // "recordsCountPerShard" records evenly among the shards. remainingRecordsAtTheEnd will be
-    // added to the additional shard.
-    long remainingRecordsAtTheEnd = totalRecords % totalShards;
-    if (remainingRecordsAtTheEnd > 0) {
-      totalShards++;
+    LocalResultFileWriter writer = isDebugRun ? localDebugResultFileWriter : localResultFileWriter;
+    @Var int totalShards = 0;
+    @Var long recordsPerShard = OutputShardFileHelper.getMaxRecordsPerShard();
+    @Var long remainingRecordsAtTheEnd = 0;
+    if (recordCount.isPresent()) {
+      totalShards = OutputShardFileHelper.getNumShards(recordCount.getAsLong());
+      recordsPerShard = recordCount.getAsLong() / totalShards;
+      // remainingRecordsAtTheEnd is the number of records left over after dividing the number of
+      // "recordsCountPerShard" records evenly among the shards. remainingRecordsAtTheEnd will be
+      // added to the additional shard.
+      remainingRecordsAtTheEnd = recordCount.getAsLong() % totalShards;
+      if (remainingRecordsAtTheEnd > 0) {
+        totalShards++;
+      }
     }
-    String fileExtension =
-        isDebugRun
-            ? localDebugResultFileWriter.getFileExtension()
-            : localResultFileWriter.getFileExtension();
-
-    // Stream shardId to write and upload each shard in parallel.
-    // In every shard, ImmutableList.subList provides a view of a sharded portion
-    // of the results for each shard ID.
-    final int finalTotalShards = totalShards; // For lambda function.
-
-    ListenableFuture<List<Void>> fileLogResults =
-        Futures.allAsList(
-            IntStream.range(1, totalShards + 1)
-                .boxed()
-                .map(
-                    shardId -> {
-                      String localFileName =
-                          isDebugRun
-                              ? getLocalDebugFileName(ctx, shardId, fileExtension)
-                              : getLocalFileName(ctx, shardId, fileExtension);
-                      Path localResultsFilePath =
-                          workingDirectory
-                              .getFileSystem()
-                              .getPath(
-                                  Paths.get(workingDirectory.toString(), localFileName).toString());
-
-                      return writeFile(
-                          results
-                              .subList(
-                                  Long.valueOf((shardId - 1) * recordsPerShard).intValue(),
-                                  OutputShardFileHelper.getEndIndexOfShard(
-                                      shardId,
-                                      finalTotalShards,
-                                      recordsPerShard,
-                                      remainingRecordsAtTheEnd))
-                              .stream(),
-                          ctx,
-                          localResultsFilePath,
-                          isDebugRun ? localDebugResultFileWriter : localResultFileWriter,
-                          isDebugRun,
-                          shardId,
-                          finalTotalShards);
-                    })
-                .collect(ImmutableList.toImmutableList()));
 
+    List<ListenableFuture<Void>> uploads = new ArrayList<>();
+    // Local files not handed over to an upload yet, deleted if logging fails.
+    List<Path> writtenShards = new ArrayList<>();
     try {
-      fileLogResults.get();
-    } catch (InterruptedException | CancellationException e) {
+      Files.createDirectories(workingDirectory);
+      @Var int shardId = 0;
+      do {
+        shardId++;
+        long shardRecords =
+            recordCount.isPresent()
+                ? OutputShardFileHelper.getEndIndexOfShard(
+                        shardId, totalShards, recordsPerShard, remainingRecordsAtTheEnd)
+                    - (shardId - 1) * recordsPerShard
+                : recordsPerShard;
+        Stream<AggregatedFact> shard =
+            Streams.stream(Iterators.limit(results, Math.toIntExact(shardRecords)));
+        if (recordCount.isPresent() && multipartBlobUploader.isPresent()) {
+          uploadShard(writer, shard, getResultLocation(ctx, isDebugRun, shardId, totalShards));
+        } else {
+          Path localResultsFilePath = getLocalFilePath(ctx, shardId, writer, isDebugRun);
+          writtenShards.add(localResultsFilePath);
+          writer.writeLocalFile(shard, localResultsFilePath);
+        }
+        if (recordCount.isPresent()) {
+          if (shardId == totalShards && results.hasNext()) {
+            throw new ResultLogException(
+                new IllegalStateException(
+                    "More results than the " + recordCount.getAsLong() + " expected."));
+          }
+          for (Path localResultsFilePath : writtenShards) {
+            uploads.add(uploadFile(ctx, localResultsFilePath, isDebugRun, shardId, totalShards));
+          }
+          writtenShards.clear();
+        }
+      } while (recordCount.isPresent() ? shardId < totalShards : results.hasNext());
+
+      for (int i = 0; i < writtenShards.size(); i++) {
+        uploads.add(
+            uploadFile(ctx, writtenShards.get(i), isDebugRun, i + 1, writtenShards.size()));
+      }
+      writtenShards.clear();
+
+      Futures.allAsList(uploads).get();
+    } catch (IOException | FileWriteException | InterruptedException | CancellationException e) {
       throw new ResultLogException(e);
     } catch (ExecutionException e) {
       throw new ResultLogException(e.getCause());
+    } finally {
+      deleteLocalFiles(writtenShards);
     }
   }
 
+  private Path getLocalFilePath(
+      Job ctx, int shardId, LocalResultFileWriter writer, boolean isDebugRun) {
+    String localFileName =
+        isDebugRun
+            ? getLocalDebugFileName(ctx, shardId, writer.getFileExtension())
+            : getLocalFileName(ctx, shardId, writer.getFileExtension());
+    return workingDirectory
+        .getFileSystem()
+        .getPath(Paths.get(workingDirectory.toString(), localFileName).toString());
+  }
+
+  private static void deleteLocalFiles(List<Path> localFiles) {
+    for (Path localFile : localFiles) {
+      try {
+        Files.deleteIfExists(localFile);
+      } catch (IOException e) {
+        logger.warn("Failed to delete local result file " + localFile, e);
+      }
+    }
+  }
+
+  /**
+   * Encodes the shard straight into the parts of a multipart upload, which is aborted if encoding
+   * or uploading fails.
+   */
+  private void uploadShard(
+      LocalResultFileWriter writer, Stream<AggregatedFact> shard, DataLocation resultLocation)
+      throws IOException, FileWriteException {
+    PartUploadOutputStream outputStream =
+        new PartUploadOutputStream(
+            multipartBlobUploader.get().start(resultLocation, PART_SIZE_BYTES),
+            PART_SIZE_BYTES,
+            MAX_BUFFERED_PARTS,
+            blockingThreadPool);
+    try {
+      writer.writeResults(shard, outputStream);
+      outputStream.complete();
+    } catch (IOException | FileWriteException | RuntimeException e) {
+      try {
+        outputStream.abort();
+      } catch (IOException abortFailure) {
+        e.addSuppressed(abortFailure);
+      }
+      throw e;
+    }
+  }
+
+  private static DataLocation getResultLocation(
+      Job ctx, boolean isDebugFile, int shardId, int numShards) {
+    String outputDataBlobBucket = ctx.requestInfo().getOutputDataBucketName();
+    String outputDataBlobPrefix =
+        OutputShardFileHelper.getOutputFileNameWithShardInfo(
+            ctx.requestInfo().getOutputDataBlobPrefix(), shardId, numShards);
+
+    if (isDebugFile) {
+      return getDataLocation(outputDataBlobBucket, getDebugFilePrefix(outputDataBlobPrefix));
+    }
+    return getDataLocation(outputDataBlobBucket, outputDataBlobPrefix);
+  }
+
   @SuppressWarnings("UnstableApiUsage")
-  private ListenableFuture<Void> writeFile(
-      Stream<AggregatedFact> aggregatedFacts,
-      Job ctx,
-      Path localFilepath,
-      LocalResultFileWriter writer,
-      Boolean isDebugFile,
-      int shardId,
-      int numShards) {
+  private ListenableFuture<Void> uploadFile(
+      Job ctx, Path localFilepath, boolean isDebugFile, int shardId, int numShards) {
     return Futures.submitAsync(
         () -> {
-          Files.createDirectories(workingDirectory);
-          writer.writeLocalFile(aggregatedFacts, localFilepath);
-
-          String outputDataBlobBucket = ctx.requestInfo().getOutputDataBucketName();
-          String outputDataBlobPrefix =
-              OutputShardFileHelper.getOutputFileNameWithShardInfo(
-                  ctx.requestInfo().getOutputDataBlobPrefix(), shardId, numShards);
-
-          DataLocation resultLocation;
-          if (isDebugFile) {
-            resultLocation =
-                getDataLocation(outputDataBlobBucket, getDebugFilePrefix(outputDataBlobPrefix));
-          } else {
-            resultLocation = getDataLocation(outputDataBlobBucket, outputDataBlobPrefix);
-          }
-
+          DataLocation resultLocation = getResultLocation(ctx, isDebugFile, shardId, numShards);
           blobStorageClient.putBlob(resultLocation, localFilepath);
           Files.deleteIfExists(localFilepath);
 
@@ -18,9 +18,11 @@ package com.google.aggregate.adtech.worker;
 
 import com.google.aggregate.adtech.worker.Annotations.DebugWriter;
 import com.google.aggregate.adtech.worker.Annotations.ResultWriter;
+import com.google.aggregate.adtech.worker.upload.MultipartBlobUploader;
 import com.google.aggregate.adtech.worker.writer.LocalResultFileWriter;
 import com.google.aggregate.adtech.worker.writer.avro.LocalAvroDebugResultFileWriter;
 import com.google.aggregate.adtech.worker.writer.avro.LocalAvroResultFileWriter;
+import com.google.inject.multibindings.OptionalBinder;
 
 /**
  * Module that uses the {@code LocalFileToCloudStorageLogger}, {@code LocalAvroResultFileWriter},
@@ -42,5 +44,8 @@ public final class LocalFileToCloudStorageLoggerModule extends ResultLoggerModul
     bind(LocalResultFileWriter.class)
         .annotatedWith(DebugWriter.class)
         .to(LocalAvroDebugResultFileWriter.class);
+
+    // Results are staged in local files unless a multipart uploader is bound.
+    OptionalBinder.newOptionalBinder(binder(), MultipartBlobUploader.class);
   }
 }
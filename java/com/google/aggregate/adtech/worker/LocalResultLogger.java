@@ -17,12 +17,16 @@
 package com.google.aggregate.adtech.worker;
 
 import static com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient.getDataLocation;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
 
 import com.google.aggregate.adtech.worker.Annotations.DebugWriter;
 import com.google.aggregate.adtech.worker.Annotations.ResultWriter;
 import com.google.aggregate.adtech.worker.LibraryAnnotations.LocalOutputDirectory;
 import com.google.aggregate.adtech.worker.exceptions.ResultLogException;
 import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.aggregate.adtech.worker.util.OutputShardFileHelper;
 import com.google.aggregate.adtech.worker.writer.LocalResultFileWriter;
 import com.google.aggregate.adtech.worker.writer.LocalResultFileWriter.FileWriteException;
 import com.google.common.collect.ImmutableList;
@@ -30,10 +34,14 @@ import com.google.inject.Inject;
 import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
 import com.google.scp.operator.cpio.jobclient.model.Job;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.stream.Stream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.OptionalLong;
 
 final class LocalResultLogger implements ResultLogger {
 
@@ -54,24 +62,49 @@ final class LocalResultLogger implements ResultLogger {
   @Override
   public void logResults(ImmutableList<AggregatedFact> results, Job ctx, boolean isDebugRun)
       throws ResultLogException {
+    logResults(results.iterator(), OptionalLong.of(results.size()), ctx, isDebugRun);
+  }
+
+  /**
+   * Writes the results to a single local file, or, for writers that split their output and results
+   * larger than the output shard file size, to files named [Name]-[ShardId]-of-[NumShards].
+   */
+  @Override
+  public void logResults(
+      Iterator<AggregatedFact> results, OptionalLong recordCount, Job ctx, boolean isDebugRun)
+      throws ResultLogException {
     String localFileName = isDebugRun ? getLocalDebugFileName(ctx) : getLocalFileName(ctx);
-    Path localResultsFilePath =
-        workingDirectory
-            .getFileSystem()
-            .getPath(Paths.get(workingDirectory.toString(), localFileName).toString());
-    writeFile(
-        results.stream(),
-        ctx,
-        localResultsFilePath,
-        isDebugRun ? localDebugResultFileWriter : localResultFileWriter);
+    LocalResultFileWriter writer = isDebugRun ? localDebugResultFileWriter : localResultFileWriter;
+    writeFile(results, ctx, localFileName, writer);
   }
 
   private DataLocation writeFile(
-      Stream<AggregatedFact> results, Job ctx, Path filePath, LocalResultFileWriter writer)
+      Iterator<AggregatedFact> results, Job ctx, String fileName, LocalResultFileWriter writer)
       throws ResultLogException {
     try {
       Files.createDirectories(workingDirectory);
-      writer.writeLocalFile(results, filePath);
+      // Shards are written under temporary names, and named once their number is known.
+      List<Path> shardFiles = new ArrayList<>();
+      do {
+        Path shardFile = getLocalFilePath(fileName + ".shard-" + (shardFiles.size() + 1));
+        shardFiles.add(shardFile);
+        try (OutputStream outputStream =
+            Files.newOutputStream(shardFile, CREATE, TRUNCATE_EXISTING)) {
+          writer.writeShard(
+              results, outputStream, OutputShardFileHelper.getOutputShardFileSizeBytes());
+        }
+      } while (results.hasNext());
+      String extension = writer.getFileExtension();
+      String baseName = fileName.substring(0, fileName.length() - extension.length());
+      for (int i = 0; i < shardFiles.size(); i++) {
+        String shardFileName =
+            shardFiles.size() == 1
+                ? fileName
+                : OutputShardFileHelper.getOutputFileNameWithShardInfo(
+                        baseName, i + 1, shardFiles.size())
+                    + extension;
+        Files.move(shardFiles.get(i), getLocalFilePath(shardFileName), REPLACE_EXISTING);
+      }
       DataLocation resultLocation =
           getDataLocation(
               ctx.requestInfo().getOutputDataBucketName(),
@@ -82,6 +115,12 @@ final class LocalResultLogger implements ResultLogger {
     }
   }
 
+  private Path getLocalFilePath(String fileName) {
+    return workingDirectory
+        .getFileSystem()
+        .getPath(Paths.get(workingDirectory.toString(), fileName).toString());
+  }
+
   private String getLocalFileName(Job ctx) {
     return "output" + localResultFileWriter.getFileExtension();
   }
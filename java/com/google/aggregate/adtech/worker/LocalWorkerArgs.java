@@ -89,6 +89,9 @@ public class LocalWorkerArgs {
   @Parameter(names = "--json_output", order = 7, description = "output the result in json format.")
   private boolean jsonOutput = false;
 
+  @Parameter(names = "--json_output_gzip", description = "gzip the json output files.")
+  private boolean jsonOutputGzip = false;
+
   @Parameter(names = "--l1_sensitivity", description = "L1 sensitivity for noising.")
   private long l1Sensitivity = 65536;
 
@@ -179,6 +182,21 @@ public class LocalWorkerArgs {
       description = "Flag to enable parallel aggregated fact noising.")
   private boolean parallelAggregatedFactNoisingEnabled = false;
 
+  @Parameter(
+      names = "--primitive_aggregation_table_enabled",
+      description =
+          "Flag to aggregate into an open-addressing table keyed by primitive 128-bit buckets"
+              + " instead of a concurrent map of BigInteger keys. Reduces memory per bucket.")
+  private boolean primitiveAggregationTableEnabled = false;
+
+  @Parameter(
+      names = "--spill_to_disk_aggregation_enabled",
+      description =
+          "Flag to aggregate in external memory: sorted runs of the aggregation are spilled to"
+              + " local disk when heap usage is high and merged while conflating with the output"
+              + " domain.")
+  private boolean spillToDiskAggregationEnabled = false;
+
   public String getInputDataAvroFile() {
     return inputDataAvroFile;
   }
@@ -207,6 +225,10 @@ public class LocalWorkerArgs {
     return jsonOutput;
   }
 
+  public boolean isJsonOutputGzip() {
+    return jsonOutputGzip;
+  }
+
   public boolean isPrintLicenses() {
     return printLicenses;
   }
@@ -275,6 +297,14 @@ public class LocalWorkerArgs {
     return parallelAggregatedFactNoisingEnabled;
   }
 
+  public boolean isPrimitiveAggregationTableEnabled() {
+    return primitiveAggregationTableEnabled;
+  }
+
+  public boolean isSpillToDiskAggregationEnabled() {
+    return spillToDiskAggregationEnabled;
+  }
+
   public void validate() {
     if (inputDataAvroFile == null || inputDataAvroFile.isBlank()) {
       throw new ParameterException(
@@ -22,11 +22,14 @@ import static com.google.aggregate.adtech.worker.model.SharedInfo.PROTECTED_AUDI
 import static com.google.aggregate.adtech.worker.model.SharedInfo.SHARED_STORAGE_API;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.aggregate.adtech.worker.Annotations.AggregationSpillDirectory;
 import com.google.aggregate.adtech.worker.Annotations.BenchmarkMode;
 import com.google.aggregate.adtech.worker.Annotations.BlockingThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.CustomForkJoinThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.DomainOptional;
+import com.google.aggregate.adtech.worker.Annotations.EnablePrimitiveAggregationTable;
 import com.google.aggregate.adtech.worker.Annotations.EnablePrivacyBudgetKeyFiltering;
+import com.google.aggregate.adtech.worker.Annotations.EnableSpillToDiskAggregation;
 import com.google.aggregate.adtech.worker.Annotations.EnableStackTraceInResponse;
 import com.google.aggregate.adtech.worker.Annotations.EnableThresholding;
 import com.google.aggregate.adtech.worker.Annotations.InstanceId;
@@ -39,6 +42,7 @@ import com.google.aggregate.adtech.worker.Annotations.StreamingOutputDomainProce
 import com.google.aggregate.adtech.worker.Annotations.SupportedApis;
 import com.google.aggregate.adtech.worker.LibraryAnnotations.LocalOutputDirectory;
 import com.google.aggregate.adtech.worker.aggregation.concurrent.ConcurrentAggregationProcessor;
+import com.google.aggregate.adtech.worker.aggregation.domain.OutputDomainCache;
 import com.google.aggregate.adtech.worker.aggregation.domain.OutputDomainProcessor;
 import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.NoisingDelta;
 import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.NoisingDistribution;
@@ -49,8 +53,11 @@ import com.google.aggregate.adtech.worker.decryption.RecordDecrypter;
 import com.google.aggregate.adtech.worker.local.LocalBlobStorageClientModule;
 import com.google.aggregate.adtech.worker.model.serdes.PayloadSerdes;
 import com.google.aggregate.adtech.worker.model.serdes.cbor.CborPayloadSerdes;
+import com.google.aggregate.adtech.worker.reader.MappedBlobReader;
+import com.google.aggregate.adtech.worker.reader.RangedBlobReader;
 import com.google.aggregate.adtech.worker.util.JobUtils;
 import com.google.aggregate.adtech.worker.validation.SimulationValidationModule;
+import com.google.aggregate.adtech.worker.writer.json.JsonResultsFileOptions;
 import com.google.aggregate.perf.StopwatchExporter;
 import com.google.aggregate.perf.export.NoOpStopwatchExporter;
 import com.google.aggregate.privacy.budgeting.bridge.PrivacyBudgetingServiceBridge;
@@ -68,6 +75,7 @@ import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import com.google.inject.TypeLiteral;
+import com.google.inject.multibindings.OptionalBinder;
 import com.google.privacysandbox.otel.Annotations.EnableOTelLogs;
 import com.google.privacysandbox.otel.OtlpJsonLoggingOTelConfigurationModule;
 import com.google.scp.operator.cpio.jobclient.local.LocalFileJobHandlerModule;
@@ -105,12 +113,17 @@ public final class LocalWorkerModule extends AbstractModule {
     bind(FileSystem.class).toInstance(FileSystems.getDefault());
     install(new LocalFileJobHandlerModule());
     install(new LocalBlobStorageClientModule());
+    OptionalBinder.newOptionalBinder(binder(), RangedBlobReader.class)
+        .setBinding()
+        .to(MappedBlobReader.class);
     install(new SimulationValidationModule());
     install(new LocalMetricModule());
     install(DecryptionModuleSelector.NOOP.getDecryptionModule());
 
     if (localWorkerArgs.isJsonOutput()) {
       install(new LocalJsonResultLoggerModule());
+      bind(JsonResultsFileOptions.class)
+          .toInstance(JsonResultsFileOptions.create(localWorkerArgs.isJsonOutputGzip()));
     } else {
       install(new LocalAvroResultLoggerModule());
     }
@@ -177,6 +190,17 @@ public final class LocalWorkerModule extends AbstractModule {
     bind(boolean.class)
         .annotatedWith(EnablePrivacyBudgetKeyFiltering.class)
         .toInstance(localWorkerArgs.isLabeledPrivacyBudgetKeysEnabled());
+    bind(boolean.class)
+        .annotatedWith(EnablePrimitiveAggregationTable.class)
+        .toInstance(localWorkerArgs.isPrimitiveAggregationTableEnabled());
+    bind(boolean.class)
+        .annotatedWith(EnableSpillToDiskAggregation.class)
+        .toInstance(localWorkerArgs.isSpillToDiskAggregationEnabled());
+    bind(Path.class)
+        .annotatedWith(AggregationSpillDirectory.class)
+        .toInstance(Path.of(localWorkerArgs.getOutputDirectory()).toAbsolutePath());
+    // A local run processes a single job, so there is nothing to cache output domains for.
+    bind(OutputDomainCache.class).toInstance(OutputDomainCache.disabled());
   }
 
   @Provides
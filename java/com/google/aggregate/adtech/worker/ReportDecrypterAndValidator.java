@@ -21,6 +21,7 @@ import static com.google.common.collect.ImmutableList.toImmutableList;
 import com.google.aggregate.adtech.worker.decryption.DecryptionCipherFactory.CipherCreationException;
 import com.google.aggregate.adtech.worker.decryption.RecordDecrypter;
 import com.google.aggregate.adtech.worker.decryption.RecordDecrypter.DecryptionException;
+import com.google.aggregate.adtech.worker.decryption.ReportDecryptionResult;
 import com.google.aggregate.adtech.worker.model.DecryptionValidationResult;
 import com.google.aggregate.adtech.worker.model.EncryptedReport;
 import com.google.aggregate.adtech.worker.model.ErrorCounter;
@@ -30,6 +31,7 @@ import com.google.aggregate.adtech.worker.validation.ReportValidator;
 import com.google.common.collect.ImmutableList;
 import com.google.scp.operator.cpio.cryptoclient.model.ErrorReason;
 import com.google.scp.operator.cpio.jobclient.model.Job;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import javax.inject.Inject;
@@ -67,38 +69,64 @@ public final class ReportDecrypterAndValidator {
   public DecryptionValidationResult decryptAndValidate(EncryptedReport encryptedReport, Job ctx) {
     try {
       // Decrypt the report
-      Report report = recordDecrypter.decryptSingleReport(encryptedReport);
+      return validate(recordDecrypter.decryptSingleReport(encryptedReport), ctx);
+    } catch (DecryptionException e) {
+      return decryptionFailure(e);
+    }
+  }
 
-      // Perform validations
-      ImmutableList<ErrorMessage> validationErrors =
-          reportValidators.stream()
-              .map(reportValidator -> reportValidator.validate(report, ctx))
-              .filter(Optional::isPresent)
-              .map(Optional::get)
-              .collect(toImmutableList());
+  /**
+   * Decrypts, deserializes, and validates a batch of reports.
+   *
+   * <p>Decrypts the batch through {@link RecordDecrypter#decryptBatch} so that work such as key
+   * lookups is shared between its reports. Returns one result per report in the order of the batch.
+   */
+  public ImmutableList<DecryptionValidationResult> decryptAndValidate(
+      List<EncryptedReport> encryptedReports, Job ctx) {
+    ImmutableList<ReportDecryptionResult> decryptionResults =
+        recordDecrypter.decryptBatch(encryptedReports);
+    ImmutableList.Builder<DecryptionValidationResult> results =
+        ImmutableList.builderWithExpectedSize(decryptionResults.size());
+    for (ReportDecryptionResult decryptionResult : decryptionResults) {
+      results.add(
+          decryptionResult.report().isPresent()
+              ? validate(decryptionResult.report().get(), ctx)
+              : decryptionFailure(decryptionResult.error().get()));
+    }
+    return results.build();
+  }
 
-      if (validationErrors.isEmpty()) {
-        return DecryptionValidationResult.builder().setReport(report).build();
-      }
+  private DecryptionValidationResult validate(Report report, Job ctx) {
+    // Perform validations
+    ImmutableList<ErrorMessage> validationErrors =
+        reportValidators.stream()
+            .map(reportValidator -> reportValidator.validate(report, ctx))
+            .filter(Optional::isPresent)
+            .map(Optional::get)
+            .collect(toImmutableList());
 
-      return DecryptionValidationResult.builder().addAllErrorMessage(validationErrors).build();
-    } catch (DecryptionException e) {
-      logger.error("Report Decryption Failure", e);
-      String detailedErrorMessage = String.format("Report Decryption Failure, cause: %s", e);
-      ErrorMessage.Builder errorMessageBuilder = ErrorMessage.builder();
-
-      // DecryptionKeyService Error
-      if (e.getCause() instanceof CipherCreationException) {
-        ErrorReason reason = ((CipherCreationException) e.getCause()).reason;
-        errorMessageBuilder.setCategory(errorCounterFromCipherCreationException(reason));
-      } else {
-        errorMessageBuilder.setCategory(ErrorCounter.DECRYPTION_ERROR);
-      }
-
-      return DecryptionValidationResult.builder()
-          .addErrorMessage(errorMessageBuilder.build())
-          .build();
+    if (validationErrors.isEmpty()) {
+      return DecryptionValidationResult.builder().setReport(report).build();
     }
+
+    return DecryptionValidationResult.builder().addAllErrorMessage(validationErrors).build();
+  }
+
+  private static DecryptionValidationResult decryptionFailure(DecryptionException e) {
+    logger.error("Report Decryption Failure", e);
+    ErrorMessage.Builder errorMessageBuilder = ErrorMessage.builder();
+
+    // DecryptionKeyService Error
+    if (e.getCause() instanceof CipherCreationException) {
+      ErrorReason reason = ((CipherCreationException) e.getCause()).reason;
+      errorMessageBuilder.setCategory(errorCounterFromCipherCreationException(reason));
+    } else {
+      errorMessageBuilder.setCategory(ErrorCounter.DECRYPTION_ERROR);
+    }
+
+    return DecryptionValidationResult.builder()
+        .addErrorMessage(errorMessageBuilder.build())
+        .build();
   }
 
   private static ErrorCounter errorCounterFromCipherCreationException(ErrorReason reason) {
@@ -20,6 +20,8 @@ import com.google.aggregate.adtech.worker.exceptions.ResultLogException;
 import com.google.aggregate.adtech.worker.model.AggregatedFact;
 import com.google.common.collect.ImmutableList;
 import com.google.scp.operator.cpio.jobclient.model.Job;
+import java.util.Iterator;
+import java.util.OptionalLong;
 
 /** Interface for storing the results of the aggregation worker */
 public interface ResultLogger {
@@ -27,4 +29,17 @@ public interface ResultLogger {
   /** Takes the aggregation results and logs them to results. */
   void logResults(ImmutableList<AggregatedFact> results, Job ctx, boolean isDebugRun)
       throws ResultLogException;
+
+  /**
+   * Logs the results as they are read from the iterator, so that loggers writing them out in shards
+   * need not hold all of them in memory at once. Loggers that do not stream collect the results and
+   * log them as a list.
+   *
+   * @param recordCount the number of results the iterator returns, if known before reading them
+   */
+  default void logResults(
+      Iterator<AggregatedFact> results, OptionalLong recordCount, Job ctx, boolean isDebugRun)
+      throws ResultLogException {
+    logResults(ImmutableList.copyOf(results), ctx, isDebugRun);
+  }
 }
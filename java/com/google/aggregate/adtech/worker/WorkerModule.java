@@ -19,6 +19,8 @@ package com.google.aggregate.adtech.worker;
 import com.google.aggregate.adtech.worker.Annotations.PullWorkService;
 import com.google.aggregate.adtech.worker.Annotations.WorkerServiceManager;
 import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier;
+import com.google.aggregate.adtech.worker.reader.BlobVersionReader;
+import com.google.aggregate.adtech.worker.reader.RangedBlobReader;
 import com.google.aggregate.perf.StopwatchRegistry;
 import com.google.aggregate.privacy.noise.proto.Params.PrivacyParameters;
 import com.google.common.base.Ticker;
@@ -27,6 +29,7 @@ import com.google.common.util.concurrent.Service;
 import com.google.common.util.concurrent.ServiceManager;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
+import com.google.inject.multibindings.OptionalBinder;
 import java.time.Clock;
 import java.util.function.Supplier;
 import javax.inject.Singleton;
@@ -62,5 +65,10 @@ public final class WorkerModule extends AbstractModule {
     bind(Service.class).annotatedWith(PullWorkService.class).to(WorkerPullWorkService.class);
 
     bind(StopwatchRegistry.class).in(Singleton.class);
+
+    // Report shards are read whole unless a ranged blob reader is bound.
+    OptionalBinder.newOptionalBinder(binder(), RangedBlobReader.class);
+    // Cached output domains are told apart by fingerprint unless blob storage versions blobs.
+    OptionalBinder.newOptionalBinder(binder(), BlobVersionReader.class);
   }
 }
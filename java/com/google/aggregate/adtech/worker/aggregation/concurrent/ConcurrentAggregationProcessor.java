@@ -48,6 +48,7 @@ import com.google.aggregate.adtech.worker.ResultLogger;
 import com.google.aggregate.adtech.worker.aggregation.domain.OutputDomainProcessor;
 import com.google.aggregate.adtech.worker.aggregation.engine.AggregationEngine;
 import com.google.aggregate.adtech.worker.aggregation.engine.AggregationEngineFactory;
+import com.google.aggregate.adtech.worker.aggregation.engine.PartialAggregation;
 import com.google.aggregate.adtech.worker.exceptions.AggregationJobProcessException;
 import com.google.aggregate.adtech.worker.exceptions.ConcurrentShardReadException;
 import com.google.aggregate.adtech.worker.exceptions.DomainReadException;
@@ -56,6 +57,12 @@ import com.google.aggregate.adtech.worker.exceptions.ResultLogException;
 import com.google.aggregate.adtech.worker.model.AvroRecordEncryptedReportConverter;
 import com.google.aggregate.adtech.worker.model.DecryptionValidationResult;
 import com.google.aggregate.adtech.worker.model.EncryptedReport;
+import com.google.aggregate.adtech.worker.reader.BlobPrefetcher;
+import com.google.aggregate.adtech.worker.reader.BlobRange;
+import com.google.aggregate.adtech.worker.reader.RangedBlobInput;
+import com.google.aggregate.adtech.worker.reader.RangedBlobReader;
+import com.google.aggregate.adtech.worker.reader.ReportReadOptions;
+import com.google.aggregate.adtech.worker.reader.ShardReadScheduler;
 import com.google.aggregate.adtech.worker.util.DebugSupportHelper;
 import com.google.aggregate.adtech.worker.util.JobResultHelper;
 import com.google.aggregate.adtech.worker.util.JobUtils;
@@ -70,6 +77,7 @@ import com.google.aggregate.privacy.budgeting.bridge.PrivacyBudgetingServiceBrid
 import com.google.aggregate.privacy.noise.NoisedAggregationRunner;
 import com.google.aggregate.privacy.noise.model.NoisedAggregatedResultSet;
 import com.google.aggregate.privacy.noise.model.NoisedAggregationResult;
+import com.google.aggregate.protocol.avro.AvroReportsReader;
 import com.google.aggregate.protocol.avro.AvroReportsReaderFactory;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
@@ -86,6 +94,8 @@ import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobSto
 import com.google.scp.operator.cpio.jobclient.model.Job;
 import com.google.scp.operator.cpio.jobclient.model.JobResult;
 import com.google.scp.operator.protos.shared.backend.ErrorSummaryProto.ErrorSummary;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongHistogram;
 import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.schedulers.Schedulers;
@@ -95,6 +105,9 @@ import java.security.AccessControlException;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
@@ -145,8 +158,15 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
   private final ListeningExecutorService nonBlockingThreadPool;
   private final boolean enablePrivacyBudgetKeyFiltering;
   private final OTelConfiguration oTelConfiguration;
+  // Times of the reads of report shards and ranges, by job.
+  private final LongHistogram reportShardReadTimes;
+  // Bytes held by the report id set of the aggregation engine, by job.
+  private final LongHistogram reportIdSetMemoryFootprints;
   private final double defaultReportErrorThresholdPercentage;
   private final Boolean streamingOutputDomainProcessing;
+  // Reads blob ranges ahead of the decoding, if blobs can be read by range.
+  private final Optional<RangedBlobReader> rangedBlobReader;
+  private final ReportReadOptions reportReadOptions;
 
   @Inject
   ConcurrentAggregationProcessor(
@@ -166,7 +186,9 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
       @NonBlockingThreadPool ListeningExecutorService nonBlockingThreadPool,
       @ReportErrorThresholdPercentage double defaultReportErrorThresholdPercentage,
       @StreamingOutputDomainProcessing Boolean streamingOutputDomainProcessing,
-      @EnablePrivacyBudgetKeyFiltering boolean enablePrivacyBudgetKeyFiltering) {
+      @EnablePrivacyBudgetKeyFiltering boolean enablePrivacyBudgetKeyFiltering,
+      BlobPrefetcher blobPrefetcher,
+      ReportReadOptions reportReadOptions) {
     this.reportDecrypterAndValidator = reportDecrypterAndValidator;
     this.aggregationEngineFactory = aggregationEngineFactory;
     this.outputDomainProcessor = outputDomainProcessor;
@@ -181,9 +203,15 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
     this.blockingThreadPool = blockingThreadPool;
     this.nonBlockingThreadPool = nonBlockingThreadPool;
     this.oTelConfiguration = oTelConfiguration;
+    this.reportShardReadTimes =
+        oTelConfiguration.createDebugHistogram("report_shard_read_time", "ms");
+    this.reportIdSetMemoryFootprints =
+        oTelConfiguration.createDebugHistogram("report_id_set_memory_footprint", "By");
     this.defaultReportErrorThresholdPercentage = defaultReportErrorThresholdPercentage;
     this.streamingOutputDomainProcessing = streamingOutputDomainProcessing;
     this.enablePrivacyBudgetKeyFiltering = enablePrivacyBudgetKeyFiltering;
+    this.rangedBlobReader = blobPrefetcher.reader();
+    this.reportReadOptions = reportReadOptions;
   }
 
   /**
@@ -263,67 +291,80 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
                 JobUtils.JOB_PARAM_FILTERING_IDS_DELIMITER);
       }
       AggregationEngine aggregationEngine = aggregationEngineFactory.create(filteringIds);
-      ErrorSummaryAggregator errorAggregator =
-          ErrorSummaryAggregator.createErrorSummaryAggregator(
-              getInputReportCountFromJobParams(jobParams), reportErrorThresholdPercentage);
-      AtomicLong totalReportCount = new AtomicLong(0);
-
-      try (Timer reportsProcessTimer =
-          oTelConfiguration.createDebugTimerStarted("reports_process_time", jobKey)) {
-        // This function would add reports to aggregationEngine or errorAggregator.
-        processReports(dataShards, totalReportCount, job, aggregationEngine, errorAggregator);
-      }
+      // Results may be streamed to files of the engine, so they are deleted once written out.
+      try {
+        ErrorSummaryAggregator errorAggregator =
+            ErrorSummaryAggregator.createErrorSummaryAggregator(
+                getInputReportCountFromJobParams(jobParams), reportErrorThresholdPercentage);
+        AtomicLong totalReportCount = new AtomicLong(0);
+
+        try (Timer reportsProcessTimer =
+            oTelConfiguration.createDebugTimerStarted("reports_process_time", jobKey)) {
+          // This function would add reports to aggregationEngine or errorAggregator.
+          processReports(dataShards, totalReportCount, job, aggregationEngine, errorAggregator);
+        }
 
-      ErrorSummary errorSummary = errorAggregator.createErrorSummary();
+        ErrorSummary errorSummary = errorAggregator.createErrorSummary();
 
-      if (errorAggregator.countsAboveThreshold(totalReportCount.get())) {
-        processingStopwatch.stop();
-        return jobResultHelper.createJobResult(
-            job,
-            errorSummary,
-            AggregationWorkerReturnCode.REPORTS_WITH_ERRORS_EXCEEDED_THRESHOLD,
-            Optional.of(RESULT_REPORTS_WITH_ERRORS_EXCEEDED_THRESHOLD_MESSAGE));
-      }
+        if (errorAggregator.countsAboveThreshold(totalReportCount.get())) {
+          processingStopwatch.stop();
+          return jobResultHelper.createJobResult(
+              job,
+              errorSummary,
+              AggregationWorkerReturnCode.REPORTS_WITH_ERRORS_EXCEEDED_THRESHOLD,
+              Optional.of(RESULT_REPORTS_WITH_ERRORS_EXCEEDED_THRESHOLD_MESSAGE));
+        }
 
-      NoisedAggregatedResultSet noisedResultSet;
-      try {
+        NoisedAggregatedResultSet noisedResultSet;
+        try {
           noisedResultSet =
               conflateWithDomainAndAddNoiseStreaming(
+                  jobKey,
                   outputDomainLocation,
                   outputDomainShards,
                   aggregationEngine,
                   debugPrivacyEpsilon,
                   debugRun);
-      } catch (DomainReadException e) {
-        throw new AggregationJobProcessException(
-            INPUT_DATA_READ_FAILED, "Exception while reading domain input data.", e.getCause());
-      }
+        } catch (DomainReadException e) {
+          throw new AggregationJobProcessException(
+              INPUT_DATA_READ_FAILED, "Exception while reading domain input data.", e.getCause());
+        }
 
-      processingStopwatch.stop();
+        processingStopwatch.stop();
 
-      AggregationWorkerReturnCode jobCode = SUCCESS;
-      if (debugRun) {
-        try {
+        AggregationWorkerReturnCode jobCode = SUCCESS;
+        if (debugRun) {
+          try {
+            consumePrivacyBudgetUnits(aggregationEngine.getPrivacyBudgetUnits(), job);
+          } catch (AggregationJobProcessException e) {
+            jobCode = AggregationWorkerReturnCode.getDebugEquivalent(e.getCode());
+          }
+
+          NoisedAggregationResult noisedDebugResult = noisedResultSet.noisedDebugResult().get();
+          resultLogger.logResults(
+              noisedDebugResult.noisedAggregatedFactIterator(),
+              OptionalLong.of(noisedDebugResult.resultCount()),
+              job,
+              /* isDebugRun= */ true);
+        } else {
           consumePrivacyBudgetUnits(aggregationEngine.getPrivacyBudgetUnits(), job);
-        } catch (AggregationJobProcessException e) {
-          jobCode = AggregationWorkerReturnCode.getDebugEquivalent(e.getCode());
         }
 
-        NoisedAggregationResult noisedDebugResult = noisedResultSet.noisedDebugResult().get();
-        resultLogger.logResults(
-            noisedDebugResult.noisedAggregatedFacts(), job, /* isDebugRun= */ true);
-      } else {
-        consumePrivacyBudgetUnits(aggregationEngine.getPrivacyBudgetUnits(), job);
-      }
+        // Log summary results
+        try (Timer t = oTelConfiguration.createDebugTimerStarted("summary_write_time", jobKey)) {
+          NoisedAggregationResult noisedResult = noisedResultSet.noisedResult();
+          resultLogger.logResults(
+              noisedResult.noisedAggregatedFactIterator(),
+              OptionalLong.of(noisedResult.resultCount()),
+              job,
+              /* isDebugRun= */ false);
+        }
 
-      // Log summary results
-      try (Timer t = oTelConfiguration.createDebugTimerStarted("summary_write_time", jobKey)) {
-        resultLogger.logResults(
-            noisedResultSet.noisedResult().noisedAggregatedFacts(), job, /* isDebugRun= */ false);
+        return jobResultHelper.createJobResult(
+            job, errorSummary, jobCode, /* message= */ Optional.empty());
+      } finally {
+        aggregationEngine.deleteSpilledFiles();
       }
-
-      return jobResultHelper.createJobResult(
-          job, errorSummary, jobCode, /* message= */ Optional.empty());
     } catch (ResultLogException e) {
       throw new AggregationJobProcessException(
           RESULT_WRITE_ERROR, "Exception occurred while writing result.", e);
@@ -355,6 +396,7 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
   }
 
   private NoisedAggregatedResultSet conflateWithDomainAndAddNoiseStreaming(
+      String jobKey,
       Optional<DataLocation> outputDomainLocation,
       ImmutableList<DataLocation> outputDomainShards,
       AggregationEngine engine,
@@ -362,6 +404,7 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
       Boolean debugRun)
       throws DomainReadException {
     return outputDomainProcessor.adjustAggregationWithDomainAndNoiseStreaming(
+        jobKey,
         engine,
         outputDomainLocation,
         outputDomainShards,
@@ -480,15 +523,49 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
     }
   }
 
-  private Flowable<EncryptedReport> readData(DataLocation shard) {
+  /**
+   * Schedules the reads of the shards by size. Shards larger than the range size are split into
+   * ranges read concurrently, when blobs can be read by range; other shards are read whole.
+   */
+  private ImmutableList<ImmutableList<BlobRange>> scheduleShardReads(
+      ImmutableList<DataLocation> shards) {
+    ImmutableList<BlobRange> sizedShards;
+    try {
+      sizedShards = ShardReadScheduler.sizeShards(blobStorageClient, shards, blockingThreadPool);
+    } catch (BlobStorageClientException e) {
+      throw new ConcurrentShardReadException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ConcurrentShardReadException(e);
+    }
+    ImmutableList<BlobRange> ranges =
+        rangedBlobReader.isPresent()
+            ? sizedShards.stream().flatMap(this::splitShard).collect(toImmutableList())
+            : sizedShards;
+    return ShardReadScheduler.schedule(ranges, ShardReadScheduler.COMBINED_READ_SIZE_BYTES);
+  }
+
+  private Stream<BlobRange> splitShard(BlobRange shard) {
+    return BlobRange.split(shard.location(), shard.blobSize(), reportReadOptions.rangeSizeBytes())
+        .stream();
+  }
+
+  private Flowable<EncryptedReport> readData(BlobRange range) {
+    if (!range.isWholeBlob()) {
+      return readRange(range);
+    }
     return Flowable.using(
         () -> {
           try {
-            if (blobStorageClient.getBlobSize(shard) <= 0) {
+            if (range.blobSize() <= 0) {
               return InputStream.nullInputStream();
             }
-            return blobStorageClient.getBlob(shard);
-          } catch (BlobStorageClientException e) {
+            // Blobs that can be read by range are read ahead of the decoding.
+            if (rangedBlobReader.isPresent()) {
+              return rangedBlobReader.get().getBlobRange(range.location(), 0, range.blobSize());
+            }
+            return blobStorageClient.getBlob(range.location());
+          } catch (BlobStorageClientException | IOException e) {
             throw new ConcurrentShardReadException(e);
           }
         },
@@ -496,6 +573,24 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
         InputStream::close);
   }
 
+  /** Reads the reports of the Avro blocks starting in the range, through ranged blob reads. */
+  private Flowable<EncryptedReport> readRange(BlobRange range) {
+    return Flowable.using(
+        () -> {
+          try {
+            return readerFactory.create(
+                new RangedBlobInput(
+                    rangedBlobReader.get(), range.location(), range.blobSize(), range.end()),
+                range.start(),
+                range.end());
+          } catch (IOException | AvroRuntimeException e) {
+            throw new ConcurrentShardReadException(e);
+          }
+        },
+        reader -> Flowable.fromStream(reader.streamRecords().map(encryptedReportConverter)),
+        AvroReportsReader::close);
+  }
+
   private Stream<EncryptedReport> readInputStream(InputStream shardInputStream) {
     try {
       return readerFactory.create(shardInputStream).streamRecords().map(encryptedReportConverter);
@@ -510,10 +605,22 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
       Job job,
       AggregationEngine aggregationEngine,
       ErrorSummaryAggregator errorAggregator) {
-    Flowable.fromStream(dataShards.stream())
-        // This would open connections with data and max concurrency is NUM_READ_THREADS.
+    // Idle partial aggregations. A buffer of reports borrows one, so facts are summed without
+    // contending with the other processing threads, and returns it once the buffer is done. At most
+    // NUM_PROCESS_THREADS partial aggregations are ever created.
+    Queue<PartialAggregation> partialAggregations = new ConcurrentLinkedQueue<>();
+    Attributes jobAttributes = ShardReadScheduler.jobAttributes(toJobKeyString(job.jobKey()));
+    Flowable.fromIterable(scheduleShardReads(dataShards))
+        // This would open connections with data and max concurrency is NUM_READ_THREADS. A read
+        // task is a large shard or range, or several small shards read one after the other.
         .flatMap(
-            dataLocation -> readData(dataLocation).subscribeOn(Schedulers.from(blockingThreadPool)),
+            readTask ->
+                Flowable.fromIterable(readTask)
+                    .concatMap(
+                        range ->
+                            ShardReadScheduler.timeRead(
+                                reportShardReadTimes, jobAttributes, readData(range)))
+                    .subscribeOn(Schedulers.from(blockingThreadPool)),
             false,
             NUM_READ_THREADS,
             MAX_REPORTS_READ_BUFFER_SIZE)
@@ -527,34 +634,62 @@ public final class ConcurrentAggregationProcessor implements JobProcessor {
                     .map(
                         encryptedReports ->
                             decryptAndAggregateReports(
-                                encryptedReports, job, aggregationEngine, errorAggregator)),
+                                encryptedReports,
+                                job,
+                                aggregationEngine,
+                                partialAggregations,
+                                errorAggregator)),
             NUM_PROCESS_THREADS)
         .takeUntil(
             unused -> {
               return errorAggregator.countsAboveThreshold();
             })
         .blockingSubscribe();
+
+    // When the stream was cut short by the error threshold, buffers still in flight may hold on to
+    // partial aggregations; the job fails on the threshold check, so the aggregation is not needed.
+    if (!errorAggregator.countsAboveThreshold()) {
+      try (Timer t =
+          oTelConfiguration.createDebugTimerStarted(
+              "partial_aggregation_merge_time", toJobKeyString(job.jobKey()))) {
+        aggregationEngine.mergePartialAggregations(
+            ImmutableList.copyOf(partialAggregations), nonBlockingThreadPool);
+      }
+    }
+    reportIdSetMemoryFootprints.record(
+        aggregationEngine.getReportIdSetMemoryFootprintBytes(), jobAttributes);
   }
 
   private Observable decryptAndAggregateReports(
       List<EncryptedReport> reports,
       Job job,
       AggregationEngine aggregationEngine,
+      Queue<PartialAggregation> partialAggregations,
       ErrorSummaryAggregator errorAggregator) {
-    reports.forEach(
-        report -> {
-          DecryptionValidationResult result;
-          try (Timer t =
-              oTelConfiguration.createDebugTimerStarted(
-                  "decryption_time_per_report", toJobKeyString(job.jobKey()))) {
-            result = reportDecrypterAndValidator.decryptAndValidate(report, job);
-          }
-          if (result.report().isPresent()) {
-            aggregationEngine.accept(result.report().get());
-          } else {
-            errorAggregator.add(result);
-          }
-        });
+    @Var PartialAggregation partialAggregation = partialAggregations.poll();
+    if (partialAggregation == null) {
+      partialAggregation = aggregationEngine.createPartialAggregation();
+    }
+    try {
+      ImmutableList<DecryptionValidationResult> results;
+      // The reports of a buffer are decrypted together. The span keeps its per report name, which
+      // trace filters and the sampling of per report spans rely on, and times the whole buffer.
+      try (Timer t =
+          oTelConfiguration.createDebugTimerStarted(
+              "decryption_time_per_report", toJobKeyString(job.jobKey()))) {
+        results = reportDecrypterAndValidator.decryptAndValidate(reports, job);
+      }
+      for (DecryptionValidationResult result : results) {
+        if (result.report().isPresent()) {
+          partialAggregation.accept(result.report().get());
+        } else {
+          errorAggregator.add(result);
+        }
+      }
+      aggregationEngine.spillIfFull(partialAggregation);
+    } finally {
+      partialAggregations.add(partialAggregation);
+    }
     return Observable.empty();
   }
 
@@ -21,14 +21,18 @@ import com.google.aggregate.adtech.worker.Annotations.DomainOptional;
 import com.google.aggregate.adtech.worker.Annotations.EnableThresholding;
 import com.google.aggregate.adtech.worker.Annotations.NonBlockingThreadPool;
 import com.google.aggregate.adtech.worker.exceptions.DomainReadException;
+import com.google.aggregate.adtech.worker.reader.BlobPrefetcher;
+import com.google.aggregate.adtech.worker.reader.BlobVersionReader;
 import com.google.aggregate.perf.StopwatchRegistry;
 import com.google.aggregate.protocol.avro.AvroOutputDomainReaderFactory;
 import com.google.aggregate.protocol.avro.AvroOutputDomainRecord;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.privacysandbox.otel.OTelConfiguration;
 import com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.util.Optional;
 import java.util.stream.Stream;
 import javax.inject.Inject;
 import org.apache.avro.AvroRuntimeException;
@@ -39,6 +43,7 @@ public final class AvroOutputDomainProcessor extends OutputDomainProcessor {
   private final BlobStorageClient blobStorageClient;
   private final AvroOutputDomainReaderFactory avroReaderFactory;
   private final StopwatchRegistry stopwatches;
+  private final DomainJoinOptions domainJoinOptions;
 
   @Inject
   public AvroOutputDomainProcessor(
@@ -47,6 +52,11 @@ public final class AvroOutputDomainProcessor extends OutputDomainProcessor {
       BlobStorageClient blobStorageClient,
       AvroOutputDomainReaderFactory avroReaderFactory,
       StopwatchRegistry stopwatches,
+      OTelConfiguration oTelConfiguration,
+      OutputDomainCache outputDomainCache,
+      BlobPrefetcher blobPrefetcher,
+      Optional<BlobVersionReader> blobVersionReader,
+      DomainJoinOptions domainJoinOptions,
       @DomainOptional Boolean domainOptional,
       @EnableThresholding Boolean enableThresholding) {
     super(
@@ -54,11 +64,22 @@ public final class AvroOutputDomainProcessor extends OutputDomainProcessor {
         nonBlockingThreadPool,
         blobStorageClient,
         stopwatches,
+        oTelConfiguration,
+        outputDomainCache,
+        blobPrefetcher,
+        blobVersionReader,
         domainOptional,
         enableThresholding);
     this.blobStorageClient = blobStorageClient;
     this.avroReaderFactory = avroReaderFactory;
     this.stopwatches = stopwatches;
+    this.domainJoinOptions = domainJoinOptions;
+  }
+
+  /** Avro records are decoded as the stream is consumed, so sorted shards can be merge-joined. */
+  @Override
+  protected boolean joinsSortedDomain() {
+    return domainJoinOptions.sortedShards();
   }
 
   @Override
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.aggregate.adtech.worker.aggregation.domain;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Layout of binary output domain shards, which list the keys of the domain as fixed-width records
+ * in ascending order, so that they can be joined with the aggregation without decoding or sorting.
+ *
+ * <p>A shard starts with a 32-byte header, all integers big-endian:
+ *
+ * <ul>
+ *   <li>8 bytes: the ASCII magic {@code AGGDOMKY}
+ *   <li>4 bytes: the format version, 1
+ *   <li>4 bytes: flags announcing optional sections after the keys, such as a block index. None
+ *       are defined yet; readers ignore what follows the keys.
+ *   <li>8 bytes: the number of keys
+ *   <li>8 bytes: reserved, 0
+ * </ul>
+ *
+ * <p>Each key follows as 16 bytes: its upper then lower 64 bits, big-endian. Keys are distinct and
+ * in ascending unsigned order, so a key's position can also be found by binary search.
+ */
+final class BinaryDomainFormat {
+
+  static final int HEADER_SIZE = 32;
+  static final int KEY_SIZE = 16;
+  static final int VERSION = 1;
+
+  private static final byte[] MAGIC = "AGGDOMKY".getBytes(US_ASCII);
+
+  private BinaryDomainFormat() {}
+
+  /** Writes the header of a shard of {@code keyCount} keys into the buffer. */
+  static void writeHeader(ByteBuffer header, long keyCount) {
+    header.put(MAGIC).putInt(VERSION).putInt(/* flags= */ 0).putLong(keyCount).putLong(0);
+  }
+
+  /**
+   * Reads the header of a shard from the buffer.
+   *
+   * @return the number of keys in the shard
+   * @throws IOException if the buffer does not hold the header of a shard of a known version
+   */
+  static long readHeader(ByteBuffer header) throws IOException {
+    if (header.remaining() < HEADER_SIZE) {
+      throw new IOException("Binary output domain shard is too short to hold its header.");
+    }
+    byte[] magic = new byte[MAGIC.length];
+    header.get(magic);
+    if (!Arrays.equals(magic, MAGIC)) {
+      throw new IOException("Not a binary output domain shard.");
+    }
+    int version = header.getInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported binary output domain version: " + version);
+    }
+    header.getInt(); // Flags.
+    long keyCount = header.getLong();
+    header.getLong(); // Reserved.
+    if (keyCount < 0) {
+      throw new IOException("Invalid binary output domain key count: " + keyCount);
+    }
+    return keyCount;
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.aggregate.adtech.worker.aggregation.domain;
+
+import static com.google.aggregate.adtech.worker.aggregation.domain.BinaryDomainFormat.HEADER_SIZE;
+import static com.google.aggregate.adtech.worker.aggregation.domain.BinaryDomainFormat.KEY_SIZE;
+
+import com.google.aggregate.adtech.worker.aggregation.engine.DomainKeyIterator;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the keys of a binary output domain shard, described in {@link BinaryDomainFormat}, straight
+ * from a buffer of records: either a memory-mapped file or a fixed-size buffer filled from a
+ * stream. No object is allocated per key.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class BinaryDomainReader implements DomainKeyIterator, Closeable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+  // Largest region of a file mapped at once, a multiple of the key size.
+  private static final long MAX_MAPPED_SIZE = 1L << 30;
+
+  private final Records records;
+  private final long keyCount;
+  private long unreadKeys;
+  private ByteBuffer keys = ByteBuffer.allocate(0);
+  private long keyHigh;
+  private long keyLow;
+
+  private BinaryDomainReader(Records records, long keyCount) {
+    this.records = records;
+    this.keyCount = keyCount;
+    this.unreadKeys = keyCount;
+  }
+
+  /** Reads the shard from a stream, through a fixed-size buffer. */
+  public static BinaryDomainReader open(InputStream input) throws IOException {
+    byte[] header = input.readNBytes(HEADER_SIZE);
+    long keyCount = BinaryDomainFormat.readHeader(ByteBuffer.wrap(header));
+    return new BinaryDomainReader(new StreamRecords(input), keyCount);
+  }
+
+  /** Reads the shard file by mapping it into memory, up to 1 GiB at a time. */
+  public static BinaryDomainReader map(Path file) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      while (header.hasRemaining()) {
+        if (channel.read(header) < 0) {
+          break;
+        }
+      }
+      long keyCount = BinaryDomainFormat.readHeader(header.flip());
+      // Divides rather than multiplies, as the key count of a corrupt header may overflow a size.
+      if (keyCount > (channel.size() - HEADER_SIZE) / KEY_SIZE) {
+        throw new EOFException("Binary output domain shard is truncated: " + file);
+      }
+      return new BinaryDomainReader(new MappedRecords(channel), keyCount);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /** Number of keys in the shard, as recorded in its header. */
+  public long keyCount() {
+    return keyCount;
+  }
+
+  @Override
+  public boolean next() throws IOException {
+    if (!keys.hasRemaining()) {
+      if (unreadKeys == 0) {
+        return false;
+      }
+      keys = records.read(unreadKeys);
+    }
+    keyHigh = keys.getLong();
+    keyLow = keys.getLong();
+    unreadKeys--;
+    return true;
+  }
+
+  @Override
+  public long keyHigh() {
+    return keyHigh;
+  }
+
+  @Override
+  public long keyLow() {
+    return keyLow;
+  }
+
+  @Override
+  public void close() throws IOException {
+    records.close();
+  }
+
+  /** Source of the key records that follow the header. */
+  private interface Records extends Closeable {
+
+    /**
+     * Returns a buffer holding the next keys, at least one and at most {@code maxKeys}.
+     *
+     * @throws EOFException if the shard ends before them
+     */
+    ByteBuffer read(long maxKeys) throws IOException;
+  }
+
+  private static final class StreamRecords implements Records {
+
+    private final InputStream input;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+
+    StreamRecords(InputStream input) {
+      this.input = input;
+    }
+
+    @Override
+    public ByteBuffer read(long maxKeys) throws IOException {
+      int length = (int) Math.min(BUFFER_SIZE, maxKeys * KEY_SIZE);
+      if (input.readNBytes(buffer, 0, length) < length) {
+        throw new EOFException("Binary output domain shard is truncated.");
+      }
+      wrapped.clear().limit(length);
+      return wrapped;
+    }
+
+    @Override
+    public void close() throws IOException {
+      input.close();
+    }
+  }
+
+  private static final class MappedRecords implements Records {
+
+    private final FileChannel channel;
+    private long position = HEADER_SIZE;
+
+    MappedRecords(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public ByteBuffer read(long maxKeys) throws IOException {
+      long size = Math.min(MAX_MAPPED_SIZE, maxKeys * KEY_SIZE);
+      ByteBuffer mapped = channel.map(MapMode.READ_ONLY, position, size);
+      position += size;
+      return mapped;
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.aggregate.adtech.worker.aggregation.domain;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.io.Closer;
+import com.google.errorprone.annotations.Var;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Writes keys added in any order, with repeats, as a binary output domain shard of distinct sorted
+ * keys. Keys are sorted in memory in chunks of a bounded size; larger domains are sorted into
+ * temporary runs next to the output, which are merged once all keys were added.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class BinaryDomainSorter implements Closeable {
+
+  // Ranges this short are sorted by insertion sort.
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+
+  private final Path output;
+  private final long[] keyHighs;
+  private final long[] keyLows;
+  private final List<Path> runs = new ArrayList<>();
+  private int size;
+  private boolean finished;
+
+  /**
+   * @param output path of the shard to write
+   * @param maxKeysInMemory number of keys sorted in memory at once, 16 bytes each
+   */
+  public BinaryDomainSorter(Path output, int maxKeysInMemory) {
+    checkArgument(maxKeysInMemory > 0, "At least one key must be sorted in memory.");
+    this.output = output;
+    keyHighs = new long[maxKeysInMemory];
+    keyLows = new long[maxKeysInMemory];
+  }
+
+  /** Adds the key of the given upper and lower 64 bits. */
+  public void add(long keyHigh, long keyLow) throws IOException {
+    checkState(!finished, "Keys were already written.");
+    if (size == keyHighs.length) {
+      runs.add(writeRun());
+    }
+    keyHighs[size] = keyHigh;
+    keyLows[size] = keyLow;
+    size++;
+  }
+
+  /**
+   * Writes the distinct keys added to the output shard.
+   *
+   * @return the number of keys written
+   */
+  public long finish() throws IOException {
+    checkState(!finished, "Keys were already written.");
+    finished = true;
+    if (runs.isEmpty()) {
+      try (BinaryDomainWriter writer = BinaryDomainWriter.create(output)) {
+        writeSorted(writer);
+        return writer.keyCount();
+      }
+    }
+    runs.add(writeRun());
+    return mergeRuns();
+  }
+
+  /** Deletes the temporary runs. */
+  @Override
+  public void close() throws IOException {
+    for (Path run : runs) {
+      Files.deleteIfExists(run);
+    }
+    runs.clear();
+  }
+
+  /** Sorts the keys in memory into a temporary run next to the output and forgets them. */
+  private Path writeRun() throws IOException {
+    Path run =
+        Files.createTempFile(
+            output.toAbsolutePath().getParent(), output.getFileName() + "-run-", ".tmp");
+    try (BinaryDomainWriter writer = BinaryDomainWriter.create(run)) {
+      writeSorted(writer);
+    }
+    size = 0;
+    return run;
+  }
+
+  /** Sorts the keys in memory and writes each distinct one. */
+  private void writeSorted(BinaryDomainWriter writer) throws IOException {
+    sort(0, size - 1);
+    for (int i = 0; i < size; i++) {
+      if (i == 0 || compareTo(i, keyHighs[i - 1], keyLows[i - 1]) != 0) {
+        writer.add(keyHighs[i], keyLows[i]);
+      }
+    }
+  }
+
+  /** Merges the runs into the output, keeping one copy of keys present in several runs. */
+  private long mergeRuns() throws IOException {
+    PriorityQueue<BinaryDomainReader> queue =
+        new PriorityQueue<>(
+            (first, second) ->
+                compareKeys(first.keyHigh(), first.keyLow(), second.keyHigh(), second.keyLow()));
+    try (Closer closer = Closer.create()) {
+      for (Path run : runs) {
+        BinaryDomainReader reader = closer.register(BinaryDomainReader.map(run));
+        if (reader.next()) {
+          queue.add(reader);
+        }
+      }
+      try (BinaryDomainWriter writer = BinaryDomainWriter.create(output)) {
+        @Var boolean hasLast = false;
+        @Var long lastHigh = 0;
+        @Var long lastLow = 0;
+        while (!queue.isEmpty()) {
+          BinaryDomainReader reader = queue.poll();
+          long keyHigh = reader.keyHigh();
+          long keyLow = reader.keyLow();
+          if (!hasLast || compareKeys(keyHigh, keyLow, lastHigh, lastLow) != 0) {
+            writer.add(keyHigh, keyLow);
+            hasLast = true;
+            lastHigh = keyHigh;
+            lastLow = keyLow;
+          }
+          if (reader.next()) {
+            queue.add(reader);
+          }
+        }
+        return writer.keyCount();
+      }
+    }
+  }
+
+  /** Quicksorts the keys between {@code low} and {@code high}, both inclusive. */
+  private void sort(int low, int high) {
+    @Var int from = low;
+    @Var int to = high;
+    while (to - from >= INSERTION_SORT_THRESHOLD) {
+      int middle = (from + to) >>> 1;
+      long pivotHigh = keyHighs[middle];
+      long pivotLow = keyLows[middle];
+      @Var int left = from;
+      @Var int right = to;
+      while (left <= right) {
+        while (compareTo(left, pivotHigh, pivotLow) < 0) {
+          left++;
+        }
+        while (compareTo(right, pivotHigh, pivotLow) > 0) {
+          right--;
+        }
+        if (left <= right) {
+          swap(left++, right--);
+        }
+      }
+      // Recurse into the smaller partition to bound the stack depth.
+      if (right - from < to - left) {
+        sort(from, right);
+        from = left;
+      } else {
+        sort(left, to);
+        to = right;
+      }
+    }
+    for (int i = from + 1; i <= to; i++) {
+      for (int j = i; j > from && compareTo(j, keyHighs[j - 1], keyLows[j - 1]) < 0; j--) {
+        swap(j, j - 1);
+      }
+    }
+  }
+
+  private int compareTo(int index, long keyHigh, long keyLow) {
+    return compareKeys(keyHighs[index], keyLows[index], keyHigh, keyLow);
+  }
+
+  private void swap(int first, int second) {
+    long keyHigh = keyHighs[first];
+    long keyLow = keyLows[first];
+    keyHighs[first] = keyHighs[second];
+    keyLows[first] = keyLows[second];
+    keyHighs[second] = keyHigh;
+    keyLows[second] = keyLow;
+  }
+
+  private static int compareKeys(long leftHigh, long leftLow, long rightHigh, long rightLow) {
+    int comparison = Long.compareUnsigned(leftHigh, rightHigh);
+    return comparison != 0 ? comparison : Long.compareUnsigned(leftLow, rightLow);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.aggregate.adtech.worker.aggregation.domain;
+
+import static com.google.aggregate.adtech.worker.aggregation.domain.BinaryDomainFormat.HEADER_SIZE;
+import static com.google.aggregate.adtech.worker.aggregation.domain.BinaryDomainFormat.KEY_SIZE;
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a binary output domain shard, described in {@link BinaryDomainFormat}, through a
+ * fixed-size buffer. The header is written once all keys were added, on {@link #close}.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class BinaryDomainWriter implements Closeable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private long keyCount;
+  private long lastHigh;
+  private long lastLow;
+
+  private BinaryDomainWriter(FileChannel channel) {
+    this.channel = channel;
+  }
+
+  /** Creates the shard file, replacing any existing file. */
+  public static BinaryDomainWriter create(Path file) throws IOException {
+    FileChannel channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+    channel.position(HEADER_SIZE);
+    return new BinaryDomainWriter(channel);
+  }
+
+  /**
+   * Adds the key of the given upper and lower 64 bits.
+   *
+   * @throws IllegalArgumentException if the key is not greater than the key added before it
+   */
+  public void add(long keyHigh, long keyLow) throws IOException {
+    checkArgument(
+        keyCount == 0 || compareKeys(keyHigh, keyLow, lastHigh, lastLow) > 0,
+        "Keys of a binary output domain shard must be added in strictly ascending order.");
+    if (buffer.remaining() < KEY_SIZE) {
+      flush();
+    }
+    buffer.putLong(keyHigh).putLong(keyLow);
+    lastHigh = keyHigh;
+    lastLow = keyLow;
+    keyCount++;
+  }
+
+  /** Number of keys added so far. */
+  public long keyCount() {
+    return keyCount;
+  }
+
+  /** Writes the remaining keys and the header, then closes the file. */
+  @Override
+  public void close() throws IOException {
+    try (FileChannel closedChannel = channel) {
+      flush();
+      BinaryDomainFormat.writeHeader(buffer, keyCount);
+      buffer.flip();
+      closedChannel.position(0);
+      writeFully(buffer);
+    }
+  }
+
+  private void flush() throws IOException {
+    buffer.flip();
+    writeFully(buffer);
+    buffer.clear();
+  }
+
+  private void writeFully(ByteBuffer source) throws IOException {
+    while (source.hasRemaining()) {
+      channel.write(source);
+    }
+  }
+
+  private static int compareKeys(long leftHigh, long leftLow, long rightHigh, long rightLow) {
+    int comparison = Long.compareUnsigned(leftHigh, rightHigh);
+    return comparison != 0 ? comparison : Long.compareUnsigned(leftLow, rightLow);
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.aggregate.adtech.worker.aggregation.domain;
+
+import com.google.aggregate.adtech.worker.Annotations.BlockingThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.DomainOptional;
+import com.google.aggregate.adtech.worker.Annotations.EnableThresholding;
+import com.google.aggregate.adtech.worker.Annotations.NonBlockingThreadPool;
+import com.google.aggregate.adtech.worker.aggregation.engine.DomainKeyIterator;
+import com.google.aggregate.adtech.worker.exceptions.DomainReadException;
+import com.google.aggregate.adtech.worker.reader.BlobPrefetcher;
+import com.google.aggregate.adtech.worker.reader.BlobVersionReader;
+import com.google.aggregate.perf.StopwatchRegistry;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.privacysandbox.otel.OTelConfiguration;
+import com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.util.Optional;
+import java.util.stream.Stream;
+import javax.inject.Inject;
+
+/**
+ * Reads output domain from binary shards of sorted fixed-width keys, described in {@link
+ * BinaryDomainFormat}.
+ */
+public final class BinaryOutputDomainProcessor extends OutputDomainProcessor {
+
+  @Inject
+  public BinaryOutputDomainProcessor(
+      @BlockingThreadPool ListeningExecutorService blockingThreadPool,
+      @NonBlockingThreadPool ListeningExecutorService nonBlockingThreadPool,
+      BlobStorageClient blobStorageClient,
+      StopwatchRegistry stopwatches,
+      OTelConfiguration oTelConfiguration,
+      OutputDomainCache outputDomainCache,
+      BlobPrefetcher blobPrefetcher,
+      Optional<BlobVersionReader> blobVersionReader,
+      @DomainOptional Boolean domainOptional,
+      @EnableThresholding Boolean enableThresholding) {
+    super(
+        blockingThreadPool,
+        nonBlockingThreadPool,
+        blobStorageClient,
+        stopwatches,
+        oTelConfiguration,
+        outputDomainCache,
+        blobPrefetcher,
+        blobVersionReader,
+        domainOptional,
+        enableThresholding);
+  }
+
+  /**
+   * Keys are decoded as the stream is consumed, and binary shards are written sorted, so they are
+   * always merge-joined.
+   */
+  @Override
+  protected boolean joinsSortedDomain() {
+    return true;
+  }
+
+  @Override
+  public Stream<BigInteger> readInputStream(InputStream shardInputStream) {
+    return streamKeys(readKeys(shardInputStream));
+  }
+
+  /** Reads the keys straight from the records, without allocating them. */
+  @Override
+  protected DomainKeyIterator readKeys(InputStream shardInputStream) {
+    try {
+      return BinaryDomainReader.open(shardInputStream);
+    } catch (IOException e) {
+      throw new DomainReadException(e);
+    }
+  }
+}
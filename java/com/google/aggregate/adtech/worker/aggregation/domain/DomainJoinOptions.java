@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.aggregate.adtech.worker.aggregation.domain;
+
+import com.google.auto.value.AutoValue;
+import com.google.inject.ProvidedBy;
+import com.google.inject.Provider;
+
+/**
+ * Options of how {@link OutputDomainProcessor} joins the output domain with an aggregation held in
+ * memory.
+ */
+@AutoValue
+@ProvidedBy(DomainJoinOptions.DefaultProvider.class)
+public abstract class DomainJoinOptions {
+
+  public static DomainJoinOptions create(boolean sortedShards) {
+    return new AutoValue_DomainJoinOptions(sortedShards);
+  }
+
+  /** Returns the default options: shards are not expected to be sorted. */
+  public static DomainJoinOptions defaults() {
+    return create(/* sortedShards= */ false);
+  }
+
+  /**
+   * Whether the keys of each Avro or text shard are expected to be sorted by bucket, so that the
+   * shards are merge-joined with the aggregation instead of inserted into it. A shard found out of
+   * order falls back to inserting the keys. Binary shards are always merge-joined.
+   */
+  public abstract boolean sortedShards();
+
+  static final class DefaultProvider implements Provider<DomainJoinOptions> {
+
+    @Override
+    public DomainJoinOptions get() {
+      return defaults();
+    }
+  }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.domain;
+
+import com.google.aggregate.adtech.worker.aggregation.engine.AggregationEngine;
+import com.google.aggregate.adtech.worker.model.AggregatedFactBlock;
+import com.google.aggregate.privacy.noise.NoisedAggregationRunner;
+import com.google.aggregate.privacy.noise.model.NoisedAggregatedResultSet;
+import com.google.aggregate.privacy.noise.model.NoisedAggregationResult;
+import com.google.aggregate.privacy.noise.proto.Params.PrivacyParameters;
+import com.google.common.collect.AbstractIterator;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Noises the buckets passed on by an {@link AggregationEngine} a block at a time and streams the
+ * results to files of the engine, so that the results of a job take a few blocks of heap however
+ * many buckets it has. The results are read back from the files block by block once written out.
+ *
+ * <p>Buckets are noised, thresholded and annotated as by {@link
+ * OutputDomainProcessor#adjustAggregationWithDomainAndNoiseStreaming}, but the results are in
+ * bucket order within each kind of bucket rather than grouped by kind. Each bucket is noised once
+ * and written to both the summary and the debug results, so the two agree.
+ *
+ * <p>This class is not thread-safe.
+ */
+final class NoisedResultSpool implements AggregationEngine.BucketConsumer, Closeable {
+
+  // Rows noised at once, 41 bytes each at most.
+  private static final int BLOCK_SIZE = 1 << 16;
+  private static final int FILE_BUFFER_SIZE = 1 << 16;
+
+  private final NoisedAggregationRunner noisedAggregationRunner;
+  private final Optional<Double> debugPrivacyEpsilon;
+  private final boolean domainOptional;
+  private final boolean enableThresholding;
+  private final boolean debugRun;
+  private final ResultFile summaryResults;
+  private final Optional<ResultFile> debugResults;
+  private AggregatedFactBlock overlappingFacts = AggregatedFactBlock.create();
+  private AggregatedFactBlock domainOnlyFacts = AggregatedFactBlock.create();
+  private AggregatedFactBlock reportOnlyFacts = AggregatedFactBlock.create();
+  private Optional<PrivacyParameters> privacyParameters = Optional.empty();
+
+  NoisedResultSpool(
+      AggregationEngine aggregationEngine,
+      NoisedAggregationRunner noisedAggregationRunner,
+      Optional<Double> debugPrivacyEpsilon,
+      boolean domainOptional,
+      boolean enableThresholding,
+      boolean debugRun)
+      throws IOException {
+    this.noisedAggregationRunner = noisedAggregationRunner;
+    this.debugPrivacyEpsilon = debugPrivacyEpsilon;
+    this.domainOptional = domainOptional;
+    this.enableThresholding = enableThresholding;
+    this.debugRun = debugRun;
+    this.summaryResults = new ResultFile(aggregationEngine);
+    this.debugResults =
+        debugRun ? Optional.of(new ResultFile(aggregationEngine)) : Optional.empty();
+  }
+
+  @Override
+  public void accept(BigInteger bucket, long sum, boolean inReports, boolean inDomain) {
+    if (inDomain && inReports) {
+      overlappingFacts.add(bucket, sum);
+      if (overlappingFacts.size() == BLOCK_SIZE) {
+        overlappingFacts = writeOverlappingFacts(overlappingFacts);
+      }
+    } else if (inDomain) {
+      domainOnlyFacts.add(bucket, sum);
+      if (domainOnlyFacts.size() == BLOCK_SIZE) {
+        domainOnlyFacts = writeDomainOnlyFacts(domainOnlyFacts);
+      }
+    } else if (debugRun || domainOptional) {
+      reportOnlyFacts.add(bucket, sum);
+      if (reportOnlyFacts.size() == BLOCK_SIZE) {
+        reportOnlyFacts = writeReportOnlyFacts(reportOnlyFacts);
+      }
+    }
+  }
+
+  /**
+   * Writes the buckets left, once the engine passed on all of them, and returns the results read
+   * from the files.
+   */
+  NoisedAggregatedResultSet finish() throws IOException {
+    overlappingFacts = writeOverlappingFacts(overlappingFacts);
+    domainOnlyFacts = writeDomainOnlyFacts(domainOnlyFacts);
+    reportOnlyFacts = writeReportOnlyFacts(reportOnlyFacts);
+    close();
+
+    NoisedAggregatedResultSet.Builder noisedResultSetBuilder =
+        NoisedAggregatedResultSet.builder()
+            .setNoisedResult(summaryResults.toResult(privacyParameters.get()));
+    if (debugResults.isPresent()) {
+      noisedResultSetBuilder.setNoisedDebugResult(
+          debugResults.get().toResult(privacyParameters.get()));
+    }
+    return noisedResultSetBuilder.build();
+  }
+
+  @Override
+  public void close() throws IOException {
+    summaryResults.close();
+    if (debugResults.isPresent()) {
+      debugResults.get().close();
+    }
+  }
+
+  private AggregatedFactBlock writeOverlappingFacts(AggregatedFactBlock block) {
+    AggregatedFactBlock noisedBlock = noise(block);
+    summaryResults.write(noisedBlock);
+    writeDebugResults(
+        noisedBlock, (byte) (AggregatedFactBlock.IN_REPORTS | AggregatedFactBlock.IN_DOMAIN));
+    return AggregatedFactBlock.create();
+  }
+
+  private AggregatedFactBlock writeDomainOnlyFacts(AggregatedFactBlock block) {
+    AggregatedFactBlock noisedBlock = noise(block);
+    summaryResults.write(noisedBlock);
+    writeDebugResults(noisedBlock, AggregatedFactBlock.IN_DOMAIN);
+    return AggregatedFactBlock.create();
+  }
+
+  /**
+   * Writes the buckets only in reports to the summary results if domainOptional is set,
+   * thresholded if enableThresholding is also set, and to the debug results if debugRun is set.
+   */
+  private AggregatedFactBlock writeReportOnlyFacts(AggregatedFactBlock block) {
+    AggregatedFactBlock noisedBlock = noise(block);
+    if (domainOptional) {
+      if (enableThresholding) {
+        // Noising replaced the metrics of the block with their noised values.
+        noisedAggregationRunner
+            .threshold(noisedBlock, debugPrivacyEpsilon)
+            .resultBlocks()
+            .forEach(summaryResults::write);
+      } else {
+        summaryResults.write(noisedBlock);
+      }
+    }
+    writeDebugResults(noisedBlock, AggregatedFactBlock.IN_REPORTS);
+    return AggregatedFactBlock.create();
+  }
+
+  private AggregatedFactBlock noise(AggregatedFactBlock block) {
+    NoisedAggregationResult noisedResult =
+        noisedAggregationRunner.noise(block, debugPrivacyEpsilon);
+    privacyParameters = Optional.of(noisedResult.privacyParameters());
+    return block;
+  }
+
+  private void writeDebugResults(AggregatedFactBlock noisedBlock, byte flags) {
+    if (debugResults.isPresent()) {
+      debugResults.get().write(noisedBlock.withDebugAnnotations(flags));
+    }
+  }
+
+  /** Blocks of results written to a result file of the engine. */
+  private static final class ResultFile implements Closeable {
+
+    private final AggregationEngine aggregationEngine;
+    private final Path file;
+    private final DataOutputStream output;
+    private long resultCount;
+    private long blockCount;
+
+    ResultFile(AggregationEngine aggregationEngine) throws IOException {
+      this.aggregationEngine = aggregationEngine;
+      this.file = aggregationEngine.createResultFile();
+      this.output =
+          new DataOutputStream(
+              new BufferedOutputStream(Files.newOutputStream(file), FILE_BUFFER_SIZE));
+    }
+
+    void write(AggregatedFactBlock block) {
+      if (block.size() == 0) {
+        return;
+      }
+      try {
+        block.writeTo(output);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      resultCount += block.size();
+      blockCount++;
+    }
+
+    /**
+     * Returns the results of the file, read again on each iteration over its blocks. The streams
+     * of iterations left unfinished are closed when the engine deletes its files.
+     */
+    NoisedAggregationResult toResult(PrivacyParameters privacyParameters) {
+      long blocks = blockCount;
+      return NoisedAggregationResult.create(
+          privacyParameters, resultCount, () -> new BlockIterator(aggregationEngine, file, blocks));
+    }
+
+    @Override
+    public void close() throws IOException {
+      output.close();
+    }
+  }
+
+  /** Reads the blocks of a result file, closing it once the last one is read. */
+  private static final class BlockIterator extends AbstractIterator<AggregatedFactBlock> {
+
+    private final AggregationEngine aggregationEngine;
+    private final Path file;
+    private long remainingBlocks;
+    private DataInputStream input;
+
+    BlockIterator(AggregationEngine aggregationEngine, Path file, long blockCount) {
+      this.aggregationEngine = aggregationEngine;
+      this.file = file;
+      this.remainingBlocks = blockCount;
+    }
+
+    @Override
+    protected AggregatedFactBlock computeNext() {
+      try {
+        if (remainingBlocks == 0) {
+          if (input != null) {
+            input.close();
+          }
+          return endOfData();
+        }
+        if (input == null) {
+          input =
+              new DataInputStream(
+                  new BufferedInputStream(
+                      aggregationEngine.openResultFile(file), FILE_BUFFER_SIZE));
+        }
+        remainingBlocks--;
+        return AggregatedFactBlock.readFrom(input);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.domain;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.aggregate.adtech.worker.Annotations.OutputDomainCacheDirectory;
+import com.google.aggregate.adtech.worker.Annotations.OutputDomainCacheMaxBytes;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Striped;
+import com.google.errorprone.annotations.Var;
+import com.google.privacysandbox.otel.OTelConfiguration;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.metrics.LongCounter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+import javax.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Worker-local cache of output domains, kept across jobs on local disk.
+ *
+ * <p>Each domain is stored as a binary shard of its distinct sorted keys, described in {@link
+ * BinaryDomainFormat}, so a hit skips both the download and the parsing of the domain. Domains are
+ * identified by the format they are read with and by the location, size and a fingerprint of the
+ * content of every shard, since blob storage exposes no version of them to the worker. A domain
+ * rewritten in place is taken for the cached one only if its shards keep their sizes and their
+ * fingerprinted bytes. Files of the least recently used domains are deleted once the cache holds
+ * more bytes than its budget.
+ *
+ * <p>Domains of different keys are loaded concurrently; jobs opening the same key wait for the
+ * first one to load it.
+ *
+ * <p>The cache is disabled when its budget is 0.
+ */
+public final class OutputDomainCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(OutputDomainCache.class);
+
+  private static final String ENTRY_SUFFIX = ".domain";
+
+  // Locks guarding the loading of domains, shared by the keys that hash to the same stripe.
+  private static final int KEY_LOCK_STRIPES = 64;
+
+  private final Path directory;
+  private final long maxBytes;
+  private final LongCounter hitCounter;
+  private final LongCounter missCounter;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final Striped<Lock> keyLocks = Striped.lock(KEY_LOCK_STRIPES);
+
+  @Inject
+  OutputDomainCache(
+      @OutputDomainCacheDirectory Path directory,
+      @OutputDomainCacheMaxBytes long maxBytes,
+      OTelConfiguration oTelConfiguration) {
+    this(
+        directory,
+        maxBytes,
+        oTelConfiguration.createProdCounter("output_domain_cache_hits"),
+        oTelConfiguration.createProdCounter("output_domain_cache_misses"));
+  }
+
+  OutputDomainCache(
+      Path directory, long maxBytes, LongCounter hitCounter, LongCounter missCounter) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    this.hitCounter = hitCounter;
+    this.missCounter = missCounter;
+  }
+
+  /** Returns a cache that holds nothing, for callers that do not configure one. */
+  public static OutputDomainCache disabled() {
+    LongCounter noopCounter =
+        OpenTelemetry.noop().getMeter("output_domain_cache").counterBuilder("noop").build();
+    return new OutputDomainCache(Path.of(""), /* maxBytes= */ 0, noopCounter, noopCounter);
+  }
+
+  public boolean isEnabled() {
+    return maxBytes > 0;
+  }
+
+  /** Identifies a version of a domain in the cache. */
+  public static String key(String format, ImmutableList<ShardVersion> shards) {
+    Hasher hasher = Hashing.sha256().newHasher().putString(format, UTF_8).putInt(shards.size());
+    for (ShardVersion shard : shards) {
+      hasher
+          .putInt(shard.bucket().length())
+          .putString(shard.bucket(), UTF_8)
+          .putInt(shard.key().length())
+          .putString(shard.key(), UTF_8)
+          .putInt(shard.version().length())
+          .putString(shard.version(), UTF_8);
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Opens the cached domain of the key, first writing it with {@code loader} on a miss.
+   *
+   * @throws IOException if the domain could not be loaded or read
+   */
+  public BinaryDomainReader open(String key, Loader loader) throws IOException {
+    Lock keyLock = keyLocks.get(key);
+    keyLock.lock();
+    try {
+      Path entry = directory.resolve(key + ENTRY_SUFFIX);
+      try {
+        Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        BinaryDomainReader reader = BinaryDomainReader.map(entry);
+        hits.incrementAndGet();
+        hitCounter.add(1);
+        return reader;
+      } catch (NoSuchFileException e) {
+        // Never loaded, or evicted by the load of another key.
+      }
+
+      misses.incrementAndGet();
+      missCounter.add(1);
+      Files.createDirectories(directory);
+      Path loading = Files.createTempFile(directory, key, ".tmp");
+      @Var BinaryDomainReader reader = null;
+      try {
+        loader.load(loading);
+        // Opened before it is published, so that the domain stays readable even if the load of
+        // another key evicts it.
+        reader = BinaryDomainReader.map(loading);
+        Files.move(loading, entry, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException | RuntimeException e) {
+        if (reader != null) {
+          reader.close();
+        }
+        throw e;
+      } finally {
+        Files.deleteIfExists(loading);
+      }
+      evictLeastRecentlyUsed();
+      return reader;
+    } finally {
+      keyLock.unlock();
+    }
+  }
+
+  public long hitCount() {
+    return hits.get();
+  }
+
+  public long missCount() {
+    return misses.get();
+  }
+
+  /** Deletes the least recently used domains until the cache fits in its budget. */
+  private synchronized void evictLeastRecentlyUsed() throws IOException {
+    ImmutableList<Path> entries;
+    try (Stream<Path> files = Files.list(directory)) {
+      entries =
+          files
+              .filter(file -> file.getFileName().toString().endsWith(ENTRY_SUFFIX))
+              .sorted(Comparator.comparing(OutputDomainCache::lastModifiedTime).reversed())
+              .collect(ImmutableList.toImmutableList());
+    }
+    @Var long totalBytes = 0;
+    for (Path entry : entries) {
+      totalBytes += Files.size(entry);
+      if (totalBytes > maxBytes) {
+        logger.info("Evicting output domain from the cache: " + entry);
+        Files.deleteIfExists(entry);
+      }
+    }
+  }
+
+  private static FileTime lastModifiedTime(Path file) {
+    try {
+      return Files.getLastModifiedTime(file);
+    } catch (IOException e) {
+      // Deleted meanwhile, so the first to evict.
+      return FileTime.fromMillis(0);
+    }
+  }
+
+  /** Writes the distinct sorted keys of a domain missing from the cache. */
+  public interface Loader {
+    void load(Path file) throws IOException;
+  }
+
+  /** Location and version of a shard of a domain. */
+  @AutoValue
+  public abstract static class ShardVersion {
+
+    public static ShardVersion create(String bucket, String key, String version) {
+      return new AutoValue_OutputDomainCache_ShardVersion(bucket, key, version);
+    }
+
+    public abstract String bucket();
+
+    public abstract String key();
+
+    /** Identifier of the content of the shard, which changes whenever the shard is written. */
+    public abstract String version();
+  }
+}
@@ -19,34 +19,58 @@ package com.google.aggregate.adtech.worker.aggregation.domain;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 
 import com.google.aggregate.adtech.worker.aggregation.engine.AggregationEngine;
+import com.google.aggregate.adtech.worker.aggregation.engine.DomainKeyBuffer;
+import com.google.aggregate.adtech.worker.aggregation.engine.DomainKeyIterator;
+import com.google.aggregate.adtech.worker.aggregation.engine.SortedDomainShard;
+import com.google.aggregate.adtech.worker.aggregation.engine.UnsortedDomainException;
 import com.google.aggregate.adtech.worker.exceptions.DomainReadException;
-import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.aggregate.adtech.worker.model.AggregatedFactBlock;
 import com.google.aggregate.adtech.worker.model.DebugBucketAnnotation;
+import com.google.aggregate.adtech.worker.reader.BlobPrefetcher;
+import com.google.aggregate.adtech.worker.reader.BlobRange;
+import com.google.aggregate.adtech.worker.reader.BlobVersionReader;
+import com.google.aggregate.adtech.worker.reader.RangedBlobReader;
+import com.google.aggregate.adtech.worker.reader.ShardReadScheduler;
+import com.google.aggregate.adtech.worker.util.NumericConversions;
 import com.google.aggregate.perf.StopwatchRegistry;
 import com.google.aggregate.privacy.noise.NoisedAggregationRunner;
 import com.google.aggregate.privacy.noise.model.NoisedAggregatedResultSet;
 import com.google.aggregate.privacy.noise.model.NoisedAggregationResult;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.errorprone.annotations.Var;
+import com.google.privacysandbox.otel.OTelConfiguration;
 import com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient;
 import com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient.BlobStorageClientException;
 import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
 import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongHistogram;
 import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.schedulers.Schedulers;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.nio.file.Path;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -61,25 +85,47 @@ public abstract class OutputDomainProcessor {
   private final int MAX_DOMAIN_READ_BUFFER_SIZE = 10000;
   private final int MAX_DOMAIN_PROCESS_BUFFER_SIZE =
       (MAX_DOMAIN_READ_BUFFER_SIZE * NUM_READ_THREADS) / NUM_PROCESS_THREADS;
+  // Keys sorted in memory at once when writing a domain to the cache, 16 bytes each.
+  private static final int CACHED_DOMAIN_KEYS_IN_MEMORY = 1 << 22;
+  // Bytes fingerprinted at each end of a shard to tell its versions apart in the cache when blob
+  // storage does not version blobs. The header of an Avro shard ends with a sync marker drawn at
+  // random for each file.
+  private static final long FINGERPRINT_END_BYTES = 4096;
 
   private final ListeningExecutorService blockingThreadPool; // for blocking I/O operations
   private final ListeningExecutorService nonBlockingThreadPool; // for other processing operations
   private final BlobStorageClient blobStorageClient;
   private final StopwatchRegistry stopwatches;
+  // Times of the reads of domain shards, by job.
+  private final LongHistogram domainShardReadTimes;
   private final Boolean domainOptional;
   private final Boolean enableThresholding;
+  private final OutputDomainCache outputDomainCache;
+  // Reads blob ranges ahead of the decoding, if blobs can be read by range.
+  private final Optional<RangedBlobReader> rangedBlobReader;
+  // Versions of the shards in the cache, if blob storage versions blobs.
+  private final Optional<BlobVersionReader> blobVersionReader;
 
   OutputDomainProcessor(
       ListeningExecutorService blockingThreadPool,
       ListeningExecutorService nonBlockingThreadPool,
       BlobStorageClient blobStorageClient,
       StopwatchRegistry stopwatches,
+      OTelConfiguration oTelConfiguration,
+      OutputDomainCache outputDomainCache,
+      BlobPrefetcher blobPrefetcher,
+      Optional<BlobVersionReader> blobVersionReader,
       Boolean domainOptional,
       Boolean enableThresholding) {
     this.blockingThreadPool = blockingThreadPool;
     this.nonBlockingThreadPool = nonBlockingThreadPool;
     this.blobStorageClient = blobStorageClient;
     this.stopwatches = stopwatches;
+    this.domainShardReadTimes =
+        oTelConfiguration.createDebugHistogram("domain_shard_read_time", "ms");
+    this.outputDomainCache = outputDomainCache;
+    this.rangedBlobReader = blobPrefetcher.reader();
+    this.blobVersionReader = blobVersionReader;
     this.domainOptional = domainOptional;
     this.enableThresholding = enableThresholding;
   }
@@ -122,6 +168,7 @@ public abstract class OutputDomainProcessor {
    *     output domain buckets.
    */
   public NoisedAggregatedResultSet adjustAggregationWithDomainAndNoiseStreaming(
+      String jobKey,
       AggregationEngine aggregationEngine,
       Optional<DataLocation> domainLocation,
       ImmutableList<DataLocation> domainShards,
@@ -129,18 +176,45 @@ public abstract class OutputDomainProcessor {
       Optional<Double> debugPrivacyEpsilon,
       Boolean debugRun)
       throws DomainReadException {
-    Set<BigInteger> reportsOnlyKeys = Sets.newConcurrentHashSet(aggregationEngine.getKeySet());
-    Set<BigInteger> overlappingKeys = Sets.newConcurrentHashSet();
+    if (aggregationEngine.isExternal()) {
+      return adjustExternalAggregationWithDomainAndNoise(
+          jobKey,
+          aggregationEngine,
+          domainLocation,
+          domainShards,
+          noisedAggregationRunner,
+          debugPrivacyEpsilon,
+          debugRun);
+    }
+    if (outputDomainCache.isEnabled() && !domainShards.isEmpty()) {
+      return joinWithCachedDomain(
+          aggregationEngine,
+          domainLocation,
+          domainShards,
+          noisedAggregationRunner,
+          debugPrivacyEpsilon,
+          debugRun);
+    }
+    if (joinsSortedDomain() && !domainShards.isEmpty()) {
+      Optional<NoisedAggregatedResultSet> joinedResults =
+          joinWithSortedDomain(
+              aggregationEngine,
+              domainLocation,
+              domainShards,
+              noisedAggregationRunner,
+              debugPrivacyEpsilon,
+              debugRun);
+      if (joinedResults.isPresent()) {
+        return joinedResults.get();
+      }
+      logger.info(
+          "Output domain shards are not sorted by bucket, inserting the domain keys into the"
+              + " aggregation instead.");
+    }
 
     AtomicLong outputDomainTotalCount = new AtomicLong(0);
 
-    Flowable.fromStream(domainShards.stream())
-        .flatMap(
-            dataLocation ->
-                readShardData(dataLocation).subscribeOn(Schedulers.from(blockingThreadPool)),
-            /* delayErrors= */ false,
-            NUM_READ_THREADS,
-            MAX_DOMAIN_READ_BUFFER_SIZE)
+    readShardsBySize(domainShards, jobKey)
         .buffer(MAX_DOMAIN_PROCESS_BUFFER_SIZE)
         .doOnNext(domains -> outputDomainTotalCount.addAndGet(domains.size()))
         .flatMap(
@@ -149,39 +223,263 @@ public abstract class OutputDomainProcessor {
                     .subscribeOn(Schedulers.from(nonBlockingThreadPool))
                     .map(
                         domainKeys -> {
-                          domainKeys.forEach(
-                              domainKey -> {
-                                // keys are separately annotated only for debug run.
-                                if (debugRun && reportsOnlyKeys.contains(domainKey)) {
-                                  overlappingKeys.add(domainKey);
-                                }
-
-                                reportsOnlyKeys.remove(domainKey);
-                                aggregationEngine.accept(domainKey);
-                              });
+                          // The engine marks each key as in the domain, so the partitions below
+                          // are derived without tracking the keys separately.
+                          domainKeys.forEach(aggregationEngine::accept);
                           return Observable.empty();
                         }),
             NUM_PROCESS_THREADS)
         .blockingSubscribe();
 
-    if (domainLocation.isPresent() && outputDomainTotalCount.get() < 1) {
-      throw new DomainReadException(
-          new IllegalArgumentException(
-              String.format(
-                  "No output domain provided in the location: %s. Please refer to the API"
-                      + " documentation for output domain parameters at"
-                      + " https://github.com/privacysandbox/aggregation-service/blob/main/docs/api.md",
-                  domainLocation)));
+    checkOutputDomainNotEmpty(domainLocation, outputDomainTotalCount.get());
+
+    FactsByMembership factsByMembership =
+        new FactsByMembership(/* includeReportOnlyFacts= */ debugRun || domainOptional);
+    aggregationEngine.forEachBucket(factsByMembership);
+    return noiseAndAnnotate(
+        factsByMembership, noisedAggregationRunner, debugPrivacyEpsilon, debugRun);
+  }
+
+  /**
+   * Merge-joins the buckets of an engine aggregating in memory with the output domain, reading the
+   * shards as sorted streams instead of inserting every domain key into the engine. The joined
+   * buckets are noised a block at a time and streamed to result files of the engine, as for an
+   * engine aggregating in external memory. The first key found out of order abandons the join,
+   * and nothing it produced is used.
+   *
+   * @return the noised results, or empty if a shard is not sorted
+   */
+  private Optional<NoisedAggregatedResultSet> joinWithSortedDomain(
+      AggregationEngine aggregationEngine,
+      Optional<DataLocation> domainLocation,
+      ImmutableList<DataLocation> domainShards,
+      NoisedAggregationRunner noisedAggregationRunner,
+      Optional<Double> debugPrivacyEpsilon,
+      Boolean debugRun)
+      throws DomainReadException {
+    AtomicLong outputDomainTotalCount = new AtomicLong(0);
+    ImmutableList<SortedDomainShard> sortedShards =
+        domainShards.stream()
+            .map(shard -> sortedShard(shard, outputDomainTotalCount))
+            .collect(toImmutableList());
+    // The result files of an abandoned join are deleted along with those of the job.
+    try (NoisedResultSpool noisedResults =
+        new NoisedResultSpool(
+            aggregationEngine,
+            noisedAggregationRunner,
+            debugPrivacyEpsilon,
+            domainOptional,
+            enableThresholding,
+            debugRun)) {
+      aggregationEngine.forEachBucketJoined(sortedShards, noisedResults);
+      checkOutputDomainNotEmpty(domainLocation, outputDomainTotalCount.get());
+      return Optional.of(noisedResults.finish());
+    } catch (UnsortedDomainException e) {
+      return Optional.empty();
+    } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+      // Invalid keys are thrown as IllegalArgumentException, as when decoding a bucket.
+      throw new DomainReadException(e);
     }
+  }
 
-    Map<BigInteger, AggregatedFact> aggregatedResults =
-        new HashMap<>(aggregationEngine.makeAggregation());
+  /**
+   * Merge-joins the buckets of an engine aggregating in memory with the output domain kept in the
+   * worker's {@link OutputDomainCache}. On a miss, the shards are read and their distinct keys
+   * sorted into the cache first. The joined buckets are noised and streamed to result files of the
+   * engine as by {@link #joinWithSortedDomain}.
+   *
+   * @return the noised results
+   */
+  private NoisedAggregatedResultSet joinWithCachedDomain(
+      AggregationEngine aggregationEngine,
+      Optional<DataLocation> domainLocation,
+      ImmutableList<DataLocation> domainShards,
+      NoisedAggregationRunner noisedAggregationRunner,
+      Optional<Double> debugPrivacyEpsilon,
+      Boolean debugRun)
+      throws DomainReadException {
+    try (BinaryDomainReader cachedDomain =
+            outputDomainCache.open(
+                cacheKey(domainShards), file -> writeSortedDomain(domainShards, file));
+        NoisedResultSpool noisedResults =
+            new NoisedResultSpool(
+                aggregationEngine,
+                noisedAggregationRunner,
+                debugPrivacyEpsilon,
+                domainOptional,
+                enableThresholding,
+                debugRun)) {
+      checkOutputDomainNotEmpty(domainLocation, cachedDomain.keyCount());
+      aggregationEngine.forEachBucketJoined(
+          ImmutableList.of(closer -> cachedDomain), noisedResults);
+      return noisedResults.finish();
+    } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+      throw new DomainReadException(e);
+    }
+  }
 
-    List<AggregatedFact> reportOnlyFacts =
-        reportsOnlyKeys.stream().map(aggregatedResults::remove).collect(Collectors.toList());
+  /** Returns the shard as read for a merge-join, counting its keys into {@code keyCount}. */
+  private SortedDomainShard sortedShard(DataLocation shard, AtomicLong keyCount) {
+    return closer -> new CountedKeys(readKeys(closer.register(openShard(shard))), keyCount);
+  }
 
+  /**
+   * Identifies the shards, as read by this processor, in the {@link OutputDomainCache}. The
+   * versions of the shards are fetched concurrently.
+   */
+  private String cacheKey(ImmutableList<DataLocation> domainShards) {
+    ImmutableList<ListenableFuture<OutputDomainCache.ShardVersion>> shardVersions =
+        domainShards.stream()
+            .map(shard -> blockingThreadPool.submit(() -> shardVersion(shard)))
+            .collect(toImmutableList());
+    try {
+      return OutputDomainCache.key(
+          getClass().getName(), ImmutableList.copyOf(Futures.allAsList(shardVersions).get()));
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), DomainReadException.class);
+      throw new DomainReadException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DomainReadException(e);
+    } finally {
+      shardVersions.forEach(shardVersion -> shardVersion.cancel(/* mayInterruptIfRunning= */ true));
+    }
+  }
+
+  /**
+   * Returns the version of the shard's blob, as read from blob storage. On a file system, which
+   * does not version blobs, returns the size of the shard and a fingerprint of the bytes at both of
+   * its ends, or only of its head if blobs cannot be read by range.
+   */
+  private OutputDomainCache.ShardVersion shardVersion(DataLocation shard)
+      throws BlobStorageClientException, IOException {
+    BlobStoreDataLocation location = shard.blobStoreDataLocation();
+    if (blobVersionReader.isPresent()) {
+      return OutputDomainCache.ShardVersion.create(
+          location.bucket(), location.key(), blobVersionReader.get().getBlobVersion(shard));
+    }
+    long size = blobStorageClient.getBlobSize(shard);
+    Hasher fingerprint = Hashing.farmHashFingerprint64().newHasher();
+    long headSize = Math.min(size, FINGERPRINT_END_BYTES);
+    if (rangedBlobReader.isPresent()) {
+      long tailOffset = Math.max(headSize, size - FINGERPRINT_END_BYTES);
+      putRange(fingerprint, shard, /* offset= */ 0, headSize);
+      putRange(fingerprint, shard, tailOffset, size - tailOffset);
+    } else if (headSize > 0) {
+      try (InputStream head = ByteStreams.limit(blobStorageClient.getBlob(shard), headSize)) {
+        fingerprint.putBytes(ByteStreams.toByteArray(head));
+      }
+    }
+    return OutputDomainCache.ShardVersion.create(
+        location.bucket(), location.key(), size + "-" + fingerprint.hash());
+  }
+
+  private void putRange(Hasher hasher, DataLocation shard, long offset, long length)
+      throws IOException {
+    if (length <= 0) {
+      return;
+    }
+    try (InputStream range = rangedBlobReader.get().getBlobRange(shard, offset, length)) {
+      hasher.putBytes(ByteStreams.toByteArray(range));
+    }
+  }
+
+  /** Writes the distinct keys of the shards to {@code file}, sorted. */
+  private void writeSortedDomain(ImmutableList<DataLocation> domainShards, Path file)
+      throws IOException {
+    try (BinaryDomainSorter sorter = new BinaryDomainSorter(file, CACHED_DOMAIN_KEYS_IN_MEMORY)) {
+      for (DataLocation shard : domainShards) {
+        try (InputStream shardStream = openShard(shard)) {
+          DomainKeyIterator keys = readKeys(shardStream);
+          while (keys.next()) {
+            sorter.add(keys.keyHigh(), keys.keyLow());
+          }
+        }
+      }
+      sorter.finish();
+    }
+  }
+
+  /**
+   * Same as {@link #adjustAggregationWithDomainAndNoiseStreaming} for an engine aggregating in
+   * external memory. Domain keys are collected into sorted runs, spilled to disk once they grow
+   * large, and merge-joined in bucket order with the sorted runs of the report aggregation, so
+   * neither the histogram nor the domain is ever held in a single in-memory map. The joined buckets
+   * are noised a block at a time and streamed to result files of the engine, which must be kept
+   * until the results are written out.
+   */
+  private NoisedAggregatedResultSet adjustExternalAggregationWithDomainAndNoise(
+      String jobKey,
+      AggregationEngine aggregationEngine,
+      Optional<DataLocation> domainLocation,
+      ImmutableList<DataLocation> domainShards,
+      NoisedAggregationRunner noisedAggregationRunner,
+      Optional<Double> debugPrivacyEpsilon,
+      Boolean debugRun)
+      throws DomainReadException {
+    // Idle domain key buffers, borrowed by one buffer of domain keys at a time.
+    Queue<DomainKeyBuffer> domainKeyBuffers = new ConcurrentLinkedQueue<>();
+    AtomicLong outputDomainTotalCount = new AtomicLong(0);
+
+    readShardsBySize(domainShards, jobKey)
+        .buffer(MAX_DOMAIN_PROCESS_BUFFER_SIZE)
+        .doOnNext(domains -> outputDomainTotalCount.addAndGet(domains.size()))
+        .flatMap(
+            domainKeysList ->
+                Flowable.just(domainKeysList)
+                    .subscribeOn(Schedulers.from(nonBlockingThreadPool))
+                    .map(
+                        domainKeys -> {
+                          @Var DomainKeyBuffer domainKeyBuffer = domainKeyBuffers.poll();
+                          if (domainKeyBuffer == null) {
+                            domainKeyBuffer = aggregationEngine.createDomainKeyBuffer();
+                          }
+                          try {
+                            domainKeys.forEach(domainKeyBuffer::add);
+                            aggregationEngine.spillIfFull(domainKeyBuffer);
+                          } finally {
+                            domainKeyBuffers.add(domainKeyBuffer);
+                          }
+                          return Observable.empty();
+                        }),
+            NUM_PROCESS_THREADS)
+        .blockingSubscribe();
+
+    checkOutputDomainNotEmpty(domainLocation, outputDomainTotalCount.get());
+    aggregationEngine.finishDomainKeyBuffers(ImmutableList.copyOf(domainKeyBuffers));
+
+    try (NoisedResultSpool noisedResults =
+        new NoisedResultSpool(
+            aggregationEngine,
+            noisedAggregationRunner,
+            debugPrivacyEpsilon,
+            domainOptional,
+            enableThresholding,
+            debugRun)) {
+      aggregationEngine.forEachBucketSorted(noisedResults);
+      return noisedResults.finish();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Noises the facts of the buckets in the output domain and, if debugRun or domainOptional is set,
+   * those only in reports, thresholding the latter when domainOptional is set. When debugRun is
+   * set, the facts are also annotated with where their buckets were seen.
+   */
+  private NoisedAggregatedResultSet noiseAndAnnotate(
+      FactsByMembership factsByMembership,
+      NoisedAggregationRunner noisedAggregationRunner,
+      Optional<Double> debugPrivacyEpsilon,
+      Boolean debugRun) {
+    NoisedAggregationResult noisedOverlappingFacts =
+        noisedAggregationRunner.noise(factsByMembership.overlappingFacts, debugPrivacyEpsilon);
+    NoisedAggregationResult noisedDomainOnlyFacts =
+        noisedAggregationRunner.noise(factsByMembership.domainOnlyFacts, debugPrivacyEpsilon);
+    // Overlapping facts come first in the result.
     NoisedAggregationResult noisedOverlappingAndDomainResults =
-        noisedAggregationRunner.noise(aggregatedResults.values(), debugPrivacyEpsilon);
+        NoisedAggregationResult.merge(noisedOverlappingFacts, noisedDomainOnlyFacts);
 
     NoisedAggregatedResultSet.Builder noisedResultSetBuilder =
         NoisedAggregatedResultSet.builder().setNoisedResult(noisedOverlappingAndDomainResults);
@@ -192,13 +490,14 @@ public abstract class OutputDomainProcessor {
 
     // ReportOnly facts are included only if debug run or domain optional are set.
     NoisedAggregationResult noisedReportOnlyResults =
-        noisedAggregationRunner.noise(reportOnlyFacts, debugPrivacyEpsilon);
+        noisedAggregationRunner.noise(factsByMembership.reportOnlyFacts, debugPrivacyEpsilon);
 
     if (domainOptional) {
+      // Noising replaced the metrics of the block with their noised values.
       NoisedAggregationResult noisedReportsDomainOptional =
           enableThresholding
               ? noisedAggregationRunner.threshold(
-                  noisedReportOnlyResults.noisedAggregatedFacts(), debugPrivacyEpsilon)
+                  factsByMembership.reportOnlyFacts, debugPrivacyEpsilon)
               : noisedReportOnlyResults;
       noisedResultSetBuilder.setNoisedResult(
           NoisedAggregationResult.merge(
@@ -206,29 +505,6 @@ public abstract class OutputDomainProcessor {
     }
 
     if (debugRun) {
-      List<AggregatedFact> domainOnlyFacts = new ArrayList<>();
-      List<AggregatedFact> overlappingFacts = new ArrayList<>();
-      noisedOverlappingAndDomainResults
-          .noisedAggregatedFacts()
-          .forEach(
-              (aggregatedFact) -> {
-                if (overlappingKeys.contains(aggregatedFact.getBucket())) {
-                  overlappingFacts.add(aggregatedFact);
-                } else {
-                  domainOnlyFacts.add(aggregatedFact);
-                }
-              });
-
-      NoisedAggregationResult noisedDomainOnlyFacts =
-          NoisedAggregationResult.create(
-              noisedOverlappingAndDomainResults.privacyParameters(),
-              ImmutableList.copyOf(domainOnlyFacts));
-
-      NoisedAggregationResult noisedOverlappingFacts =
-          NoisedAggregationResult.create(
-              noisedOverlappingAndDomainResults.privacyParameters(),
-              ImmutableList.copyOf(overlappingFacts));
-
       noisedResultSetBuilder.setNoisedDebugResult(
           getAnnotatedDebugResults(
               noisedReportOnlyResults, noisedDomainOnlyFacts, noisedOverlappingFacts));
@@ -237,6 +513,20 @@ public abstract class OutputDomainProcessor {
     return noisedResultSetBuilder.build();
   }
 
+  private static void checkOutputDomainNotEmpty(
+      Optional<DataLocation> domainLocation, long outputDomainTotalCount)
+      throws DomainReadException {
+    if (domainLocation.isPresent() && outputDomainTotalCount < 1) {
+      throw new DomainReadException(
+          new IllegalArgumentException(
+              String.format(
+                  "No output domain provided in the location: %s. Please refer to the API"
+                      + " documentation for output domain parameters at"
+                      + " https://github.com/privacysandbox/aggregation-service/blob/main/docs/api.md",
+                  domainLocation)));
+    }
+  }
+
   private NoisedAggregationResult getAnnotatedDebugResults(
       NoisedAggregationResult noisedReportsOnlyResults,
       NoisedAggregationResult noisedDomainOnlyResults,
@@ -259,21 +549,182 @@ public abstract class OutputDomainProcessor {
         NoisedAggregationResult.merge(noisedReportsOnlyWithAnno, noisedDomainOnlyWithAnno));
   }
 
-  private Flowable<BigInteger> readShardData(DataLocation shard) {
+  /**
+   * Reads the keys of the shards with at most NUM_READ_THREADS shards read at once, scheduled by
+   * size: the largest shards are read first and small shards are combined into shared read tasks.
+   * The read times are recorded for the job.
+   */
+  private Flowable<BigInteger> readShardsBySize(
+      ImmutableList<DataLocation> domainShards, String jobKey) {
+    ImmutableList<BlobRange> sizedShards;
+    try {
+      sizedShards =
+          ShardReadScheduler.sizeShards(blobStorageClient, domainShards, blockingThreadPool);
+    } catch (BlobStorageClientException e) {
+      throw new DomainReadException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DomainReadException(e);
+    }
+    Attributes jobAttributes = ShardReadScheduler.jobAttributes(jobKey);
+    return Flowable.fromIterable(
+            ShardReadScheduler.schedule(sizedShards, ShardReadScheduler.COMBINED_READ_SIZE_BYTES))
+        .flatMap(
+            readTask ->
+                Flowable.fromIterable(readTask)
+                    .concatMap(
+                        shard ->
+                            ShardReadScheduler.timeRead(
+                                domainShardReadTimes, jobAttributes, readShardData(shard)))
+                    .subscribeOn(Schedulers.from(blockingThreadPool)),
+            /* delayErrors= */ false,
+            NUM_READ_THREADS,
+            MAX_DOMAIN_READ_BUFFER_SIZE);
+  }
+
+  private Flowable<BigInteger> readShardData(BlobRange shard) {
     return Flowable.using(
-        () -> {
-          try {
-            if (blobStorageClient.getBlobSize(shard) <= 0) {
-              return InputStream.nullInputStream();
-            }
-            return blobStorageClient.getBlob(shard);
-          } catch (BlobStorageClientException e) {
-            throw new DomainReadException(e);
-          }
-        },
+        () -> openShardReadAhead(shard),
         inputStream -> Flowable.fromStream(readInputStream(inputStream)),
         InputStream::close);
   }
 
+  private InputStream openShard(DataLocation shard) {
+    try {
+      return openShard(shard, blobStorageClient.getBlobSize(shard));
+    } catch (BlobStorageClientException e) {
+      throw new DomainReadException(e);
+    }
+  }
+
+  /**
+   * Opens the shard read ahead of the decoding, if blobs can be read by range. Only a bounded
+   * number of shards may be read ahead at once, as each holds a chunk outside of the read-ahead
+   * budget.
+   */
+  private InputStream openShardReadAhead(BlobRange shard) {
+    if (rangedBlobReader.isEmpty() || shard.blobSize() <= 0) {
+      return openShard(shard.location(), shard.blobSize());
+    }
+    try {
+      return rangedBlobReader.get().getBlobRange(shard.location(), 0, shard.blobSize());
+    } catch (IOException e) {
+      throw new DomainReadException(e);
+    }
+  }
+
+  private InputStream openShard(DataLocation shard, long shardSize) {
+    try {
+      if (shardSize <= 0) {
+        return InputStream.nullInputStream();
+      }
+      return blobStorageClient.getBlob(shard);
+    } catch (BlobStorageClientException e) {
+      throw new DomainReadException(e);
+    }
+  }
+
+  /**
+   * Returns true if the shards are expected to be sorted by bucket, so that they are merge-joined
+   * with an aggregation held in memory. {@link #readInputStream} must then decode the shard as the
+   * returned stream is consumed, rather than reading it whole upfront, since many shards are open
+   * at once.
+   */
+  protected boolean joinsSortedDomain() {
+    return false;
+  }
+
   public abstract Stream<BigInteger> readInputStream(InputStream shardInputStream);
+
+  /**
+   * Reads the keys of the shard to join them with the aggregation, which only happens if {@link
+   * #joinsSortedDomain} is true, or to write them to the {@link OutputDomainCache}. Formats that
+   * can decode keys without allocating them override the default, which iterates over {@link
+   * #readInputStream}.
+   */
+  protected DomainKeyIterator readKeys(InputStream shardInputStream) {
+    return DomainKeyIterator.of(readInputStream(shardInputStream).iterator());
+  }
+
+  /**
+   * Returns the keys as a lazy stream. Read failures and invalid keys are thrown as {@link
+   * DomainReadException} while the stream is consumed.
+   */
+  protected static Stream<BigInteger> streamKeys(DomainKeyIterator keys) {
+    return StreamSupport.stream(
+        new Spliterators.AbstractSpliterator<BigInteger>(
+            Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+          @Override
+          public boolean tryAdvance(Consumer<? super BigInteger> action) {
+            try {
+              if (!keys.next()) {
+                return false;
+              }
+            } catch (IOException | IllegalArgumentException e) {
+              throw new DomainReadException(e);
+            }
+            action.accept(NumericConversions.uInt128FromLongs(keys.keyHigh(), keys.keyLow()));
+            return true;
+          }
+        },
+        /* parallel= */ false);
+  }
+
+  /** Counts the keys read from a shard. */
+  private static final class CountedKeys implements DomainKeyIterator {
+
+    private final DomainKeyIterator keys;
+    private final AtomicLong count;
+
+    CountedKeys(DomainKeyIterator keys, AtomicLong count) {
+      this.keys = keys;
+      this.count = count;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+      if (!keys.next()) {
+        return false;
+      }
+      count.incrementAndGet();
+      return true;
+    }
+
+    @Override
+    public long keyHigh() {
+      return keys.keyHigh();
+    }
+
+    @Override
+    public long keyLow() {
+      return keys.keyLow();
+    }
+  }
+
+  /**
+   * Splits the buckets of an engine, in one pass, by whether they were seen in the output domain,
+   * in reports, or both.
+   */
+  private static final class FactsByMembership implements AggregationEngine.BucketConsumer {
+
+    private final boolean includeReportOnlyFacts;
+    private final AggregatedFactBlock overlappingFacts = AggregatedFactBlock.create();
+    private final AggregatedFactBlock domainOnlyFacts = AggregatedFactBlock.create();
+    private final AggregatedFactBlock reportOnlyFacts = AggregatedFactBlock.create();
+
+    FactsByMembership(boolean includeReportOnlyFacts) {
+      this.includeReportOnlyFacts = includeReportOnlyFacts;
+    }
+
+    @Override
+    public void accept(BigInteger bucket, long sum, boolean inReports, boolean inDomain) {
+      if (inDomain && inReports) {
+        overlappingFacts.add(bucket, sum);
+      } else if (inDomain) {
+        domainOnlyFacts.add(bucket, sum);
+      } else if (includeReportOnlyFacts) {
+        reportOnlyFacts.add(bucket, sum);
+      }
+    }
+  }
 }
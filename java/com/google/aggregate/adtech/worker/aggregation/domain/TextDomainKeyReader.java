@@ -0,0 +1,111 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.domain;
+
+import com.google.aggregate.adtech.worker.aggregation.engine.DomainKeyIterator;
+import com.google.aggregate.adtech.worker.util.NumericConversions;
+import com.google.errorprone.annotations.Var;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the keys of a text output domain shard through a fixed-size buffer.
+ *
+ * <p>Each line holds the big-endian bytes of a key, written as ISO-8859-1 characters, and is
+ * decoded straight into the upper and lower 64 bits of the 128-bit key. Lines end as with {@link
+ * String#lines}: at a line feed, a carriage return, or both, and a trailing line terminator does
+ * not start an empty line. A line longer than 16 bytes fails the read as {@link
+ * NumericConversions#createBucketFromString} does.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class TextDomainKeyReader implements DomainKeyIterator {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final int MAX_KEY_BYTES = 16;
+
+  private final InputStream input;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int position;
+  private int limit;
+  // Set after a carriage return, so that a line feed right after it does not end another line.
+  private boolean afterCarriageReturn;
+  private long keyHigh;
+  private long keyLow;
+
+  public TextDomainKeyReader(InputStream input) {
+    this.input = input;
+  }
+
+  /**
+   * Reads the key on the next line.
+   *
+   * @return false once the shard is exhausted
+   * @throws IllegalArgumentException if the line is longer than 16 bytes
+   */
+  @Override
+  public boolean next() throws IOException {
+    @Var long high = 0;
+    @Var long low = 0;
+    @Var int length = 0;
+    while (true) {
+      if (position == limit) {
+        position = 0;
+        limit = Math.max(0, input.read(buffer, 0, BUFFER_SIZE));
+        if (limit == 0) {
+          return length > 0 && setKey(high, low, length);
+        }
+      }
+      byte character = buffer[position++];
+      if (afterCarriageReturn) {
+        afterCarriageReturn = false;
+        if (character == '\n') {
+          continue;
+        }
+      }
+      if (character == '\n' || character == '\r') {
+        afterCarriageReturn = character == '\r';
+        return setKey(high, low, length);
+      }
+      length++;
+      if (length <= MAX_KEY_BYTES) {
+        high = (high << 8) | (low >>> 56);
+        low = (low << 8) | (character & 0xFF);
+      }
+    }
+  }
+
+  @Override
+  public long keyHigh() {
+    return keyHigh;
+  }
+
+  @Override
+  public long keyLow() {
+    return keyLow;
+  }
+
+  private boolean setKey(long high, long low, int length) {
+    if (length > MAX_KEY_BYTES) {
+      throw new IllegalArgumentException(
+          "Byte array provided was too long. Must be 16 bytes or shorter. Length was " + length);
+    }
+    keyHigh = high;
+    keyLow = low;
+    return true;
+  }
+}
@@ -16,22 +16,21 @@
 
 package com.google.aggregate.adtech.worker.aggregation.domain;
 
-import static com.google.common.collect.ImmutableList.toImmutableList;
-
 import com.google.aggregate.adtech.worker.Annotations.BlockingThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.DomainOptional;
 import com.google.aggregate.adtech.worker.Annotations.EnableThresholding;
 import com.google.aggregate.adtech.worker.Annotations.NonBlockingThreadPool;
+import com.google.aggregate.adtech.worker.aggregation.engine.DomainKeyIterator;
 import com.google.aggregate.adtech.worker.exceptions.DomainReadException;
-import com.google.aggregate.adtech.worker.util.NumericConversions;
+import com.google.aggregate.adtech.worker.reader.BlobPrefetcher;
+import com.google.aggregate.adtech.worker.reader.BlobVersionReader;
 import com.google.aggregate.perf.StopwatchRegistry;
-import com.google.common.collect.ImmutableList;
-import com.google.common.io.ByteStreams;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.privacysandbox.otel.OTelConfiguration;
 import com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient;
-import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.util.Optional;
 import java.util.stream.Stream;
 import javax.inject.Inject;
 
@@ -40,6 +39,7 @@ public final class TextOutputDomainProcessor extends OutputDomainProcessor {
 
   private final BlobStorageClient blobStorageClient;
   private final StopwatchRegistry stopwatches;
+  private final DomainJoinOptions domainJoinOptions;
 
   @Inject
   public TextOutputDomainProcessor(
@@ -47,6 +47,11 @@ public final class TextOutputDomainProcessor extends OutputDomainProcessor {
       @NonBlockingThreadPool ListeningExecutorService nonBlockingThreadPool,
       BlobStorageClient blobStorageClient,
       StopwatchRegistry stopwatches,
+      OTelConfiguration oTelConfiguration,
+      OutputDomainCache outputDomainCache,
+      BlobPrefetcher blobPrefetcher,
+      Optional<BlobVersionReader> blobVersionReader,
+      DomainJoinOptions domainJoinOptions,
       @DomainOptional Boolean domainOptional,
       @EnableThresholding Boolean enableThresholding) {
     super(
@@ -54,22 +59,35 @@ public final class TextOutputDomainProcessor extends OutputDomainProcessor {
         nonBlockingThreadPool,
         blobStorageClient,
         stopwatches,
+        oTelConfiguration,
+        outputDomainCache,
+        blobPrefetcher,
+        blobVersionReader,
         domainOptional,
         enableThresholding);
     this.blobStorageClient = blobStorageClient;
     this.stopwatches = stopwatches;
+    this.domainJoinOptions = domainJoinOptions;
+  }
+
+  /** Keys are decoded as the stream is consumed, so sorted shards can be merge-joined. */
+  @Override
+  protected boolean joinsSortedDomain() {
+    return domainJoinOptions.sortedShards();
   }
 
+  /**
+   * Streams the keys of the shard, one per line, through a fixed-size buffer. An invalid line fails
+   * the stream with {@link DomainReadException} when it is reached.
+   */
+  @Override
   public Stream<BigInteger> readInputStream(InputStream shardInputStream) {
-    try {
-      byte[] bytes = ByteStreams.toByteArray(shardInputStream);
-      try (Stream<String> fileLines = NumericConversions.createStringFromByteArray(bytes).lines()) {
-        ImmutableList<BigInteger> shard =
-            fileLines.map(NumericConversions::createBucketFromString).collect(toImmutableList());
-        return shard.stream();
-      }
-    } catch (IOException | IllegalArgumentException e) {
-      throw new DomainReadException(e);
-    }
+    return streamKeys(new TextDomainKeyReader(shardInputStream));
+  }
+
+  /** Decodes the keys straight into their upper and lower bits, without allocating them. */
+  @Override
+  protected DomainKeyIterator readKeys(InputStream shardInputStream) {
+    return new TextDomainKeyReader(shardInputStream);
   }
 }
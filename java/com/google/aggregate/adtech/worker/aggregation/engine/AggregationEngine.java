@@ -17,28 +17,40 @@
 package com.google.aggregate.adtech.worker.aggregation.engine;
 
 import static com.google.aggregate.privacy.budgeting.budgetkeygenerator.PrivacyBudgetKeyGenerator.PrivacyBudgetKeyInput;
-import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.time.temporal.ChronoUnit.HOURS;
 
 import com.google.aggregate.adtech.worker.model.AggregatedFact;
-import com.google.aggregate.adtech.worker.model.Fact;
+import com.google.aggregate.adtech.worker.model.Contributions;
 import com.google.aggregate.adtech.worker.model.Report;
 import com.google.aggregate.adtech.worker.model.SharedInfo;
+import com.google.aggregate.adtech.worker.util.NumericConversions;
 import com.google.aggregate.privacy.budgeting.bridge.PrivacyBudgetingServiceBridge.PrivacyBudgetUnit;
 import com.google.aggregate.privacy.budgeting.budgetkeygenerator.PrivacyBudgetKeyGenerator;
 import com.google.aggregate.privacy.budgeting.budgetkeygenerator.PrivacyBudgetKeyGeneratorFactory;
+import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.primitives.UnsignedLong;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
-import java.util.function.Function;
 
 /**
  * Data engine for centrally aggregating facts coming in from different threads
@@ -51,85 +63,390 @@ import java.util.function.Function;
  * <p>The engine aggregates by keeping a map of aggregation data, keyed by facts' buckets. The
  * engine is a consumer of reports and aggregates by flattening individual facts from reports and
  * adds +1 for each fact bucket count and +x for fact value.
+ *
+ * <p>An engine created with spill to disk aggregation enabled aggregates in external memory
+ * instead: partial aggregations become sorted runs, written to disk once they grow large, and the
+ * buckets are produced by a k-way merge of the runs joined with the output domain keys.
  */
 public final class AggregationEngine implements Consumer<Report> {
 
+  // Buckets a partial aggregation of an engine aggregating in memory holds before it is added to
+  // the shared table, about 2MB of table each.
+  static final int MAX_PARTIAL_BUCKETS = 1 << 16;
+
   private final PrivacyBudgetKeyGeneratorFactory privacyBudgetKeyGeneratorFactory;
 
   // Track aggregations for individual facts, keyed by fact buckets that are 128-bit integers.
-  private final ConcurrentMap<BigInteger, LongAdder> aggregationMap;
+  private final AggregationTable aggregationTable;
 
   // Tracks distinct privacy budget unit identifiers for the reports aggregated.
   private final Set<PrivacyBudgetUnit> privacyBudgetUnits;
 
   /** reportIdSet tracks the unique report ids within a single aggregation batch. */
-  private final Set<UUID> reportIdSet;
+  private final ReportIdSet reportIdSet;
 
   /** Queried filteringIds to filter payload contributions. */
   private final ImmutableSet<UnsignedLong> filteringIds;
 
+  // Bits of the queried filteringIds, matched against the ids of contributions.
+  private final long[] filteringIdBits;
+
+  // Sorted runs of the aggregation, present when the engine aggregates in external memory.
+  private final Optional<ExternalAggregation> externalAggregation;
+
+  // Directory of the result files created by the engine.
+  private final Path spillDirectory;
+
+  // Result files and domain runs to delete along with the spilled runs.
+  private final List<Path> resultFiles = Collections.synchronizedList(new ArrayList<>());
+
+  // Streams open on result files, closed before the files are deleted.
+  private final Set<ResultFileStream> resultFileStreams = ConcurrentHashMap.newKeySet();
+
+  // Privacy budget units by the report fields they are derived from. The reports of a job share
+  // few of these, so each unit's key is generated once.
+  private final ConcurrentHashMap<PrivacyBudgetUnitInput, PrivacyBudgetUnit>
+      privacyBudgetUnitsByInput = new ConcurrentHashMap<>();
+
+  // Generators by the report fields that select them.
+  private final ConcurrentHashMap<GeneratorSelector, PrivacyBudgetKeyGenerator>
+      privacyBudgetKeyGenerators = new ConcurrentHashMap<>();
+
   /**
    * Consumes a report by adding its individual facts to the aggregation Only reports with unique
    * report_id within a batch are used in aggregation
    */
   @Override
   public void accept(Report report) {
+    if (registerReport(report)) {
+      forEachAggregatableContribution(report, aggregationTable::add);
+    }
+  }
+
+  /**
+   * Creates a {@link PartialAggregation} that de-duplicates reports and collects privacy budget
+   * units through this engine but sums facts locally, avoiding contention on the shared table.
+   */
+  public PartialAggregation createPartialAggregation() {
+    return new PartialAggregation(this);
+  }
+
+  /**
+   * Folds the partial aggregations into this engine. The partials are added straight into the
+   * shared table in parallel on {@code executor}, without merging them into intermediate tables.
+   * When the engine aggregates in external memory, each partial instead becomes a sorted run kept
+   * in memory.
+   *
+   * <p>Must be called once no thread is using the partial aggregations anymore.
+   */
+  public void mergePartialAggregations(List<PartialAggregation> partials, Executor executor) {
+    if (externalAggregation.isPresent()) {
+      partials.forEach(partial -> externalAggregation.get().keepReports(partial.table()));
+      return;
+    }
+    CompletableFuture.allOf(
+            partials.stream()
+                .map(partial -> CompletableFuture.runAsync(() -> flush(partial.table()), executor))
+                .toArray(CompletableFuture[]::new))
+        .join();
+  }
+
+  /**
+   * Returns true if the engine aggregates in external memory. Such an engine only aggregates
+   * through {@link PartialAggregation}s and {@link DomainKeyBuffer}s, and its buckets are read
+   * with {@link #forEachBucketSorted}.
+   */
+  public boolean isExternal() {
+    return externalAggregation.isPresent();
+  }
+
+  /**
+   * Empties the partial aggregation once it holds enough buckets: into a sorted run on disk if the
+   * engine aggregates in external memory, and into the shared table otherwise. The partials of an
+   * engine thus hold a bounded number of buckets however many the job has.
+   */
+  public void spillIfFull(PartialAggregation partial) {
+    if (externalAggregation.isEmpty()) {
+      if (partial.table().size() >= MAX_PARTIAL_BUCKETS) {
+        flush(partial.table());
+      }
+      return;
+    }
+    if (externalAggregation.get().isFull(partial.table())) {
+      try {
+        externalAggregation.get().spillReports(partial.table());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /** Creates a buffer for the output domain keys of an engine aggregating in external memory. */
+  public DomainKeyBuffer createDomainKeyBuffer() {
+    checkState(externalAggregation.isPresent(), "Engine does not aggregate in external memory.");
+    return new DomainKeyBuffer();
+  }
+
+  /**
+   * Writes the domain keys to a sorted run on disk and clears the buffer if it holds enough keys to
+   * be spilled.
+   */
+  public void spillIfFull(DomainKeyBuffer domainKeyBuffer) {
+    if (externalAggregation.get().isFull(domainKeyBuffer.table())) {
+      try {
+        externalAggregation.get().spillDomainKeys(domainKeyBuffer.table());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Keeps the domain keys left in the buffers as sorted runs in memory. Must be called once no
+   * thread is using the buffers anymore.
+   */
+  public void finishDomainKeyBuffers(List<DomainKeyBuffer> domainKeyBuffers) {
+    domainKeyBuffers.forEach(
+        domainKeyBuffer -> externalAggregation.get().keepDomainKeys(domainKeyBuffer.table()));
+  }
+
+  /**
+   * Passes every bucket of an engine aggregating in external memory to the consumer, in ascending
+   * order. Buckets only present in the output domain have a sum of 0.
+   */
+  public void forEachBucketSorted(BucketConsumer consumer) {
+    checkState(externalAggregation.isPresent(), "Engine does not aggregate in external memory.");
+    try {
+      externalAggregation
+          .get()
+          .mergeJoin(
+              (bucketHigh, bucketLow, sum, inReports, inDomain) ->
+                  consumer.accept(
+                      NumericConversions.uInt128FromLongs(bucketHigh, bucketLow),
+                      sum,
+                      inReports,
+                      inDomain));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Passes every bucket of an engine aggregating in memory to the consumer, in ascending order,
+   * joined with the output domain keys of {@code sortedDomainShards}, each of which must list its
+   * keys in ascending order. Buckets only present in the output domain have a sum of 0.
+   *
+   * <p>Unlike with {@link #accept(BigInteger)}, domain keys are not inserted into the aggregation
+   * table: its buckets are sorted once and merge-joined with the shards as they are read, so the
+   * domain takes no memory however large it is. At most {@link
+   * ExternalAggregation#MAX_MERGE_FAN_IN} shards are open at once: more shards are first merged in
+   * groups into runs of distinct keys in the spill directory.
+   *
+   * @throws UnsortedDomainException if a shard is not sorted, which may happen after some buckets
+   *     were passed to the consumer
+   */
+  public void forEachBucketJoined(
+      ImmutableList<SortedDomainShard> sortedDomainShards, BucketConsumer consumer) {
+    checkState(externalAggregation.isEmpty(), "Engine aggregates in external memory.");
+    SortedRun reports = SortedRun.inMemory(aggregationTable.size(), aggregationTable::forEach);
+    try {
+      // Runs left behind by a failure are deleted along with the result files.
+      ImmutableList<SortedRun> domainRuns =
+          SortedRun.reduce(
+              sortedDomainShards.stream().map(DomainShardCursor::run).collect(toImmutableList()),
+              ExternalAggregation.MAX_MERGE_FAN_IN,
+              () -> createSpillFile("domain-"));
+      try (SortedRun.Cursor reportCursor = reports.open();
+          SortedRun.Cursor domainKeys = SortedRun.merge(SortedRun.openAll(domainRuns))) {
+        SortedRun.mergeJoin(
+            reportCursor,
+            domainKeys,
+            (bucketHigh, bucketLow, sum, inReports, inDomain) ->
+                consumer.accept(
+                    NumericConversions.uInt128FromLongs(bucketHigh, bucketLow),
+                    sum,
+                    inReports,
+                    inDomain));
+      }
+      for (SortedRun run : domainRuns) {
+        run.delete();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Creates an empty file in the spill directory for results streamed out of the engine. The file
+   * is deleted by {@link #deleteSpilledFiles}.
+   */
+  public Path createResultFile() throws IOException {
+    return createSpillFile("results-");
+  }
+
+  /**
+   * Opens a result file of the engine for reading. A stream its reader leaves open, such as when a
+   * consumer of the results stops early or fails, is closed by {@link #deleteSpilledFiles}.
+   */
+  public InputStream openResultFile(Path file) throws IOException {
+    ResultFileStream stream = new ResultFileStream(Files.newInputStream(file));
+    resultFileStreams.add(stream);
+    return stream;
+  }
+
+  /**
+   * Deletes the sorted runs and the result files written to disk, if any, closing the streams still
+   * open on the result files.
+   */
+  public void deleteSpilledFiles() {
+    try {
+      if (externalAggregation.isPresent()) {
+        externalAggregation.get().deleteRuns();
+      }
+      for (ResultFileStream stream : ImmutableList.copyOf(resultFileStreams)) {
+        stream.close();
+      }
+      synchronized (resultFiles) {
+        for (Path file : resultFiles) {
+          Files.deleteIfExists(file);
+        }
+        resultFiles.clear();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Creates an empty file in the spill directory, deleted by {@link #deleteSpilledFiles}. */
+  private Path createSpillFile(String prefix) throws IOException {
+    Path file = Files.createTempFile(spillDirectory, prefix, ".bin");
+    resultFiles.add(file);
+    return file;
+  }
+
+  /** Adds the sums of the partial table to the shared table and clears it. */
+  private void flush(BucketSumTable partialTable) {
+    partialTable.forEach(aggregationTable::add);
+    partialTable.clear();
+  }
+
+  /**
+   * Records the report id and, for a report not seen before in this batch, its privacy budget
+   * units. Returns false for duplicate reports and reports without an id, whose facts must not be
+   * aggregated.
+   */
+  boolean registerReport(Report report) {
     if (report.sharedInfo().reportId().isPresent()
-        && reportIdSet.add(UUID.fromString(report.sharedInfo().reportId().get()))) {
+        && reportIdSet.add(report.sharedInfo().reportId().get())) {
       // For privacy reasons, filteringIds listed in the job parameters is assumed to be present in
       // all the reports.
       // One filteringId can be used in maximum of one job and, as a result, contributes to only one
       // summary rerport.
       filteringIds.forEach(filteringId -> addPrivacyBudgetKey(report.sharedInfo(), filteringId));
-      report.payload().data().stream()
-          .filter(fact -> !isNullFact(fact))
-          .filter(fact -> containsFilteringId(fact, filteringIds))
-          .forEach(this::upsertAggregationForFact);
+      return true;
     }
+    return false;
   }
 
-  /** Checks if the queried filteringId matches the fact's. */
-  private static boolean containsFilteringId(Fact fact, ImmutableSet<UnsignedLong> filteringIds) {
-    // id = 0 is the default for reports w/o ids.
-    UnsignedLong factId = fact.id().orElse(UnsignedLong.ZERO);
-    return filteringIds.contains(factId);
+  /**
+   * Passes the bucket and value of each contribution of the report that contributes to the
+   * aggregation to the consumer. Contributions are read as primitives, without materializing facts.
+   */
+  void forEachAggregatableContribution(Report report, BucketValueConsumer consumer) {
+    Contributions contributions = report.payload().contributions();
+    for (int index = 0; index < contributions.size(); index++) {
+      long bucketHigh = contributions.bucketHigh(index);
+      long bucketLow = contributions.bucketLow(index);
+      long value = contributions.value(index);
+      // id = 0 is the default for reports w/o ids.
+      if (!isNullContribution(bucketHigh, bucketLow, value)
+          && containsFilteringId(contributions.id(index))) {
+        consumer.accept(bucketHigh, bucketLow, value);
+      }
+    }
+  }
+
+  /** Checks if the queried filteringIds contain the contribution's. */
+  private boolean containsFilteringId(long id) {
+    for (long filteringId : filteringIdBits) {
+      if (filteringId == id) {
+        return true;
+      }
+    }
+    return false;
   }
 
   /**
-   * Insert a new key with an empty fact. PBKs are not calculated for keys added using this method.
+   * Insert a new output domain key with an empty fact, marking it as in the domain. PBKs are not
+   * calculated for keys added using this method.
    */
   public void accept(BigInteger key) {
-    aggregationMap.computeIfAbsent(key, unused -> new LongAdder());
+    aggregationTable.addDomainKey(key);
+  }
+
+  /**
+   * Passes every bucket of an engine aggregating in memory to the consumer, in no particular order,
+   * with whether it was seen in reports and in the output domain. Buckets only present in the
+   * output domain have a sum of 0.
+   *
+   * <p>Must be called once all reports and domain keys have been accepted.
+   */
+  public void forEachBucket(BucketConsumer consumer) {
+    checkState(externalAggregation.isEmpty(), "Engine aggregates in external memory.");
+    aggregationTable.forEachBucket(consumer);
   }
 
   public boolean containsKey(BigInteger key) {
-    return aggregationMap.containsKey(key);
+    return aggregationTable.containsKey(key);
   }
 
   public Set<BigInteger> getKeySet() {
-    return aggregationMap.keySet();
+    return aggregationTable.keySet();
+  }
+
+  /** Returns true if the contribution is a null contribution, with both key and value 0. */
+  private static boolean isNullContribution(long bucketHigh, long bucketLow, long value) {
+    return value == 0 && bucketHigh == 0 && bucketLow == 0;
   }
 
   /**
-   * Returns true if the fact is a null fact. Null facts have both keys and values to 0.
-   *
-   * @param fact
+   * Adds the privacy budget unit of the report for the filteringId. Units are memoized by the
+   * fields they are derived from.
    */
-  private static boolean isNullFact(Fact fact) {
-    return fact.value() == 0 && fact.bucket().equals(BigInteger.ZERO);
+  private void addPrivacyBudgetKey(SharedInfo sharedInfo, UnsignedLong filteringId) {
+    privacyBudgetUnits.add(
+        privacyBudgetUnitsByInput.computeIfAbsent(
+            PrivacyBudgetUnitInput.of(sharedInfo, filteringId),
+            unused -> createPrivacyBudgetUnit(sharedInfo, filteringId)));
   }
 
   /** Calculates Privacy Budget Keys for the report for the filteringId. */
-  private void addPrivacyBudgetKey(SharedInfo sharedInfo, UnsignedLong filteringId) {
+  private PrivacyBudgetUnit createPrivacyBudgetUnit(
+      SharedInfo sharedInfo, UnsignedLong filteringId) {
     PrivacyBudgetKeyInput privacyBudgetKeyInput =
         PrivacyBudgetKeyInput.builder()
             .setSharedInfo(sharedInfo)
             .setFilteringId(filteringId)
             .build();
 
+    PrivacyBudgetKeyGenerator privacyBudgetKeyGenerator =
+        privacyBudgetKeyGenerators.computeIfAbsent(
+            GeneratorSelector.of(sharedInfo, filteringId),
+            unused -> findPrivacyBudgetKeyGenerator(privacyBudgetKeyInput));
+    String privacyBudgetKey =
+        privacyBudgetKeyGenerator.generatePrivacyBudgetKey(privacyBudgetKeyInput);
+    return PrivacyBudgetUnit.create(
+        privacyBudgetKey,
+        sharedInfo.scheduledReportTime().truncatedTo(HOURS),
+        sharedInfo.reportingOrigin());
+  }
+
+  private PrivacyBudgetKeyGenerator findPrivacyBudgetKeyGenerator(
+      PrivacyBudgetKeyInput privacyBudgetKeyInput) {
     Optional<PrivacyBudgetKeyGenerator> privacyBudgetKeyGenerator =
         privacyBudgetKeyGeneratorFactory.getPrivacyBudgetKeyGenerator(privacyBudgetKeyInput);
     if (privacyBudgetKeyGenerator.isEmpty()) {
+      SharedInfo sharedInfo = privacyBudgetKeyInput.sharedInfo();
       // Impossible because validations ensure only the supported reports are allowed.
       throw new IllegalStateException(
           String.format(
@@ -137,14 +454,7 @@ public final class AggregationEngine implements Consumer<Report> {
                   + " Version  =%s.",
               sharedInfo.api().get(), sharedInfo.version()));
     }
-    String privacyBudgetKey =
-        privacyBudgetKeyGenerator.get().generatePrivacyBudgetKey(privacyBudgetKeyInput);
-    PrivacyBudgetUnit budgetUnitId =
-        PrivacyBudgetUnit.create(
-            privacyBudgetKey,
-            sharedInfo.scheduledReportTime().truncatedTo(HOURS),
-            sharedInfo.reportingOrigin());
-    privacyBudgetUnits.add(budgetUnitId);
+    return privacyBudgetKeyGenerator.get();
   }
 
   /**
@@ -152,9 +462,12 @@ public final class AggregationEngine implements Consumer<Report> {
    */
   // TODO: investigate enforcing call of makeAggregation strictly after all accepts.
   public ImmutableMap<BigInteger, AggregatedFact> makeAggregation() {
-    return aggregationMap.entrySet().stream()
-        .map(factAggr -> AggregatedFact.create(factAggr.getKey(), factAggr.getValue().longValue()))
-        .collect(toImmutableMap(AggregatedFact::getBucket, Function.identity()));
+    return aggregationTable.makeAggregation();
+  }
+
+  /** Returns the bytes held by the set of report ids used to drop duplicate reports. */
+  public long getReportIdSetMemoryFootprintBytes() {
+    return reportIdSet.memoryFootprintBytes();
   }
 
   /** Gets a set of distinct privacy budget units observed during the aggregation */
@@ -162,27 +475,97 @@ public final class AggregationEngine implements Consumer<Report> {
     return ImmutableList.copyOf(privacyBudgetUnits);
   }
 
-  /**
-   * Upserts (updates or inserts) an aggregation for a fact
-   *
-   * <p>If the fact key has not been encountered before, a new entry will be created in the
-   * aggregation map, and started with the given fact's info. Otherwise, the aggregation for the
-   * fact is just updated.
-   */
-  private void upsertAggregationForFact(Fact fact) {
-    aggregationMap.computeIfAbsent(fact.bucket(), unused -> new LongAdder()).add(fact.value());
-  }
-
   AggregationEngine(
       PrivacyBudgetKeyGeneratorFactory privacyBudgetKeyGeneratorFactory,
-      ConcurrentMap<BigInteger, LongAdder> aggregationMap,
+      AggregationTable aggregationTable,
       Set<PrivacyBudgetUnit> privacyBudgetUnits,
-      Set<UUID> reportIdSet,
-      ImmutableSet<UnsignedLong> filteringIds) {
+      ReportIdSet reportIdSet,
+      ImmutableSet<UnsignedLong> filteringIds,
+      Optional<ExternalAggregation> externalAggregation,
+      Path spillDirectory) {
     this.privacyBudgetKeyGeneratorFactory = privacyBudgetKeyGeneratorFactory;
-    this.aggregationMap = aggregationMap;
+    this.aggregationTable = aggregationTable;
     this.privacyBudgetUnits = privacyBudgetUnits;
     this.reportIdSet = reportIdSet;
     this.filteringIds = filteringIds;
+    this.filteringIdBits = filteringIds.stream().mapToLong(UnsignedLong::longValue).toArray();
+    this.externalAggregation = externalAggregation;
+    this.spillDirectory = spillDirectory;
+  }
+
+  /** Receives the bucket, split into its high and low 64 bits, and the value of a contribution. */
+  interface BucketValueConsumer {
+    void accept(long bucketHigh, long bucketLow, long value);
+  }
+
+  /**
+   * The fields of a report and the filteringId that its privacy budget unit is derived from: those
+   * read by the privacy budget key generators and the hour of the scheduled report time.
+   */
+  @AutoValue
+  abstract static class PrivacyBudgetUnitInput {
+
+    static PrivacyBudgetUnitInput of(SharedInfo sharedInfo, UnsignedLong filteringId) {
+      return new AutoValue_AggregationEngine_PrivacyBudgetUnitInput(
+          sharedInfo.api(),
+          sharedInfo.version(),
+          sharedInfo.reportingOrigin(),
+          sharedInfo.destination(),
+          sharedInfo.sourceRegistrationTime(),
+          sharedInfo.scheduledReportTime().truncatedTo(HOURS),
+          filteringId);
+    }
+
+    abstract Optional<String> api();
+
+    abstract String version();
+
+    abstract String reportingOrigin();
+
+    abstract Optional<String> destination();
+
+    abstract Optional<Instant> sourceRegistrationTime();
+
+    abstract Instant scheduledReportHour();
+
+    abstract UnsignedLong filteringId();
+  }
+
+  /**
+   * The fields that select the privacy budget key generator of a report: its api, and the version
+   * and filteringId read by the predicates of {@code PrivacyBudgetKeyGeneratorUtil}.
+   */
+  @AutoValue
+  abstract static class GeneratorSelector {
+
+    static GeneratorSelector of(SharedInfo sharedInfo, UnsignedLong filteringId) {
+      return new AutoValue_AggregationEngine_GeneratorSelector(
+          sharedInfo.api(), sharedInfo.version(), filteringId);
+    }
+
+    abstract Optional<String> api();
+
+    abstract String version();
+
+    abstract UnsignedLong filteringId();
+  }
+
+  /** Receives the buckets of an engine with where they were seen. */
+  public interface BucketConsumer {
+    void accept(BigInteger bucket, long sum, boolean inReports, boolean inDomain);
+  }
+
+  /** Stream of a result file, forgotten by the engine once closed. */
+  private final class ResultFileStream extends FilterInputStream {
+
+    ResultFileStream(InputStream input) {
+      super(input);
+    }
+
+    @Override
+    public void close() throws IOException {
+      resultFileStreams.remove(this);
+      super.close();
+    }
   }
 }
@@ -18,16 +18,21 @@ package com.google.aggregate.adtech.worker.aggregation.engine;
 
 import static com.google.common.collect.Sets.newConcurrentHashSet;
 
+import com.google.aggregate.adtech.worker.Annotations.AggregationSpillDirectory;
+import com.google.aggregate.adtech.worker.Annotations.EnablePrimitiveAggregationTable;
+import com.google.aggregate.adtech.worker.Annotations.EnableSpillToDiskAggregation;
 import com.google.aggregate.privacy.budgeting.bridge.PrivacyBudgetingServiceBridge;
 import com.google.aggregate.privacy.budgeting.budgetkeygenerator.PrivacyBudgetKeyGeneratorFactory;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.MapMaker;
 import com.google.common.primitives.UnsignedLong;
-import java.math.BigInteger;
+import com.google.errorprone.annotations.Var;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
 import java.util.Set;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.LongAdder;
 import javax.inject.Inject;
 
 /**
@@ -36,10 +41,20 @@ import javax.inject.Inject;
 public class AggregationEngineFactory {
 
   private final PrivacyBudgetKeyGeneratorFactory privacyBudgetKeyGeneratorFactory;
+  private final boolean enablePrimitiveAggregationTable;
+  private final boolean enableSpillToDiskAggregation;
+  private final Path spillDirectory;
 
   @Inject
-  AggregationEngineFactory(PrivacyBudgetKeyGeneratorFactory privacyBudgetKeyGeneratorFactory) {
+  AggregationEngineFactory(
+      PrivacyBudgetKeyGeneratorFactory privacyBudgetKeyGeneratorFactory,
+      @EnablePrimitiveAggregationTable boolean enablePrimitiveAggregationTable,
+      @EnableSpillToDiskAggregation boolean enableSpillToDiskAggregation,
+      @AggregationSpillDirectory Path spillDirectory) {
     this.privacyBudgetKeyGeneratorFactory = privacyBudgetKeyGeneratorFactory;
+    this.enablePrimitiveAggregationTable = enablePrimitiveAggregationTable;
+    this.enableSpillToDiskAggregation = enableSpillToDiskAggregation;
+    this.spillDirectory = spillDirectory;
   }
 
   /**
@@ -55,11 +70,14 @@ public class AggregationEngineFactory {
     // is used, the number obtained here is 2x larger than the number of physical cores.
     int concurrentMapConcurrencyHint = Runtime.getRuntime().availableProcessors();
 
-    ConcurrentMap<BigInteger, LongAdder> aggregationMap =
-        new MapMaker().concurrencyLevel(concurrentMapConcurrencyHint).makeMap();
+    AggregationTable aggregationTable =
+        enablePrimitiveAggregationTable
+            ? new PrimitiveAggregationTable(concurrentMapConcurrencyHint)
+            : new ConcurrentMapAggregationTable(
+                new MapMaker().concurrencyLevel(concurrentMapConcurrencyHint).makeMap());
     Set<PrivacyBudgetingServiceBridge.PrivacyBudgetUnit> privacyBudgetUnits =
         newConcurrentHashSet();
-    Set<UUID> reportIdSet = newConcurrentHashSet();
+    ReportIdSet reportIdSet = new ReportIdSet(concurrentMapConcurrencyHint);
 
     // null and zero are to be treated as the same.
     ImmutableSet.Builder<UnsignedLong> filteringIdsEnhanced = new ImmutableSet.Builder<>();
@@ -68,12 +86,27 @@ public class AggregationEngineFactory {
       filteringIdsEnhanced.add(UnsignedLong.ZERO);
     }
 
+    @Var Optional<ExternalAggregation> externalAggregation = Optional.empty();
+    if (enableSpillToDiskAggregation) {
+      try {
+        externalAggregation =
+            Optional.of(
+                new ExternalAggregation(
+                    Files.createTempDirectory(spillDirectory, "aggregation-runs-"),
+                    ExternalAggregation.DEFAULT_MAX_TABLE_ENTRIES));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
     return new AggregationEngine(
         privacyBudgetKeyGeneratorFactory,
-        aggregationMap,
+        aggregationTable,
         privacyBudgetUnits,
         reportIdSet,
-        filteringIdsEnhanced.build());
+        filteringIdsEnhanced.build(),
+        externalAggregation,
+        spillDirectory);
   }
 
   /**
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.common.collect.ImmutableMap;
+import java.math.BigInteger;
+import java.util.Set;
+
+/**
+ * Storage for the per-bucket sums accumulated by {@link AggregationEngine}.
+ *
+ * <p>Implementations must be thread-safe, as the engine is fed from many processing threads.
+ */
+interface AggregationTable {
+
+  /**
+   * Adds {@code value} contributed by reports to the sum of {@code bucket}, inserting the bucket if
+   * it is absent, and marks the bucket as seen in reports.
+   */
+  void add(BigInteger bucket, long value);
+
+  /** Same as {@link #add(BigInteger, long)} for a bucket given by its upper and lower 64 bits. */
+  void add(long bucketHigh, long bucketLow, long value);
+
+  /** Inserts an output domain bucket with a sum of 0 if it is absent and marks it in the domain. */
+  void addDomainKey(BigInteger bucket);
+
+  /** Returns true if the bucket has been inserted into the table. */
+  boolean containsKey(BigInteger bucket);
+
+  /** Returns the buckets inserted into the table. */
+  Set<BigInteger> keySet();
+
+  /** Materializes the sums accumulated so far, keyed by bucket. */
+  ImmutableMap<BigInteger, AggregatedFact> makeAggregation();
+
+  /**
+   * Passes every bucket with its sum and whether it was seen in reports and in the output domain to
+   * the consumer, in no particular order.
+   */
+  void forEachBucket(AggregationEngine.BucketConsumer consumer);
+
+  /**
+   * Passes every bucket, split into its upper and lower 64 bits, with its sum to the consumer, in
+   * no particular order.
+   */
+  void forEach(BucketSumTable.EntryConsumer consumer);
+
+  /** Returns the number of buckets in the table. */
+  int size();
+}
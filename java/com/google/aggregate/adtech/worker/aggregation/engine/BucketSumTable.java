@@ -0,0 +1,185 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import com.google.common.math.IntMath;
+import com.google.errorprone.annotations.Var;
+
+/**
+ * Linear-probing table from 128-bit buckets, kept as their upper and lower 64 bits, to {@code long}
+ * sums.
+ *
+ * <p>Each entry carries flags recording where its bucket was seen, {@link #IN_REPORTS} and {@link
+ * #IN_DOMAIN}, packed into the byte that marks the slot as occupied.
+ *
+ * <p>This class is not thread-safe. It backs the stripes of {@link PrimitiveAggregationTable},
+ * which guard it with a lock, and the thread-confined {@link PartialAggregation}.
+ */
+final class BucketSumTable {
+
+  // Resize once the table is three quarters full.
+  private static final int LOAD_FACTOR_NUMERATOR = 3;
+  private static final int LOAD_FACTOR_DENOMINATOR = 4;
+
+  /** Flag of an entry whose bucket was contributed to by a report. */
+  static final int IN_REPORTS = 1;
+
+  /** Flag of an entry whose bucket is in the output domain. */
+  static final int IN_DOMAIN = 1 << 1;
+
+  // Set on every occupied slot, so that an entry without flags is told apart from an empty slot.
+  private static final int OCCUPIED = 1 << 7;
+
+  private final int initialCapacity;
+  private long[] bucketHighs;
+  private long[] bucketLows;
+  private long[] sums;
+  private byte[] flags;
+  private int size;
+  private int resizeThreshold;
+
+  BucketSumTable(int initialCapacity) {
+    this.initialCapacity =
+        IntMath.ceilingPowerOfTwo(Math.max(LOAD_FACTOR_DENOMINATOR, initialCapacity));
+    allocate(this.initialCapacity);
+  }
+
+  /** Adds {@code value} to the sum of the bucket, inserting the bucket if it is absent. */
+  void add(long bucketHigh, long bucketLow, long value) {
+    add(bucketHigh, bucketLow, (int) hash(bucketHigh, bucketLow), value);
+  }
+
+  /** Same as {@link #add(long, long, long)} for a caller that already computed {@link #hash}. */
+  void add(long bucketHigh, long bucketLow, int hash, long value) {
+    add(bucketHigh, bucketLow, hash, value, /* entryFlags= */ 0);
+  }
+
+  /**
+   * Same as {@link #add(long, long, int, long)}, also setting {@code entryFlags}, a combination of
+   * {@link #IN_REPORTS} and {@link #IN_DOMAIN}, on the entry.
+   */
+  void add(long bucketHigh, long bucketLow, int hash, long value, int entryFlags) {
+    int slot = findSlot(bucketHigh, bucketLow, hash);
+    if (flags[slot] != 0) {
+      sums[slot] += value;
+      flags[slot] |= (byte) entryFlags;
+      return;
+    }
+    flags[slot] = (byte) (OCCUPIED | entryFlags);
+    bucketHighs[slot] = bucketHigh;
+    bucketLows[slot] = bucketLow;
+    sums[slot] = value;
+    if (++size > resizeThreshold) {
+      resize();
+    }
+  }
+
+  /** Removes every entry, shrinking the table back to its initial capacity. */
+  void clear() {
+    size = 0;
+    allocate(initialCapacity);
+  }
+
+  boolean contains(long bucketHigh, long bucketLow, int hash) {
+    return flags[findSlot(bucketHigh, bucketLow, hash)] != 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  void forEach(EntryConsumer consumer) {
+    for (int slot = 0; slot < flags.length; slot++) {
+      if (flags[slot] != 0) {
+        consumer.accept(bucketHighs[slot], bucketLows[slot], sums[slot]);
+      }
+    }
+  }
+
+  /** Same as {@link #forEach}, also passing the flags of each entry. */
+  void forEachWithFlags(FlaggedEntryConsumer consumer) {
+    for (int slot = 0; slot < flags.length; slot++) {
+      if (flags[slot] != 0) {
+        consumer.accept(
+            bucketHighs[slot], bucketLows[slot], sums[slot], flags[slot] & ~OCCUPIED);
+      }
+    }
+  }
+
+  /**
+   * Mixes both halves of the bucket into well-spread bits. The table probes from the lower 32
+   * bits, leaving the upper 32 bits free for callers that shard buckets across tables.
+   */
+  static long hash(long bucketHigh, long bucketLow) {
+    @Var long hash = bucketHigh * 0x9E3779B97F4A7C15L + bucketLow;
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    hash ^= hash >>> 33;
+    hash *= 0xC4CEB9FE1A85EC53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  /** Returns the slot holding the bucket, or the empty slot where it would be inserted. */
+  private int findSlot(long bucketHigh, long bucketLow, int hash) {
+    int mask = flags.length - 1;
+    @Var int slot = hash & mask;
+    while (flags[slot] != 0 && (bucketHighs[slot] != bucketHigh || bucketLows[slot] != bucketLow)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void resize() {
+    long[] oldBucketHighs = bucketHighs;
+    long[] oldBucketLows = bucketLows;
+    long[] oldSums = sums;
+    byte[] oldFlags = flags;
+    allocate(oldFlags.length * 2);
+    for (int oldSlot = 0; oldSlot < oldFlags.length; oldSlot++) {
+      if (oldFlags[oldSlot] != 0) {
+        int slot =
+            findSlot(
+                oldBucketHighs[oldSlot],
+                oldBucketLows[oldSlot],
+                (int) hash(oldBucketHighs[oldSlot], oldBucketLows[oldSlot]));
+        flags[slot] = oldFlags[oldSlot];
+        bucketHighs[slot] = oldBucketHighs[oldSlot];
+        bucketLows[slot] = oldBucketLows[oldSlot];
+        sums[slot] = oldSums[oldSlot];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    bucketHighs = new long[capacity];
+    bucketLows = new long[capacity];
+    sums = new long[capacity];
+    flags = new byte[capacity];
+    resizeThreshold = capacity / LOAD_FACTOR_DENOMINATOR * LOAD_FACTOR_NUMERATOR;
+  }
+
+  /** Receives the entries of a table. */
+  interface EntryConsumer {
+    void accept(long bucketHigh, long bucketLow, long sum);
+  }
+
+  /** Receives the entries of a table with their flags. */
+  interface FlaggedEntryConsumer {
+    void accept(long bucketHigh, long bucketLow, long sum, int entryFlags);
+  }
+}
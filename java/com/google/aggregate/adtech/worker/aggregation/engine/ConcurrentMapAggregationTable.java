@@ -0,0 +1,113 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.aggregate.adtech.worker.util.NumericConversions;
+import com.google.common.collect.ImmutableMap;
+import java.math.BigInteger;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * {@link AggregationTable} backed by a {@link ConcurrentMap} holding a {@link LongAdder} and the
+ * membership flags per bucket.
+ */
+final class ConcurrentMapAggregationTable implements AggregationTable {
+
+  private final ConcurrentMap<BigInteger, Entry> aggregationMap;
+
+  ConcurrentMapAggregationTable(ConcurrentMap<BigInteger, Entry> aggregationMap) {
+    this.aggregationMap = aggregationMap;
+  }
+
+  @Override
+  public void add(BigInteger bucket, long value) {
+    Entry entry = aggregationMap.computeIfAbsent(bucket, unused -> new Entry());
+    entry.sum.add(value);
+    // Read before writing, keeping the cache line shared once the flag is set.
+    if (!entry.inReports) {
+      entry.inReports = true;
+    }
+  }
+
+  @Override
+  public void addDomainKey(BigInteger bucket) {
+    Entry entry = aggregationMap.computeIfAbsent(bucket, unused -> new Entry());
+    if (!entry.inDomain) {
+      entry.inDomain = true;
+    }
+  }
+
+  @Override
+  public void add(long bucketHigh, long bucketLow, long value) {
+    add(NumericConversions.uInt128FromLongs(bucketHigh, bucketLow), value);
+  }
+
+  @Override
+  public boolean containsKey(BigInteger bucket) {
+    return aggregationMap.containsKey(bucket);
+  }
+
+  @Override
+  public Set<BigInteger> keySet() {
+    return aggregationMap.keySet();
+  }
+
+  @Override
+  public ImmutableMap<BigInteger, AggregatedFact> makeAggregation() {
+    return aggregationMap.entrySet().stream()
+        .map(factAggr -> AggregatedFact.create(factAggr.getKey(), factAggr.getValue().sum.sum()))
+        .collect(toImmutableMap(AggregatedFact::getBucket, Function.identity()));
+  }
+
+  @Override
+  public void forEachBucket(AggregationEngine.BucketConsumer consumer) {
+    aggregationMap.forEach(
+        (bucket, entry) ->
+            consumer.accept(bucket, entry.sum.sum(), entry.inReports, entry.inDomain));
+  }
+
+  @Override
+  public void forEach(BucketSumTable.EntryConsumer consumer) {
+    aggregationMap.forEach(
+        (bucket, entry) ->
+            consumer.accept(
+                NumericConversions.uInt128HighBits(bucket),
+                NumericConversions.uInt128LowBits(bucket),
+                entry.sum.sum()));
+  }
+
+  @Override
+  public int size() {
+    return aggregationMap.size();
+  }
+
+  /**
+   * Sum of a bucket and where the bucket was seen. The flags only ever go from false to true, so
+   * plain volatile writes set them atomically.
+   */
+  static final class Entry {
+    private final LongAdder sum = new LongAdder();
+    private volatile boolean inReports;
+    private volatile boolean inDomain;
+  }
+}
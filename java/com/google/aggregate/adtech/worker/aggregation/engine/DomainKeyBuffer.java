@@ -0,0 +1,47 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import com.google.aggregate.adtech.worker.util.NumericConversions;
+import java.math.BigInteger;
+
+/**
+ * Thread-confined collection of output domain keys for an {@link AggregationEngine} that
+ * aggregates in external memory. Keys are handed to the engine as sorted runs through {@link
+ * AggregationEngine#spillIfFull(DomainKeyBuffer)} and {@link
+ * AggregationEngine#finishDomainKeyBuffers}.
+ *
+ * <p>This class is not thread-safe: an instance must be used by one thread at a time.
+ */
+public final class DomainKeyBuffer {
+
+  private static final int INITIAL_CAPACITY = 1 << 12;
+
+  private final BucketSumTable table = new BucketSumTable(INITIAL_CAPACITY);
+
+  DomainKeyBuffer() {}
+
+  /** Adds an output domain key. Keys already in the buffer are ignored. */
+  public void add(BigInteger key) {
+    table.add(
+        NumericConversions.uInt128HighBits(key), NumericConversions.uInt128LowBits(key), 0);
+  }
+
+  BucketSumTable table() {
+    return table;
+  }
+}
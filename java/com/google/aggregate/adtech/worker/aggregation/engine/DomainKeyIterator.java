@@ -0,0 +1,68 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import com.google.aggregate.adtech.worker.util.NumericConversions;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Iterator;
+
+/**
+ * Iterates over the keys of an output domain shard, each read as the upper and lower 64 bits of
+ * the 128-bit key, so that shards can be joined with the aggregation without allocating per key.
+ */
+public interface DomainKeyIterator {
+
+  /** Moves to the next key. Returns false once the shard is exhausted. */
+  boolean next() throws IOException;
+
+  /** Upper 64 bits of the key read by the last successful {@link #next}. */
+  long keyHigh();
+
+  /** Lower 64 bits of the key read by the last successful {@link #next}. */
+  long keyLow();
+
+  /** Returns an iterator over keys that are already decoded. */
+  static DomainKeyIterator of(Iterator<BigInteger> keys) {
+    return new DomainKeyIterator() {
+      private long keyHigh;
+      private long keyLow;
+
+      @Override
+      public boolean next() {
+        if (!keys.hasNext()) {
+          return false;
+        }
+        BigInteger key = keys.next();
+        keyHigh = NumericConversions.uInt128HighBits(key);
+        keyLow = NumericConversions.uInt128LowBits(key);
+        return true;
+      }
+
+      @Override
+      public long keyHigh() {
+        return keyHigh;
+      }
+
+      @Override
+      public long keyLow() {
+        return keyLow;
+      }
+    };
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import com.google.common.io.Closer;
+import com.google.errorprone.annotations.Var;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * {@link SortedRun.Cursor} over the keys of an output domain shard that lists them in ascending
+ * order, each with a sum of 0. Repeated keys are skipped.
+ *
+ * <p>The order is checked as the shard is read: a key smaller than the one before it throws {@link
+ * UnsortedDomainException}.
+ */
+final class DomainShardCursor implements SortedRun.Cursor {
+
+  private final DomainKeyIterator keys;
+  private final Closeable shard;
+  private boolean hasPrevious;
+  // Last key read, which is the current key once next() returned true.
+  private long previousHigh;
+  private long previousLow;
+
+  DomainShardCursor(DomainKeyIterator keys, Closeable shard) {
+    this.keys = keys;
+    this.shard = shard;
+  }
+
+  /** Returns a run over the keys of the shard, opening it once the run is opened. */
+  static SortedRun run(SortedDomainShard shard) {
+    return new SortedRun() {
+      @Override
+      Cursor open() throws IOException {
+        Closer closer = Closer.create();
+        try {
+          return new DomainShardCursor(shard.open(closer), closer);
+        } catch (IOException | RuntimeException e) {
+          closer.close();
+          throw e;
+        }
+      }
+
+      @Override
+      void delete() {}
+    };
+  }
+
+  @Override
+  public boolean next() throws IOException {
+    while (keys.next()) {
+      long keyHigh = keys.keyHigh();
+      long keyLow = keys.keyLow();
+      @Var boolean repeated = false;
+      if (hasPrevious) {
+        int comparison = SortedRun.compareBuckets(keyHigh, keyLow, previousHigh, previousLow);
+        if (comparison < 0) {
+          throw new UnsortedDomainException();
+        }
+        repeated = comparison == 0;
+      }
+      hasPrevious = true;
+      previousHigh = keyHigh;
+      previousLow = keyLow;
+      if (!repeated) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public long bucketHigh() {
+    return previousHigh;
+  }
+
+  @Override
+  public long bucketLow() {
+    return previousLow;
+  }
+
+  @Override
+  public long sum() {
+    return 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    shard.close();
+  }
+}
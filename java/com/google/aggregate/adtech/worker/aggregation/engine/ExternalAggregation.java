@@ -0,0 +1,147 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * External-memory state of an {@link AggregationEngine}: sorted runs of report sums and of output
+ * domain keys.
+ *
+ * <p>Thread-confined tables are turned into runs either on disk, once they hold a given number of
+ * entries, or in memory once their input is exhausted. The runs are then combined by a k-way
+ * merge and joined on bucket, so neither the whole histogram nor the whole domain has to fit on
+ * the heap at once. At most {@link #MAX_MERGE_FAN_IN} runs are merged at once: more runs are first
+ * merged in groups into longer runs on disk, over as many passes as needed.
+ *
+ * <p>This class is thread-safe.
+ */
+final class ExternalAggregation {
+
+  // Entries of a table above which it is spilled to disk, 24 bytes each once sorted.
+  static final int DEFAULT_MAX_TABLE_ENTRIES = 1 << 21;
+
+  // Runs read at once by a merge, each through its own file buffer.
+  static final int MAX_MERGE_FAN_IN = 16;
+
+  private final Path directory;
+  private final int maxTableEntries;
+  private final AtomicInteger runCount = new AtomicInteger();
+  private final List<SortedRun> reportRuns = new ArrayList<>();
+  private final List<SortedRun> domainRuns = new ArrayList<>();
+
+  ExternalAggregation(Path directory, int maxTableEntries) {
+    this.directory = directory;
+    this.maxTableEntries = maxTableEntries;
+  }
+
+  /**
+   * Returns true if the table holds enough entries to be spilled. Counting entries rather than
+   * reading heap usage, which includes garbage not yet collected, bounds the heap taken by each
+   * table without spilling tables that are still small.
+   */
+  boolean isFull(BucketSumTable table) {
+    return table.size() >= maxTableEntries;
+  }
+
+  /** Writes the report sums of the table to a run on disk and clears the table. */
+  void spillReports(BucketSumTable table) throws IOException {
+    SortedRun run = SortedRun.writeToFile(table, nextRunFile());
+    table.clear();
+    addRun(reportRuns, run);
+  }
+
+  /** Keeps the report sums of the table as a run in memory and clears the table. */
+  void keepReports(BucketSumTable table) {
+    SortedRun run = SortedRun.inMemory(table);
+    table.clear();
+    addRun(reportRuns, run);
+  }
+
+  /** Writes the domain keys of the table to a run on disk and clears the table. */
+  void spillDomainKeys(BucketSumTable table) throws IOException {
+    SortedRun run = SortedRun.writeToFile(table, nextRunFile());
+    table.clear();
+    addRun(domainRuns, run);
+  }
+
+  /** Keeps the domain keys of the table as a run in memory and clears the table. */
+  void keepDomainKeys(BucketSumTable table) {
+    SortedRun run = SortedRun.inMemory(table);
+    table.clear();
+    addRun(domainRuns, run);
+  }
+
+  /**
+   * Merges the report runs and the domain runs and passes every distinct bucket, in ascending
+   * order, to the consumer together with its summed report contributions.
+   */
+  void mergeJoin(SortedRun.JoinedEntryConsumer consumer) throws IOException {
+    reduceRuns(reportRuns);
+    reduceRuns(domainRuns);
+    try (SortedRun.Cursor reports = SortedRun.merge(SortedRun.openAll(snapshot(reportRuns)));
+        SortedRun.Cursor domainKeys = SortedRun.merge(SortedRun.openAll(snapshot(domainRuns)))) {
+      SortedRun.mergeJoin(reports, domainKeys, consumer);
+    }
+  }
+
+  /**
+   * Merges the runs, {@link #MAX_MERGE_FAN_IN} at a time, into runs on disk until there are no
+   * more than {@link #MAX_MERGE_FAN_IN} of them. Must be called once no run is added anymore.
+   */
+  private void reduceRuns(List<SortedRun> runs) throws IOException {
+    ImmutableList<SortedRun> reduced =
+        SortedRun.reduce(snapshot(runs), MAX_MERGE_FAN_IN, this::nextRunFile);
+    synchronized (this) {
+      runs.clear();
+      runs.addAll(reduced);
+    }
+  }
+
+  /** Deletes the runs written to disk along with the run directory. */
+  void deleteRuns() throws IOException {
+    for (SortedRun run : snapshot(reportRuns)) {
+      run.delete();
+    }
+    for (SortedRun run : snapshot(domainRuns)) {
+      run.delete();
+    }
+    synchronized (this) {
+      reportRuns.clear();
+      domainRuns.clear();
+    }
+    Files.deleteIfExists(directory);
+  }
+
+  private Path nextRunFile() {
+    return directory.resolve(String.format("run-%d.bin", runCount.getAndIncrement()));
+  }
+
+  private synchronized void addRun(List<SortedRun> runs, SortedRun run) {
+    runs.add(run);
+  }
+
+  private synchronized ImmutableList<SortedRun> snapshot(List<SortedRun> runs) {
+    return ImmutableList.copyOf(runs);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import com.google.aggregate.adtech.worker.model.Report;
+import java.util.function.Consumer;
+
+/**
+ * Thread-confined slice of an {@link AggregationEngine} aggregation.
+ *
+ * <p>Report id de-duplication and privacy budget units still go through the owning engine, but
+ * the facts of accepted reports are summed into a local, unsynchronized table instead of the
+ * engine's shared one. Partial aggregations are folded into the engine with {@link
+ * AggregationEngine#mergePartialAggregations}.
+ *
+ * <p>This class is not thread-safe: an instance must be used by one thread at a time.
+ */
+public final class PartialAggregation implements Consumer<Report> {
+
+  private static final int INITIAL_CAPACITY = 1 << 12;
+
+  private final AggregationEngine aggregationEngine;
+  private final BucketSumTable table = new BucketSumTable(INITIAL_CAPACITY);
+
+  PartialAggregation(AggregationEngine aggregationEngine) {
+    this.aggregationEngine = aggregationEngine;
+  }
+
+  /** Consumes a report the same way as {@link AggregationEngine#accept(Report)}. */
+  @Override
+  public void accept(Report report) {
+    if (aggregationEngine.registerReport(report)) {
+      aggregationEngine.forEachAggregatableContribution(report, table::add);
+    }
+  }
+
+  BucketSumTable table() {
+    return table;
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.aggregate.adtech.worker.util.NumericConversions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.math.IntMath;
+import com.google.errorprone.annotations.Var;
+import java.math.BigInteger;
+import java.util.Set;
+
+/**
+ * {@link AggregationTable} that keeps each bucket as two primitive {@code long}s (the upper and
+ * lower 64 bits of the 128-bit bucket) and each sum as a primitive {@code long}, in open-addressing
+ * tables.
+ *
+ * <p>The key space is split into power-of-two stripes, each with its own lock and linear-probing
+ * table, so concurrent writers only contend when their buckets land on the same stripe. An entry
+ * costs 25 bytes of array storage instead of the {@link BigInteger}, {@link
+ * java.util.concurrent.atomic.LongAdder} and map node objects used by {@link
+ * ConcurrentMapAggregationTable}. Whether a bucket was seen in reports and in the output domain is
+ * kept in spare bits of the byte marking its slot as occupied.
+ */
+final class PrimitiveAggregationTable implements AggregationTable {
+
+  private static final int INITIAL_STRIPE_CAPACITY = 1 << 10;
+  // Stripes per concurrent writer, keeping the chance of two writers sharing a stripe low.
+  private static final int STRIPES_PER_WRITER = 4;
+  private static final int MAX_STRIPES = 1 << 12;
+
+  private final Stripe[] stripes;
+  private final int stripeMask;
+
+  PrimitiveAggregationTable(int concurrencyHint) {
+    int stripeCount =
+        Math.min(
+            MAX_STRIPES,
+            IntMath.ceilingPowerOfTwo(Math.max(1, concurrencyHint) * STRIPES_PER_WRITER));
+    stripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe();
+    }
+    stripeMask = stripeCount - 1;
+  }
+
+  @Override
+  public void add(BigInteger bucket, long value) {
+    add(
+        NumericConversions.uInt128HighBits(bucket),
+        NumericConversions.uInt128LowBits(bucket),
+        value);
+  }
+
+  @Override
+  public void add(long bucketHigh, long bucketLow, long value) {
+    long hash = BucketSumTable.hash(bucketHigh, bucketLow);
+    stripeFor(hash).add(bucketHigh, bucketLow, (int) hash, value, BucketSumTable.IN_REPORTS);
+  }
+
+  @Override
+  public void addDomainKey(BigInteger bucket) {
+    long bucketHigh = NumericConversions.uInt128HighBits(bucket);
+    long bucketLow = NumericConversions.uInt128LowBits(bucket);
+    long hash = BucketSumTable.hash(bucketHigh, bucketLow);
+    stripeFor(hash).add(bucketHigh, bucketLow, (int) hash, 0, BucketSumTable.IN_DOMAIN);
+  }
+
+  @Override
+  public boolean containsKey(BigInteger bucket) {
+    long bucketHigh = NumericConversions.uInt128HighBits(bucket);
+    long bucketLow = NumericConversions.uInt128LowBits(bucket);
+    long hash = BucketSumTable.hash(bucketHigh, bucketLow);
+    return stripeFor(hash).contains(bucketHigh, bucketLow, (int) hash);
+  }
+
+  /**
+   * Returns a snapshot of the buckets in the table. Unlike {@link ConcurrentMapAggregationTable},
+   * buckets inserted after this call are not reflected in the returned set.
+   */
+  @Override
+  public Set<BigInteger> keySet() {
+    ImmutableSet.Builder<BigInteger> keys = ImmutableSet.builderWithExpectedSize(size());
+    for (Stripe stripe : stripes) {
+      stripe.forEach((bucketHigh, bucketLow, sum) -> keys.add(toBucket(bucketHigh, bucketLow)));
+    }
+    return keys.build();
+  }
+
+  @Override
+  public ImmutableMap<BigInteger, AggregatedFact> makeAggregation() {
+    ImmutableMap.Builder<BigInteger, AggregatedFact> aggregation =
+        ImmutableMap.builderWithExpectedSize(size());
+    for (Stripe stripe : stripes) {
+      stripe.forEach(
+          (bucketHigh, bucketLow, sum) -> {
+            BigInteger bucket = toBucket(bucketHigh, bucketLow);
+            aggregation.put(bucket, AggregatedFact.create(bucket, sum));
+          });
+    }
+    return aggregation.build();
+  }
+
+  @Override
+  public void forEachBucket(AggregationEngine.BucketConsumer consumer) {
+    for (Stripe stripe : stripes) {
+      stripe.forEachWithFlags(
+          (bucketHigh, bucketLow, sum, entryFlags) ->
+              consumer.accept(
+                  toBucket(bucketHigh, bucketLow),
+                  sum,
+                  (entryFlags & BucketSumTable.IN_REPORTS) != 0,
+                  (entryFlags & BucketSumTable.IN_DOMAIN) != 0));
+    }
+  }
+
+  @Override
+  public void forEach(BucketSumTable.EntryConsumer consumer) {
+    for (Stripe stripe : stripes) {
+      stripe.forEach(consumer);
+    }
+  }
+
+  @Override
+  public int size() {
+    @Var int size = 0;
+    for (Stripe stripe : stripes) {
+      size += stripe.size();
+    }
+    return size;
+  }
+
+  private Stripe stripeFor(long hash) {
+    return stripes[(int) (hash >>> 32) & stripeMask];
+  }
+
+  private static BigInteger toBucket(long bucketHigh, long bucketLow) {
+    return NumericConversions.uInt128FromLongs(bucketHigh, bucketLow);
+  }
+
+  /** {@link BucketSumTable} guarded by its own monitor. */
+  private static final class Stripe {
+
+    private final BucketSumTable table = new BucketSumTable(INITIAL_STRIPE_CAPACITY);
+
+    synchronized void add(long bucketHigh, long bucketLow, int hash, long value, int entryFlags) {
+      table.add(bucketHigh, bucketLow, hash, value, entryFlags);
+    }
+
+    synchronized boolean contains(long bucketHigh, long bucketLow, int hash) {
+      return table.contains(bucketHigh, bucketLow, hash);
+    }
+
+    synchronized int size() {
+      return table.size();
+    }
+
+    synchronized void forEach(BucketSumTable.EntryConsumer consumer) {
+      table.forEach(consumer);
+    }
+
+    synchronized void forEachWithFlags(BucketSumTable.FlaggedEntryConsumer consumer) {
+      table.forEachWithFlags(consumer);
+    }
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import com.google.common.math.IntMath;
+import com.google.errorprone.annotations.Var;
+import java.util.UUID;
+
+/**
+ * Thread-safe set of report ids used by {@link AggregationEngine} to drop duplicate reports.
+ *
+ * <p>Report ids are UUIDs and are kept as their most and least significant 64 bits in striped
+ * open-addressing tables, instead of as {@link UUID} objects in a concurrent hash set. Ids in the
+ * canonical 36 character form are parsed without allocating; other forms accepted by {@link
+ * UUID#fromString} go through it.
+ */
+final class ReportIdSet {
+
+  private static final int INITIAL_STRIPE_CAPACITY = 1 << 10;
+  // Stripes per concurrent writer, keeping the chance of two writers sharing a stripe low.
+  private static final int STRIPES_PER_WRITER = 4;
+  private static final int MAX_STRIPES = 1 << 12;
+  // Length of the canonical 8-4-4-4-12 hex digit form of a UUID.
+  private static final int CANONICAL_UUID_LENGTH = 36;
+  // Bytes of array storage per slot: two longs and the occupied flag.
+  private static final int BYTES_PER_SLOT = 2 * Long.BYTES + 1;
+
+  private final Stripe[] stripes;
+  private final int stripeMask;
+
+  ReportIdSet(int concurrencyHint) {
+    int stripeCount =
+        Math.min(
+            MAX_STRIPES,
+            IntMath.ceilingPowerOfTwo(Math.max(1, concurrencyHint) * STRIPES_PER_WRITER));
+    stripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe(INITIAL_STRIPE_CAPACITY);
+    }
+    stripeMask = stripeCount - 1;
+  }
+
+  /**
+   * Adds the report id to the set. Returns true if it was not already present.
+   *
+   * @throws IllegalArgumentException if the report id is not a UUID
+   */
+  boolean add(String reportId) {
+    if (reportId.length() == CANONICAL_UUID_LENGTH) {
+      return add(parseHex(reportId, 0, 8, 9, 13, 14, 18), parseHex(reportId, 19, 23, 24, 36, 0, 0));
+    }
+    UUID uuid = UUID.fromString(reportId);
+    return add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+  }
+
+  /** Adds the report id given by its UUID bits. Returns true if it was not already present. */
+  boolean add(long mostSignificantBits, long leastSignificantBits) {
+    long hash = BucketSumTable.hash(mostSignificantBits, leastSignificantBits);
+    return stripes[(int) (hash >>> 32) & stripeMask].add(
+        mostSignificantBits, leastSignificantBits, (int) hash);
+  }
+
+  /** Returns the number of report ids in the set. */
+  long size() {
+    @Var long size = 0;
+    for (Stripe stripe : stripes) {
+      size += stripe.size();
+    }
+    return size;
+  }
+
+  /** Returns the bytes of array storage held by the set, including its free slots. */
+  long memoryFootprintBytes() {
+    @Var long bytes = 0;
+    for (Stripe stripe : stripes) {
+      bytes += (long) stripe.capacity() * BYTES_PER_SLOT;
+    }
+    return bytes;
+  }
+
+  /**
+   * Parses up to three ranges of hex digits of a canonical UUID into 64 bits, checking that the
+   * ranges are separated by dashes. An empty range is skipped.
+   */
+  private static long parseHex(
+      String reportId,
+      int firstStart,
+      int firstEnd,
+      int secondStart,
+      int secondEnd,
+      int thirdStart,
+      int thirdEnd) {
+    @Var long bits = 0;
+    bits = parseHexRange(reportId, firstStart, firstEnd, bits);
+    bits = parseHexRange(reportId, secondStart, secondEnd, bits);
+    bits = parseHexRange(reportId, thirdStart, thirdEnd, bits);
+    return bits;
+  }
+
+  private static long parseHexRange(String reportId, int start, int end, long bits) {
+    if (start > 0 && reportId.charAt(start - 1) != '-') {
+      throw new IllegalArgumentException("Invalid UUID string: " + reportId);
+    }
+    @Var long result = bits;
+    for (int i = start; i < end; i++) {
+      int digit = Character.digit(reportId.charAt(i), 16);
+      if (digit < 0) {
+        throw new IllegalArgumentException("Invalid UUID string: " + reportId);
+      }
+      result = (result << 4) | digit;
+    }
+    return result;
+  }
+
+  /** Linear-probing set of UUID bits guarded by its own monitor. */
+  private static final class Stripe {
+
+    // Resize once the table is three quarters full.
+    private static final int LOAD_FACTOR_NUMERATOR = 3;
+    private static final int LOAD_FACTOR_DENOMINATOR = 4;
+
+    private long[] mostSignificantBits;
+    private long[] leastSignificantBits;
+    private boolean[] occupied;
+    private int size;
+    private int resizeThreshold;
+
+    Stripe(int capacity) {
+      allocate(capacity);
+    }
+
+    synchronized boolean add(long most, long least, int hash) {
+      int slot = findSlot(most, least, hash);
+      if (occupied[slot]) {
+        return false;
+      }
+      occupied[slot] = true;
+      mostSignificantBits[slot] = most;
+      leastSignificantBits[slot] = least;
+      if (++size > resizeThreshold) {
+        resize();
+      }
+      return true;
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    synchronized int capacity() {
+      return occupied.length;
+    }
+
+    /** Returns the slot holding the id, or the empty slot where it would be inserted. */
+    private int findSlot(long most, long least, int hash) {
+      int mask = occupied.length - 1;
+      @Var int slot = hash & mask;
+      while (occupied[slot]
+          && (mostSignificantBits[slot] != most || leastSignificantBits[slot] != least)) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    private void resize() {
+      long[] oldMostSignificantBits = mostSignificantBits;
+      long[] oldLeastSignificantBits = leastSignificantBits;
+      boolean[] oldOccupied = occupied;
+      allocate(oldOccupied.length * 2);
+      for (int oldSlot = 0; oldSlot < oldOccupied.length; oldSlot++) {
+        if (oldOccupied[oldSlot]) {
+          long most = oldMostSignificantBits[oldSlot];
+          long least = oldLeastSignificantBits[oldSlot];
+          int slot = findSlot(most, least, (int) BucketSumTable.hash(most, least));
+          occupied[slot] = true;
+          mostSignificantBits[slot] = most;
+          leastSignificantBits[slot] = least;
+        }
+      }
+    }
+
+    private void allocate(int capacity) {
+      mostSignificantBits = new long[capacity];
+      leastSignificantBits = new long[capacity];
+      occupied = new boolean[capacity];
+      resizeThreshold = capacity / LOAD_FACTOR_DENOMINATOR * LOAD_FACTOR_NUMERATOR;
+    }
+  }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import com.google.common.io.Closer;
+import java.io.IOException;
+
+/**
+ * Output domain shard listing its keys in ascending order, opened only once a join reads it, so
+ * that a join over many shards holds a bounded number of them open at once.
+ */
+public interface SortedDomainShard {
+
+  /**
+   * Opens the keys of the shard, registering with {@code closer} what must be closed once they are
+   * read.
+   */
+  DomainKeyIterator open(Closer closer) throws IOException;
+}
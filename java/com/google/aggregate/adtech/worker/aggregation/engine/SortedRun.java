@@ -0,0 +1,475 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.errorprone.annotations.Var;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Entries of a {@link BucketSumTable} sorted by bucket, as unsigned 128-bit integers. A run is
+ * either kept in memory or written to a file of (bucket high bits, bucket low bits, sum) records.
+ */
+abstract class SortedRun {
+
+  private static final int FILE_BUFFER_SIZE = 1 << 16;
+  private static final int RECORD_SIZE_BYTES = 3 * Long.BYTES;
+  // Runs this short are sorted by insertion sort.
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+
+  /** Opens a cursor positioned before the first entry of the run. */
+  abstract Cursor open() throws IOException;
+
+  /** Releases the storage held by the run. */
+  abstract void delete() throws IOException;
+
+  /** Sorts the entries of the table into a run kept in memory. */
+  static SortedRun inMemory(BucketSumTable table) {
+    return inMemory(table.size(), table::forEach);
+  }
+
+  /** Sorts the {@code size} entries that {@code forEachEntry} passes on into a run in memory. */
+  static SortedRun inMemory(int size, Consumer<BucketSumTable.EntryConsumer> forEachEntry) {
+    Entries entries = Entries.sorted(size, forEachEntry);
+    return new SortedRun() {
+      @Override
+      Cursor open() {
+        return new Cursor() {
+          private int index = -1;
+
+          @Override
+          public boolean next() {
+            return ++index < entries.size;
+          }
+
+          @Override
+          public long bucketHigh() {
+            return entries.bucketHighs[index];
+          }
+
+          @Override
+          public long bucketLow() {
+            return entries.bucketLows[index];
+          }
+
+          @Override
+          public long sum() {
+            return entries.sums[index];
+          }
+
+          @Override
+          public void close() {}
+        };
+      }
+
+      @Override
+      void delete() {}
+    };
+  }
+
+  /** Sorts the entries of the table and writes them to {@code file}. */
+  static SortedRun writeToFile(BucketSumTable table, Path file) throws IOException {
+    Entries entries = Entries.sorted(table.size(), table::forEach);
+    try (DataOutputStream output = newOutput(file)) {
+      for (int i = 0; i < entries.size; i++) {
+        output.writeLong(entries.bucketHighs[i]);
+        output.writeLong(entries.bucketLows[i]);
+        output.writeLong(entries.sums[i]);
+      }
+    }
+    return fileRun(file);
+  }
+
+  /** Writes the entries left in the cursor, which must be in bucket order, to {@code file}. */
+  static SortedRun writeToFile(Cursor cursor, Path file) throws IOException {
+    try (DataOutputStream output = newOutput(file)) {
+      while (cursor.next()) {
+        output.writeLong(cursor.bucketHigh());
+        output.writeLong(cursor.bucketLow());
+        output.writeLong(cursor.sum());
+      }
+    }
+    return fileRun(file);
+  }
+
+  private static DataOutputStream newOutput(Path file) throws IOException {
+    return new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(file), FILE_BUFFER_SIZE));
+  }
+
+  private static SortedRun fileRun(Path file) throws IOException {
+    long size = Files.size(file) / RECORD_SIZE_BYTES;
+    return new SortedRun() {
+      @Override
+      Cursor open() throws IOException {
+        DataInputStream input =
+            new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), FILE_BUFFER_SIZE));
+        return new Cursor() {
+          private long remaining = size;
+          private long bucketHigh;
+          private long bucketLow;
+          private long sum;
+
+          @Override
+          public boolean next() throws IOException {
+            if (remaining == 0) {
+              return false;
+            }
+            remaining--;
+            bucketHigh = input.readLong();
+            bucketLow = input.readLong();
+            sum = input.readLong();
+            return true;
+          }
+
+          @Override
+          public long bucketHigh() {
+            return bucketHigh;
+          }
+
+          @Override
+          public long bucketLow() {
+            return bucketLow;
+          }
+
+          @Override
+          public long sum() {
+            return sum;
+          }
+
+          @Override
+          public void close() throws IOException {
+            input.close();
+          }
+        };
+      }
+
+      @Override
+      void delete() throws IOException {
+        Files.deleteIfExists(file);
+      }
+    };
+  }
+
+  /**
+   * Merges cursors over sorted runs into one cursor over their distinct buckets in ascending order,
+   * summing the entries of a bucket present in several runs. Closing it closes the merged cursors.
+   */
+  static Cursor merge(ImmutableList<Cursor> cursors) throws IOException {
+    try {
+      return new MergedCursor(cursors);
+    } catch (IOException | RuntimeException e) {
+      closeAll(cursors, e);
+      throw e;
+    }
+  }
+
+  /**
+   * Merges the runs, {@code maxFanIn} at a time, into runs on disk until there are no more than
+   * {@code maxFanIn} of them, deleting the runs merged. Returns the runs left.
+   */
+  static ImmutableList<SortedRun> reduce(
+      ImmutableList<SortedRun> runs, int maxFanIn, RunFileFactory runFiles) throws IOException {
+    @Var ImmutableList<SortedRun> pass = runs;
+    while (pass.size() > maxFanIn) {
+      ImmutableList.Builder<SortedRun> merged = ImmutableList.builder();
+      for (List<SortedRun> group : Lists.partition(pass, maxFanIn)) {
+        if (group.size() == 1) {
+          merged.add(group.get(0));
+          continue;
+        }
+        try (Cursor cursor = merge(openAll(ImmutableList.copyOf(group)))) {
+          merged.add(writeToFile(cursor, runFiles.create()));
+        }
+        for (SortedRun run : group) {
+          run.delete();
+        }
+      }
+      pass = merged.build();
+    }
+    return pass;
+  }
+
+  /** Opens a cursor over each run, closing those already opened if one fails to open. */
+  static ImmutableList<Cursor> openAll(ImmutableList<SortedRun> runs) throws IOException {
+    ImmutableList.Builder<Cursor> cursors = ImmutableList.builder();
+    for (SortedRun run : runs) {
+      try {
+        cursors.add(run.open());
+      } catch (IOException | RuntimeException e) {
+        closeAll(cursors.build(), e);
+        throw e;
+      }
+    }
+    return cursors.build();
+  }
+
+  private static void closeAll(ImmutableList<Cursor> cursors, Exception failure) {
+    for (Cursor cursor : cursors) {
+      try {
+        cursor.close();
+      } catch (IOException e) {
+        failure.addSuppressed(e);
+      }
+    }
+  }
+
+  /**
+   * Joins the buckets of {@code reports} and {@code domainKeys}, both positioned before their first
+   * entry, and passes every distinct bucket, in ascending order, to the consumer together with its
+   * summed report contributions.
+   */
+  static void mergeJoin(Cursor reports, Cursor domainKeys, JoinedEntryConsumer consumer)
+      throws IOException {
+    @Var boolean hasReport = reports.next();
+    @Var boolean hasDomainKey = domainKeys.next();
+    while (hasReport || hasDomainKey) {
+      int comparison;
+      if (!hasDomainKey) {
+        comparison = -1;
+      } else if (!hasReport) {
+        comparison = 1;
+      } else {
+        comparison =
+            compareBuckets(
+                reports.bucketHigh(),
+                reports.bucketLow(),
+                domainKeys.bucketHigh(),
+                domainKeys.bucketLow());
+      }
+      if (comparison < 0) {
+        consumer.accept(
+            reports.bucketHigh(),
+            reports.bucketLow(),
+            reports.sum(),
+            /* inReports= */ true,
+            /* inDomain= */ false);
+        hasReport = reports.next();
+      } else if (comparison > 0) {
+        consumer.accept(
+            domainKeys.bucketHigh(),
+            domainKeys.bucketLow(),
+            /* sum= */ 0,
+            /* inReports= */ false,
+            /* inDomain= */ true);
+        hasDomainKey = domainKeys.next();
+      } else {
+        consumer.accept(
+            reports.bucketHigh(),
+            reports.bucketLow(),
+            reports.sum(),
+            /* inReports= */ true,
+            /* inDomain= */ true);
+        hasReport = reports.next();
+        hasDomainKey = domainKeys.next();
+      }
+    }
+  }
+
+  /** Compares two buckets as unsigned 128-bit integers. */
+  static int compareBuckets(long firstHigh, long firstLow, long secondHigh, long secondLow) {
+    int highComparison = Long.compareUnsigned(firstHigh, secondHigh);
+    return highComparison != 0 ? highComparison : Long.compareUnsigned(firstLow, secondLow);
+  }
+
+  /** Iterates over the entries of a run in bucket order. */
+  interface Cursor extends Closeable {
+
+    /** Moves to the next entry. Returns false once the run is exhausted. */
+    boolean next() throws IOException;
+
+    long bucketHigh();
+
+    long bucketLow();
+
+    long sum();
+  }
+
+  /** Creates the files of the runs written by {@link #reduce}. */
+  interface RunFileFactory {
+    Path create() throws IOException;
+  }
+
+  /** Receives the buckets produced by {@link #mergeJoin}. */
+  interface JoinedEntryConsumer {
+    void accept(long bucketHigh, long bucketLow, long sum, boolean inReports, boolean inDomain);
+  }
+
+  /** K-way merge of sorted runs, summing the entries of a bucket present in several runs. */
+  private static final class MergedCursor implements Cursor {
+
+    private final ImmutableList<Cursor> cursors;
+    private final PriorityQueue<Cursor> queue =
+        new PriorityQueue<>(MergedCursor::compareCurrentBuckets);
+    private long bucketHigh;
+    private long bucketLow;
+    private long sum;
+
+    MergedCursor(ImmutableList<Cursor> cursors) throws IOException {
+      this.cursors = cursors;
+      for (Cursor cursor : cursors) {
+        advance(cursor);
+      }
+    }
+
+    @Override
+    public boolean next() throws IOException {
+      Cursor smallest = queue.poll();
+      if (smallest == null) {
+        return false;
+      }
+      bucketHigh = smallest.bucketHigh();
+      bucketLow = smallest.bucketLow();
+      sum = smallest.sum();
+      advance(smallest);
+      while (!queue.isEmpty()
+          && queue.peek().bucketHigh() == bucketHigh
+          && queue.peek().bucketLow() == bucketLow) {
+        Cursor cursor = queue.poll();
+        sum += cursor.sum();
+        advance(cursor);
+      }
+      return true;
+    }
+
+    @Override
+    public long bucketHigh() {
+      return bucketHigh;
+    }
+
+    @Override
+    public long bucketLow() {
+      return bucketLow;
+    }
+
+    @Override
+    public long sum() {
+      return sum;
+    }
+
+    @Override
+    public void close() throws IOException {
+      for (Cursor cursor : cursors) {
+        cursor.close();
+      }
+    }
+
+    private static int compareCurrentBuckets(Cursor first, Cursor second) {
+      return compareBuckets(
+          first.bucketHigh(), first.bucketLow(), second.bucketHigh(), second.bucketLow());
+    }
+
+    private void advance(Cursor cursor) throws IOException {
+      if (cursor.next()) {
+        queue.add(cursor);
+      }
+    }
+  }
+
+  /** Parallel arrays of table entries. */
+  private static final class Entries {
+
+    private final long[] bucketHighs;
+    private final long[] bucketLows;
+    private final long[] sums;
+    private int size;
+
+    private Entries(int capacity) {
+      bucketHighs = new long[capacity];
+      bucketLows = new long[capacity];
+      sums = new long[capacity];
+    }
+
+    static Entries sorted(int size, Consumer<BucketSumTable.EntryConsumer> forEachEntry) {
+      Entries entries = new Entries(size);
+      forEachEntry.accept(
+          (bucketHigh, bucketLow, sum) -> {
+            entries.bucketHighs[entries.size] = bucketHigh;
+            entries.bucketLows[entries.size] = bucketLow;
+            entries.sums[entries.size] = sum;
+            entries.size++;
+          });
+      entries.sort(0, entries.size - 1);
+      return entries;
+    }
+
+    /** Quicksorts the entries between {@code low} and {@code high}, both inclusive. */
+    private void sort(int low, int high) {
+      @Var int from = low;
+      @Var int to = high;
+      while (to - from >= INSERTION_SORT_THRESHOLD) {
+        int middle = (from + to) >>> 1;
+        long pivotHigh = bucketHighs[middle];
+        long pivotLow = bucketLows[middle];
+        @Var int left = from;
+        @Var int right = to;
+        while (left <= right) {
+          while (compareTo(left, pivotHigh, pivotLow) < 0) {
+            left++;
+          }
+          while (compareTo(right, pivotHigh, pivotLow) > 0) {
+            right--;
+          }
+          if (left <= right) {
+            swap(left++, right--);
+          }
+        }
+        // Recurse into the smaller partition to bound the stack depth.
+        if (right - from < to - left) {
+          sort(from, right);
+          from = left;
+        } else {
+          sort(left, to);
+          to = right;
+        }
+      }
+      for (int i = from + 1; i <= to; i++) {
+        for (int j = i; j > from && compareTo(j, bucketHighs[j - 1], bucketLows[j - 1]) < 0; j--) {
+          swap(j, j - 1);
+        }
+      }
+    }
+
+    private int compareTo(int index, long bucketHigh, long bucketLow) {
+      return compareBuckets(bucketHighs[index], bucketLows[index], bucketHigh, bucketLow);
+    }
+
+    private void swap(int first, int second) {
+      long bucketHigh = bucketHighs[first];
+      long bucketLow = bucketLows[first];
+      long sum = sums[first];
+      bucketHighs[first] = bucketHighs[second];
+      bucketLows[first] = bucketLows[second];
+      sums[first] = sums[second];
+      bucketHighs[second] = bucketHigh;
+      bucketLows[second] = bucketLow;
+      sums[second] = sum;
+    }
+  }
+}
@@ -16,6 +16,7 @@
 
 package com.google.aggregate.adtech.worker.decryption;
 
+import com.google.aggregate.adtech.worker.model.EncryptedReport;
 import com.google.common.io.ByteSource;
 
 /** Interface responsible for decrypting raw bytes */
@@ -26,6 +27,15 @@ public interface DecryptionCipher {
       ByteSource encryptedPayload, String sharedInfo, String sharedInfoVersion)
       throws PayloadDecryptionException;
 
+  /**
+   * Decrypt the payload of the report, using its shared info. Ciphers that can read the bytes of
+   * the report as they were read from the input override this to avoid copying them.
+   */
+  default ByteSource decrypt(EncryptedReport encryptedReport, String sharedInfoVersion)
+      throws PayloadDecryptionException {
+    return decrypt(encryptedReport.payload(), encryptedReport.sharedInfo(), sharedInfoVersion);
+  }
+
   class PayloadDecryptionException extends Exception {
 
     public PayloadDecryptionException(Throwable cause) {
@@ -17,7 +17,10 @@
 package com.google.aggregate.adtech.worker.decryption;
 
 import com.google.aggregate.adtech.worker.model.EncryptedReport;
+import com.google.errorprone.annotations.Var;
 import com.google.scp.operator.cpio.cryptoclient.model.ErrorReason;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Interface to fetch the decryption cipher to decrypt an enrypted report. This can have multiple
@@ -28,6 +31,36 @@ public interface DecryptionCipherFactory {
   DecryptionCipher decryptionCipherFor(EncryptedReport encryptedReport)
       throws CipherCreationException;
 
+  /**
+   * Returns a factory that creates at most one cipher per key id and hands it out for every report
+   * encrypted with that key. A failure to create the cipher of a key id is remembered as well.
+   *
+   * <p>The returned factory is not thread-safe and is meant to be scoped to one batch of reports.
+   */
+  default DecryptionCipherFactory cachingPerKeyId() {
+    Map<String, DecryptionCipher> ciphers = new HashMap<>();
+    Map<String, CipherCreationException> failures = new HashMap<>();
+    return encryptedReport -> {
+      String keyId = encryptedReport.keyId();
+      @Var DecryptionCipher cipher = ciphers.get(keyId);
+      if (cipher != null) {
+        return cipher;
+      }
+      CipherCreationException failure = failures.get(keyId);
+      if (failure != null) {
+        throw failure;
+      }
+      try {
+        cipher = decryptionCipherFor(encryptedReport);
+      } catch (CipherCreationException e) {
+        failures.put(keyId, e);
+        throw e;
+      }
+      ciphers.put(keyId, cipher);
+      return cipher;
+    };
+  }
+
   final class CipherCreationException extends Exception {
 
     public ErrorReason reason;
@@ -24,8 +24,10 @@ import com.google.aggregate.adtech.worker.model.Report;
 import com.google.aggregate.adtech.worker.model.SharedInfo;
 import com.google.aggregate.adtech.worker.model.serdes.PayloadSerdes;
 import com.google.aggregate.adtech.worker.model.serdes.SharedInfoSerdes;
+import com.google.common.collect.ImmutableList;
 import com.google.common.io.ByteSource;
 import com.google.inject.Inject;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -50,6 +52,31 @@ public final class DeserializingReportDecrypter implements RecordDecrypter {
 
   @Override
   public Report decryptSingleReport(EncryptedReport encryptedReport) throws DecryptionException {
+    return decrypt(encryptedReport, decryptionCipherFactory);
+  }
+
+  /**
+   * Decrypts the reports of a batch, creating the cipher of each key id once and sharing it between
+   * the reports encrypted with that key.
+   */
+  @Override
+  public ImmutableList<ReportDecryptionResult> decryptBatch(
+      List<EncryptedReport> encryptedReports) {
+    DecryptionCipherFactory batchCipherFactory = decryptionCipherFactory.cachingPerKeyId();
+    ImmutableList.Builder<ReportDecryptionResult> results =
+        ImmutableList.builderWithExpectedSize(encryptedReports.size());
+    for (EncryptedReport encryptedReport : encryptedReports) {
+      try {
+        results.add(ReportDecryptionResult.ofReport(decrypt(encryptedReport, batchCipherFactory)));
+      } catch (DecryptionException e) {
+        results.add(ReportDecryptionResult.ofError(e));
+      }
+    }
+    return results.build();
+  }
+
+  private Report decrypt(EncryptedReport encryptedReport, DecryptionCipherFactory cipherFactory)
+      throws DecryptionException {
     try {
       // Deserialize the sharedInfo
       Optional<SharedInfo> sharedInfo = sharedInfoSerdes.convert(encryptedReport.sharedInfo());
@@ -61,11 +88,9 @@ public final class DeserializingReportDecrypter implements RecordDecrypter {
       }
 
       // Decrypt the payload to plaintext bytes
-      DecryptionCipher decryptionCipher =
-          decryptionCipherFactory.decryptionCipherFor(encryptedReport);
+      DecryptionCipher decryptionCipher = cipherFactory.decryptionCipherFor(encryptedReport);
       ByteSource decryptedPayload =
-          decryptionCipher.decrypt(
-              encryptedReport.payload(), encryptedReport.sharedInfo(), sharedInfo.get().version());
+          decryptionCipher.decrypt(encryptedReport, sharedInfo.get().version());
 
       // Deserialize the payload
       Optional<Payload> plaintextPayload = payloadSerdes.convert(decryptedPayload);
@@ -18,6 +18,8 @@ package com.google.aggregate.adtech.worker.decryption;
 
 import com.google.aggregate.adtech.worker.model.EncryptedReport;
 import com.google.aggregate.adtech.worker.model.Report;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
 
 /**
  * Interface for decrypting a stream of encrypted reports,
@@ -33,6 +35,24 @@ public interface RecordDecrypter {
    */
   Report decryptSingleReport(EncryptedReport encryptedReport) throws DecryptionException;
 
+  /**
+   * Decrypts and deserializes a batch of reports, returning one result per report in the order of
+   * the batch. Implementations may share work, such as key lookups, between the reports of a batch.
+   */
+  default ImmutableList<ReportDecryptionResult> decryptBatch(
+      List<EncryptedReport> encryptedReports) {
+    ImmutableList.Builder<ReportDecryptionResult> results =
+        ImmutableList.builderWithExpectedSize(encryptedReports.size());
+    for (EncryptedReport encryptedReport : encryptedReports) {
+      try {
+        results.add(ReportDecryptionResult.ofReport(decryptSingleReport(encryptedReport)));
+      } catch (DecryptionException e) {
+        results.add(ReportDecryptionResult.ofError(e));
+      }
+    }
+    return results.build();
+  }
+
   class DecryptionException extends Exception {
 
     public DecryptionException(Throwable cause) {
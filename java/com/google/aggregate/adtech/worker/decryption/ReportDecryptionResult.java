@@ -0,0 +1,43 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.decryption;
+
+import com.google.aggregate.adtech.worker.decryption.RecordDecrypter.DecryptionException;
+import com.google.aggregate.adtech.worker.model.Report;
+import com.google.auto.value.AutoValue;
+import java.util.Optional;
+
+/**
+ * Result of decrypting one report of a batch.
+ *
+ * <p>Contains either the decrypted report or the exception its decryption failed with.
+ */
+@AutoValue
+public abstract class ReportDecryptionResult {
+
+  public static ReportDecryptionResult ofReport(Report report) {
+    return new AutoValue_ReportDecryptionResult(Optional.of(report), Optional.empty());
+  }
+
+  public static ReportDecryptionResult ofError(DecryptionException error) {
+    return new AutoValue_ReportDecryptionResult(Optional.empty(), Optional.of(error));
+  }
+
+  public abstract Optional<Report> report();
+
+  public abstract Optional<DecryptionException> error();
+}
@@ -19,10 +19,14 @@ package com.google.aggregate.adtech.worker.decryption.hybrid;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.aggregate.adtech.worker.decryption.DecryptionCipher;
+import com.google.aggregate.adtech.worker.model.EncryptedReport;
+import com.google.aggregate.adtech.worker.util.ByteBufferSource;
 import com.google.common.io.ByteSource;
 import com.google.crypto.tink.HybridDecrypt;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
+import java.util.Arrays;
 
 /**
  * Implementation of {@code DecryptionCipher} that uses a key provided by the aggregate KMS service.
@@ -34,6 +38,7 @@ public final class HybridDecryptionCipher implements DecryptionCipher {
 
   // Prefix for payloads intended for aggregate service
   public static final String ASSOCIATED_DATA_PREFIX = "aggregation_service";
+  private static final byte[] ASSOCIATED_DATA_PREFIX_BYTES = ASSOCIATED_DATA_PREFIX.getBytes(UTF_8);
 
   private final HybridDecrypt hybridDecrypt;
 
@@ -50,11 +55,51 @@ public final class HybridDecryptionCipher implements DecryptionCipher {
       ByteSource encryptedPayload, String sharedInfo, String sharedInfoVersion)
       throws PayloadDecryptionException {
     try {
-      String associatedDataString = ASSOCIATED_DATA_PREFIX + sharedInfo;
-      byte[] associatedData = associatedDataString.getBytes(UTF_8);
-      return ByteSource.wrap(hybridDecrypt.decrypt(encryptedPayload.read(), associatedData));
+      return ByteBufferSource.wrap(
+          hybridDecrypt.decrypt(encryptedPayload.read(), associatedData(sharedInfo)));
     } catch (GeneralSecurityException | IOException e) {
       throw new PayloadDecryptionException(e);
     }
   }
+
+  /**
+   * Decrypts the payload of the report without copying it when it is backed by an array of its
+   * own, and builds the associated data from the UTF-8 bytes of the shared info as they were read.
+   */
+  @Override
+  public ByteSource decrypt(EncryptedReport encryptedReport, String sharedInfoVersion)
+      throws PayloadDecryptionException {
+    try {
+      return ByteBufferSource.wrap(
+          hybridDecrypt.decrypt(
+              payloadBytes(encryptedReport.payload()),
+              associatedData(encryptedReport.sharedInfoBytes().asReadOnlyBuffer())));
+    } catch (GeneralSecurityException | IOException e) {
+      throw new PayloadDecryptionException(e);
+    }
+  }
+
+  // The ciphertext is only read by the decrypter, so an array shared with the reader can be passed.
+  private static byte[] payloadBytes(ByteSource encryptedPayload) throws IOException {
+    return encryptedPayload instanceof ByteBufferSource
+        ? ((ByteBufferSource) encryptedPayload).unsafeArray()
+        : encryptedPayload.read();
+  }
+
+  private static byte[] associatedData(String sharedInfo) {
+    return associatedData(ByteBuffer.wrap(sharedInfo.getBytes(UTF_8)));
+  }
+
+  /**
+   * Builds the associated data from the prefix encoded once per class and the encoded shared info,
+   * copying the shared info once into the array handed to the decrypter.
+   */
+  private static byte[] associatedData(ByteBuffer sharedInfoBytes) {
+    int sharedInfoLength = sharedInfoBytes.remaining();
+    byte[] associatedData =
+        Arrays.copyOf(
+            ASSOCIATED_DATA_PREFIX_BYTES, ASSOCIATED_DATA_PREFIX_BYTES.length + sharedInfoLength);
+    sharedInfoBytes.get(associatedData, ASSOCIATED_DATA_PREFIX_BYTES.length, sharedInfoLength);
+    return associatedData;
+  }
 }
@@ -371,6 +371,66 @@ public class AggregationWorkerArgs {
       description = "Flag to enable parallel upload of the sharded summary reports.")
   private boolean parallelSummaryUploadEnabled = false;
 
+  @Parameter(
+      names = "--direct_summary_upload_enabled",
+      description =
+          "Flag to upload the summary report shards in parts as they are written, instead of"
+              + " staging them in local files. With the GCS blob storage client, parts are"
+              + " written to a resumable upload of the shard. Also supported with the local file"
+              + " system blob storage client.")
+  private boolean directSummaryUploadEnabled = false;
+
+  @Parameter(
+      names = "--avro_result_block_size_bytes",
+      description =
+          "Approximate size in bytes of the blocks of records in the Avro summary reports.")
+  private int avroResultBlockSizeBytes = 64_000;
+
+  @Parameter(
+      names = "--avro_result_codec",
+      description =
+          "Avro codec compressing the blocks of the summary reports, e.g. null, deflate or"
+              + " zstandard.")
+  private String avroResultCodec = "null";
+
+  @Parameter(
+      names = "--blob_prefetch_chunk_size_bytes",
+      description =
+          "Size in bytes of the ranged reads issued ahead of the report and domain shard readers,"
+              + " when blobs are read by range from blob storage.")
+  private int blobPrefetchChunkSizeBytes = 4 << 20;
+
+  @Parameter(
+      names = "--blob_prefetch_budget_bytes",
+      description =
+          "Bytes of the ranged reads in flight ahead of all the report and domain shard readers"
+              + " at once. 0 disables reading ahead, so ranges are read as the readers need them.")
+  private long blobPrefetchBudgetBytes = 128L << 20;
+
+  @Parameter(
+      names = "--output_domain_shards_sorted",
+      description =
+          "If set, the keys of each Avro or text output domain shard are expected to be sorted by"
+              + " bucket, and the shards are merge-joined with the aggregation instead of inserted"
+              + " into it. A shard found out of order falls back to inserting the keys. Binary"
+              + " output domain shards are always merge-joined.")
+  private boolean outputDomainShardsSorted = false;
+
+  @Parameter(
+      names = "--ranged_blob_reads_enabled",
+      description =
+          "Flag to read report and output domain shards by range, splitting report shards larger"
+              + " than --report_read_range_size_bytes into ranges read concurrently, with the"
+              + " ranges read ahead of the readers within --blob_prefetch_budget_bytes.")
+  private boolean rangedBlobReadsEnabled = false;
+
+  @Parameter(
+      names = "--report_read_range_size_bytes",
+      description =
+          "Approximate size of the ranges report shards are split into when"
+              + " --ranged_blob_reads_enabled is set.")
+  private long reportReadRangeSizeBytes = 256L << 20;
+
   @Parameter(
       names = "--decrypter_cache_entry_ttl_sec",
       description =
@@ -404,6 +464,32 @@ public class AggregationWorkerArgs {
       description = "Flag to enable parallel aggregated fact noising.")
   private boolean parallelAggregatedFactNoisingEnabled = false;
 
+  @Parameter(
+      names = "--primitive_aggregation_table_enabled",
+      description =
+          "Flag to aggregate into an open-addressing table keyed by primitive 128-bit buckets"
+              + " instead of a concurrent map of BigInteger keys. Reduces memory per bucket.")
+  private boolean primitiveAggregationTableEnabled = false;
+
+  @Parameter(
+      names = "--spill_to_disk_aggregation_enabled",
+      description =
+          "Flag to aggregate in external memory: sorted runs of the aggregation are spilled to"
+              + " local disk once they grow large and merged while conflating with the output"
+              + " domain, and the noised results are streamed to local disk before being written.")
+  private boolean spillToDiskAggregationEnabled = false;
+
+  @Parameter(
+      names = "--output_domain_cache_max_bytes",
+      description =
+          "Disk budget, in bytes, of the output domain cache kept across jobs under the result"
+              + " working directory. Cached domains are identified by the location, size and a"
+              + " fingerprint of the first and last 4 KiB of their shards, since blob storage"
+              + " exposes no version of them. A text domain rewritten in place with the same size"
+              + " and ends is taken for the cached one, so only enable it if domains are written"
+              + " to new locations. 0 disables the cache.")
+  private long outputDomainCacheMaxBytes = 0;
+
   ResultLoggerModuleSelector resultLoggerModuleSelector() {
     return resultLoggerModuleSelector;
   }
@@ -652,6 +738,38 @@ public class AggregationWorkerArgs {
     return parallelSummaryUploadEnabled;
   }
 
+  public boolean isDirectSummaryUploadEnabled() {
+    return directSummaryUploadEnabled;
+  }
+
+  public int getAvroResultBlockSizeBytes() {
+    return avroResultBlockSizeBytes;
+  }
+
+  public String getAvroResultCodec() {
+    return avroResultCodec;
+  }
+
+  public int getBlobPrefetchChunkSizeBytes() {
+    return blobPrefetchChunkSizeBytes;
+  }
+
+  public long getBlobPrefetchBudgetBytes() {
+    return blobPrefetchBudgetBytes;
+  }
+
+  public boolean isOutputDomainShardsSorted() {
+    return outputDomainShardsSorted;
+  }
+
+  public boolean isRangedBlobReadsEnabled() {
+    return rangedBlobReadsEnabled;
+  }
+
+  public long getReportReadRangeSizeBytes() {
+    return reportReadRangeSizeBytes;
+  }
+
   public long getDecrypterCacheEntryTtlSec() {
     return decrypterCacheEntryTtlSec;
   }
@@ -675,4 +793,16 @@ public class AggregationWorkerArgs {
   public boolean isParallelAggregatedFactNoisingEnabled() {
     return parallelAggregatedFactNoisingEnabled;
   }
+
+  public boolean isPrimitiveAggregationTableEnabled() {
+    return primitiveAggregationTableEnabled;
+  }
+
+  public boolean isSpillToDiskAggregationEnabled() {
+    return spillToDiskAggregationEnabled;
+  }
+
+  public long getOutputDomainCacheMaxBytes() {
+    return outputDomainCacheMaxBytes;
+  }
 }
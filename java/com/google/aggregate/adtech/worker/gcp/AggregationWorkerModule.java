@@ -22,17 +22,22 @@ import static com.google.aggregate.adtech.worker.model.SharedInfo.PROTECTED_AUDI
 import static com.google.aggregate.adtech.worker.model.SharedInfo.SHARED_STORAGE_API;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.aggregate.adtech.worker.Annotations.AggregationSpillDirectory;
 import com.google.aggregate.adtech.worker.Annotations.BenchmarkMode;
 import com.google.aggregate.adtech.worker.Annotations.BlockingThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.CustomForkJoinThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.DomainOptional;
 import com.google.aggregate.adtech.worker.Annotations.EnableParallelSummaryUpload;
+import com.google.aggregate.adtech.worker.Annotations.EnablePrimitiveAggregationTable;
 import com.google.aggregate.adtech.worker.Annotations.EnablePrivacyBudgetKeyFiltering;
+import com.google.aggregate.adtech.worker.Annotations.EnableSpillToDiskAggregation;
 import com.google.aggregate.adtech.worker.Annotations.EnableStackTraceInResponse;
 import com.google.aggregate.adtech.worker.Annotations.EnableThresholding;
 import com.google.aggregate.adtech.worker.Annotations.InstanceId;
 import com.google.aggregate.adtech.worker.Annotations.MaxDepthOfStackTrace;
 import com.google.aggregate.adtech.worker.Annotations.NonBlockingThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.OutputDomainCacheDirectory;
+import com.google.aggregate.adtech.worker.Annotations.OutputDomainCacheMaxBytes;
 import com.google.aggregate.adtech.worker.Annotations.OutputShardFileSizeBytes;
 import com.google.aggregate.adtech.worker.Annotations.ParallelAggregatedFactNoising;
 import com.google.aggregate.adtech.worker.Annotations.ReportErrorThresholdPercentage;
@@ -44,6 +49,7 @@ import com.google.aggregate.adtech.worker.PrivacyBudgetingSelector;
 import com.google.aggregate.adtech.worker.ResultLoggerModuleSelector;
 import com.google.aggregate.adtech.worker.WorkerModule;
 import com.google.aggregate.adtech.worker.aggregation.concurrent.ConcurrentAggregationProcessor;
+import com.google.aggregate.adtech.worker.aggregation.domain.DomainJoinOptions;
 import com.google.aggregate.adtech.worker.aggregation.domain.OutputDomainProcessor;
 import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.NoisingDelta;
 import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.NoisingDistribution;
@@ -53,8 +59,19 @@ import com.google.aggregate.adtech.worker.decryption.DeserializingReportDecrypte
 import com.google.aggregate.adtech.worker.decryption.RecordDecrypter;
 import com.google.aggregate.adtech.worker.model.serdes.PayloadSerdes;
 import com.google.aggregate.adtech.worker.model.serdes.cbor.CborPayloadSerdes;
+import com.google.aggregate.adtech.worker.reader.BlobPrefetchOptions;
+import com.google.aggregate.adtech.worker.reader.BlobVersionReader;
+import com.google.aggregate.adtech.worker.reader.MappedBlobReader;
+import com.google.aggregate.adtech.worker.reader.RangedBlobReader;
+import com.google.aggregate.adtech.worker.reader.ReportReadOptions;
+import com.google.aggregate.adtech.worker.reader.gcp.GcsBlobVersionReader;
+import com.google.aggregate.adtech.worker.reader.gcp.GcsRangedBlobReader;
+import com.google.aggregate.adtech.worker.upload.FileSystemMultipartBlobUploader;
+import com.google.aggregate.adtech.worker.upload.MultipartBlobUploader;
+import com.google.aggregate.adtech.worker.upload.gcp.GcsMultipartBlobUploader;
 import com.google.aggregate.adtech.worker.validation.SimulationValidationModule;
 import com.google.aggregate.adtech.worker.validation.ValidationModule;
+import com.google.aggregate.adtech.worker.writer.avro.AvroResultsFileOptions;
 import com.google.aggregate.perf.StopwatchExporter;
 import com.google.aggregate.perf.export.NoOpStopwatchExporter;
 import com.google.aggregate.privacy.budgeting.bridge.PrivacyBudgetingServiceBridge;
@@ -69,6 +86,7 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.TypeLiteral;
+import com.google.inject.multibindings.OptionalBinder;
 import com.google.privacysandbox.otel.Annotations.EnableOTelLogs;
 import com.google.privacysandbox.otel.Annotations.GrpcOtelCollectorEndpoint;
 import com.google.scp.operator.cpio.blobstorageclient.gcp.Annotations.GcsEndpointUrl;
@@ -140,9 +158,32 @@ public final class AggregationWorkerModule extends AbstractModule {
         bind(new TypeLiteral<Optional<String>>() {})
             .annotatedWith(GcsEndpointUrl.class)
             .toInstance(args.getGcsEndpoint());
+        if (args.isRangedBlobReadsEnabled()) {
+          OptionalBinder.newOptionalBinder(binder(), RangedBlobReader.class)
+              .setBinding()
+              .to(GcsRangedBlobReader.class);
+        }
+        OptionalBinder.newOptionalBinder(binder(), BlobVersionReader.class)
+            .setBinding()
+            .to(GcsBlobVersionReader.class);
+        if (args.isDirectSummaryUploadEnabled()) {
+          OptionalBinder.newOptionalBinder(binder(), MultipartBlobUploader.class)
+              .setBinding()
+              .to(GcsMultipartBlobUploader.class);
+        }
         break;
       case LOCAL_FS_CLIENT:
         bind(FileSystem.class).toInstance(FileSystems.getDefault());
+        if (args.isRangedBlobReadsEnabled()) {
+          OptionalBinder.newOptionalBinder(binder(), RangedBlobReader.class)
+              .setBinding()
+              .to(MappedBlobReader.class);
+        }
+        if (args.isDirectSummaryUploadEnabled()) {
+          OptionalBinder.newOptionalBinder(binder(), MultipartBlobUploader.class)
+              .setBinding()
+              .to(FileSystemMultipartBlobUploader.class);
+        }
     }
     install(args.getBlobStorageClientSelector().getBlobStorageClientSelectorModule());
 
@@ -332,6 +373,19 @@ public final class AggregationWorkerModule extends AbstractModule {
           .toInstance(Paths.get(args.getResultWorkingDirectoryPathString()));
     }
 
+    bind(AvroResultsFileOptions.class)
+        .toInstance(
+            AvroResultsFileOptions.create(
+                args.getAvroResultBlockSizeBytes(), args.getAvroResultCodec()));
+    bind(BlobPrefetchOptions.class)
+        .toInstance(
+            BlobPrefetchOptions.create(
+                args.getBlobPrefetchChunkSizeBytes(), args.getBlobPrefetchBudgetBytes()));
+    bind(ReportReadOptions.class)
+        .toInstance(ReportReadOptions.create(args.getReportReadRangeSizeBytes()));
+    bind(DomainJoinOptions.class)
+        .toInstance(DomainJoinOptions.create(args.isOutputDomainShardsSorted()));
+
     // Feature flags.
     bind(boolean.class)
         .annotatedWith(EnableParallelSummaryUpload.class)
@@ -339,6 +393,22 @@ public final class AggregationWorkerModule extends AbstractModule {
     bind(boolean.class)
         .annotatedWith(EnablePrivacyBudgetKeyFiltering.class)
         .toInstance(args.isLabeledPrivacyBudgetKeysEnabled());
+    bind(boolean.class)
+        .annotatedWith(EnablePrimitiveAggregationTable.class)
+        .toInstance(args.isPrimitiveAggregationTableEnabled());
+    bind(boolean.class)
+        .annotatedWith(EnableSpillToDiskAggregation.class)
+        .toInstance(args.isSpillToDiskAggregationEnabled());
+    bind(Path.class)
+        .annotatedWith(AggregationSpillDirectory.class)
+        .toInstance(Paths.get(args.getResultWorkingDirectoryPathString()));
+    bind(Path.class)
+        .annotatedWith(OutputDomainCacheDirectory.class)
+        .toInstance(
+            Paths.get(args.getResultWorkingDirectoryPathString()).resolve("output_domain_cache"));
+    bind(long.class)
+        .annotatedWith(OutputDomainCacheMaxBytes.class)
+        .toInstance(args.getOutputDomainCacheMaxBytes());
     bind(boolean.class)
         .annotatedWith(StreamingOutputDomainProcessing.class)
         .toInstance(args.isStreamingOutputDomainProcessingEnabled());
@@ -16,30 +16,89 @@
 
 package com.google.aggregate.adtech.worker.local;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.aggregate.adtech.worker.reader.MappedBlobReader;
 import com.google.common.collect.ImmutableList;
 import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
 import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
 import com.google.scp.operator.cpio.blobstorageclient.testing.FSBlobStorageClient;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
 import javax.inject.Inject;
 
 /**
- * BlobStorageClient which list a single shard. Short term fix for Standalone library to expect a
- * single file for a avro batch rather than directory.
+ * BlobStorageClient of the local file system for standalone runs. A location names a single
+ * file, a directory whose files are all listed, or else a prefix of the names of files as in blob
+ * storage. Blobs are memory-mapped, so that they are read straight from the page cache.
  */
 public class LocalBlobStorageClient extends FSBlobStorageClient {
 
   private final FileSystem fileSystem;
+  private final MappedBlobReader mappedBlobReader;
 
   @Inject
   public LocalBlobStorageClient(FileSystem fileSystem) {
     super(fileSystem);
     this.fileSystem = fileSystem;
+    this.mappedBlobReader = new MappedBlobReader(fileSystem);
+  }
+
+  @Override
+  public InputStream getBlob(DataLocation location) throws BlobStorageClientException {
+    try {
+      return mappedBlobReader.getBlobRange(location, 0, Long.MAX_VALUE);
+    } catch (IOException e) {
+      throw new BlobStorageClientException(e);
+    }
   }
 
   @Override
   public ImmutableList<String> listBlobs(DataLocation location) throws BlobStorageClientException {
     BlobStoreDataLocation blobLocation = location.blobStoreDataLocation();
-    return ImmutableList.of(blobLocation.key());
+    Path bucket = fileSystem.getPath(blobLocation.bucket());
+    Path path = fileSystem.getPath(blobLocation.bucket(), blobLocation.key());
+    try {
+      if (Files.isRegularFile(path)) {
+        return ImmutableList.of(blobLocation.key());
+      }
+      if (Files.isDirectory(path)) {
+        return listFiles(bucket, path);
+      }
+      Path parent = path.toAbsolutePath().getParent();
+      if (parent == null || !Files.isDirectory(parent)) {
+        return ImmutableList.of();
+      }
+      String namePrefix = path.getFileName().toString();
+      ImmutableList.Builder<String> blobs = ImmutableList.builder();
+      try (Stream<Path> entries = Files.list(parent)) {
+        for (Path entry :
+            entries
+                .filter(entry -> entry.getFileName().toString().startsWith(namePrefix))
+                .sorted()
+                .collect(toImmutableList())) {
+          blobs.addAll(listFiles(bucket, entry));
+        }
+      }
+      return blobs.build();
+    } catch (IOException e) {
+      throw new BlobStorageClientException(e);
+    }
+  }
+
+  /** Returns the keys of the files at or under the path, skipping hidden files, in order. */
+  private static ImmutableList<String> listFiles(Path bucket, Path path) throws IOException {
+    try (Stream<Path> files = Files.walk(path)) {
+      return files
+          .filter(Files::isRegularFile)
+          .filter(file -> !file.getFileName().toString().startsWith("."))
+          .map(file -> bucket.toAbsolutePath().relativize(file.toAbsolutePath()).toString())
+          .sorted()
+          .collect(toImmutableList());
+    }
   }
 }
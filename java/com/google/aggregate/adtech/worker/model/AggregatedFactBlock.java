@@ -0,0 +1,335 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.aggregate.adtech.worker.util.NumericConversions;
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.annotations.Var;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntPredicate;
+import java.util.function.LongUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Aggregated results stored by column: the halves of the buckets, the metrics, the unnoised metrics
+ * and the debug annotations of the results are held in parallel primitive arrays, so that a result
+ * takes a few dozen bytes rather than the objects of an {@link AggregatedFact}.
+ *
+ * <p>Rows are appended while the block is filled, then noised in place. Facts read from a block are
+ * copies of its rows, for tests and tools handling results one by one.
+ */
+public final class AggregatedFactBlock {
+
+  /** Annotation flag of buckets seen in reports. */
+  public static final byte IN_REPORTS = 1;
+
+  /** Annotation flag of buckets in the output domain. */
+  public static final byte IN_DOMAIN = 2;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  // Annotations of each combination of flags, in the order of the annotation values.
+  private static final ImmutableList<ImmutableList<DebugBucketAnnotation>> ANNOTATIONS =
+      ImmutableList.of(
+          ImmutableList.of(),
+          ImmutableList.of(DebugBucketAnnotation.IN_REPORTS),
+          ImmutableList.of(DebugBucketAnnotation.IN_DOMAIN),
+          ImmutableList.of(DebugBucketAnnotation.IN_REPORTS, DebugBucketAnnotation.IN_DOMAIN));
+
+  private long[] bucketHighs;
+  private long[] bucketLows;
+  private long[] metrics;
+  // Null until the block is noised.
+  private long[] unnoisedMetrics;
+  // Null unless the block is annotated.
+  private byte[] annotations;
+  private int size;
+
+  private AggregatedFactBlock(int capacity) {
+    bucketHighs = new long[capacity];
+    bucketLows = new long[capacity];
+    metrics = new long[capacity];
+  }
+
+  private AggregatedFactBlock(AggregatedFactBlock block, byte[] annotations) {
+    this.bucketHighs = block.bucketHighs;
+    this.bucketLows = block.bucketLows;
+    this.metrics = block.metrics;
+    this.unnoisedMetrics = block.unnoisedMetrics;
+    this.annotations = annotations;
+    this.size = block.size;
+  }
+
+  /** Returns an empty block. */
+  public static AggregatedFactBlock create() {
+    return new AggregatedFactBlock(INITIAL_CAPACITY);
+  }
+
+  /**
+   * Returns a block of the facts. Either all or none of the facts must have unnoised metrics, and
+   * likewise for debug annotations.
+   */
+  public static AggregatedFactBlock copyOf(Iterable<AggregatedFact> facts) {
+    AggregatedFactBlock block = create();
+    for (AggregatedFact fact : facts) {
+      boolean noised = fact.getUnnoisedMetric().isPresent();
+      boolean annotated = fact.getDebugAnnotations().isPresent();
+      if (block.size == 0) {
+        block.unnoisedMetrics = noised ? new long[block.metrics.length] : null;
+        block.annotations = annotated ? new byte[block.metrics.length] : null;
+      }
+      checkArgument(
+          noised == block.hasUnnoisedMetrics() && annotated == block.hasDebugAnnotations(),
+          "Facts of a block must all have the same optional fields.");
+      block.add(fact.getBucket(), fact.getMetric());
+      int row = block.size - 1;
+      if (noised) {
+        block.unnoisedMetrics[row] = fact.getUnnoisedMetric().get();
+      }
+      if (annotated) {
+        block.annotations[row] = toFlags(fact.getDebugAnnotations().get());
+      }
+    }
+    return block;
+  }
+
+  /** Appends a result with an unnoised metric. */
+  public void add(long bucketHigh, long bucketLow, long metric) {
+    if (size == metrics.length) {
+      grow();
+    }
+    bucketHighs[size] = bucketHigh;
+    bucketLows[size] = bucketLow;
+    metrics[size] = metric;
+    size++;
+  }
+
+  /** Appends a result with an unnoised metric. */
+  public void add(BigInteger bucket, long metric) {
+    add(
+        NumericConversions.uInt128HighBits(bucket),
+        NumericConversions.uInt128LowBits(bucket),
+        metric);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long bucketHigh(int row) {
+    return bucketHighs[checkRow(row)];
+  }
+
+  public long bucketLow(int row) {
+    return bucketLows[checkRow(row)];
+  }
+
+  public BigInteger bucket(int row) {
+    return NumericConversions.uInt128FromLongs(bucketHigh(row), bucketLow(row));
+  }
+
+  public long metric(int row) {
+    return metrics[checkRow(row)];
+  }
+
+  public boolean hasUnnoisedMetrics() {
+    return unnoisedMetrics != null;
+  }
+
+  public long unnoisedMetric(int row) {
+    checkState(hasUnnoisedMetrics(), "The block is not noised.");
+    return unnoisedMetrics[checkRow(row)];
+  }
+
+  public boolean hasDebugAnnotations() {
+    return annotations != null;
+  }
+
+  /** Returns the annotation flags of the row, from {@link #IN_REPORTS} and {@link #IN_DOMAIN}. */
+  public byte debugAnnotationFlags(int row) {
+    checkState(hasDebugAnnotations(), "The block is not annotated.");
+    return annotations[checkRow(row)];
+  }
+
+  /**
+   * Moves the metrics of the block to its unnoised metrics, replacing them with their noised
+   * values. When {@code parallel} is set, the rows are noised by the tasks of the pool running the
+   * call.
+   */
+  public void noiseMetrics(LongUnaryOperator noise, boolean parallel) {
+    if (unnoisedMetrics == null) {
+      unnoisedMetrics = new long[metrics.length];
+    }
+    IntStream rows = IntStream.range(0, size);
+    (parallel ? rows.parallel() : rows)
+        .forEach(
+            row -> {
+              unnoisedMetrics[row] = metrics[row];
+              metrics[row] = noise.applyAsLong(unnoisedMetrics[row]);
+            });
+  }
+
+  /**
+   * Returns a block of the rows accepted by the predicate, in order. The rows are tested once and
+   * the block is sized to the accepted rows, as thresholding usually keeps few of them.
+   */
+  public AggregatedFactBlock filter(IntPredicate rowPredicate) {
+    BitSet accepted = new BitSet(size);
+    for (int row = 0; row < size; row++) {
+      if (rowPredicate.test(row)) {
+        accepted.set(row);
+      }
+    }
+    AggregatedFactBlock block = new AggregatedFactBlock(Math.max(accepted.cardinality(), 1));
+    block.unnoisedMetrics = hasUnnoisedMetrics() ? new long[block.metrics.length] : null;
+    block.annotations = hasDebugAnnotations() ? new byte[block.metrics.length] : null;
+    for (int row = accepted.nextSetBit(0); row >= 0; row = accepted.nextSetBit(row + 1)) {
+      int copy = block.size++;
+      block.bucketHighs[copy] = bucketHighs[row];
+      block.bucketLows[copy] = bucketLows[row];
+      block.metrics[copy] = metrics[row];
+      if (block.hasUnnoisedMetrics()) {
+        block.unnoisedMetrics[copy] = unnoisedMetrics[row];
+      }
+      if (block.hasDebugAnnotations()) {
+        block.annotations[copy] = annotations[row];
+      }
+    }
+    return block;
+  }
+
+  /**
+   * Returns a block of the rows of this one, all annotated with the same flags. The blocks share
+   * their other columns, so the block must not be noised again once annotated.
+   */
+  public AggregatedFactBlock withDebugAnnotations(byte flags) {
+    checkState(hasUnnoisedMetrics(), "Only noised results are annotated.");
+    byte[] rowAnnotations = new byte[size];
+    Arrays.fill(rowAnnotations, flags);
+    return new AggregatedFactBlock(this, rowAnnotations);
+  }
+
+  /** Writes the rows of the block to {@code output}, to be read back by {@link #readFrom}. */
+  public void writeTo(DataOutput output) throws IOException {
+    output.writeInt(size);
+    output.writeBoolean(hasUnnoisedMetrics());
+    output.writeBoolean(hasDebugAnnotations());
+    for (int row = 0; row < size; row++) {
+      output.writeLong(bucketHighs[row]);
+      output.writeLong(bucketLows[row]);
+      output.writeLong(metrics[row]);
+      if (hasUnnoisedMetrics()) {
+        output.writeLong(unnoisedMetrics[row]);
+      }
+      if (hasDebugAnnotations()) {
+        output.writeByte(annotations[row]);
+      }
+    }
+  }
+
+  /** Reads a block written by {@link #writeTo}. */
+  public static AggregatedFactBlock readFrom(DataInput input) throws IOException {
+    int size = input.readInt();
+    AggregatedFactBlock block = new AggregatedFactBlock(Math.max(size, 1));
+    block.unnoisedMetrics = input.readBoolean() ? new long[block.metrics.length] : null;
+    block.annotations = input.readBoolean() ? new byte[block.metrics.length] : null;
+    for (int row = 0; row < size; row++) {
+      block.bucketHighs[row] = input.readLong();
+      block.bucketLows[row] = input.readLong();
+      block.metrics[row] = input.readLong();
+      if (block.hasUnnoisedMetrics()) {
+        block.unnoisedMetrics[row] = input.readLong();
+      }
+      if (block.hasDebugAnnotations()) {
+        block.annotations[row] = input.readByte();
+      }
+    }
+    block.size = size;
+    return block;
+  }
+
+  /** Returns a copy of the row as a fact. */
+  public AggregatedFact get(int row) {
+    BigInteger bucket = bucket(row);
+    if (hasDebugAnnotations()) {
+      return AggregatedFact.create(
+          bucket, metrics[row], unnoisedMetrics[row], ANNOTATIONS.get(annotations[row]));
+    }
+    if (hasUnnoisedMetrics()) {
+      return AggregatedFact.create(bucket, metrics[row], unnoisedMetrics[row]);
+    }
+    return AggregatedFact.create(bucket, metrics[row]);
+  }
+
+  /** Returns a view of the block as facts, each read as a copy of its row. */
+  public List<AggregatedFact> asFacts() {
+    return new FactList();
+  }
+
+  /** Returns the flags of the annotations. */
+  public static byte toFlags(List<DebugBucketAnnotation> debugAnnotations) {
+    @Var byte flags = 0;
+    for (DebugBucketAnnotation annotation : debugAnnotations) {
+      flags |= annotation == DebugBucketAnnotation.IN_REPORTS ? IN_REPORTS : IN_DOMAIN;
+    }
+    return flags;
+  }
+
+  private int checkRow(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Row " + row + " of a block of " + size + " rows.");
+    }
+    return row;
+  }
+
+  private void grow() {
+    int capacity = metrics.length * 2;
+    bucketHighs = Arrays.copyOf(bucketHighs, capacity);
+    bucketLows = Arrays.copyOf(bucketLows, capacity);
+    metrics = Arrays.copyOf(metrics, capacity);
+    if (unnoisedMetrics != null) {
+      unnoisedMetrics = Arrays.copyOf(unnoisedMetrics, capacity);
+    }
+    if (annotations != null) {
+      annotations = Arrays.copyOf(annotations, capacity);
+    }
+  }
+
+  private final class FactList extends AbstractList<AggregatedFact> implements RandomAccess {
+
+    @Override
+    public AggregatedFact get(int row) {
+      return AggregatedFactBlock.this.get(row);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+}
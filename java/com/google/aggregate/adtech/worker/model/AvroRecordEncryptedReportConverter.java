@@ -29,12 +29,16 @@ public final class AvroRecordEncryptedReportConverter
         .setPayload(avroRecord.payload())
         .setKeyId(avroRecord.keyId())
         .setSharedInfo(avroRecord.sharedInfo())
+        .setSharedInfoBytes(avroRecord.sharedInfoBytes())
         .build();
   }
 
   @Override
   protected AvroReportRecord doBackward(EncryptedReport encryptedReport) {
     return AvroReportRecord.create(
-        encryptedReport.payload(), encryptedReport.keyId(), encryptedReport.sharedInfo());
+        encryptedReport.payload(),
+        encryptedReport.keyId(),
+        encryptedReport.sharedInfo(),
+        encryptedReport.sharedInfoBytes());
   }
 }
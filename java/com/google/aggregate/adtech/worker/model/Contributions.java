@@ -0,0 +1,226 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import com.google.aggregate.adtech.worker.util.NumericConversions;
+import com.google.common.primitives.UnsignedLong;
+import com.google.errorprone.annotations.Var;
+import java.util.Arrays;
+
+/**
+ * The contributions of a {@link Payload}, stored as primitives.
+ *
+ * <p>A bucket is stored as the high and low 64 bits of its unsigned 128-bit value, a value as an
+ * unsigned 32-bit integer and a filtering id as an unsigned 64-bit integer, so that the
+ * contributions of a report can be aggregated without materializing {@link Fact}s.
+ */
+public final class Contributions {
+
+  // Fields of a contribution in the fields array.
+  private static final int BUCKET_HIGH = 0;
+  private static final int BUCKET_LOW = 1;
+  private static final int VALUE = 2;
+  private static final int ID = 3;
+  private static final int STRIDE = 4;
+
+  // Chrome pads the contributions of a report to 20.
+  private static final int DEFAULT_CAPACITY = 20;
+
+  private final long[] fields;
+  private final boolean[] hasIds;
+  private final int size;
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  private Contributions(long[] fields, boolean[] hasIds, int size) {
+    this.fields = fields;
+    this.hasIds = hasIds;
+    this.size = size;
+  }
+
+  /** Returns a builder holding these contributions. */
+  public Builder toBuilder() {
+    return new Builder(fields.clone(), hasIds.clone(), size);
+  }
+
+  /** Returns the number of contributions. */
+  public int size() {
+    return size;
+  }
+
+  public long bucketHigh(int index) {
+    return field(index, BUCKET_HIGH);
+  }
+
+  public long bucketLow(int index) {
+    return field(index, BUCKET_LOW);
+  }
+
+  public long value(int index) {
+    return field(index, VALUE);
+  }
+
+  /** Returns the filtering id of the contribution, 0 if it has none. */
+  public long id(int index) {
+    return field(index, ID);
+  }
+
+  public boolean hasId(int index) {
+    checkElementIndex(index, size);
+    return hasIds[index];
+  }
+
+  /** Passes the contributions to the consumer, in order. */
+  public void forEach(ContributionConsumer consumer) {
+    for (int index = 0; index < size; index++) {
+      int offset = index * STRIDE;
+      consumer.accept(
+          fields[offset + BUCKET_HIGH],
+          fields[offset + BUCKET_LOW],
+          fields[offset + VALUE],
+          hasIds[index],
+          fields[offset + ID]);
+    }
+  }
+
+  /** Materializes the contribution as a {@link Fact}. */
+  public Fact fact(int index) {
+    Fact.Builder fact =
+        Fact.builder()
+            .setBucket(NumericConversions.uInt128FromLongs(bucketHigh(index), bucketLow(index)))
+            .setValue(value(index));
+    if (hasId(index)) {
+      fact.setId(UnsignedLong.fromLongBits(id(index)));
+    }
+    return fact.build();
+  }
+
+  private long field(int index, int field) {
+    checkElementIndex(index, size);
+    return fields[index * STRIDE + field];
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof Contributions)) {
+      return false;
+    }
+    Contributions that = (Contributions) other;
+    return size == that.size
+        && Arrays.equals(fields, 0, size * STRIDE, that.fields, 0, size * STRIDE)
+        && Arrays.equals(hasIds, 0, size, that.hasIds, 0, size);
+  }
+
+  @Override
+  public int hashCode() {
+    @Var int hash = size;
+    for (int i = 0; i < size * STRIDE; i++) {
+      hash = 31 * hash + Long.hashCode(fields[i]);
+    }
+    for (int i = 0; i < size; i++) {
+      hash = 31 * hash + Boolean.hashCode(hasIds[i]);
+    }
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder string = new StringBuilder("Contributions{");
+    for (int index = 0; index < size; index++) {
+      string.append(index == 0 ? "" : ", ").append(fact(index));
+    }
+    return string.append('}').toString();
+  }
+
+  /** Receives contributions as primitives. */
+  @FunctionalInterface
+  public interface ContributionConsumer {
+
+    /**
+     * Receives one contribution.
+     *
+     * @param bucketHigh the high 64 bits of the bucket
+     * @param bucketLow the low 64 bits of the bucket
+     * @param value the value, an unsigned 32-bit integer
+     * @param hasId whether the contribution has a filtering id
+     * @param id the filtering id, an unsigned 64-bit integer, 0 if the contribution has none
+     */
+    void accept(long bucketHigh, long bucketLow, long value, boolean hasId, long id);
+  }
+
+  /** Builder of {@link Contributions}, which receives the contributions as primitives. */
+  public static final class Builder implements ContributionConsumer {
+
+    private long[] fields;
+    private boolean[] hasIds;
+    private int size;
+
+    private Builder() {
+      this(new long[DEFAULT_CAPACITY * STRIDE], new boolean[DEFAULT_CAPACITY], /* size= */ 0);
+    }
+
+    private Builder(long[] fields, boolean[] hasIds, int size) {
+      this.fields = fields;
+      this.hasIds = hasIds;
+      this.size = size;
+    }
+
+    @Override
+    public void accept(long bucketHigh, long bucketLow, long value, boolean hasId, long id) {
+      if (size == hasIds.length) {
+        int capacity = Math.max(DEFAULT_CAPACITY, size * 2);
+        fields = Arrays.copyOf(fields, capacity * STRIDE);
+        hasIds = Arrays.copyOf(hasIds, capacity);
+      }
+      int offset = size * STRIDE;
+      fields[offset + BUCKET_HIGH] = bucketHigh;
+      fields[offset + BUCKET_LOW] = bucketLow;
+      fields[offset + VALUE] = value;
+      fields[offset + ID] = id;
+      hasIds[size] = hasId;
+      size++;
+    }
+
+    /** Adds the fact. Its bucket must be an unsigned 128-bit integer. */
+    public Builder add(Fact fact) {
+      checkArgument(
+          fact.bucket().signum() >= 0 && fact.bucket().bitLength() <= 128,
+          "Bucket outside of valid range: %s",
+          fact.bucket());
+      accept(
+          NumericConversions.uInt128HighBits(fact.bucket()),
+          NumericConversions.uInt128LowBits(fact.bucket()),
+          fact.value(),
+          fact.id().isPresent(),
+          fact.id().map(UnsignedLong::longValue).orElse(0L));
+      return this;
+    }
+
+    public Contributions build() {
+      return new Contributions(
+          Arrays.copyOf(fields, size * STRIDE), Arrays.copyOf(hasIds, size), size);
+    }
+  }
+}
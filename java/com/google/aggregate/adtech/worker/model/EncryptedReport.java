@@ -16,8 +16,12 @@
 
 package com.google.aggregate.adtech.worker.model;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.aggregate.adtech.worker.util.ByteBufferSource;
 import com.google.auto.value.AutoValue;
 import com.google.common.io.ByteSource;
+import java.util.Optional;
 
 /** Representation of a single encrypted report */
 @AutoValue
@@ -36,6 +40,12 @@ public abstract class EncryptedReport {
   /** Associated data that may be used for decryption. */
   public abstract String sharedInfo();
 
+  /**
+   * The UTF-8 bytes of {@link #sharedInfo()}, kept as read so that decryption can use them as
+   * associated data without encoding the string again.
+   */
+  public abstract ByteBufferSource sharedInfoBytes();
+
   @AutoValue.Builder
   public abstract static class Builder {
 
@@ -45,6 +55,20 @@ public abstract class EncryptedReport {
 
     public abstract Builder setSharedInfo(String sharedInfo);
 
-    public abstract EncryptedReport build();
+    public abstract Builder setSharedInfoBytes(ByteBufferSource sharedInfoBytes);
+
+    abstract String sharedInfo();
+
+    abstract Optional<ByteBufferSource> sharedInfoBytes();
+
+    abstract EncryptedReport autoBuild();
+
+    /** Builds the report, encoding the shared info if its bytes were not set. */
+    public EncryptedReport build() {
+      if (sharedInfoBytes().isEmpty()) {
+        setSharedInfoBytes(ByteBufferSource.wrap(sharedInfo().getBytes(UTF_8)));
+      }
+      return autoBuild();
+    }
   }
 }
@@ -17,11 +17,13 @@
 package com.google.aggregate.adtech.worker.model;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.memoized.Memoized;
 import com.google.common.collect.ImmutableList;
 
 /**
@@ -49,8 +51,24 @@ public abstract class Payload {
   @JsonProperty("operation")
   public abstract String operation();
 
+  /** The contributions of the payload, as primitives. */
+  @JsonIgnore
+  public abstract Contributions contributions();
+
+  /**
+   * The contributions of the payload, materialized as {@link Fact}s on first use. Aggregation reads
+   * {@link #contributions()} instead.
+   */
+  @Memoized
   @JsonProperty("data")
-  public abstract ImmutableList<Fact> data();
+  public ImmutableList<Fact> data() {
+    ImmutableList.Builder<Fact> data =
+        ImmutableList.builderWithExpectedSize(contributions().size());
+    for (int index = 0; index < contributions().size(); index++) {
+      data.add(contributions().fact(index));
+    }
+    return data.build();
+  }
 
   @AutoValue.Builder
   @JsonIgnoreProperties(ignoreUnknown = true) // "padding" field is ignored
@@ -65,16 +83,18 @@ public abstract class Payload {
     @JsonProperty("operation")
     public abstract Builder setOperation(String operation);
 
-    abstract ImmutableList.Builder<Fact> dataBuilder();
+    public abstract Builder setContributions(Contributions contributions);
+
+    abstract Contributions.Builder contributionsBuilder();
 
     public Builder addFact(Fact fact) {
-      dataBuilder().add(fact);
+      contributionsBuilder().add(fact);
       return this;
     }
 
     @JsonProperty("data")
     public Builder addAllFact(Iterable<Fact> facts) {
-      dataBuilder().addAll(facts);
+      facts.forEach(contributionsBuilder()::add);
       return this;
     }
 
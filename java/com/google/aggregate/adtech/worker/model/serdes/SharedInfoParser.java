@@ -0,0 +1,440 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.model.serdes;
+
+import com.google.aggregate.adtech.worker.model.SharedInfo;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.errorprone.annotations.Var;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Single-pass parser of the shared_info JSON of a report.
+ *
+ * <p>The reports of a batch mostly share their version, api, reporting_origin and destination,
+ * while their times and report_id differ. The parser reads the fields of {@link SharedInfo} in one
+ * pass over the string and decodes the per-report fields, then looks up the shared fields in a
+ * bounded cache keyed by their values, so that reports of the same origin and destination share
+ * one copy of those strings.
+ *
+ * <p>Only the JSON produced by browsers is handled: an object whose known fields are strings
+ * without escapes, with the times as quoted epoch seconds. The parser gives up on anything else,
+ * malformed input included, and {@link SharedInfoSerdes} then parses the string with Jackson, so
+ * the same inputs are accepted and rejected as with Jackson alone.
+ */
+final class SharedInfoParser {
+
+  // Indices of the decoded fields.
+  private static final int VERSION = 0;
+  private static final int API = 1;
+  private static final int SCHEDULED_REPORT_TIME = 2;
+  private static final int REPORTING_ORIGIN = 3;
+  private static final int DESTINATION = 4;
+  private static final int SOURCE_REGISTRATION_TIME = 5;
+  private static final int REPORT_ID = 6;
+  private static final int DEBUG_MODE = 7;
+  private static final String[] FIELD_NAMES = {
+    "version",
+    "api",
+    "scheduled_report_time",
+    "reporting_origin",
+    "attribution_destination",
+    "source_registration_time",
+    "report_id",
+    "debug_mode"
+  };
+
+  // Longer timestamps are left to Jackson, which handles their overflow.
+  private static final int MAX_TIMESTAMP_DIGITS = 12;
+  private static final int MAX_NUMBER_LENGTH = 100;
+  // Unknown values nested deeper than this are left to Jackson.
+  private static final int MAX_SKIPPED_DEPTH = 16;
+
+  // Separators of the values in template keys. Decoded values have no control characters.
+  private static final char PRESENT = '\u0000';
+  private static final char ABSENT = '\u0001';
+
+  private final Cache<String, Template> templates;
+
+  SharedInfoParser(long maxCachedTemplates) {
+    templates =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxCachedTemplates)
+            .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+            .build();
+  }
+
+  /**
+   * Parses the shared_info.
+   *
+   * @return the shared_info, or empty if the parser gave up on the string
+   */
+  Optional<SharedInfo> parse(String json) {
+    Scanner scanner = new Scanner(json);
+    try {
+      scanner.scan();
+      // Per-report fields are decoded first, so that only valid shared_info is cached.
+      SharedInfo.Builder sharedInfo = scanner.perReportFields();
+      String key = scanner.templateKey();
+      @Var Template template = templates.getIfPresent(key);
+      if (template == null) {
+        template = scanner.template();
+        templates.put(key, template);
+      }
+      return Optional.of(template.addTo(sharedInfo).build());
+    } catch (UnhandledInputException e) {
+      return Optional.empty();
+    }
+  }
+
+  /** Returns the number of shared_info templates currently cached. */
+  long cachedTemplateCount() {
+    return templates.size();
+  }
+
+  /** The fields shared by the reports of an origin and destination. */
+  private static final class Template {
+
+    private final String version;
+    private final String reportingOrigin;
+    private final Optional<String> api;
+    private final Optional<String> destination;
+
+    Template(
+        String version,
+        String reportingOrigin,
+        Optional<String> api,
+        Optional<String> destination) {
+      this.version = version;
+      this.reportingOrigin = reportingOrigin;
+      this.api = api;
+      this.destination = destination;
+    }
+
+    SharedInfo.Builder addTo(SharedInfo.Builder sharedInfo) {
+      sharedInfo.setVersion(version).setReportingOrigin(reportingOrigin);
+      api.ifPresent(sharedInfo::setApi);
+      destination.ifPresent(sharedInfo::setDestination);
+      return sharedInfo;
+    }
+  }
+
+  /** Locates the values of the decoded fields in one pass over the JSON. */
+  private static final class Scanner {
+
+    private final String json;
+    private final int end;
+    // Start and end of the value of each decoded field, without quotes. -1 when absent.
+    private final int[] valueStarts = new int[FIELD_NAMES.length];
+    private final int[] valueEnds = new int[FIELD_NAMES.length];
+    private int position;
+
+    Scanner(String json) {
+      this.json = json;
+      this.end = json.length();
+      Arrays.fill(valueStarts, -1);
+    }
+
+    void scan() throws UnhandledInputException {
+      skipWhitespace();
+      expect('{');
+      skipWhitespace();
+      if (peek() == '}') {
+        position++;
+      } else {
+        while (true) {
+          int keyStart = readString();
+          int field = fieldIndex(keyStart, position - 1);
+          skipWhitespace();
+          expect(':');
+          skipWhitespace();
+          if (field < 0) {
+            // Unknown fields are ignored.
+            skipValue(/* depth= */ 0);
+          } else {
+            if (valueStarts[field] != -1) {
+              // Duplicate field.
+              throw UnhandledInputException.INSTANCE;
+            }
+            valueStarts[field] = readString();
+            valueEnds[field] = position - 1;
+          }
+          skipWhitespace();
+          if (!nextEntry('}')) {
+            break;
+          }
+        }
+      }
+      skipWhitespace();
+      // Jackson ignores trailing content; leave the decision to it.
+      if (position != end) {
+        throw UnhandledInputException.INSTANCE;
+      }
+    }
+
+    boolean has(int field) {
+      return valueStarts[field] != -1;
+    }
+
+    String value(int field) {
+      return json.substring(valueStarts[field], valueEnds[field]);
+    }
+
+    /** Returns the key of the shared fields, telling absent values from empty ones. */
+    String templateKey() {
+      StringBuilder key = new StringBuilder();
+      for (int field : new int[] {VERSION, API, REPORTING_ORIGIN, DESTINATION}) {
+        if (has(field)) {
+          key.append(json, valueStarts[field], valueEnds[field]).append(PRESENT);
+        } else {
+          key.append(ABSENT);
+        }
+      }
+      return key.toString();
+    }
+
+    Template template() {
+      return new Template(
+          value(VERSION),
+          value(REPORTING_ORIGIN),
+          has(API) ? Optional.of(value(API)) : Optional.empty(),
+          has(DESTINATION) ? Optional.of(value(DESTINATION)) : Optional.empty());
+    }
+
+    /** Returns a builder with the fields that differ between reports. */
+    SharedInfo.Builder perReportFields() throws UnhandledInputException {
+      if (!has(VERSION) || !has(SCHEDULED_REPORT_TIME) || !has(REPORTING_ORIGIN)) {
+        throw UnhandledInputException.INSTANCE;
+      }
+      SharedInfo.Builder sharedInfo =
+          SharedInfo.builder().setScheduledReportTime(instant(SCHEDULED_REPORT_TIME));
+      if (has(SOURCE_REGISTRATION_TIME)) {
+        sharedInfo.setSourceRegistrationTime(instant(SOURCE_REGISTRATION_TIME));
+      }
+      if (has(REPORT_ID)) {
+        sharedInfo.setReportId(value(REPORT_ID));
+      }
+      if (has(DEBUG_MODE)) {
+        sharedInfo.setReportDebugModeString(value(DEBUG_MODE));
+      }
+      return sharedInfo;
+    }
+
+    /** Reads a time sent as a string of epoch seconds, as Jackson does. */
+    private Instant instant(int field) throws UnhandledInputException {
+      int start = valueStarts[field];
+      int length = valueEnds[field] - start;
+      if (length == 0 || length > MAX_TIMESTAMP_DIGITS) {
+        throw UnhandledInputException.INSTANCE;
+      }
+      @Var long epochSeconds = 0;
+      for (int i = start; i < start + length; i++) {
+        char c = json.charAt(i);
+        if (c < '0' || c > '9') {
+          throw UnhandledInputException.INSTANCE;
+        }
+        epochSeconds = epochSeconds * 10 + (c - '0');
+      }
+      return Instant.ofEpochSecond(epochSeconds);
+    }
+
+    private int fieldIndex(int start, int stringEnd) {
+      int length = stringEnd - start;
+      for (int field = 0; field < FIELD_NAMES.length; field++) {
+        if (FIELD_NAMES[field].length() == length
+            && json.regionMatches(start, FIELD_NAMES[field], 0, length)) {
+          return field;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Reads a string without escapes.
+     *
+     * @return the position of its first character; the current position is past its closing quote
+     */
+    private int readString() throws UnhandledInputException {
+      expect('"');
+      int start = position;
+      while (true) {
+        char c = peek();
+        position++;
+        if (c == '"') {
+          return start;
+        }
+        if (c == '\\' || c < 0x20) {
+          throw UnhandledInputException.INSTANCE;
+        }
+      }
+    }
+
+    /** Skips a value of a field that is not decoded. */
+    private void skipValue(int depth) throws UnhandledInputException {
+      if (depth > MAX_SKIPPED_DEPTH) {
+        throw UnhandledInputException.INSTANCE;
+      }
+      switch (peek()) {
+        case '"':
+          readString();
+          return;
+        case '{':
+          position++;
+          skipWhitespace();
+          if (peek() == '}') {
+            position++;
+            return;
+          }
+          do {
+            readString();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            skipValue(depth + 1);
+            skipWhitespace();
+          } while (nextEntry('}'));
+          return;
+        case '[':
+          position++;
+          skipWhitespace();
+          if (peek() == ']') {
+            position++;
+            return;
+          }
+          do {
+            skipValue(depth + 1);
+            skipWhitespace();
+          } while (nextEntry(']'));
+          return;
+        case 't':
+          skipLiteral("true");
+          return;
+        case 'f':
+          skipLiteral("false");
+          return;
+        case 'n':
+          skipLiteral("null");
+          return;
+        default:
+          skipNumber();
+      }
+    }
+
+    /**
+     * Consumes the separator after an entry of an object or array.
+     *
+     * @return true if another entry follows, false if the container ended
+     */
+    private boolean nextEntry(char close) throws UnhandledInputException {
+      char c = peek();
+      position++;
+      if (c == ',') {
+        skipWhitespace();
+        return true;
+      }
+      if (c == close) {
+        return false;
+      }
+      throw UnhandledInputException.INSTANCE;
+    }
+
+    private void skipLiteral(String literal) throws UnhandledInputException {
+      if (!json.startsWith(literal, position)) {
+        throw UnhandledInputException.INSTANCE;
+      }
+      position += literal.length();
+    }
+
+    /** Skips a number, following the JSON grammar that Jackson enforces by default. */
+    private void skipNumber() throws UnhandledInputException {
+      int start = position;
+      if (peek() == '-') {
+        position++;
+      }
+      if (peek() == '0') {
+        // No leading zeros.
+        position++;
+      } else {
+        skipDigits();
+      }
+      if (position < end && json.charAt(position) == '.') {
+        position++;
+        skipDigits();
+      }
+      if (position < end && (json.charAt(position) == 'e' || json.charAt(position) == 'E')) {
+        position++;
+        if (peek() == '+' || peek() == '-') {
+          position++;
+        }
+        skipDigits();
+      }
+      if (position - start > MAX_NUMBER_LENGTH) {
+        throw UnhandledInputException.INSTANCE;
+      }
+    }
+
+    /** Skips one or more digits. */
+    private void skipDigits() throws UnhandledInputException {
+      if (!isDigit(peek())) {
+        throw UnhandledInputException.INSTANCE;
+      }
+      while (position < end && isDigit(json.charAt(position))) {
+        position++;
+      }
+    }
+
+    private void skipWhitespace() {
+      while (position < end) {
+        char c = json.charAt(position);
+        if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+          return;
+        }
+        position++;
+      }
+    }
+
+    private void expect(char expected) throws UnhandledInputException {
+      if (peek() != expected) {
+        throw UnhandledInputException.INSTANCE;
+      }
+      position++;
+    }
+
+    private char peek() throws UnhandledInputException {
+      if (position >= end) {
+        throw UnhandledInputException.INSTANCE;
+      }
+      return json.charAt(position);
+    }
+
+    private static boolean isDigit(char c) {
+      return c >= '0' && c <= '9';
+    }
+  }
+
+  /** Signals input the parser leaves to Jackson. Preallocated, as it carries no stack trace. */
+  private static final class UnhandledInputException extends Exception {
+
+    static final UnhandledInputException INSTANCE = new UnhandledInputException();
+
+    private UnhandledInputException() {
+      super(null, null, /* enableSuppression= */ false, /* writableStackTrace= */ false);
+    }
+  }
+}
@@ -35,8 +35,13 @@ public final class SharedInfoSerdes extends Converter<String, Optional<SharedInf
 
   private static final Logger logger = LoggerFactory.getLogger(SharedInfoSerdes.class);
 
+  // Distinct version, api, reporting_origin and destination combinations kept by the parser.
+  private static final long MAX_CACHED_TEMPLATES = 1_000;
+
   TimeObjectMapper objectMapper;
 
+  private final SharedInfoParser sharedInfoParser = new SharedInfoParser(MAX_CACHED_TEMPLATES);
+
   @Inject
   SharedInfoSerdes(TimeObjectMapper objectMapper) {
     objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, true);
@@ -46,6 +51,9 @@ public final class SharedInfoSerdes extends Converter<String, Optional<SharedInf
   /**
    * Convert a JSON String to a {@link SharedInfo}.
    *
+   * <p>The string is parsed with {@link SharedInfoParser}, which caches the fields that reports of
+   * the same origin and destination share. The strings it gives up on are parsed with Jackson.
+   *
    * @param sharedInfoJsonString JSON string of a serialized SharedInfo object
    * @return {@link Optional} with SharedInfo present if deserialization succeeds, empty if it
    *     fails. If an empty string is provided as input an empty Optional is returned.
@@ -53,6 +61,10 @@ public final class SharedInfoSerdes extends Converter<String, Optional<SharedInf
   @Override
   protected Optional<SharedInfo> doForward(String sharedInfoJsonString) {
     if (!sharedInfoJsonString.isEmpty()) {
+      Optional<SharedInfo> sharedInfo = sharedInfoParser.parse(sharedInfoJsonString);
+      if (sharedInfo.isPresent()) {
+        return sharedInfo;
+      }
       try {
         return Optional.of(objectMapper.readValue(sharedInfoJsonString, SharedInfo.class));
       } catch (JsonProcessingException ignored) {
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.model.serdes.cbor;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import com.google.aggregate.adtech.worker.model.Contributions.ContributionConsumer;
+import com.google.aggregate.adtech.worker.model.Payload;
+import com.google.errorprone.annotations.Var;
+import java.util.Optional;
+
+/**
+ * Streaming decoder for the CBOR encoding of a {@link Payload}.
+ *
+ * <p>Reads the payload in a single pass over its bytes and passes each contribution to a {@link
+ * ContributionConsumer} as primitives, without building a tree, {@code Fact}s or {@code
+ * BigInteger}s. Only the encoding produced by browsers and by {@link CborPayloadSerdes} is handled:
+ * definite or indefinite length maps and arrays, ASCII text keys, byte strings for the numbers, no
+ * tags and no duplicate keys. The decoder gives up on anything else, malformed input included,
+ * and {@link CborPayloadSerdes} then decodes the bytes with Jackson, so the same inputs are
+ * accepted and rejected as with Jackson alone.
+ */
+final class CborPayloadDecoder {
+
+  private static final int MAJOR_TYPE_UNSIGNED_INTEGER = 0;
+  private static final int MAJOR_TYPE_NEGATIVE_INTEGER = 1;
+  private static final int MAJOR_TYPE_BYTE_STRING = 2;
+  private static final int MAJOR_TYPE_TEXT_STRING = 3;
+  private static final int MAJOR_TYPE_ARRAY = 4;
+  private static final int MAJOR_TYPE_MAP = 5;
+  private static final int MAJOR_TYPE_SIMPLE = 7;
+
+  private static final int INDEFINITE_LENGTH = -1;
+  private static final int BREAK = 0xff;
+
+  private static final int MAX_BUCKET_BYTES = 16;
+  private static final int MAX_VALUE_BYTES = 4;
+  private static final int MAX_ID_BYTES = 8;
+  // Unknown values nested deeper than this are left to Jackson.
+  private static final int MAX_SKIPPED_DEPTH = 16;
+
+  private static final byte[] OPERATION_KEY = "operation".getBytes(US_ASCII);
+  private static final byte[] DATA_KEY = "data".getBytes(US_ASCII);
+  private static final byte[] BUCKET_KEY = "bucket".getBytes(US_ASCII);
+  private static final byte[] VALUE_KEY = "value".getBytes(US_ASCII);
+  private static final byte[] ID_KEY = "id".getBytes(US_ASCII);
+  private static final byte[] HISTOGRAM_OPERATION = Payload.HISTOGRAM_OPERATION.getBytes(US_ASCII);
+
+  private final byte[] bytes;
+  private final int end;
+  private int position;
+
+  /**
+   * Decodes the payload, passing its contributions to the consumer.
+   *
+   * @return the operation of the payload, or empty if the decoder gave up on the bytes. The
+   *     contributions passed to the consumer before giving up must then be discarded.
+   */
+  static Optional<String> decode(byte[] bytes, ContributionConsumer consumer) {
+    CborPayloadDecoder decoder = new CborPayloadDecoder(bytes);
+    try {
+      String operation = decoder.readPayload(consumer);
+      // Jackson ignores trailing bytes; leave the decision to it.
+      return decoder.position == decoder.end ? Optional.of(operation) : Optional.empty();
+    } catch (UnhandledInputException e) {
+      return Optional.empty();
+    }
+  }
+
+  private CborPayloadDecoder(byte[] bytes) {
+    this.bytes = bytes;
+    this.end = bytes.length;
+  }
+
+  private String readPayload(ContributionConsumer consumer) throws UnhandledInputException {
+    @Var String operation = null;
+    @Var boolean dataRead = false;
+    int entries = readContainerHeader(MAJOR_TYPE_MAP);
+    for (int entry = 0; hasNextEntry(entries, entry); entry++) {
+      int keyStart = readAsciiText();
+      int keyLength = position - keyStart;
+      if (keyEquals(keyStart, keyLength, OPERATION_KEY)) {
+        if (operation != null) {
+          throw UnhandledInputException.INSTANCE;
+        }
+        operation = readOperation();
+      } else if (keyEquals(keyStart, keyLength, DATA_KEY)) {
+        if (dataRead) {
+          throw UnhandledInputException.INSTANCE;
+        }
+        dataRead = true;
+        readData(consumer);
+      } else {
+        // Unknown fields, such as padding, are ignored.
+        skipItem(/* depth= */ 0);
+      }
+    }
+    if (operation == null) {
+      throw UnhandledInputException.INSTANCE;
+    }
+    return operation;
+  }
+
+  private String readOperation() throws UnhandledInputException {
+    int start = readAsciiText();
+    int length = position - start;
+    return keyEquals(start, length, HISTOGRAM_OPERATION)
+        ? Payload.HISTOGRAM_OPERATION
+        : new String(bytes, start, length, US_ASCII);
+  }
+
+  private void readData(ContributionConsumer consumer) throws UnhandledInputException {
+    int contributions = readContainerHeader(MAJOR_TYPE_ARRAY);
+    for (int contribution = 0; hasNextEntry(contributions, contribution); contribution++) {
+      readContribution(consumer);
+    }
+  }
+
+  private void readContribution(ContributionConsumer consumer) throws UnhandledInputException {
+    @Var long bucketHigh = 0;
+    @Var long bucketLow = 0;
+    @Var long value = 0;
+    @Var long id = 0;
+    @Var boolean bucketRead = false;
+    @Var boolean valueRead = false;
+    @Var boolean idRead = false;
+    int fields = readContainerHeader(MAJOR_TYPE_MAP);
+    for (int field = 0; hasNextEntry(fields, field); field++) {
+      int keyStart = readAsciiText();
+      int keyLength = position - keyStart;
+      if (keyEquals(keyStart, keyLength, BUCKET_KEY) && !bucketRead) {
+        int length = readByteStringHeader(MAX_BUCKET_BYTES);
+        // Big-endian, split into the high and low 64 bits as the bytes are shifted in.
+        for (int i = 0; i < length; i++) {
+          bucketHigh = (bucketHigh << 8) | (bucketLow >>> 56);
+          bucketLow = (bucketLow << 8) | (bytes[position++] & 0xff);
+        }
+        bucketRead = true;
+      } else if (keyEquals(keyStart, keyLength, VALUE_KEY) && !valueRead) {
+        value = readUnsigned(readByteStringHeader(MAX_VALUE_BYTES));
+        valueRead = true;
+      } else if (keyEquals(keyStart, keyLength, ID_KEY) && !idRead) {
+        id = readUnsigned(readByteStringHeader(MAX_ID_BYTES));
+        idRead = true;
+      } else if (keyEquals(keyStart, keyLength, BUCKET_KEY)
+          || keyEquals(keyStart, keyLength, VALUE_KEY)
+          || keyEquals(keyStart, keyLength, ID_KEY)) {
+        // Duplicate field.
+        throw UnhandledInputException.INSTANCE;
+      } else {
+        skipItem(/* depth= */ 0);
+      }
+    }
+    if (!bucketRead || !valueRead) {
+      throw UnhandledInputException.INSTANCE;
+    }
+    consumer.accept(bucketHigh, bucketLow, value, idRead, id);
+  }
+
+  /** Reads a big-endian unsigned integer of at most 8 bytes. */
+  private long readUnsigned(int length) {
+    @Var long result = 0;
+    for (int i = 0; i < length; i++) {
+      result = (result << 8) | (bytes[position++] & 0xff);
+    }
+    return result;
+  }
+
+  /**
+   * Reads the header of a map or an array.
+   *
+   * @return the number of entries, or {@link #INDEFINITE_LENGTH}
+   */
+  private int readContainerHeader(int majorType) throws UnhandledInputException {
+    int initialByte = readInitialByte(majorType);
+    if ((initialByte & 0x1f) == 0x1f) {
+      return INDEFINITE_LENGTH;
+    }
+    // Every entry takes at least one byte.
+    return checkLength(readArgument(initialByte));
+  }
+
+  /** Returns true if the container has an entry at the index, consuming the break if it ends. */
+  private boolean hasNextEntry(int entries, int index) throws UnhandledInputException {
+    if (entries != INDEFINITE_LENGTH) {
+      return index < entries;
+    }
+    if (position >= end) {
+      throw UnhandledInputException.INSTANCE;
+    }
+    if ((bytes[position] & 0xff) == BREAK) {
+      position++;
+      return false;
+    }
+    return true;
+  }
+
+  /** Reads the header of a definite length byte string of at most maxLength bytes. */
+  private int readByteStringHeader(int maxLength) throws UnhandledInputException {
+    int length = checkLength(readArgument(readInitialByte(MAJOR_TYPE_BYTE_STRING)));
+    if (length > maxLength) {
+      throw UnhandledInputException.INSTANCE;
+    }
+    return length;
+  }
+
+  /**
+   * Reads a definite length text string made of ASCII characters.
+   *
+   * @return the position of its first byte; the current position is past its last byte
+   */
+  private int readAsciiText() throws UnhandledInputException {
+    int length = checkLength(readArgument(readInitialByte(MAJOR_TYPE_TEXT_STRING)));
+    int start = position;
+    for (int i = start; i < start + length; i++) {
+      if (bytes[i] < 0) {
+        throw UnhandledInputException.INSTANCE;
+      }
+    }
+    position += length;
+    return start;
+  }
+
+  /** Skips a value of a field that is not decoded. */
+  private void skipItem(int depth) throws UnhandledInputException {
+    if (depth > MAX_SKIPPED_DEPTH || position >= end) {
+      throw UnhandledInputException.INSTANCE;
+    }
+    int initialByte = bytes[position] & 0xff;
+    switch (initialByte >>> 5) {
+      case MAJOR_TYPE_UNSIGNED_INTEGER:
+      case MAJOR_TYPE_NEGATIVE_INTEGER:
+        position++;
+        readArgument(initialByte);
+        return;
+      case MAJOR_TYPE_BYTE_STRING:
+        position += readByteStringHeader(Integer.MAX_VALUE);
+        return;
+      case MAJOR_TYPE_TEXT_STRING:
+        readAsciiText();
+        return;
+      case MAJOR_TYPE_ARRAY:
+        {
+          int elements = readContainerHeader(MAJOR_TYPE_ARRAY);
+          for (int element = 0; hasNextEntry(elements, element); element++) {
+            skipItem(depth + 1);
+          }
+          return;
+        }
+      case MAJOR_TYPE_MAP:
+        {
+          int entries = readContainerHeader(MAJOR_TYPE_MAP);
+          for (int entry = 0; hasNextEntry(entries, entry); entry++) {
+            readAsciiText();
+            skipItem(depth + 1);
+          }
+          return;
+        }
+      case MAJOR_TYPE_SIMPLE:
+        position++;
+        skipSimpleValue(initialByte & 0x1f);
+        return;
+      default:
+        // Tags.
+        throw UnhandledInputException.INSTANCE;
+    }
+  }
+
+  private void skipSimpleValue(int additionalInformation) throws UnhandledInputException {
+    switch (additionalInformation) {
+      case 20: // false
+      case 21: // true
+      case 22: // null
+        return;
+      case 25: // half-precision float
+        skipBytes(2);
+        return;
+      case 26: // single-precision float
+        skipBytes(4);
+        return;
+      case 27: // double-precision float
+        skipBytes(8);
+        return;
+      default:
+        throw UnhandledInputException.INSTANCE;
+    }
+  }
+
+  private int readInitialByte(int majorType) throws UnhandledInputException {
+    if (position >= end) {
+      throw UnhandledInputException.INSTANCE;
+    }
+    int initialByte = bytes[position++] & 0xff;
+    if (initialByte >>> 5 != majorType) {
+      throw UnhandledInputException.INSTANCE;
+    }
+    return initialByte;
+  }
+
+  /** Reads the argument that follows the initial byte; it may not fit a signed long. */
+  private long readArgument(int initialByte) throws UnhandledInputException {
+    int additionalInformation = initialByte & 0x1f;
+    if (additionalInformation < 24) {
+      return additionalInformation;
+    }
+    switch (additionalInformation) {
+      case 24:
+        return readArgumentBytes(1);
+      case 25:
+        return readArgumentBytes(2);
+      case 26:
+        return readArgumentBytes(4);
+      case 27:
+        return readArgumentBytes(8);
+      default:
+        // Indefinite lengths where they are not handled, and reserved values.
+        throw UnhandledInputException.INSTANCE;
+    }
+  }
+
+  private long readArgumentBytes(int length) throws UnhandledInputException {
+    if (end - position < length) {
+      throw UnhandledInputException.INSTANCE;
+    }
+    return readUnsigned(length);
+  }
+
+  /** Checks that a length read from the input does not extend past its end. */
+  private int checkLength(long length) throws UnhandledInputException {
+    if (length < 0 || length > end - position) {
+      throw UnhandledInputException.INSTANCE;
+    }
+    return (int) length;
+  }
+
+  private void skipBytes(int length) throws UnhandledInputException {
+    position += checkLength(length);
+  }
+
+  private boolean keyEquals(int start, int length, byte[] key) {
+    if (length != key.length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (bytes[start + i] != key[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Signals input the decoder leaves to Jackson. Preallocated, as it carries no stack trace. */
+  private static final class UnhandledInputException extends Exception {
+
+    static final UnhandledInputException INSTANCE = new UnhandledInputException();
+
+    private UnhandledInputException() {
+      super(null, null, /* enableSuppression= */ false, /* writableStackTrace= */ false);
+    }
+  }
+}
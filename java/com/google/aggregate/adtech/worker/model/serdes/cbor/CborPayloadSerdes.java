@@ -17,8 +17,10 @@
 package com.google.aggregate.adtech.worker.model.serdes.cbor;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.aggregate.adtech.worker.model.Contributions;
 import com.google.aggregate.adtech.worker.model.Payload;
 import com.google.aggregate.adtech.worker.model.serdes.PayloadSerdes;
+import com.google.aggregate.adtech.worker.util.ByteBufferSource;
 import com.google.common.io.ByteSource;
 import java.io.IOException;
 import java.util.Optional;
@@ -45,6 +47,10 @@ public final class CborPayloadSerdes extends PayloadSerdes {
   /**
    * Convert bytes to a {@link Payload}.
    *
+   * <p>Payloads are decoded with {@link CborPayloadDecoder}, which handles the encoding used in
+   * practice without allocating per contribution. The bytes it gives up on are decoded with
+   * Jackson.
+   *
    * @param byteSource raw, plaintext bytes of a CBOR serialized Payload object
    * @return {@link Optional} with Payload present if deserialization succeeds, empty if it fails.
    */
@@ -55,7 +61,20 @@ public final class CborPayloadSerdes extends PayloadSerdes {
         logger.warn("Empty byte source for deserializing");
         return Optional.empty();
       }
-      return Optional.of(cborMapper.readValue(byteSource.read(), Payload.class));
+      byte[] bytes =
+          byteSource instanceof ByteBufferSource
+              ? ((ByteBufferSource) byteSource).unsafeArray()
+              : byteSource.read();
+      Contributions.Builder contributions = Contributions.builder();
+      Optional<String> operation = CborPayloadDecoder.decode(bytes, contributions);
+      if (operation.isPresent()) {
+        return Optional.of(
+            Payload.builder()
+                .setOperation(operation.get())
+                .setContributions(contributions.build())
+                .build());
+      }
+      return Optional.of(cborMapper.readValue(bytes, Payload.class));
     } catch (IOException | ClassCastException | NullPointerException e) {
       // Exception is not included because stack trace includes the decrypted payload which is
       // private information
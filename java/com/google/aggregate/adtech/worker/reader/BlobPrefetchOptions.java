@@ -0,0 +1,61 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.auto.value.AutoValue;
+import com.google.inject.ProvidedBy;
+import com.google.inject.Provider;
+
+/**
+ * Options of the read-ahead of blobs by {@link BlobPrefetcher}: the size of the ranged reads issued
+ * ahead of the readers, and the budget of bytes shared by all the reads ahead in flight.
+ */
+@AutoValue
+@ProvidedBy(BlobPrefetchOptions.DefaultProvider.class)
+public abstract class BlobPrefetchOptions {
+
+  public static BlobPrefetchOptions create(int chunkSizeBytes, long budgetBytes) {
+    checkArgument(chunkSizeBytes > 0, "Chunk size must be positive.");
+    checkArgument(budgetBytes >= 0, "Budget must not be negative.");
+    return new AutoValue_BlobPrefetchOptions(chunkSizeBytes, budgetBytes);
+  }
+
+  /** Returns the default options: chunks of 4MB within a budget of 128MB. */
+  public static BlobPrefetchOptions defaults() {
+    return create(4 << 20, 128L << 20);
+  }
+
+  /** Size of the ranged reads of a blob. */
+  public abstract int chunkSizeBytes();
+
+  /**
+   * Bytes of the chunks read ahead of all readers at once, or 0 to read blobs without reading
+   * ahead. Each reader may also hold the chunk it reads from, and fetch the next one once it is
+   * done with it, outside of the budget.
+   */
+  public abstract long budgetBytes();
+
+  static final class DefaultProvider implements Provider<BlobPrefetchOptions> {
+
+    @Override
+    public BlobPrefetchOptions get() {
+      return defaults();
+    }
+  }
+}
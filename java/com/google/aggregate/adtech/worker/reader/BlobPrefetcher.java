@@ -0,0 +1,63 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Reads blobs ahead of their readers, when blobs can be read by range, so that the report and
+ * domain shard readers do not wait on blob storage for each chunk they decode. A budget of 0
+ * disables the reads ahead, and blob ranges are read directly.
+ *
+ * <p>The reads ahead run on their own threads rather than on the blocking thread pool the shard
+ * readers run on, which would otherwise fill up with readers waiting for their chunks.
+ */
+@Singleton
+public final class BlobPrefetcher {
+
+  private final Optional<RangedBlobReader> prefetchingReader;
+
+  @Inject
+  BlobPrefetcher(Optional<RangedBlobReader> rangedBlobReader, BlobPrefetchOptions options) {
+    this.prefetchingReader =
+        rangedBlobReader.map(
+            blobReader ->
+                blobReader.benefitsFromReadAhead() && options.budgetBytes() > 0
+                    ? new PrefetchingBlobReader(
+                        blobReader,
+                        options,
+                        MoreExecutors.listeningDecorator(
+                            Executors.newCachedThreadPool(
+                                new ThreadFactoryBuilder()
+                                    .setNameFormat("blob-prefetch-%d")
+                                    .setDaemon(true)
+                                    .build())))
+                    : blobReader);
+  }
+
+  /**
+   * Returns a reader of blob ranges, reading ahead where that helps, if blobs can be read by range.
+   */
+  public Optional<RangedBlobReader> reader() {
+    return prefetchingReader;
+  }
+}
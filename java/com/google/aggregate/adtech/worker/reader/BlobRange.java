@@ -0,0 +1,67 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+
+/** Range of the bytes of a blob, from {@code start} inclusive to {@code end} exclusive. */
+@AutoValue
+public abstract class BlobRange {
+
+  /** Returns the range of all the bytes of the blob. */
+  public static BlobRange wholeBlob(DataLocation location, long blobSize) {
+    return new AutoValue_BlobRange(location, blobSize, 0, blobSize);
+  }
+
+  /**
+   * Splits a blob into adjacent ranges of {@code rangeSizeBytes}, the last one possibly shorter.
+   */
+  public static ImmutableList<BlobRange> split(
+      DataLocation location, long blobSize, long rangeSizeBytes) {
+    checkArgument(rangeSizeBytes > 0, "Range size must be positive.");
+    if (blobSize <= rangeSizeBytes) {
+      return ImmutableList.of(wholeBlob(location, blobSize));
+    }
+    ImmutableList.Builder<BlobRange> ranges = ImmutableList.builder();
+    for (long start = 0; start < blobSize; start += rangeSizeBytes) {
+      ranges.add(
+          new AutoValue_BlobRange(
+              location, blobSize, start, Math.min(start + rangeSizeBytes, blobSize)));
+    }
+    return ranges.build();
+  }
+
+  public abstract DataLocation location();
+
+  public abstract long blobSize();
+
+  public abstract long start();
+
+  public abstract long end();
+
+  public long length() {
+    return end() - start();
+  }
+
+  public boolean isWholeBlob() {
+    return start() == 0 && end() == blobSize();
+  }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader;
+
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import java.io.IOException;
+
+/**
+ * Reads the versions of blobs from the metadata of blob storage. The version of a blob changes
+ * whenever the blob is written, so what is derived from a blob can be cached by its version.
+ */
+public interface BlobVersionReader {
+
+  /** Returns the version of the blob at the location, such as its entity tag or generation. */
+  String getBlobVersion(DataLocation location) throws IOException;
+}
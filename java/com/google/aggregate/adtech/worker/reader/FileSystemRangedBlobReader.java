@@ -0,0 +1,59 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+import com.google.common.io.ByteStreams;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import javax.inject.Inject;
+
+/**
+ * {@link RangedBlobReader} reading from a file system, laid out as by the file system blob storage
+ * client: the blob of a location is the file of its key under the directory of its bucket.
+ */
+public final class FileSystemRangedBlobReader implements RangedBlobReader {
+
+  private final FileSystem fileSystem;
+
+  @Inject
+  public FileSystemRangedBlobReader(FileSystem fileSystem) {
+    this.fileSystem = fileSystem;
+  }
+
+  @Override
+  public InputStream getBlobRange(DataLocation location, long offset, long length)
+      throws IOException {
+    BlobStoreDataLocation blobLocation = location.blobStoreDataLocation();
+    SeekableByteChannel channel =
+        Files.newByteChannel(fileSystem.getPath(blobLocation.bucket(), blobLocation.key()), READ);
+    try {
+      channel.position(offset);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+    return ByteStreams.limit(Channels.newInputStream(channel), length);
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static java.nio.file.StandardOpenOption.READ;
+
+import com.google.common.io.ByteStreams;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import javax.inject.Inject;
+
+/**
+ * {@link RangedBlobReader} memory-mapping the files of a file system, laid out as by the file
+ * system blob storage client: the blob of a location is the file of its key under the directory of
+ * its bucket.
+ *
+ * <p>Ranges are read straight from the page cache rather than copied through read calls into an
+ * intermediate buffer. Large ranges are mapped a window at a time, as a mapping holds at most 2GB.
+ * Files that cannot be mapped, such as those of in-memory file systems, are read as streams
+ * instead. A file must not be truncated while a range of it is read.
+ */
+public final class MappedBlobReader implements RangedBlobReader {
+
+  private static final long MAX_MAPPING_SIZE_BYTES = 1L << 30;
+
+  private final FileSystem fileSystem;
+  private final long maxMappingSizeBytes;
+
+  @Inject
+  public MappedBlobReader(FileSystem fileSystem) {
+    this(fileSystem, MAX_MAPPING_SIZE_BYTES);
+  }
+
+  MappedBlobReader(FileSystem fileSystem, long maxMappingSizeBytes) {
+    this.fileSystem = fileSystem;
+    this.maxMappingSizeBytes = maxMappingSizeBytes;
+  }
+
+  @Override
+  public InputStream getBlobRange(DataLocation location, long offset, long length)
+      throws IOException {
+    BlobStoreDataLocation blobLocation = location.blobStoreDataLocation();
+    SeekableByteChannel channel =
+        Files.newByteChannel(fileSystem.getPath(blobLocation.bucket(), blobLocation.key()), READ);
+    try {
+      if (channel instanceof FileChannel) {
+        // Mappings may not extend past the file, unlike the ranges of a stream.
+        // Callers pass Long.MAX_VALUE to read to the end, so offset + length may overflow.
+        long size = channel.size();
+        long start = Math.min(offset, size);
+        MappedInputStream mappedStream =
+            new MappedInputStream(
+                (FileChannel) channel, start, start + Math.min(length, size - start));
+        if (mappedStream.map()) {
+          return mappedStream;
+        }
+      }
+      channel.position(offset);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+    return ByteStreams.limit(Channels.newInputStream(channel), length);
+  }
+
+  /** The page cache reads ahead of mapped regions, so reading them ahead gains nothing. */
+  @Override
+  public boolean benefitsFromReadAhead() {
+    return false;
+  }
+
+  private final class MappedInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private final long end;
+    private long nextWindowStart;
+    private ByteBuffer window = ByteBuffer.allocate(0);
+    private boolean closed;
+
+    MappedInputStream(FileChannel channel, long start, long end) {
+      this.channel = channel;
+      this.end = end;
+      this.nextWindowStart = start;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!ensureWindow()) {
+        return -1;
+      }
+      return window.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      checkPositionIndexes(off, off + len, b.length);
+      if (len == 0) {
+        return 0;
+      }
+      if (!ensureWindow()) {
+        return -1;
+      }
+      int read = Math.min(len, window.remaining());
+      window.get(b, off, read);
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      if (n <= 0 || !ensureWindow()) {
+        return 0;
+      }
+      // Skipping within the window only, as a skip may return fewer bytes than asked.
+      int skipped = (int) Math.min(n, window.remaining());
+      window.position(window.position() + skipped);
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return window.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      // The mapping is released once the window is garbage collected.
+      window = ByteBuffer.allocate(0);
+      channel.close();
+    }
+
+    /** Maps the next window. Returns false if the file system cannot map files. */
+    boolean map() throws IOException {
+      long windowSize = Math.min(maxMappingSizeBytes, end - nextWindowStart);
+      try {
+        window = channel.map(MapMode.READ_ONLY, nextWindowStart, windowSize);
+      } catch (UnsupportedOperationException e) {
+        return false;
+      }
+      nextWindowStart += windowSize;
+      return true;
+    }
+
+    /** Maps the next window once the current one is read. Returns false at the end. */
+    private boolean ensureWindow() throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed.");
+      }
+      while (!window.hasRemaining()) {
+        if (nextWindowStart >= end) {
+          return false;
+        }
+        map();
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import com.google.common.base.Throwables;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * {@link RangedBlobReader} reading ahead of its readers. A range is fetched in chunks by ranged
+ * reads issued on a separate executor, so that the latency of blob storage overlaps with the
+ * decoding of the chunks already fetched.
+ *
+ * <p>The chunks read ahead take their bytes from a budget shared by all the ranges, so memory stays
+ * bounded however many ranges are read at once. A range always fetches the chunk following the one
+ * being read, so that it makes progress when the budget is spent. The first chunk of a range is
+ * small, and the read-ahead only starts once the reader reaches the second one, so that readers of
+ * the start of a range only, such as Avro readers of a file header, fetch little more than they
+ * read.
+ */
+public final class PrefetchingBlobReader implements RangedBlobReader {
+
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+  private static final int FIRST_CHUNK_SIZE_BYTES = 64 << 10;
+  // Most chunks of a range read ahead at once.
+  private static final int MAX_CHUNKS_AHEAD = 4;
+
+  private final RangedBlobReader blobReader;
+  private final int chunkSizeBytes;
+  private final ListeningExecutorService executor;
+  // Chunks that may be read ahead, over all ranges.
+  private final Semaphore budget;
+
+  /**
+   * Creates a reader reading ahead from {@code blobReader} on {@code executor}. The executor must
+   * not be one the readers of the ranges wait on, or chunks may wait for readers waiting for them.
+   */
+  public PrefetchingBlobReader(
+      RangedBlobReader blobReader,
+      BlobPrefetchOptions options,
+      ListeningExecutorService executor) {
+    this.blobReader = blobReader;
+    this.chunkSizeBytes = options.chunkSizeBytes();
+    this.executor = executor;
+    this.budget =
+        new Semaphore(Ints.saturatedCast(options.budgetBytes() / options.chunkSizeBytes()));
+  }
+
+  @Override
+  public InputStream getBlobRange(DataLocation location, long offset, long length) {
+    return new PrefetchingInputStream(location, offset, offset + length);
+  }
+
+  /** Returns the number of chunks that may currently be read ahead. */
+  int availableBudgetChunks() {
+    return budget.availablePermits();
+  }
+
+  private ByteBuffer fetch(DataLocation location, long start, int length) throws IOException {
+    byte[] chunk = new byte[length];
+    try (InputStream range = blobReader.getBlobRange(location, start, length)) {
+      ByteStreams.readFully(range, chunk);
+    }
+    return ByteBuffer.wrap(chunk);
+  }
+
+  private static ByteBuffer await(ListenableFuture<ByteBuffer> chunk) throws IOException {
+    try {
+      return chunk.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a chunk of the blob.");
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      throw new IOException("Failed to read a chunk of the blob.", e.getCause());
+    }
+  }
+
+  private static final class Chunk {
+
+    private final ListenableFuture<ByteBuffer> data;
+    private final boolean holdsBudget;
+
+    Chunk(ListenableFuture<ByteBuffer> data, boolean holdsBudget) {
+      this.data = data;
+      this.holdsBudget = holdsBudget;
+    }
+  }
+
+  private final class PrefetchingInputStream extends InputStream {
+
+    private final DataLocation location;
+    private final long start;
+    private final long end;
+    // Chunks fetched or being fetched after the current one, in order.
+    private final Deque<Chunk> chunks = new ArrayDeque<>();
+    private long nextChunkStart;
+    private int chunksRead;
+    private ByteBuffer current = EMPTY;
+    private boolean currentHoldsBudget;
+    private boolean closed;
+
+    PrefetchingInputStream(DataLocation location, long start, long end) {
+      this.location = location;
+      this.start = start;
+      this.end = end;
+      this.nextChunkStart = start;
+      if (start < end) {
+        fetchNextChunk(/* holdsBudget= */ false);
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!ensureCurrent()) {
+        return -1;
+      }
+      return current.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      checkPositionIndexes(off, off + len, b.length);
+      if (len == 0) {
+        return 0;
+      }
+      if (!ensureCurrent()) {
+        return -1;
+      }
+      int read = Math.min(len, current.remaining());
+      current.get(b, off, read);
+      return read;
+    }
+
+    @Override
+    public int available() {
+      return current.remaining();
+    }
+
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      releaseCurrent();
+      for (Chunk chunk : chunks) {
+        chunk.data.cancel(/* mayInterruptIfRunning= */ true);
+        if (chunk.holdsBudget) {
+          budget.release();
+        }
+      }
+      chunks.clear();
+    }
+
+    /** Moves to the next chunk once the current one is read. Returns false at the end. */
+    private boolean ensureCurrent() throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed.");
+      }
+      while (!current.hasRemaining()) {
+        Chunk chunk = chunks.poll();
+        if (chunk == null) {
+          return false;
+        }
+        releaseCurrent();
+        currentHoldsBudget = chunk.holdsBudget;
+        chunksRead++;
+        fetchAhead();
+        current = await(chunk.data);
+      }
+      return true;
+    }
+
+    private void fetchAhead() {
+      if (chunks.isEmpty() && nextChunkStart < end) {
+        fetchNextChunk(/* holdsBudget= */ false);
+      }
+      while (chunksRead > 1
+          && chunks.size() < MAX_CHUNKS_AHEAD
+          && nextChunkStart < end
+          && budget.tryAcquire()) {
+        fetchNextChunk(/* holdsBudget= */ true);
+      }
+    }
+
+    private void fetchNextChunk(boolean holdsBudget) {
+      long chunkStart = nextChunkStart;
+      int chunkSize =
+          chunkStart == start ? Math.min(FIRST_CHUNK_SIZE_BYTES, chunkSizeBytes) : chunkSizeBytes;
+      int chunkLength = (int) Math.min(chunkSize, end - chunkStart);
+      nextChunkStart += chunkLength;
+      chunks.add(
+          new Chunk(
+              executor.submit(() -> fetch(location, chunkStart, chunkLength)), holdsBudget));
+    }
+
+    private void releaseCurrent() {
+      current = EMPTY;
+      if (currentHoldsBudget) {
+        currentHoldsBudget = false;
+        budget.release();
+      }
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader;
+
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.file.SeekableInput;
+
+/**
+ * Blob read as a {@link SeekableInput}, for Avro readers of ranges of a blob. Each seek to another
+ * position opens a ranged read from that position, closed once the input moves elsewhere or is
+ * closed, so that only the bytes actually read are fetched.
+ *
+ * <p>A reader of a range reads the Avro blocks starting in it, the last of which may end past the
+ * range. Reads therefore stop one block past the end of the range rather than at the end of the
+ * blob, and a reader going further still is served by another read, to the end of the blob.
+ */
+public final class RangedBlobInput implements SeekableInput {
+
+  /** Bytes read past the end of the range, for the block starting last in it. */
+  static final long BLOCK_SLACK_BYTES = DataFileConstants.DEFAULT_SYNC_INTERVAL;
+
+  private final RangedBlobReader blobReader;
+  private final DataLocation location;
+  private final long blobSize;
+  private final long readEnd;
+  // Null until read from the current position.
+  private InputStream blobStream;
+  // End of the read blobStream was opened for.
+  private long blobStreamEnd;
+  private long position;
+
+  /** Creates an input reading from anywhere up to the end of the blob. */
+  public RangedBlobInput(RangedBlobReader blobReader, DataLocation location, long blobSize) {
+    this(blobReader, location, blobSize, blobSize);
+  }
+
+  /**
+   * Creates an input for a reader of the Avro blocks starting before {@code rangeEnd}, which reads
+   * up to one block past it.
+   */
+  public RangedBlobInput(
+      RangedBlobReader blobReader, DataLocation location, long blobSize, long rangeEnd) {
+    this.blobReader = blobReader;
+    this.location = location;
+    this.blobSize = blobSize;
+    this.readEnd =
+        rangeEnd >= blobSize - BLOCK_SLACK_BYTES ? blobSize : rangeEnd + BLOCK_SLACK_BYTES;
+  }
+
+  @Override
+  public void seek(long p) throws IOException {
+    if (p == position) {
+      return;
+    }
+    if (p < 0 || p > blobSize) {
+      throw new IOException("Position " + p + " out of a blob of " + blobSize + " bytes.");
+    }
+    close();
+    position = p;
+  }
+
+  @Override
+  public long tell() {
+    return position;
+  }
+
+  @Override
+  public long length() {
+    return blobSize;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (position == blobSize) {
+      return -1;
+    }
+    if (blobStream != null && position == blobStreamEnd) {
+      // Read past the slack, so the rest of the blob is read.
+      close();
+    }
+    if (blobStream == null) {
+      blobStreamEnd = position < readEnd ? readEnd : blobSize;
+      blobStream = blobReader.getBlobRange(location, position, blobStreamEnd - position);
+    }
+    int read = blobStream.read(b, off, len);
+    if (read > 0) {
+      position += read;
+    }
+    return read;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (blobStream != null) {
+      InputStream stream = blobStream;
+      blobStream = null;
+      stream.close();
+    }
+  }
+}
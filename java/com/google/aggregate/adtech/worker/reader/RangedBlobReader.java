@@ -0,0 +1,39 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader;
+
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads ranges of blobs, as ranged reads of blob storage do, so that the parts of a large blob can
+ * be read concurrently.
+ */
+public interface RangedBlobReader {
+
+  /** Opens a stream of {@code length} bytes of the blob at the location, from {@code offset}. */
+  InputStream getBlobRange(DataLocation location, long offset, long length) throws IOException;
+
+  /**
+   * Returns whether reading ranges ahead of their readers saves them waiting for the blobs, as it
+   * does for blob storage.
+   */
+  default boolean benefitsFromReadAhead() {
+    return true;
+  }
+}
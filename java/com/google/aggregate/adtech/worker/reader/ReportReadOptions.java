@@ -0,0 +1,53 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.auto.value.AutoValue;
+import com.google.inject.ProvidedBy;
+import com.google.inject.Provider;
+
+/**
+ * Options of the reading of report shards. Shards larger than the range size are split into ranges
+ * read concurrently, when a {@link RangedBlobReader} is bound.
+ */
+@AutoValue
+@ProvidedBy(ReportReadOptions.DefaultProvider.class)
+public abstract class ReportReadOptions {
+
+  public static ReportReadOptions create(long rangeSizeBytes) {
+    checkArgument(rangeSizeBytes > 0, "Range size must be positive.");
+    return new AutoValue_ReportReadOptions(rangeSizeBytes);
+  }
+
+  /** Returns the default options: ranges of 256MB. */
+  public static ReportReadOptions defaults() {
+    return create(256L << 20);
+  }
+
+  /** Approximate size of the ranges of a shard read concurrently. */
+  public abstract long rangeSizeBytes();
+
+  static final class DefaultProvider implements Provider<ReportReadOptions> {
+
+    @Override
+    public ReportReadOptions get() {
+      return defaults();
+    }
+  }
+}
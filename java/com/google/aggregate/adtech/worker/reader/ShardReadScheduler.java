@@ -0,0 +1,138 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.errorprone.annotations.Var;
+import com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient;
+import com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient.BlobStorageClientException;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.reactivex.rxjava3.core.Flowable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the reads of the shards of a job by size rather than in listing order.
+ *
+ * <p>The sizes of all the shards are fetched concurrently up front, and the largest shards are read
+ * first, so that a large shard listed last does not leave a single thread reading at the end of the
+ * job. Small shards are combined into shared read tasks, read one after the other, so that they do
+ * not each take a read slot.
+ */
+public final class ShardReadScheduler {
+
+  /** Size up to which small shards are combined into a single read task. */
+  public static final long COMBINED_READ_SIZE_BYTES = 8L << 20;
+
+  /** Most shards combined into a single read task, as each one is opened separately. */
+  static final int MAX_COMBINED_READS = 16;
+
+  // Attribute of the job, under the name used by the job timers.
+  private static final AttributeKey<String> JOB_ID_KEY = AttributeKey.stringKey("job-id");
+
+  private ShardReadScheduler() {}
+
+  /** Returns the whole blob ranges of the shards, their sizes fetched concurrently. */
+  public static ImmutableList<BlobRange> sizeShards(
+      BlobStorageClient blobStorageClient,
+      ImmutableList<DataLocation> shards,
+      ListeningExecutorService executor)
+      throws BlobStorageClientException, InterruptedException {
+    ImmutableList<ListenableFuture<BlobRange>> sizedShards =
+        shards.stream()
+            .map(
+                shard ->
+                    executor.submit(
+                        () -> BlobRange.wholeBlob(shard, blobStorageClient.getBlobSize(shard))))
+            .collect(toImmutableList());
+    try {
+      return ImmutableList.copyOf(Futures.allAsList(sizedShards).get());
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), BlobStorageClientException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      sizedShards.forEach(sizedShard -> sizedShard.cancel(/* mayInterruptIfRunning= */ true));
+    }
+  }
+
+  /**
+   * Groups the ranges into read tasks, largest first. Ranges smaller than {@code
+   * combinedReadSizeBytes} are combined into tasks of up to that size; the others are read alone.
+   */
+  public static ImmutableList<ImmutableList<BlobRange>> schedule(
+      ImmutableList<BlobRange> ranges, long combinedReadSizeBytes) {
+    ImmutableList.Builder<ImmutableList<BlobRange>> tasks = ImmutableList.builder();
+    List<BlobRange> combinedRanges = new ArrayList<>();
+    @Var long combinedBytes = 0;
+    for (BlobRange range :
+        ImmutableList.sortedCopyOf(
+            Comparator.comparingLong(BlobRange::length).reversed(), ranges)) {
+      if (range.length() >= combinedReadSizeBytes) {
+        tasks.add(ImmutableList.of(range));
+        continue;
+      }
+      if (combinedBytes + range.length() > combinedReadSizeBytes
+          || combinedRanges.size() == MAX_COMBINED_READS) {
+        tasks.add(ImmutableList.copyOf(combinedRanges));
+        combinedRanges.clear();
+        combinedBytes = 0;
+      }
+      combinedRanges.add(range);
+      combinedBytes += range.length();
+    }
+    if (!combinedRanges.isEmpty()) {
+      tasks.add(ImmutableList.copyOf(combinedRanges));
+    }
+    return tasks.build();
+  }
+
+  /**
+   * Times the read of a range, from its subscription to its termination, recording the time in
+   * milliseconds to a histogram with the attributes of the job. Reads are not named after their
+   * ranges, so the number of series does not grow with the shards read by the worker.
+   *
+   * @param jobAttributes attributes of the job, from {@link #jobAttributes}
+   */
+  public static <T> Flowable<T> timeRead(
+      LongHistogram readTimes, Attributes jobAttributes, Flowable<T> read) {
+    return Flowable.defer(
+        () -> {
+          Stopwatch stopwatch = Stopwatch.createStarted();
+          return read.doFinally(
+              () -> readTimes.record(stopwatch.elapsed(TimeUnit.MILLISECONDS), jobAttributes));
+        });
+  }
+
+  /** Returns the attributes of the reads of the job. */
+  public static Attributes jobAttributes(String jobKey) {
+    return Attributes.of(JOB_ID_KEY, jobKey);
+  }
+}
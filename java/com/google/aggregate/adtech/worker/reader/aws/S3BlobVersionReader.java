@@ -0,0 +1,53 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader.aws;
+
+import com.google.aggregate.adtech.worker.reader.BlobVersionReader;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
+import java.io.IOException;
+import javax.inject.Inject;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+
+/** {@link BlobVersionReader} returning the entity tag of S3 objects, from a HeadObject request. */
+public final class S3BlobVersionReader implements BlobVersionReader {
+
+  private final S3Client s3Client;
+
+  @Inject
+  public S3BlobVersionReader(S3Client s3Client) {
+    this.s3Client = s3Client;
+  }
+
+  @Override
+  public String getBlobVersion(DataLocation location) throws IOException {
+    BlobStoreDataLocation blobLocation = location.blobStoreDataLocation();
+    try {
+      return s3Client
+          .headObject(
+              HeadObjectRequest.builder()
+                  .bucket(blobLocation.bucket())
+                  .key(blobLocation.key())
+                  .build())
+          .eTag();
+    } catch (SdkException e) {
+      throw new IOException("Failed to read the version of " + blobLocation.key() + ".", e);
+    }
+  }
+}
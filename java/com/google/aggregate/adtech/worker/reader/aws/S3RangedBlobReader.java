@@ -0,0 +1,121 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader.aws;
+
+import com.google.aggregate.adtech.worker.reader.RangedBlobReader;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.inject.Inject;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/** {@link RangedBlobReader} issuing S3 GetObject requests with a byte range. */
+public final class S3RangedBlobReader implements RangedBlobReader {
+
+  private static final int RANGE_NOT_SATISFIABLE = 416;
+
+  private final S3Client s3Client;
+
+  @Inject
+  public S3RangedBlobReader(S3Client s3Client) {
+    this.s3Client = s3Client;
+  }
+
+  @Override
+  public InputStream getBlobRange(DataLocation location, long offset, long length)
+      throws IOException {
+    if (length <= 0) {
+      return InputStream.nullInputStream();
+    }
+    BlobStoreDataLocation blobLocation = location.blobStoreDataLocation();
+    // Callers pass Long.MAX_VALUE to read to the end, so offset + length may overflow.
+    String range =
+        length > Long.MAX_VALUE - offset
+            ? String.format("bytes=%d-", offset)
+            : String.format("bytes=%d-%d", offset, offset + length - 1);
+    try {
+      return new RangeInputStream(
+          s3Client.getObject(
+              GetObjectRequest.builder()
+                  .bucket(blobLocation.bucket())
+                  .key(blobLocation.key())
+                  .range(range)
+                  .build()));
+    } catch (S3Exception e) {
+      if (e.statusCode() == RANGE_NOT_SATISFIABLE) {
+        // The range starts past the end of the object.
+        return InputStream.nullInputStream();
+      }
+      throw new IOException("Failed to read " + range + " of " + blobLocation.key() + ".", e);
+    } catch (SdkException e) {
+      throw new IOException("Failed to read " + range + " of " + blobLocation.key() + ".", e);
+    }
+  }
+
+  /**
+   * Response stream aborting the request when closed before the end of the range, as closing it
+   * would otherwise read the rest of the range to reuse the connection.
+   */
+  private static final class RangeInputStream extends FilterInputStream {
+
+    private final ResponseInputStream<GetObjectResponse> response;
+    private long remaining;
+
+    RangeInputStream(ResponseInputStream<GetObjectResponse> response) {
+      super(response);
+      this.response = response;
+      Long contentLength = response.response().contentLength();
+      this.remaining = contentLength == null ? Long.MAX_VALUE : contentLength;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int read = super.read();
+      remaining = read < 0 ? 0 : remaining - 1;
+      return read;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = super.read(b, off, len);
+      remaining = read < 0 ? 0 : remaining - read;
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      remaining -= skipped;
+      return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (remaining > 0) {
+        response.abort();
+      }
+      super.close();
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader.gcp;
+
+import com.google.aggregate.adtech.worker.reader.BlobVersionReader;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.Storage.BlobField;
+import com.google.cloud.storage.Storage.BlobGetOption;
+import com.google.cloud.storage.StorageException;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import javax.inject.Inject;
+
+/** {@link BlobVersionReader} returning the generation of GCS objects. */
+public final class GcsBlobVersionReader implements BlobVersionReader {
+
+  private final Storage storage;
+
+  @Inject
+  public GcsBlobVersionReader(Storage storage) {
+    this.storage = storage;
+  }
+
+  @Override
+  public String getBlobVersion(DataLocation location) throws IOException {
+    BlobStoreDataLocation blobLocation = location.blobStoreDataLocation();
+    Blob blob;
+    try {
+      blob =
+          storage.get(
+              BlobId.of(blobLocation.bucket(), blobLocation.key()),
+              BlobGetOption.fields(BlobField.GENERATION));
+    } catch (StorageException e) {
+      throw new IOException("Failed to read the version of " + blobLocation.key() + ".", e);
+    }
+    if (blob == null) {
+      throw new FileNotFoundException(blobLocation.key() + " does not exist.");
+    }
+    return Long.toString(blob.getGeneration());
+  }
+}
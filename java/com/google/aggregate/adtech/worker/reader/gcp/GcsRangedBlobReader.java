@@ -0,0 +1,68 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader.gcp;
+
+import com.google.aggregate.adtech.worker.reader.RangedBlobReader;
+import com.google.cloud.ReadChannel;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import com.google.common.math.LongMath;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import javax.inject.Inject;
+
+/**
+ * {@link RangedBlobReader} reading GCS objects through a read channel sought to the start of the
+ * range and limited to its end.
+ */
+public final class GcsRangedBlobReader implements RangedBlobReader {
+
+  private final Storage storage;
+
+  @Inject
+  public GcsRangedBlobReader(Storage storage) {
+    this.storage = storage;
+  }
+
+  @Override
+  public InputStream getBlobRange(DataLocation location, long offset, long length)
+      throws IOException {
+    if (length <= 0) {
+      return InputStream.nullInputStream();
+    }
+    BlobStoreDataLocation blobLocation = location.blobStoreDataLocation();
+    ReadChannel channel;
+    try {
+      channel = storage.reader(BlobId.of(blobLocation.bucket(), blobLocation.key()));
+    } catch (StorageException e) {
+      throw new IOException("Failed to read " + blobLocation.key() + ".", e);
+    }
+    try {
+      channel.seek(offset);
+      // Callers pass Long.MAX_VALUE to read to the end, so offset + length may overflow.
+      channel.limit(LongMath.saturatedAdd(offset, length));
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+    return Channels.newInputStream(channel);
+  }
+}
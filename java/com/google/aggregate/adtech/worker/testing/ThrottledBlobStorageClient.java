@@ -0,0 +1,46 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.testing;
+
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.testing.FSBlobStorageClient;
+import java.io.InputStream;
+import java.nio.file.FileSystem;
+import java.time.Duration;
+
+/**
+ * Blob storage client of a file system with the latency and bandwidth of blob storage, to measure
+ * how reading blobs is affected by them without a network. Each blob read waits for {@code
+ * firstByteLatency} before its first byte, then reads at {@code bytesPerSecond}.
+ */
+public final class ThrottledBlobStorageClient extends FSBlobStorageClient {
+
+  private final Duration firstByteLatency;
+  private final long bytesPerSecond;
+
+  public ThrottledBlobStorageClient(
+      FileSystem fileSystem, Duration firstByteLatency, long bytesPerSecond) {
+    super(fileSystem);
+    this.firstByteLatency = firstByteLatency;
+    this.bytesPerSecond = bytesPerSecond;
+  }
+
+  @Override
+  public InputStream getBlob(DataLocation location) throws BlobStorageClientException {
+    return new ThrottledInputStream(super.getBlob(location), firstByteLatency, bytesPerSecond);
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.testing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stream slowed down as a stream of blob storage: the first byte comes after a latency, and the
+ * bytes after it at a bandwidth.
+ */
+final class ThrottledInputStream extends FilterInputStream {
+
+  private final Duration firstByteLatency;
+  private final long bytesPerSecond;
+  private boolean started;
+
+  ThrottledInputStream(InputStream in, Duration firstByteLatency, long bytesPerSecond) {
+    super(in);
+    checkArgument(bytesPerSecond > 0, "Bandwidth must be positive.");
+    this.firstByteLatency = firstByteLatency;
+    this.bytesPerSecond = bytesPerSecond;
+  }
+
+  @Override
+  public int read() throws IOException {
+    awaitFirstByte();
+    int b = super.read();
+    if (b >= 0) {
+      pause(1);
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    awaitFirstByte();
+    int read = super.read(b, off, len);
+    if (read > 0) {
+      pause(read);
+    }
+    return read;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    awaitFirstByte();
+    long skipped = super.skip(n);
+    pause(skipped);
+    return skipped;
+  }
+
+  private void awaitFirstByte() throws IOException {
+    if (!started) {
+      started = true;
+      sleep(firstByteLatency.toNanos());
+    }
+  }
+
+  private void pause(long bytes) throws IOException {
+    sleep(bytes * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond);
+  }
+
+  private static void sleep(long nanos) throws IOException {
+    try {
+      TimeUnit.NANOSECONDS.sleep(nanos);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while throttled.");
+    }
+  }
+}
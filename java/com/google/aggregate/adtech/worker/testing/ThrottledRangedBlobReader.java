@@ -0,0 +1,49 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.testing;
+
+import com.google.aggregate.adtech.worker.reader.RangedBlobReader;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+
+/**
+ * {@link RangedBlobReader} with the latency and bandwidth of blob storage, as {@link
+ * ThrottledBlobStorageClient} reads whole blobs. Each ranged read is throttled on its own, as
+ * concurrent requests to blob storage are.
+ */
+public final class ThrottledRangedBlobReader implements RangedBlobReader {
+
+  private final RangedBlobReader blobReader;
+  private final Duration firstByteLatency;
+  private final long bytesPerSecond;
+
+  public ThrottledRangedBlobReader(
+      RangedBlobReader blobReader, Duration firstByteLatency, long bytesPerSecond) {
+    this.blobReader = blobReader;
+    this.firstByteLatency = firstByteLatency;
+    this.bytesPerSecond = bytesPerSecond;
+  }
+
+  @Override
+  public InputStream getBlobRange(DataLocation location, long offset, long length)
+      throws IOException {
+    return new ThrottledInputStream(
+        blobReader.getBlobRange(location, offset, length), firstByteLatency, bytesPerSecond);
+  }
+}
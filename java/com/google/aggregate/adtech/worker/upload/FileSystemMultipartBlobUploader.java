@@ -0,0 +1,114 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.upload;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import com.google.errorprone.annotations.Var;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.inject.Inject;
+
+/**
+ * {@link MultipartBlobUploader} writing to a file system, laid out as by the file system blob
+ * storage client: the blob of a location is the file of its key under the directory of its bucket.
+ * Each part is written once, at its offset in a staging file next to the blob, which is moved over
+ * the blob on completion. It stands in for blob storage in local runs and tests.
+ */
+public final class FileSystemMultipartBlobUploader implements MultipartBlobUploader {
+
+  private static final String STAGING_FILE_SUFFIX = ".upload";
+
+  private final FileSystem fileSystem;
+
+  @Inject
+  public FileSystemMultipartBlobUploader(FileSystem fileSystem) {
+    this.fileSystem = fileSystem;
+  }
+
+  @Override
+  public MultipartUpload start(DataLocation location, int partSizeBytes) throws IOException {
+    checkArgument(partSizeBytes > 0, "Part size must be positive.");
+    BlobStoreDataLocation blobLocation = location.blobStoreDataLocation();
+    Path blob = fileSystem.getPath(blobLocation.bucket(), blobLocation.key());
+    Path directory = blob.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    Path staging =
+        Files.createTempFile(directory, blob.getFileName().toString(), STAGING_FILE_SUFFIX);
+    return new FileSystemUpload(blob, staging, partSizeBytes);
+  }
+
+  private static final class FileSystemUpload implements MultipartUpload {
+
+    private final Path blob;
+    private final Path staging;
+    private final int partSizeBytes;
+    // Length of each part written to the staging file, by part number.
+    private final Map<Integer, Integer> partLengths = new ConcurrentHashMap<>();
+
+    FileSystemUpload(Path blob, Path staging, int partSizeBytes) {
+      this.blob = blob;
+      this.staging = staging;
+      this.partSizeBytes = partSizeBytes;
+    }
+
+    @Override
+    public void uploadPart(int partNumber, ByteBuffer part) throws IOException {
+      checkArgument(partNumber > 0, "Parts are numbered from 1.");
+      checkArgument(part.remaining() <= partSizeBytes, "Part %s is too long.", partNumber);
+      int length = part.remaining();
+      try (FileChannel channel = FileChannel.open(staging, WRITE)) {
+        @Var long position = (long) (partNumber - 1) * partSizeBytes;
+        while (part.hasRemaining()) {
+          position += channel.write(part, position);
+        }
+      }
+      partLengths.put(partNumber, length);
+    }
+
+    @Override
+    public void complete() throws IOException {
+      int partCount = partLengths.size();
+      for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+        Integer length = partLengths.get(partNumber);
+        if (length == null) {
+          throw new IOException("Part " + partNumber + " of " + blob + " was not uploaded.");
+        }
+        if (partNumber < partCount && length != partSizeBytes) {
+          throw new IOException("Part " + partNumber + " of " + blob + " is too short.");
+        }
+      }
+      Files.move(staging, blob, REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    @Override
+    public void abort() throws IOException {
+      Files.deleteIfExists(staging);
+    }
+  }
+}
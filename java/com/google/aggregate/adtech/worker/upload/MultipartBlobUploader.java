@@ -0,0 +1,57 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.upload;
+
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Uploads a blob in parts, as multipart or resumable uploads of blob storage do, so that the blob
+ * never has to be staged in a local file.
+ */
+public interface MultipartBlobUploader {
+
+  /** Smallest part size accepted by blob storage for all but the last part of an upload. */
+  int MIN_PART_SIZE_BYTES = 5 << 20;
+
+  /**
+   * Starts the upload of the blob at the location, in parts of {@code partSizeBytes} bytes except
+   * for the last one, which may be shorter.
+   */
+  MultipartUpload start(DataLocation location, int partSizeBytes) throws IOException;
+
+  /**
+   * Upload of a blob in progress. The blob is not visible until the upload is completed, and is
+   * made of its parts in the order of their numbers.
+   */
+  interface MultipartUpload {
+
+    /**
+     * Uploads a part of the blob. Parts are numbered from 1 and may be uploaded concurrently; all
+     * but the last are as long as the part size the upload was started with, which blob storage
+     * requires to be at least {@link MultipartBlobUploader#MIN_PART_SIZE_BYTES}.
+     */
+    void uploadPart(int partNumber, ByteBuffer part) throws IOException;
+
+    /** Makes the blob of the uploaded parts visible. */
+    void complete() throws IOException;
+
+    /** Discards the uploaded parts, leaving any existing blob at the location untouched. */
+    void abort() throws IOException;
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.upload;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.aggregate.adtech.worker.upload.MultipartBlobUploader.MultipartUpload;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.errorprone.annotations.Var;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stream that encodes a blob into in-memory parts and uploads each full part while the next one is
+ * written.
+ *
+ * <p>At most a fixed number of part buffers exist at once, reused from one part to the next:
+ * writing blocks while all of them are filled or being uploaded, so memory stays bounded however
+ * large the blob is. Closing the stream uploads the last part and waits for all parts; the blob is
+ * only made visible by {@link #complete}, so a stream closed after a failed write can still be
+ * {@link #abort aborted}.
+ */
+public final class PartUploadOutputStream extends OutputStream {
+
+  private final MultipartUpload upload;
+  private final int partSizeBytes;
+  private final int maxBufferedParts;
+  private final ListeningExecutorService uploadExecutor;
+  // Part buffers not being filled or uploaded.
+  private final BlockingQueue<ByteBuffer> idleParts;
+  private final List<ListenableFuture<Void>> partUploads = new ArrayList<>();
+  private final AtomicReference<IOException> uploadFailure = new AtomicReference<>();
+  private int allocatedParts;
+  private ByteBuffer part;
+  private int partCount;
+  private boolean closed;
+
+  public PartUploadOutputStream(
+      MultipartUpload upload,
+      int partSizeBytes,
+      int maxBufferedParts,
+      ListeningExecutorService uploadExecutor) {
+    checkArgument(partSizeBytes > 0, "Part size must be positive.");
+    checkArgument(maxBufferedParts > 0, "At least one part must be buffered.");
+    this.upload = upload;
+    this.partSizeBytes = partSizeBytes;
+    this.maxBufferedParts = maxBufferedParts;
+    this.uploadExecutor = uploadExecutor;
+    this.idleParts = new ArrayBlockingQueue<>(maxBufferedParts);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensurePart();
+    part.put((byte) b);
+    if (!part.hasRemaining()) {
+      uploadPart();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, @Var int off, @Var int len) throws IOException {
+    while (len > 0) {
+      ensurePart();
+      int chunk = Math.min(len, part.remaining());
+      part.put(b, off, chunk);
+      off += chunk;
+      len -= chunk;
+      if (!part.hasRemaining()) {
+        uploadPart();
+      }
+    }
+  }
+
+  /** Uploads the last part and waits for all parts to be uploaded. */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    // A blob has at least one part, possibly empty.
+    if (part != null || partCount == 0) {
+      ensurePart();
+      uploadPart();
+    }
+    closed = true;
+    awaitPartUploads();
+  }
+
+  /** Closes the stream if needed, then makes the uploaded blob visible. */
+  public void complete() throws IOException {
+    close();
+    throwIfUploadFailed();
+    upload.complete();
+  }
+
+  /** Discards the parts uploaded so far, once the uploads in flight are done. */
+  public void abort() throws IOException {
+    closed = true;
+    try {
+      Futures.successfulAsList(partUploads).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      // successfulAsList does not fail.
+    }
+    upload.abort();
+  }
+
+  private void ensurePart() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed.");
+    }
+    if (part != null) {
+      return;
+    }
+    throwIfUploadFailed();
+    @Var ByteBuffer idlePart = idleParts.poll();
+    if (idlePart == null && allocatedParts < maxBufferedParts) {
+      allocatedParts++;
+      idlePart = ByteBuffer.allocate(partSizeBytes);
+    }
+    if (idlePart == null) {
+      try {
+        idlePart = idleParts.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a part upload.");
+      }
+      // The part may have been released by a failed upload.
+      throwIfUploadFailed();
+    }
+    idlePart.clear();
+    part = idlePart;
+  }
+
+  private void uploadPart() {
+    ByteBuffer filledPart = part;
+    part = null;
+    filledPart.flip();
+    int partNumber = ++partCount;
+    partUploads.add(
+        uploadExecutor.submit(
+            () -> {
+              try {
+                upload.uploadPart(partNumber, filledPart.asReadOnlyBuffer());
+              } catch (IOException | RuntimeException e) {
+                uploadFailure.compareAndSet(
+                    null, e instanceof IOException ? (IOException) e : new IOException(e));
+                throw e;
+              } finally {
+                idleParts.add(filledPart);
+              }
+              return null;
+            }));
+  }
+
+  private void awaitPartUploads() throws IOException {
+    try {
+      Futures.allAsList(partUploads).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the part uploads.");
+    } catch (ExecutionException e) {
+      throwIfUploadFailed();
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private void throwIfUploadFailed() throws IOException {
+    IOException failure = uploadFailure.get();
+    if (failure != null) {
+      throw new IOException("Failed to upload a part.", failure);
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.upload.aws;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.aggregate.adtech.worker.upload.MultipartBlobUploader;
+import com.google.common.collect.ImmutableList;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import javax.inject.Inject;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+/**
+ * {@link MultipartBlobUploader} backed by S3 multipart uploads: each part is sent as an upload part
+ * and S3 assembles the object when the upload is completed.
+ */
+public final class S3MultipartBlobUploader implements MultipartBlobUploader {
+
+  private final S3Client s3Client;
+
+  @Inject
+  public S3MultipartBlobUploader(S3Client s3Client) {
+    this.s3Client = s3Client;
+  }
+
+  @Override
+  public MultipartUpload start(DataLocation location, int partSizeBytes) throws IOException {
+    checkArgument(
+        partSizeBytes >= MIN_PART_SIZE_BYTES,
+        "S3 parts must be at least %s bytes.",
+        MIN_PART_SIZE_BYTES);
+    BlobStoreDataLocation blobLocation = location.blobStoreDataLocation();
+    try {
+      String uploadId =
+          s3Client
+              .createMultipartUpload(
+                  CreateMultipartUploadRequest.builder()
+                      .bucket(blobLocation.bucket())
+                      .key(blobLocation.key())
+                      .build())
+              .uploadId();
+      return new S3Upload(blobLocation, uploadId);
+    } catch (SdkException e) {
+      throw new IOException("Failed to start the upload of " + blobLocation.key() + ".", e);
+    }
+  }
+
+  private final class S3Upload implements MultipartUpload {
+
+    private final BlobStoreDataLocation blobLocation;
+    private final String uploadId;
+    // ETag of each uploaded part, by part number.
+    private final Map<Integer, String> partETags = new ConcurrentSkipListMap<>();
+
+    S3Upload(BlobStoreDataLocation blobLocation, String uploadId) {
+      this.blobLocation = blobLocation;
+      this.uploadId = uploadId;
+    }
+
+    @Override
+    public void uploadPart(int partNumber, ByteBuffer part) throws IOException {
+      checkArgument(partNumber > 0, "Parts are numbered from 1.");
+      try {
+        String eTag =
+            s3Client
+                .uploadPart(
+                    UploadPartRequest.builder()
+                        .bucket(blobLocation.bucket())
+                        .key(blobLocation.key())
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .contentLength((long) part.remaining())
+                        .build(),
+                    RequestBody.fromByteBuffer(part))
+                .eTag();
+        partETags.put(partNumber, eTag);
+      } catch (SdkException e) {
+        throw new IOException(
+            "Failed to upload part " + partNumber + " of " + blobLocation.key() + ".", e);
+      }
+    }
+
+    @Override
+    public void complete() throws IOException {
+      ImmutableList<CompletedPart> parts =
+          partETags.entrySet().stream()
+              .map(
+                  part ->
+                      CompletedPart.builder()
+                          .partNumber(part.getKey())
+                          .eTag(part.getValue())
+                          .build())
+              .collect(toImmutableList());
+      try {
+        s3Client.completeMultipartUpload(
+            CompleteMultipartUploadRequest.builder()
+                .bucket(blobLocation.bucket())
+                .key(blobLocation.key())
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                .build());
+      } catch (SdkException e) {
+        throw new IOException("Failed to complete the upload of " + blobLocation.key() + ".", e);
+      }
+    }
+
+    @Override
+    public void abort() throws IOException {
+      try {
+        s3Client.abortMultipartUpload(
+            AbortMultipartUploadRequest.builder()
+                .bucket(blobLocation.bucket())
+                .key(blobLocation.key())
+                .uploadId(uploadId)
+                .build());
+      } catch (SdkException e) {
+        throw new IOException("Failed to abort the upload of " + blobLocation.key() + ".", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.upload.gcp;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.aggregate.adtech.worker.upload.MultipartBlobUploader;
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import javax.inject.Inject;
+
+/**
+ * {@link MultipartBlobUploader} backed by a GCS resumable upload: the parts are written to the
+ * upload in order, and the object is only created when the upload is completed. An upload that is
+ * aborted or never completed leaves no object behind.
+ */
+public final class GcsMultipartBlobUploader implements MultipartBlobUploader {
+
+  private final Storage storage;
+
+  @Inject
+  public GcsMultipartBlobUploader(Storage storage) {
+    this.storage = storage;
+  }
+
+  @Override
+  public MultipartUpload start(DataLocation location, int partSizeBytes) throws IOException {
+    checkArgument(partSizeBytes > 0, "Part size must be positive.");
+    BlobStoreDataLocation blobLocation = location.blobStoreDataLocation();
+    try {
+      WriteChannel writer =
+          storage.writer(BlobInfo.newBuilder(blobLocation.bucket(), blobLocation.key()).build());
+      // Sends each part in one request, the chunk size being rounded up to what GCS accepts.
+      writer.setChunkSize(partSizeBytes);
+      return new GcsUpload(blobLocation, writer);
+    } catch (StorageException e) {
+      throw new IOException("Failed to start the upload of " + blobLocation.key() + ".", e);
+    }
+  }
+
+  private static final class GcsUpload implements MultipartUpload {
+
+    private final BlobStoreDataLocation blobLocation;
+    private final WriteChannel writer;
+    // Copies of the parts uploaded before their predecessors, by part number. The part buffers of
+    // the callers are reused once uploadPart returns.
+    private final Map<Integer, ByteBuffer> pendingParts = new HashMap<>();
+    private int nextPartNumber = 1;
+    private boolean failed;
+
+    GcsUpload(BlobStoreDataLocation blobLocation, WriteChannel writer) {
+      this.blobLocation = blobLocation;
+      this.writer = writer;
+    }
+
+    @Override
+    public synchronized void uploadPart(int partNumber, ByteBuffer part) throws IOException {
+      checkArgument(partNumber > 0, "Parts are numbered from 1.");
+      if (failed) {
+        throw new IOException("Upload of " + blobLocation.key() + " failed or was aborted.");
+      }
+      if (partNumber != nextPartNumber) {
+        ByteBuffer copy = ByteBuffer.allocate(part.remaining());
+        copy.put(part).flip();
+        pendingParts.put(partNumber, copy);
+        return;
+      }
+      write(partNumber, part);
+      while (pendingParts.containsKey(nextPartNumber)) {
+        write(nextPartNumber, pendingParts.remove(nextPartNumber));
+      }
+    }
+
+    @Override
+    public synchronized void complete() throws IOException {
+      if (failed || !pendingParts.isEmpty()) {
+        throw new IOException("Parts of " + blobLocation.key() + " were not uploaded.");
+      }
+      try {
+        // Closing the channel finishes the upload and creates the object.
+        writer.close();
+      } catch (IOException | StorageException e) {
+        failed = true;
+        throw new IOException("Failed to complete the upload of " + blobLocation.key() + ".", e);
+      }
+    }
+
+    /**
+     * Discards the parts. The channel is left unclosed, as closing it would create the object; GCS
+     * expires the resumable upload session.
+     */
+    @Override
+    public synchronized void abort() {
+      failed = true;
+      pendingParts.clear();
+    }
+
+    private void write(int partNumber, ByteBuffer part) throws IOException {
+      try {
+        while (part.hasRemaining()) {
+          writer.write(part);
+        }
+      } catch (IOException | StorageException e) {
+        failed = true;
+        throw new IOException(
+            "Failed to upload part " + partNumber + " of " + blobLocation.key() + ".", e);
+      }
+      nextPartNumber++;
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.util;
+
+import com.google.common.base.Optional;
+import com.google.common.io.ByteSource;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@link ByteSource} over the remaining bytes of a {@link ByteBuffer}, such as a bytes field of a
+ * decoded Avro record, that does not copy them.
+ *
+ * <p>The bytes are only handed out through a read-only buffer or through {@link #unsafeArray()}.
+ * {@link #read()} copies them, like it does for any other {@code ByteSource}.
+ */
+public final class ByteBufferSource extends ByteSource {
+
+  private final ByteBuffer buffer;
+
+  /** Wraps the bytes between the position and the limit of the buffer, without copying them. */
+  public static ByteBufferSource wrap(ByteBuffer buffer) {
+    return new ByteBufferSource(buffer.slice());
+  }
+
+  /** Wraps the array, without copying it. */
+  public static ByteBufferSource wrap(byte[] bytes) {
+    return new ByteBufferSource(ByteBuffer.wrap(bytes));
+  }
+
+  private ByteBufferSource(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /** Returns a read-only view of the bytes, positioned at the first byte. */
+  public ByteBuffer asReadOnlyBuffer() {
+    return buffer.asReadOnlyBuffer();
+  }
+
+  /**
+   * Returns the bytes as an array, without copying them when the buffer spans its whole backing
+   * array. The array may be shared with the producer of the buffer and must not be modified.
+   */
+  public byte[] unsafeArray() {
+    if (buffer.hasArray()
+        && buffer.arrayOffset() == 0
+        && buffer.remaining() == buffer.array().length) {
+      return buffer.array();
+    }
+    return read();
+  }
+
+  @Override
+  public InputStream openStream() {
+    if (buffer.hasArray()) {
+      return new ByteArrayInputStream(buffer.array(), buffer.arrayOffset(), buffer.remaining());
+    }
+    return new ByteArrayInputStream(read());
+  }
+
+  @Override
+  public byte[] read() {
+    if (buffer.hasArray()) {
+      return Arrays.copyOfRange(
+          buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + buffer.remaining());
+    }
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  @Override
+  public long size() {
+    return buffer.remaining();
+  }
+
+  @Override
+  public Optional<Long> sizeIfKnown() {
+    return Optional.of((long) buffer.remaining());
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return !buffer.hasRemaining();
+  }
+}
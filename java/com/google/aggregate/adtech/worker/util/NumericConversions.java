@@ -131,6 +131,41 @@ public final class NumericConversions {
     return bytes;
   }
 
+  /**
+   * Returns the upper 64 bits of an unsigned 128-bit value.
+   *
+   * @param value the value to split. Must be in the range of 0 to 2^128-1 inclusive.
+   */
+  public static long uInt128HighBits(BigInteger value) {
+    return value.shiftRight(64).longValue();
+  }
+
+  /**
+   * Returns the lower 64 bits of an unsigned 128-bit value.
+   *
+   * @param value the value to split. Must be in the range of 0 to 2^128-1 inclusive.
+   */
+  public static long uInt128LowBits(BigInteger value) {
+    return value.longValue();
+  }
+
+  /**
+   * Combines the upper and lower 64 bits of an unsigned 128-bit value into a {@link BigInteger}.
+   * This is the inverse of {@link #uInt128HighBits(BigInteger)} and {@link
+   * #uInt128LowBits(BigInteger)}.
+   */
+  public static BigInteger uInt128FromLongs(long highBits, long lowBits) {
+    if (highBits == 0 && lowBits >= 0) {
+      return BigInteger.valueOf(lowBits);
+    }
+    byte[] bytes = new byte[16];
+    for (int i = 0; i < 8; i++) {
+      bytes[i] = (byte) (highBits >>> (56 - 8 * i));
+      bytes[i + 8] = (byte) (lowBits >>> (56 - 8 * i));
+    }
+    return new BigInteger(POSITIVE_SIGN, bytes);
+  }
+
   /**
    * Creates BigInteger from String rep of parameter int. Uses ISO_8859_1 to convert String to byte
    * array, as this Charset encompasses all 256 possible byte values
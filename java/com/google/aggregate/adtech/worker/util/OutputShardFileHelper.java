@@ -67,6 +67,15 @@ public final class OutputShardFileHelper {
         .intValue();
   }
 
+  /**
+   * Returns the number of records that fit in a shard file of the configured size, for writers that
+   * roll over to a new shard without knowing the record count beforehand.
+   */
+  public static long getMaxRecordsPerShard() {
+    return Math.max(
+        (outputShardFileSizeBytes - AVRO_METADATA_SIZE_BYTES) / RECORD_FILE_SIZE_BYTES, 1);
+  }
+
   /**
    * Return the exclusive end index of a shard.
    *
@@ -16,15 +16,52 @@
 
 package com.google.aggregate.adtech.worker.writer;
 
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+
 import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.common.collect.Streams;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Iterator;
 import java.util.stream.Stream;
 
 /** Writes a stream of AggregatedFacts to a result file on the local filesystem. */
 public interface LocalResultFileWriter {
 
-  /** Write the file to the local filesystem */
-  void writeLocalFile(Stream<AggregatedFact> results, Path resultFile) throws FileWriteException;
+  /**
+   * Write the file to the local filesystem. If a file already exists at the {@code Path} given then
+   * it will be overwritten.
+   */
+  default void writeLocalFile(Stream<AggregatedFact> results, Path resultFile)
+      throws FileWriteException {
+    // Closed again only if writing fails.
+    try (OutputStream outputStream = Files.newOutputStream(resultFile, CREATE, TRUNCATE_EXISTING)) {
+      writeResults(results, outputStream);
+    } catch (IOException e) {
+      throw new FileWriteException("Failed to write local result file", e);
+    }
+  }
+
+  /**
+   * Write the results to the stream, closing it once they are written. The stream is left open if
+   * writing fails, so that callers can tell a complete result from a partial one.
+   */
+  void writeResults(Stream<AggregatedFact> results, OutputStream outputStream)
+      throws FileWriteException;
+
+  /**
+   * Write results to the stream until about {@code maxShardBytes} bytes are written, leaving the
+   * other results in the iterator for the next shards. The stream is closed as by {@link
+   * #writeResults}. Writers that cannot split their output write all the results.
+   */
+  default void writeShard(
+      Iterator<AggregatedFact> results, OutputStream outputStream, long maxShardBytes)
+      throws FileWriteException {
+    writeResults(Streams.stream(results), outputStream);
+  }
 
   /** Returns the file extension for the file type written */
   String getFileExtension();
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.writer.avro;
+
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.aggregate.adtech.worker.model.DebugBucketAnnotation;
+import com.google.errorprone.annotations.Var;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.Encoder;
+
+/**
+ * {@link DatumWriter} encoding {@link AggregatedFact}s straight into the fields of the results or
+ * debug results schema.
+ *
+ * <p>It produces the same bytes as a {@code GenericDatumWriter} of the equivalent {@code
+ * GenericRecord}, without building the record: the bucket is encoded through a scratch buffer
+ * reused from one fact to the next instead of a new byte array and {@code ByteBuffer}. A writer is
+ * not thread-safe.
+ */
+public abstract class AggregatedFactDatumWriter implements DatumWriter<AggregatedFact> {
+
+  private static final int BUCKET_SIZE_BYTES = 16;
+
+  private final byte[] bucketScratch = new byte[BUCKET_SIZE_BYTES];
+
+  /** Returns a writer for the results schema: bucket and metric. */
+  public static AggregatedFactDatumWriter forResults() {
+    return new ResultsDatumWriter();
+  }
+
+  /**
+   * Returns a writer for the debug results schema: bucket, unnoised metric, noise and annotations.
+   */
+  public static AggregatedFactDatumWriter forDebugResults(Schema debugResultsSchema) {
+    return new DebugResultsDatumWriter(debugResultsSchema);
+  }
+
+  /** The schema is fixed by the writer, so the schema of the file is not needed. */
+  @Override
+  public final void setSchema(Schema schema) {}
+
+  /**
+   * Writes the bucket as the big-endian bytes of its unsigned value without the leading zero bytes,
+   * as {@code NumericConversions.toUnsignedByteArray} does.
+   */
+  final void writeBucket(BigInteger bucket, Encoder out) throws IOException {
+    int bitLength = bucket.bitLength();
+    if (bucket.signum() < 0 || bitLength > 8 * BUCKET_SIZE_BYTES) {
+      throw new IllegalArgumentException(
+          "Provided value must be in the range of 0 to 2^128-1 inclusive. Value was " + bucket);
+    }
+    int length = (bitLength + 7) / 8;
+    long lowBits = bucket.longValue();
+    // Reading the bits one by one avoids the BigInteger a shift would allocate.
+    @Var long highBits = 0;
+    for (int i = 64; i < bitLength; i++) {
+      if (bucket.testBit(i)) {
+        highBits |= 1L << (i - 64);
+      }
+    }
+    for (int i = 0; i < length; i++) {
+      long bits = i < 8 ? lowBits : highBits;
+      bucketScratch[BUCKET_SIZE_BYTES - 1 - i] = (byte) (bits >>> (8 * (i % 8)));
+    }
+    out.writeBytes(bucketScratch, BUCKET_SIZE_BYTES - length, length);
+  }
+
+  private static final class ResultsDatumWriter extends AggregatedFactDatumWriter {
+
+    @Override
+    public void write(AggregatedFact fact, Encoder out) throws IOException {
+      writeBucket(fact.getBucket(), out);
+      out.writeLong(fact.getMetric());
+    }
+  }
+
+  private static final class DebugResultsDatumWriter extends AggregatedFactDatumWriter {
+
+    // Index of each annotation among the symbols of the annotation enum, by annotation ordinal.
+    private final int[] annotationIndexes;
+
+    DebugResultsDatumWriter(Schema debugResultsSchema) {
+      Schema annotationSchema =
+          debugResultsSchema.getField("annotations").schema().getElementType();
+      DebugBucketAnnotation[] annotations = DebugBucketAnnotation.values();
+      annotationIndexes = new int[annotations.length];
+      for (DebugBucketAnnotation annotation : annotations) {
+        annotationIndexes[annotation.ordinal()] =
+            annotationSchema.getEnumOrdinal(annotation.toString());
+      }
+    }
+
+    @Override
+    public void write(AggregatedFact fact, Encoder out) throws IOException {
+      long unnoisedMetric = fact.getUnnoisedMetric().get();
+      List<?> annotations = fact.getDebugAnnotations().get();
+      writeBucket(fact.getBucket(), out);
+      out.writeLong(unnoisedMetric);
+      out.writeLong(fact.getMetric() - unnoisedMetric);
+      out.writeArrayStart();
+      out.setItemCount(annotations.size());
+      for (int i = 0; i < annotations.size(); i++) {
+        out.startItem();
+        out.writeEnum(annotationIndexes[((DebugBucketAnnotation) annotations.get(i)).ordinal()]);
+      }
+      out.writeArrayEnd();
+    }
+  }
+}
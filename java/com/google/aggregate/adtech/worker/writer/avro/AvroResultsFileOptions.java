@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.writer.avro;
+
+import com.google.auto.value.AutoValue;
+import com.google.inject.ProvidedBy;
+import com.google.inject.Provider;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileConstants;
+
+/**
+ * Block size and codec of the Avro results files. Unless bound, results files use the Avro
+ * defaults, which keep them readable by any Avro reader.
+ */
+@AutoValue
+@ProvidedBy(AvroResultsFileOptions.DefaultProvider.class)
+public abstract class AvroResultsFileOptions {
+
+  /** Returns options with the given block size and the codec of the given Avro codec name. */
+  public static AvroResultsFileOptions create(int blockSizeBytes, String codec) {
+    return new AutoValue_AvroResultsFileOptions(blockSizeBytes, CodecFactory.fromString(codec));
+  }
+
+  /** Returns the default options: 64KB blocks, uncompressed. */
+  public static AvroResultsFileOptions defaults() {
+    return create(DataFileConstants.DEFAULT_SYNC_INTERVAL, DataFileConstants.NULL_CODEC);
+  }
+
+  /** Approximate size of the blocks of records, between which sync markers are written. */
+  public abstract int blockSizeBytes();
+
+  public abstract CodecFactory codec();
+
+  static final class DefaultProvider implements Provider<AvroResultsFileOptions> {
+
+    @Override
+    public AvroResultsFileOptions get() {
+      return defaults();
+    }
+  }
+}
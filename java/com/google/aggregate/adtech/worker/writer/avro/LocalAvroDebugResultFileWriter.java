@@ -15,51 +15,50 @@
  */
 package com.google.aggregate.adtech.worker.writer.avro;
 
-import static com.google.common.collect.ImmutableList.toImmutableList;
-import static java.nio.file.StandardOpenOption.CREATE;
-import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
-
 import com.google.aggregate.adtech.worker.model.AggregatedFact;
 import com.google.aggregate.adtech.worker.writer.LocalResultFileWriter;
-import com.google.aggregate.protocol.avro.AvroDebugResultsRecord;
-import com.google.aggregate.protocol.avro.AvroDebugResultsWriter;
-import com.google.aggregate.protocol.avro.AvroDebugResultsWriterFactory;
-import com.google.aggregate.protocol.avro.AvroRecordWriter.MetadataElement;
-import com.google.common.collect.ImmutableList;
+import com.google.aggregate.protocol.avro.AvroDebugResultsSchemaSupplier;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.util.Iterator;
 import java.util.stream.Stream;
 import javax.inject.Inject;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileWriter;
 
 /** Writes a local debug results file using the Avro format. */
 public final class LocalAvroDebugResultFileWriter implements LocalResultFileWriter {
 
-  private final AvroDebugResultsWriterFactory writerFactory;
+  private final AvroDebugResultsSchemaSupplier schemaSupplier;
+  private final AvroResultsFileOptions options;
 
   @Inject
-  LocalAvroDebugResultFileWriter(AvroDebugResultsWriterFactory writerFactory) {
-    this.writerFactory = writerFactory;
+  LocalAvroDebugResultFileWriter(
+      AvroDebugResultsSchemaSupplier schemaSupplier, AvroResultsFileOptions options) {
+    this.schemaSupplier = schemaSupplier;
+    this.options = options;
   }
 
+  /**
+   * Write the debug results to the stream using the Avro format, encoding them straight into the
+   * Avro blocks as they are read.
+   */
   @Override
-  public void writeLocalFile(Stream<AggregatedFact> results, Path resultFilePath)
+  public void writeResults(Stream<AggregatedFact> results, OutputStream outputStream)
       throws FileWriteException {
-
-    try (OutputStream outputAvroStream =
-            Files.newOutputStream(resultFilePath, CREATE, TRUNCATE_EXISTING);
-        AvroDebugResultsWriter avroDebugResultsWriter = writerFactory.create(outputAvroStream)) {
-      ImmutableList<MetadataElement> metaData = ImmutableList.of();
-      Stream<AvroDebugResultsRecord> resultsRecords =
-          results.map(
-              (fact ->
-                  AvroDebugResultsRecord.create(
-                      fact.getBucket(),
-                      fact.getMetric(),
-                      fact.getUnnoisedMetric().get(),
-                      fact.getDebugAnnotations().get())));
-      avroDebugResultsWriter.writeRecords(metaData, resultsRecords.collect(toImmutableList()));
+    Schema schema = schemaSupplier.get();
+    DataFileWriter<AggregatedFact> dataFileWriter =
+        new DataFileWriter<>(AggregatedFactDatumWriter.forDebugResults(schema));
+    dataFileWriter.setSyncInterval(options.blockSizeBytes());
+    dataFileWriter.setCodec(options.codec());
+    try {
+      dataFileWriter.create(schema, outputStream);
+      Iterator<AggregatedFact> resultsIterator = results.iterator();
+      while (resultsIterator.hasNext()) {
+        dataFileWriter.append(resultsIterator.next());
+      }
+      // Closing the writer closes the stream, which is left open if writing fails.
+      dataFileWriter.close();
     } catch (IOException e) {
       throw new FileWriteException("Failed to write local Avro debug file", e);
     }
@@ -16,65 +16,53 @@
 
 package com.google.aggregate.adtech.worker.writer.avro;
 
-import static java.nio.file.StandardOpenOption.CREATE;
-import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
-
 import com.google.aggregate.adtech.worker.model.AggregatedFact;
-import com.google.aggregate.adtech.worker.util.NumericConversions;
 import com.google.aggregate.adtech.worker.writer.LocalResultFileWriter;
 import com.google.aggregate.protocol.avro.AvroResultsSchemaSupplier;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.OutputStream;
 import java.util.Iterator;
 import java.util.stream.Stream;
 import javax.inject.Inject;
-import org.apache.avro.Schema;
 import org.apache.avro.file.DataFileWriter;
-import org.apache.avro.generic.GenericData;
-import org.apache.avro.generic.GenericDatumWriter;
-import org.apache.avro.generic.GenericRecord;
-import org.apache.avro.io.DatumWriter;
 
 /** Writes a local results file using the Avro format. */
 public final class LocalAvroResultFileWriter implements LocalResultFileWriter {
 
-  private AvroResultsSchemaSupplier schemaSupplier;
+  private final AvroResultsSchemaSupplier schemaSupplier;
+  private final AvroResultsFileOptions options;
 
   @Inject
-  LocalAvroResultFileWriter(AvroResultsSchemaSupplier schemaSupplier) {
+  LocalAvroResultFileWriter(
+      AvroResultsSchemaSupplier schemaSupplier, AvroResultsFileOptions options) {
     this.schemaSupplier = schemaSupplier;
+    this.options = options;
   }
 
   /**
-   * Write the results to an Avro file at the {@code Path} given.
+   * Write the results to the stream using the Avro format.
    *
-   * <p>The {@code Path} does not need to point to an existing file, this method will create a new
-   * file. If a file already exists at the {@code Path} given then it will be overwritten. This is
-   * the behavior of the {@code Files.newOutputStream} method that this relies on.
+   * <p>Results are encoded straight into the Avro blocks, without building a {@code GenericRecord}
+   * for each of them.
    *
    * <p>If exceptions occur mid-way during writing this function will leave a partially written
-   * file.
+   * stream.
    */
   @Override
-  public void writeLocalFile(Stream<AggregatedFact> results, Path resultFilePath)
+  public void writeResults(Stream<AggregatedFact> results, OutputStream outputStream)
       throws FileWriteException {
-    Schema schema = schemaSupplier.get();
-
-    DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(schema);
-    DataFileWriter<GenericRecord> dataFileWriter = new DataFileWriter<>(datumWriter);
+    DataFileWriter<AggregatedFact> dataFileWriter =
+        new DataFileWriter<>(AggregatedFactDatumWriter.forResults());
+    dataFileWriter.setSyncInterval(options.blockSizeBytes());
+    dataFileWriter.setCodec(options.codec());
     try {
-      dataFileWriter.create(
-          schema, Files.newOutputStream(resultFilePath, CREATE, TRUNCATE_EXISTING));
+      dataFileWriter.create(schemaSupplier.get(), outputStream);
 
       // Write all results to an Avro file. .append() call can throw IOExceptions so using an
       // Iterator is cleaner for exception handling.
       Iterator<AggregatedFact> resultsIterator = results.iterator();
       while (resultsIterator.hasNext()) {
-        AggregatedFact aggregatedFact = resultsIterator.next();
-        GenericRecord aggregatedFactRecord = aggregatedFactToGenericRecord(aggregatedFact);
-        dataFileWriter.append(aggregatedFactRecord);
+        dataFileWriter.append(resultsIterator.next());
       }
 
       dataFileWriter.close();
@@ -87,13 +75,4 @@ public final class LocalAvroResultFileWriter implements LocalResultFileWriter {
   public String getFileExtension() {
     return ".avro";
   }
-
-  private GenericRecord aggregatedFactToGenericRecord(AggregatedFact aggregatedFact) {
-    GenericRecord genericRecord = new GenericData.Record(schemaSupplier.get());
-    ByteBuffer bucketBytes =
-        ByteBuffer.wrap(NumericConversions.toUnsignedByteArray(aggregatedFact.getBucket()));
-    genericRecord.put("bucket", bucketBytes);
-    genericRecord.put("metric", aggregatedFact.getMetric());
-    return genericRecord;
-  }
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.writer.json;
+
+import com.google.auto.value.AutoValue;
+import com.google.inject.ProvidedBy;
+import com.google.inject.Provider;
+
+/** Options of the JSON results files. Unless bound, results files are not compressed. */
+@AutoValue
+@ProvidedBy(JsonResultsFileOptions.DefaultProvider.class)
+public abstract class JsonResultsFileOptions {
+
+  public static JsonResultsFileOptions create(boolean gzip) {
+    return new AutoValue_JsonResultsFileOptions(gzip);
+  }
+
+  /** Whether the files are gzip-compressed. */
+  public abstract boolean gzip();
+
+  static final class DefaultProvider implements Provider<JsonResultsFileOptions> {
+
+    @Override
+    public JsonResultsFileOptions get() {
+      return create(/* gzip= */ false);
+    }
+  }
+}
@@ -16,28 +16,21 @@
 
 package com.google.aggregate.adtech.worker.writer.json;
 
-import static java.nio.file.StandardOpenOption.CREATE;
-import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
-
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.google.aggregate.adtech.worker.model.AggregatedFact;
-import com.google.aggregate.adtech.worker.util.NumericConversions;
 import com.google.aggregate.adtech.worker.writer.LocalResultFileWriter;
+import com.google.aggregate.adtech.worker.writer.avro.AggregatedFactDatumWriter;
 import com.google.aggregate.protocol.avro.AvroResultsSchemaSupplier;
+import com.google.common.io.CountingOutputStream;
+import com.google.errorprone.annotations.Var;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.nio.ByteBuffer;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.Iterator;
 import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 import javax.inject.Inject;
 import org.apache.avro.Schema;
-import org.apache.avro.generic.GenericData;
-import org.apache.avro.generic.GenericDatumWriter;
-import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.EncoderFactory;
 import org.apache.avro.io.JsonEncoder;
@@ -45,47 +38,62 @@ import org.apache.avro.io.JsonEncoder;
 /**
  * Local writer result implementation in json format. This helps standalone library to be in
  * human-readable format.
+ *
+ * <p>The results are written as a JSON array of the JSON encodings of their Avro records, through a
+ * single encoder and a buffer that is only flushed once the array is written.
  */
 public final class LocalJsonResultFileWriter implements LocalResultFileWriter {
 
-  private AvroResultsSchemaSupplier schemaSupplier;
-  private final ObjectMapper mapper = new ObjectMapper();
-  private final SimpleModule module = new SimpleModule();
+  private static final int BUFFER_SIZE_BYTES = 1 << 16;
+
+  private final AvroResultsSchemaSupplier schemaSupplier;
+  private final JsonResultsFileOptions options;
 
   @Inject
-  LocalJsonResultFileWriter(AvroResultsSchemaSupplier schemaSupplier) {
+  LocalJsonResultFileWriter(
+      AvroResultsSchemaSupplier schemaSupplier, JsonResultsFileOptions options) {
     this.schemaSupplier = schemaSupplier;
-    mapper.registerModule(module);
+    this.options = options;
   }
 
   @Override
-  public void writeLocalFile(Stream<AggregatedFact> results, Path resultFilePath)
+  public void writeResults(Stream<AggregatedFact> results, OutputStream outStream)
       throws FileWriteException {
-    Schema schema = schemaSupplier.get();
+    writeShard(results.iterator(), outStream, Long.MAX_VALUE);
+  }
 
-    DatumWriter<Object> writer = new GenericDatumWriter<>(schema);
+  /**
+   * Writes results until the JSON written reaches {@code maxShardBytes}. The budget counts the JSON
+   * before compression, so compressed shards stay within it too.
+   */
+  @Override
+  public void writeShard(
+      Iterator<AggregatedFact> results, OutputStream outStream, long maxShardBytes)
+      throws FileWriteException {
+    Schema schema = schemaSupplier.get();
+    DatumWriter<AggregatedFact> writer = AggregatedFactDatumWriter.forResults();
     try {
-      OutputStream outStream = Files.newOutputStream(resultFilePath, CREATE, TRUNCATE_EXISTING);
-      PrintWriter printWriter = new PrintWriter(outStream);
-      JsonEncoder jsonEncoder = EncoderFactory.get().jsonEncoder(schema, outStream, true);
+      OutputStream bufferedStream =
+          new BufferedOutputStream(
+              options.gzip() ? new GZIPOutputStream(outStream, BUFFER_SIZE_BYTES) : outStream,
+              BUFFER_SIZE_BYTES);
+      CountingOutputStream jsonStream = new CountingOutputStream(bufferedStream);
+      JsonEncoder jsonEncoder =
+          EncoderFactory.get().jsonEncoder(schema, new UnflushedOutputStream(jsonStream), true);
 
-      Iterator<AggregatedFact> resultsIterator = results.iterator();
-      printWriter.print('[');
-      printWriter.flush();
-      while (resultsIterator.hasNext()) {
-        AggregatedFact aggregatedFact = resultsIterator.next();
-        GenericRecord aggregatedFactRecord = aggregatedFactToGenericRecord(aggregatedFact);
-        writer.write(aggregatedFactRecord, jsonEncoder);
-        jsonEncoder.flush();
-        outStream.flush();
-        if (resultsIterator.hasNext()) {
-          printWriter.print(',');
-          printWriter.flush();
+      jsonStream.write('[');
+      @Var boolean first = true;
+      while (results.hasNext() && (first || jsonStream.getCount() < maxShardBytes)) {
+        if (!first) {
+          jsonStream.write(',');
         }
+        writer.write(results.next(), jsonEncoder);
+        // Ends the record and moves it from the encoder to the buffer, without flushing the buffer.
+        jsonEncoder.flush();
+        first = false;
       }
-      printWriter.print(']');
-      printWriter.flush();
-      printWriter.close();
+      jsonStream.write(']');
+      jsonStream.close();
     } catch (IOException e) {
       throw new FileWriteException("Failed to write local JSON file", e);
     }
@@ -93,15 +101,25 @@ public final class LocalJsonResultFileWriter implements LocalResultFileWriter {
 
   @Override
   public String getFileExtension() {
-    return ".json";
+    return options.gzip() ? ".json.gz" : ".json";
   }
 
-  private GenericRecord aggregatedFactToGenericRecord(AggregatedFact aggregatedFact) {
-    GenericRecord genericRecord = new GenericData.Record(schemaSupplier.get());
-    ByteBuffer bucketBytes =
-        ByteBuffer.wrap(NumericConversions.toUnsignedByteArray(aggregatedFact.getBucket()));
-    genericRecord.put("bucket", bucketBytes);
-    genericRecord.put("metric", aggregatedFact.getMetric());
-    return genericRecord;
+  /** Stream ignoring flushes, which the encoder would otherwise pass down for every record. */
+  private static final class UnflushedOutputStream extends FilterOutputStream {
+
+    UnflushedOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
   }
 }
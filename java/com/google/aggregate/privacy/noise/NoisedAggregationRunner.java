@@ -17,19 +17,40 @@
 package com.google.aggregate.privacy.noise;
 
 import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.aggregate.adtech.worker.model.AggregatedFactBlock;
 import com.google.aggregate.privacy.noise.model.NoisedAggregationResult;
 import java.util.Optional;
 
 /** Interface to apply Differential Private Noising to {@code AggregateFact}. */
 public interface NoisedAggregationRunner {
 
+  /**
+   * Applies noise to the metrics of a block of aggregated facts, in place: each metric is moved to
+   * the unnoised metrics of the block and replaced with its noised value.
+   *
+   * @return new {@code NoisedAggregationResult} of the noised block.
+   */
+  NoisedAggregationResult noise(
+      AggregatedFactBlock aggregatedFacts, Optional<Double> debugPrivacyEpsilon);
+
+  /**
+   * Thresholds a block of aggregated facts, only returning the facts with noised values greater
+   * than the threshold. The Threshold value is determined by the privacy parameters.
+   *
+   * @return new {@code NoisedAggregationResult} of a new block of the facts thresholded.
+   */
+  NoisedAggregationResult threshold(
+      AggregatedFactBlock aggregatedFacts, Optional<Double> debugPrivacyEpsilon);
+
   /**
    * Applies noise to values in a list of {@code AggregatedFact}.
    *
    * @return new {@code NoisedAggregationResult} and {@code AggregatedFact} with noising applied.
    */
-  NoisedAggregationResult noise(
-      Iterable<AggregatedFact> aggregatedFact, Optional<Double> debugPrivacyEpsilon);
+  default NoisedAggregationResult noise(
+      Iterable<AggregatedFact> aggregatedFact, Optional<Double> debugPrivacyEpsilon) {
+    return noise(AggregatedFactBlock.copyOf(aggregatedFact), debugPrivacyEpsilon);
+  }
 
   /**
    * Thresholds aggregated facts, only returning AggregatedFact with noised values greater than the
@@ -39,6 +60,8 @@ public interface NoisedAggregationRunner {
    * @param debugPrivacyEpsilon
    * @return new {@code NoisedAggregationResult} and {@code AggregatedFact} thresholded.
    */
-  NoisedAggregationResult threshold(
-      Iterable<AggregatedFact> aggregatedFacts, Optional<Double> debugPrivacyEpsilon);
+  default NoisedAggregationResult threshold(
+      Iterable<AggregatedFact> aggregatedFacts, Optional<Double> debugPrivacyEpsilon) {
+    return threshold(AggregatedFactBlock.copyOf(aggregatedFacts), debugPrivacyEpsilon);
+  }
 }
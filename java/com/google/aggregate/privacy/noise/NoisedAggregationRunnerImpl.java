@@ -16,22 +16,18 @@
 
 package com.google.aggregate.privacy.noise;
 
-import static com.google.common.collect.ImmutableList.toImmutableList;
-
 import com.google.aggregate.adtech.worker.Annotations.CustomForkJoinThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.ParallelAggregatedFactNoising;
-import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.aggregate.adtech.worker.model.AggregatedFactBlock;
 import com.google.aggregate.privacy.noise.Annotations.Threshold;
 import com.google.aggregate.privacy.noise.model.NoisedAggregationResult;
 import com.google.aggregate.privacy.noise.proto.Params.PrivacyParameters;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Streams;
 import com.google.common.math.DoubleMath;
 import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.errorprone.annotations.Var;
 import com.google.inject.Inject;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.function.LongUnaryOperator;
 import java.util.function.Supplier;
 
 /**
@@ -60,74 +56,52 @@ public final class NoisedAggregationRunnerImpl implements NoisedAggregationRunne
 
   @Override
   public NoisedAggregationResult threshold(
-      Iterable<AggregatedFact> aggregatedFacts, Optional<Double> debugPrivacyEpsilon) {
+      AggregatedFactBlock aggregatedFacts, Optional<Double> debugPrivacyEpsilon) {
     final Supplier<PrivacyParameters> requestScopedPrivacyParamsSupplier =
         getScopedPrivacyParamSupplier(debugPrivacyEpsilon);
     final Supplier<Double> requestScopedThresholdSupplier =
         getScopedThreshold(debugPrivacyEpsilon, requestScopedPrivacyParamsSupplier);
     double threshold = requestScopedThresholdSupplier.get();
 
-    ImmutableList<AggregatedFact> thresholdedFacts =
-        Streams.stream(aggregatedFacts)
-            .filter(
-                aggregatedFactItem ->
-                    (DoubleMath.fuzzyCompare(aggregatedFactItem.getMetric(), threshold, TOLERANCE)
-                        >= 0))
-            .collect(toImmutableList());
+    AggregatedFactBlock thresholdedFacts =
+        aggregatedFacts.filter(
+            row ->
+                DoubleMath.fuzzyCompare(aggregatedFacts.metric(row), threshold, TOLERANCE) >= 0);
 
     return NoisedAggregationResult.create(
         requestScopedPrivacyParamsSupplier.get(), thresholdedFacts);
   }
 
   /*
-   * Noises AggregatedFact#metric using Google's DP library. AggregatedFact#metric is interpreted as
-   * unnoised data and copied to the AggregatedFact#unnoisedMetric field, and the noised value is
-   * set in the AggregatedFact#metric field.
+   * Noises the metrics of the block using Google's DP library. The metrics are interpreted as
+   * unnoised data and copied to the unnoised metrics of the block, and the noised values replace
+   * them.
    */
   @Override
   public NoisedAggregationResult noise(
-      Iterable<AggregatedFact> aggregatedFact, Optional<Double> debugPrivacyEpsilon) {
+      AggregatedFactBlock aggregatedFacts, Optional<Double> debugPrivacyEpsilon) {
     final Supplier<PrivacyParameters> requestScopedPrivacyParamsSupplier =
         getScopedPrivacyParamSupplier(debugPrivacyEpsilon);
     final Supplier<NoiseApplier> requestScopedNoiseApplier =
         getScopedNoiseApplier(debugPrivacyEpsilon, requestScopedPrivacyParamsSupplier);
+    LongUnaryOperator noise =
+        unnoisedMetric -> requestScopedNoiseApplier.get().noiseMetric(unnoisedMetric);
 
-    @Var ImmutableList<AggregatedFact> noisedFacts;
     if (this.noisingForkJoinPool.isPresent()) {
       try {
-        noisedFacts =
-            this.noisingForkJoinPool
-                .get()
-                .submit(
-                    () ->
-                        Streams.stream(aggregatedFact)
-                            .parallel()
-                            .map(fact -> noiseSingleFact(fact, requestScopedNoiseApplier))
-                            .collect(toImmutableList()))
-                .get();
+        this.noisingForkJoinPool
+            .get()
+            .submit(() -> aggregatedFacts.noiseMetrics(noise, /* parallel= */ true))
+            .get();
       } catch (InterruptedException | ExecutionException e) {
         throw new RuntimeException("Exception while noising aggregated data.");
       }
     } else {
-      noisedFacts =
-          Streams.stream(aggregatedFact)
-              .map((fact -> noiseSingleFact(fact, requestScopedNoiseApplier)))
-              .collect(toImmutableList());
+      aggregatedFacts.noiseMetrics(noise, /* parallel= */ false);
     }
 
-    return NoisedAggregationResult.create(requestScopedPrivacyParamsSupplier.get(), noisedFacts);
-  }
-
-  private AggregatedFact noiseSingleFact(
-      AggregatedFact aggregatedFact, Supplier<NoiseApplier> scopedNoiseApplier) {
-    return noiseSingleFact(aggregatedFact, scopedNoiseApplier.get());
-  }
-
-  private AggregatedFact noiseSingleFact(AggregatedFact aggregatedFact, NoiseApplier noiseApplier) {
-    long unnoisedMetric = aggregatedFact.getMetric();
-    aggregatedFact.setUnnoisedMetric(Optional.of(unnoisedMetric));
-    aggregatedFact.setMetric(noiseApplier.noiseMetric(unnoisedMetric));
-    return aggregatedFact;
+    return NoisedAggregationResult.create(
+        requestScopedPrivacyParamsSupplier.get(), aggregatedFacts);
   }
 
   private Supplier<PrivacyParameters> getScopedPrivacyParamSupplier(
@@ -17,51 +17,85 @@
 package com.google.aggregate.privacy.noise.model;
 
 import static com.google.common.base.Preconditions.checkArgument;
-import static com.google.common.collect.ImmutableList.toImmutableList;
 
 import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.aggregate.adtech.worker.model.AggregatedFactBlock;
 import com.google.aggregate.adtech.worker.model.DebugBucketAnnotation;
 import com.google.aggregate.privacy.noise.proto.Params.PrivacyParameters;
 import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import java.util.Iterator;
 import java.util.List;
 
-/** AutoValue to store aggregation result after noising and associated {@code PrivacyParameters} */
+/**
+ * AutoValue to store aggregation result after noising and associated {@code PrivacyParameters}.
+ *
+ * <p>The results are held in {@link AggregatedFactBlock columnar blocks}, which merging and
+ * annotating results share rather than copy. The blocks may also be read lazily, such as from
+ * results streamed to disk, in which case they are read again on each iteration.
+ */
 @AutoValue
 public abstract class NoisedAggregationResult {
 
   public static NoisedAggregationResult create(
       PrivacyParameters privacyParameters, ImmutableList<AggregatedFact> noisedAggregatedFacts) {
-    return new AutoValue_NoisedAggregationResult(privacyParameters, noisedAggregatedFacts);
+    return create(privacyParameters, AggregatedFactBlock.copyOf(noisedAggregatedFacts));
+  }
+
+  public static NoisedAggregationResult create(
+      PrivacyParameters privacyParameters, AggregatedFactBlock noisedAggregatedFacts) {
+    return create(
+        privacyParameters, noisedAggregatedFacts.size(), ImmutableList.of(noisedAggregatedFacts));
+  }
+
+  /**
+   * Returns a result of blocks that may be read lazily. {@code resultCount} must be the total size
+   * of the blocks.
+   */
+  public static NoisedAggregationResult create(
+      PrivacyParameters privacyParameters,
+      long resultCount,
+      Iterable<AggregatedFactBlock> resultBlocks) {
+    return new AutoValue_NoisedAggregationResult(privacyParameters, resultCount, resultBlocks);
   }
 
   public abstract PrivacyParameters privacyParameters();
 
-  public abstract ImmutableList<AggregatedFact> noisedAggregatedFacts();
+  public abstract long resultCount();
+
+  /** The blocks of the results, in order. */
+  public abstract Iterable<AggregatedFactBlock> resultBlocks();
+
+  /** Iterates over the results, reading each as a copy of its row. */
+  public Iterator<AggregatedFact> noisedAggregatedFactIterator() {
+    return Iterators.concat(
+        Iterators.transform(resultBlocks().iterator(), block -> block.asFacts().iterator()));
+  }
+
+  /** Copies of all results, for tests and tools. */
+  public ImmutableList<AggregatedFact> noisedAggregatedFacts() {
+    return ImmutableList.copyOf(noisedAggregatedFactIterator());
+  }
 
   public static NoisedAggregationResult merge(
       NoisedAggregationResult first, NoisedAggregationResult second) {
     checkArgument(first.privacyParameters().equals(second.privacyParameters()));
-    return NoisedAggregationResult.create(
+    return create(
         first.privacyParameters(),
-        ImmutableList.copyOf(
-            Iterables.concat(first.noisedAggregatedFacts(), second.noisedAggregatedFacts())));
+        first.resultCount() + second.resultCount(),
+        Iterables.concat(first.resultBlocks(), second.resultBlocks()));
   }
 
   // This methods will overwrite all original debugAnnotations in the aggregatedFact
   public static NoisedAggregationResult addDebugAnnotations(
       NoisedAggregationResult aggregationResult, List<DebugBucketAnnotation> debugAnnotations) {
-    return NoisedAggregationResult.create(
+    byte flags = AggregatedFactBlock.toFlags(debugAnnotations);
+    return create(
         aggregationResult.privacyParameters(),
-        aggregationResult.noisedAggregatedFacts().stream()
-            .map(
-                aggregatedFact ->
-                    AggregatedFact.create(
-                        aggregatedFact.getBucket(),
-                        aggregatedFact.getMetric(),
-                        aggregatedFact.getUnnoisedMetric().get(),
-                        debugAnnotations))
-            .collect(toImmutableList()));
+        aggregationResult.resultCount(),
+        Iterables.transform(
+            aggregationResult.resultBlocks(), block -> block.withDebugAnnotations(flags)));
   }
 }
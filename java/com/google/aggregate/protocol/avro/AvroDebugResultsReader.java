@@ -29,14 +29,15 @@ import org.apache.avro.generic.GenericData.EnumSymbol;
 import org.apache.avro.generic.GenericRecord;
 
 /** Reader that provides {@code Record} from an Avro file following the defined schema. */
-public final class AvroDebugResultsReader extends AvroRecordReader<AvroDebugResultsRecord> {
+public final class AvroDebugResultsReader
+    extends AvroRecordReader<GenericRecord, AvroDebugResultsRecord> {
 
   /** Creates a reader based on the given records. */
   AvroDebugResultsReader(DataFileStream<GenericRecord> streamReader) {
     super(streamReader);
   }
 
-  AvroDebugResultsRecord deserializeRecordFromGeneric(GenericRecord record) {
+  AvroDebugResultsRecord deserializeRecord(GenericRecord record) {
     byte[] bucketBytes = ((ByteBuffer) record.get("bucket")).array();
 
     BigInteger bucket = NumericConversions.uInt128FromBytes(bucketBytes);
@@ -18,24 +18,46 @@ package com.google.aggregate.protocol.avro;
 
 import java.io.IOException;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators.AbstractSpliterator;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.file.DataFileReader;
 import org.apache.avro.file.DataFileStream;
-import org.apache.avro.generic.GenericRecord;
 
 /**
  * Reader that provides {@code Record} from an Avro file following the defined schema.
  *
  * <p>The schema is provided by the schema supplier. For convenience, the reader object can be
  * created through the factory, which allows the supplier to be bound ith dependency injection, thus
- * requiring only the input stream to be passed.
+ * requiring only the input stream to be passed. The file is decoded into {@code Datum}s by the
+ * datum reader of the stream, then converted to records.
  */
-public abstract class AvroRecordReader<Record> implements AutoCloseable {
+public abstract class AvroRecordReader<Datum, Record> implements AutoCloseable {
 
-  private final DataFileStream<GenericRecord> streamReader;
+  private final DataFileStream<Datum> streamReader;
+  // Whether the reader is past the end of the range it reads.
+  private final BooleanSupplier pastEnd;
 
-  AvroRecordReader(DataFileStream<GenericRecord> streamReader) {
+  AvroRecordReader(DataFileStream<Datum> streamReader) {
     this.streamReader = streamReader;
+    this.pastEnd = () -> false;
+  }
+
+  /**
+   * Reader of the blocks of a file whose preceding sync marker starts in the range from {@code
+   * start} to {@code end}. The readers of adjacent ranges read every block of the file once.
+   */
+  AvroRecordReader(DataFileReader<Datum> fileReader, long start, long end) throws IOException {
+    // The reader starts right after the header, whose sync marker precedes the first block.
+    if (start > 0) {
+      fileReader.sync(start);
+    }
+    this.streamReader = fileReader;
+    this.pastEnd = () -> pastSync(fileReader, end);
   }
 
   /**
@@ -47,9 +69,35 @@ public abstract class AvroRecordReader<Record> implements AutoCloseable {
    * needed for malformed avro files.
    */
   public Stream<Record> streamRecords() {
-    return Stream.generate(this::readRecordForStreaming)
-        .takeWhile(Optional::isPresent)
-        .map(Optional::get);
+    return StreamSupport.stream(
+        new AbstractSpliterator<Record>(
+            Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+          @Override
+          public boolean tryAdvance(Consumer<? super Record> action) {
+            if (!hasNextRecord()) {
+              return false;
+            }
+            action.accept(nextRecord());
+            return true;
+          }
+
+          @Override
+          public void forEachRemaining(Consumer<? super Record> action) {
+            forEach(action);
+          }
+        },
+        /* parallel= */ false);
+  }
+
+  /**
+   * Passes each remaining record of the file to the action, in order, without the overhead of a
+   * stream. Throws {@link AvroRuntimeException} as the terminal operations of {@link
+   * #streamRecords()} do.
+   */
+  public void forEach(Consumer<? super Record> action) {
+    while (hasNextRecord()) {
+      action.accept(nextRecord());
+    }
   }
 
   /** Reads metadata string specified by the key (returns empty optional if not available) */
@@ -57,11 +105,12 @@ public abstract class AvroRecordReader<Record> implements AutoCloseable {
     return Optional.ofNullable(streamReader.getMetaString(key));
   }
 
-  private Optional<Record> readRecordForStreaming() {
-    if (streamReader.hasNext()) {
-      return Optional.of(deserializeRecordFromGeneric(streamReader.next()));
-    }
-    return Optional.empty();
+  private boolean hasNextRecord() {
+    return streamReader.hasNext() && !pastEnd.getAsBoolean();
+  }
+
+  private Record nextRecord() {
+    return deserializeRecord(streamReader.next());
   }
 
   @Override
@@ -69,6 +118,14 @@ public abstract class AvroRecordReader<Record> implements AutoCloseable {
     streamReader.close();
   }
 
-  /** Deserializes avro {@code GenericRecord} to generic Java type {@code Record}. */
-  abstract Record deserializeRecordFromGeneric(GenericRecord record);
+  private static boolean pastSync(DataFileReader<?> fileReader, long position) {
+    try {
+      return fileReader.pastSync(position);
+    } catch (IOException e) {
+      throw new AvroRuntimeException(e);
+    }
+  }
+
+  /** Deserializes an avro datum to generic Java type {@code Record}. */
+  abstract Record deserializeRecord(Datum datum);
 }
@@ -16,6 +16,9 @@
 
 package com.google.aggregate.protocol.avro;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.aggregate.adtech.worker.util.ByteBufferSource;
 import com.google.auto.value.AutoValue;
 import com.google.common.io.ByteSource;
 
@@ -23,7 +26,13 @@ import com.google.common.io.ByteSource;
 public abstract class AvroReportRecord {
 
   public static AvroReportRecord create(ByteSource payload, String keyId, String sharedInfo) {
-    return new AutoValue_AvroReportRecord(payload, keyId, sharedInfo);
+    return create(payload, keyId, sharedInfo, ByteBufferSource.wrap(sharedInfo.getBytes(UTF_8)));
+  }
+
+  /** Creates a record that keeps the shared info as read, as UTF-8 bytes next to the string. */
+  public static AvroReportRecord create(
+      ByteSource payload, String keyId, String sharedInfo, ByteBufferSource sharedInfoBytes) {
+    return new AutoValue_AvroReportRecord(payload, keyId, sharedInfo, sharedInfoBytes);
   }
 
   public abstract ByteSource payload();
@@ -33,4 +42,7 @@ public abstract class AvroReportRecord {
 
   /** Associated data that may be used for decryption. */
   public abstract String sharedInfo();
+
+  /** The UTF-8 bytes of {@link #sharedInfo()}. */
+  public abstract ByteBufferSource sharedInfoBytes();
 }
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.protocol.avro;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.aggregate.adtech.worker.util.ByteBufferSource;
+import com.google.errorprone.annotations.Var;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.Schema.Type;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.util.Utf8;
+
+/**
+ * Reader of reports decoding the fields of each record straight into an {@link AvroReportRecord},
+ * rather than into a {@link GenericRecord} first.
+ *
+ * <p>Files written with the fields of the reports schema, in any order and next to other fields,
+ * are decoded directly; other files are resolved against the reports schema as generic records.
+ * The payload and the shared info are decoded into buffers of their own, as records outlive the
+ * decoding of the next ones. Key ids are decoded into a reused buffer and interned, as a file has
+ * only a few distinct ones.
+ */
+final class AvroReportRecordDatumReader implements DatumReader<AvroReportRecord> {
+
+  // Most key ids interned. Further key ids are decoded into new strings.
+  private static final int MAX_INTERNED_KEY_IDS = 64;
+
+  private enum FieldAction {
+    PAYLOAD,
+    KEY_ID,
+    SHARED_INFO,
+    SKIP
+  }
+
+  private final Schema readerSchema;
+  private final Utf8 keyIdBuffer = new Utf8();
+  private final List<InternedKeyId> internedKeyIds = new ArrayList<>();
+  // How to decode each field of the writer schema, in order, if it is decoded directly.
+  private FieldAction[] fieldActions;
+  private Schema[] fieldSchemas;
+  // Reader of the records of writer schemas that are not decoded directly.
+  private GenericDatumReader<GenericRecord> resolvingReader;
+
+  AvroReportRecordDatumReader(Schema readerSchema) {
+    this.readerSchema = readerSchema;
+    setSchema(readerSchema);
+  }
+
+  @Override
+  public void setSchema(Schema writerSchema) {
+    fieldActions = null;
+    fieldSchemas = null;
+    resolvingReader = null;
+    if (!planFields(writerSchema)) {
+      resolvingReader = new GenericDatumReader<>(writerSchema, readerSchema);
+    }
+  }
+
+  @Override
+  public AvroReportRecord read(AvroReportRecord reuse, Decoder in) throws IOException {
+    if (resolvingReader != null) {
+      return fromGeneric(resolvingReader.read(null, in));
+    }
+    @Var ByteBuffer payload = null;
+    @Var String keyId = null;
+    @Var Utf8 sharedInfo = null;
+    for (int i = 0; i < fieldActions.length; i++) {
+      switch (fieldActions[i]) {
+        case PAYLOAD:
+          payload = in.readBytes(null);
+          break;
+        case KEY_ID:
+          keyId = readKeyId(in);
+          break;
+        case SHARED_INFO:
+          sharedInfo = in.readString(null);
+          break;
+        case SKIP:
+          GenericDatumReader.skip(fieldSchemas[i], in);
+          break;
+      }
+    }
+    return AvroReportRecord.create(
+        ByteBufferSource.wrap(payload),
+        keyId,
+        sharedInfo.toString(),
+        ByteBufferSource.wrap(
+            ByteBuffer.wrap(sharedInfo.getBytes(), 0, sharedInfo.getByteLength())));
+  }
+
+  /**
+   * Plans the direct decoding of the records of the writer schema. Returns false if the schema
+   * does not have each field of the reports schema with its type.
+   */
+  private boolean planFields(Schema writerSchema) {
+    if (writerSchema.getType() != Type.RECORD) {
+      return false;
+    }
+    List<Field> fields = writerSchema.getFields();
+    FieldAction[] actions = new FieldAction[fields.size()];
+    Schema[] schemas = new Schema[fields.size()];
+    Set<FieldAction> decodedFields = EnumSet.noneOf(FieldAction.class);
+    for (int i = 0; i < fields.size(); i++) {
+      Field field = fields.get(i);
+      schemas[i] = field.schema();
+      actions[i] = fieldAction(field);
+      decodedFields.add(actions[i]);
+    }
+    decodedFields.remove(FieldAction.SKIP);
+    // Field names are unique, so each decoded field is planned once.
+    if (decodedFields.size() != FieldAction.values().length - 1) {
+      return false;
+    }
+    fieldActions = actions;
+    fieldSchemas = schemas;
+    return true;
+  }
+
+  private static FieldAction fieldAction(Field field) {
+    Type type = field.schema().getType();
+    switch (field.name()) {
+      case "payload":
+        return type == Type.BYTES ? FieldAction.PAYLOAD : FieldAction.SKIP;
+      case "key_id":
+        return type == Type.STRING ? FieldAction.KEY_ID : FieldAction.SKIP;
+      case "shared_info":
+        return type == Type.STRING ? FieldAction.SHARED_INFO : FieldAction.SKIP;
+      default:
+        return FieldAction.SKIP;
+    }
+  }
+
+  private String readKeyId(Decoder in) throws IOException {
+    Utf8 keyId = in.readString(keyIdBuffer);
+    byte[] bytes = keyId.getBytes();
+    int length = keyId.getByteLength();
+    for (InternedKeyId interned : internedKeyIds) {
+      if (Arrays.equals(interned.bytes, 0, interned.bytes.length, bytes, 0, length)) {
+        return interned.keyId;
+      }
+    }
+    String keyIdString = new String(bytes, 0, length, UTF_8);
+    if (internedKeyIds.size() < MAX_INTERNED_KEY_IDS) {
+      internedKeyIds.add(new InternedKeyId(Arrays.copyOf(bytes, length), keyIdString));
+    }
+    return keyIdString;
+  }
+
+  /**
+   * Wraps the payload and the bytes of the shared info decoded by Avro instead of copying them, so
+   * they reach decryption as they were read.
+   */
+  private static AvroReportRecord fromGeneric(GenericRecord record) {
+    Object sharedInfo = record.get("shared_info");
+    return AvroReportRecord.create(
+        ByteBufferSource.wrap((ByteBuffer) record.get("payload")),
+        record.get("key_id").toString(),
+        sharedInfo.toString(),
+        sharedInfoBytes(sharedInfo));
+  }
+
+  private static ByteBufferSource sharedInfoBytes(Object sharedInfo) {
+    if (sharedInfo instanceof Utf8) {
+      Utf8 utf8 = (Utf8) sharedInfo;
+      return ByteBufferSource.wrap(ByteBuffer.wrap(utf8.getBytes(), 0, utf8.getByteLength()));
+    }
+    return ByteBufferSource.wrap(sharedInfo.toString().getBytes(UTF_8));
+  }
+
+  private static final class InternedKeyId {
+
+    private final byte[] bytes;
+    private final String keyId;
+
+    InternedKeyId(byte[] bytes, String keyId) {
+      this.bytes = bytes;
+      this.keyId = keyId;
+    }
+  }
+}
@@ -16,22 +16,26 @@
 
 package com.google.aggregate.protocol.avro;
 
-import com.google.common.io.ByteSource;
-import java.nio.ByteBuffer;
+import java.io.IOException;
+import org.apache.avro.file.DataFileReader;
 import org.apache.avro.file.DataFileStream;
-import org.apache.avro.generic.GenericRecord;
 
-/** Implementation of AvroRecordReaders that deserializes to {@code Reports.} */
-public final class AvroReportsReader extends AvroRecordReader<AvroReportRecord> {
+/**
+ * Implementation of AvroRecordReaders that deserializes to {@code Reports.} The records are decoded
+ * by {@link AvroReportRecordDatumReader}.
+ */
+public final class AvroReportsReader extends AvroRecordReader<AvroReportRecord, AvroReportRecord> {
 
-  AvroReportsReader(DataFileStream<GenericRecord> streamReader) {
+  AvroReportsReader(DataFileStream<AvroReportRecord> streamReader) {
     super(streamReader);
   }
 
-  AvroReportRecord deserializeRecordFromGeneric(GenericRecord record) {
-    return AvroReportRecord.create(
-        ByteSource.wrap(((ByteBuffer) record.get("payload")).array()),
-        record.get("key_id").toString(),
-        record.get("shared_info").toString());
+  AvroReportsReader(DataFileReader<AvroReportRecord> fileReader, long start, long end)
+      throws IOException {
+    super(fileReader, start, end);
+  }
+
+  AvroReportRecord deserializeRecord(AvroReportRecord record) {
+    return record;
   }
 }
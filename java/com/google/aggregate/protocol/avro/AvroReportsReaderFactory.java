@@ -19,8 +19,9 @@ package com.google.aggregate.protocol.avro;
 import java.io.IOException;
 import java.io.InputStream;
 import javax.inject.Inject;
+import org.apache.avro.file.DataFileReader;
 import org.apache.avro.file.DataFileStream;
-import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.file.SeekableInput;
 
 /** Produces {@code AvroReportsReader}s for given input streams */
 public final class AvroReportsReaderFactory {
@@ -34,6 +35,18 @@ public final class AvroReportsReaderFactory {
 
   public AvroReportsReader create(InputStream in) throws IOException {
     return new AvroReportsReader(
-        new DataFileStream<>(in, new GenericDatumReader<>(schemaSupplier.get())));
+        new DataFileStream<>(in, new AvroReportRecordDatumReader(schemaSupplier.get())));
+  }
+
+  /**
+   * Creates a reader of the reports in the blocks of a range of a file, from {@code start} to
+   * {@code end}. The readers of adjacent ranges of a file read each report once, so that the ranges
+   * can be read concurrently.
+   */
+  public AvroReportsReader create(SeekableInput in, long start, long end) throws IOException {
+    return new AvroReportsReader(
+        new DataFileReader<>(in, new AvroReportRecordDatumReader(schemaSupplier.get())),
+        start,
+        end);
   }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.aggregate.tools.shard;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.google.aggregate.adtech.worker.aggregation.domain.BinaryDomainSorter;
+import com.google.aggregate.adtech.worker.aggregation.domain.TextDomainKeyReader;
+import com.google.aggregate.adtech.worker.aggregation.engine.DomainKeyIterator;
+import com.google.aggregate.protocol.avro.AvroOutputDomainReader;
+import com.google.aggregate.protocol.avro.AvroOutputDomainReaderFactory;
+import com.google.aggregate.protocol.avro.AvroOutputDomainRecord;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closer;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+/*
+ * This tool converts an Avro or text output domain into a single binary output domain shard, with
+ * its keys sorted and deduplicated, to be read by the worker with --domain_file_format BINARY.
+ * The input is a domain file or a directory of domain shards:
+ * bazel run //java/com/google/aggregate/tools/shard:DomainConverter -- \
+ *  --input $PWD/20k_domain \
+ *  --input_format AVRO \
+ *  --output $PWD/20k_domain.bin
+ * Keys are sorted in chunks of --max_keys_in_memory keys, 16 bytes each; larger domains are
+ * sorted into temporary runs next to the output, which are merged at the end.
+ */
+final class DomainConverter {
+
+  static Injector injector = Guice.createInjector(new Env());
+
+  public static void main(String[] args) throws IOException {
+    Args cliArgs = new Args();
+    JCommander.newBuilder().addObject(cliArgs).build().parse(args);
+
+    Path outputPath = Paths.get(cliArgs.output);
+    long keyCount =
+        convert(
+            listInputs(Paths.get(cliArgs.input)),
+            cliArgs.inputFormat,
+            outputPath,
+            cliArgs.maxKeysInMemory);
+    System.out.printf("Wrote %d domain keys at %s\n", keyCount, outputPath.toAbsolutePath());
+  }
+
+  /**
+   * Writes the distinct keys of the input domain shards to a binary output domain shard.
+   *
+   * @return the number of keys written
+   */
+  static long convert(
+      ImmutableList<Path> inputs, InputFormat inputFormat, Path output, int maxKeysInMemory)
+      throws IOException {
+    try (BinaryDomainSorter sorter = new BinaryDomainSorter(output, maxKeysInMemory)) {
+      for (Path input : inputs) {
+        try (Closer closer = Closer.create()) {
+          DomainKeyIterator keys = openKeys(input, inputFormat, closer);
+          while (keys.next()) {
+            sorter.add(keys.keyHigh(), keys.keyLow());
+          }
+        }
+      }
+      return sorter.finish();
+    }
+  }
+
+  /** Lists the regular files of the input directory by name, or the input file itself. */
+  private static ImmutableList<Path> listInputs(Path input) throws IOException {
+    if (!Files.isDirectory(input)) {
+      return ImmutableList.of(input);
+    }
+    try (Stream<Path> files = Files.list(input)) {
+      return files.filter(Files::isRegularFile).sorted().collect(ImmutableList.toImmutableList());
+    }
+  }
+
+  private static DomainKeyIterator openKeys(Path input, InputFormat inputFormat, Closer closer)
+      throws IOException {
+    InputStream inputStream = closer.register(Files.newInputStream(input));
+    if (inputFormat == InputFormat.TEXT_FILE) {
+      return new TextDomainKeyReader(inputStream);
+    }
+    AvroOutputDomainReaderFactory readerFactory =
+        injector.getInstance(AvroOutputDomainReaderFactory.class);
+    AvroOutputDomainReader reader = closer.register(readerFactory.create(inputStream));
+    return DomainKeyIterator.of(
+        reader.streamRecords().map(AvroOutputDomainRecord::bucket).iterator());
+  }
+
+  enum InputFormat {
+    TEXT_FILE,
+    AVRO
+  }
+
+  private static final class Env extends AbstractModule {}
+
+  private static final class Args {
+
+    @Parameter(
+        names = "--input",
+        description = "Output domain file, or directory of output domain shards.",
+        required = true)
+    private String input;
+
+    @Parameter(names = "--input_format", description = "Format of the input output domain.")
+    private InputFormat inputFormat = InputFormat.AVRO;
+
+    @Parameter(
+        names = "--output",
+        description = "Path of the binary output domain shard to write.",
+        required = true)
+    private String output;
+
+    @Parameter(
+        names = "--max_keys_in_memory",
+        description = "Number of keys sorted in memory at once.")
+    private int maxKeysInMemory = 1 << 24;
+  }
+}
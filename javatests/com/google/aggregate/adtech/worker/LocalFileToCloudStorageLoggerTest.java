@@ -32,6 +32,8 @@ import com.google.aggregate.adtech.worker.exceptions.ResultLogException;
 import com.google.aggregate.adtech.worker.model.AggregatedFact;
 import com.google.aggregate.adtech.worker.model.DebugBucketAnnotation;
 import com.google.aggregate.adtech.worker.testing.AvroResultsFileReader;
+import com.google.aggregate.adtech.worker.upload.FileSystemMultipartBlobUploader;
+import com.google.aggregate.adtech.worker.upload.MultipartBlobUploader;
 import com.google.aggregate.adtech.worker.util.OutputShardFileHelper;
 import com.google.aggregate.adtech.worker.writer.LocalResultFileWriter;
 import com.google.aggregate.adtech.worker.writer.avro.LocalAvroDebugResultFileWriter;
@@ -60,6 +62,8 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -133,6 +137,7 @@ public class LocalFileToCloudStorageLoggerTest {
     }
 
     uploadFlagHelper.setEnableParallelSummaryUpload(true);
+    uploadFlagHelper.setEnableDirectSummaryUpload(false);
   }
 
   @Test
@@ -256,6 +261,89 @@ public class LocalFileToCloudStorageLoggerTest {
     assertThat(recordCountPerShard.get(3)).isEqualTo(1);
   }
 
+  // Without the record count, logResults rolls over every 3 records and yields 4 shards for 10
+  // output key-value pairs.
+  @Test
+  public void logResultsTestWithUnknownRecordCount() throws Exception {
+    ArrayList<AggregatedFact> resultList = new ArrayList<>();
+    // Configure shard values to get multiple shards (3 records per shard)
+    OutputShardFileHelper.setOutputShardFileSizeBytes(
+        3 * OutputShardFileHelper.getOneRecordFileSizeBytes()
+            + OutputShardFileHelper.getAvroMetadataSizeBytes());
+    ImmutableList<Path> expectedFiles =
+        ImmutableList.of(
+            Path.of("/bucket/dataHandle-1-of-4"),
+            Path.of("/bucket/dataHandle-2-of-4"),
+            Path.of("/bucket/dataHandle-3-of-4"),
+            Path.of("/bucket/dataHandle-4-of-4"));
+    ArrayList<Integer> recordCountPerShard = new ArrayList<>();
+
+    // Write the results
+    localFileToCloudStorageLogger
+        .get()
+        .logResults(results.iterator(), OptionalLong.empty(), ctx, /* isDebugRun= */ false);
+    ImmutableList<Path> resultFiles =
+        Files.list(blobStorageClient.getLastWrittenFile().getParent()).collect(toImmutableList());
+    for (Path path : resultFiles) {
+      ImmutableList<AggregatedFact> results = avroResultsFileReader.readAvroResultsFile(path);
+      recordCountPerShard.add(results.size());
+      resultList.addAll(results);
+    }
+
+    assertThat(resultFiles.toString()).isEqualTo(expectedFiles.toString());
+    assertThat(resultList).containsExactly(results.toArray());
+    assertThat(recordCountPerShard).containsExactly(3, 3, 3, 1).inOrder();
+    // Check that no local file exists in the working directory
+    assertThat(Files.list(workingDirectory).collect(toImmutableList())).isEmpty();
+  }
+
+  // With direct upload, the 4 shards are uploaded in parts without local files.
+  @Test
+  public void logResultsTestWithDirectUpload() throws Exception {
+    uploadFlagHelper.setEnableDirectSummaryUpload(true);
+    ArrayList<AggregatedFact> resultList = new ArrayList<>();
+    // Configure shard values to get multiple shards (3 records per shard)
+    OutputShardFileHelper.setOutputShardFileSizeBytes(
+        3 * OutputShardFileHelper.getOneRecordFileSizeBytes()
+            + OutputShardFileHelper.getAvroMetadataSizeBytes());
+    ImmutableList<Path> expectedFiles =
+        ImmutableList.of(
+            Path.of("/bucket/dataHandle-1-of-4"),
+            Path.of("/bucket/dataHandle-2-of-4"),
+            Path.of("/bucket/dataHandle-3-of-4"),
+            Path.of("/bucket/dataHandle-4-of-4"));
+    ArrayList<Integer> recordCountPerShard = new ArrayList<>();
+
+    // Write the results
+    localFileToCloudStorageLogger.get().logResults(results, ctx, /* isDebugRun= */ false);
+    ImmutableList<Path> resultFiles =
+        Files.list(testFS.getPath("/bucket")).sorted().collect(toImmutableList());
+    for (Path path : resultFiles) {
+      ImmutableList<AggregatedFact> results = avroResultsFileReader.readAvroResultsFile(path);
+      recordCountPerShard.add(results.size());
+      resultList.addAll(results);
+    }
+
+    assertThat(resultFiles.toString()).isEqualTo(expectedFiles.toString());
+    assertThat(resultList).containsExactly(results.toArray());
+    assertThat(recordCountPerShard).containsExactly(3, 3, 3, 1).inOrder();
+    // Check that no local file exists in the working directory
+    assertThat(Files.list(workingDirectory).collect(toImmutableList())).isEmpty();
+  }
+
+  @Test
+  public void logResults_moreResultsThanRecordCount_throwsException() throws Exception {
+    OutputShardFileHelper.setOutputShardFileSizeBytes(100_000_000L);
+
+    Assert.assertThrows(
+        ResultLogException.class,
+        () ->
+            localFileToCloudStorageLogger
+                .get()
+                .logResults(
+                    results.iterator(), OptionalLong.of(5), ctx, /* isDebugRun= */ false));
+  }
+
   // logResults on debug run would yield 4 shards for 10 output key-value pairs.
   @Test
   public void logResultsTestOnDebugRunWithMultiShards() throws Exception {
@@ -334,6 +422,7 @@ public class LocalFileToCloudStorageLoggerTest {
   private static final class ParallelUploadFlagHelper {
 
     boolean isEnableParallelSummaryUpload = true;
+    boolean isEnableDirectSummaryUpload = false;
 
     boolean isEnableParallelSummaryUpload() {
       return isEnableParallelSummaryUpload;
@@ -342,6 +431,14 @@ public class LocalFileToCloudStorageLoggerTest {
     public void setEnableParallelSummaryUpload(boolean flag) {
       isEnableParallelSummaryUpload = flag;
     }
+
+    boolean isEnableDirectSummaryUpload() {
+      return isEnableDirectSummaryUpload;
+    }
+
+    public void setEnableDirectSummaryUpload(boolean flag) {
+      isEnableDirectSummaryUpload = flag;
+    }
   }
 
   private static final class TestEnv extends AbstractModule {
@@ -379,6 +476,13 @@ public class LocalFileToCloudStorageLoggerTest {
       return uploadFlagHelper.isEnableParallelSummaryUpload();
     }
 
+    @Provides
+    Optional<MultipartBlobUploader> provideMultipartBlobUploader(FileSystem fileSystem) {
+      return uploadFlagHelper.isEnableDirectSummaryUpload()
+          ? Optional.of(new FileSystemMultipartBlobUploader(fileSystem))
+          : Optional.empty();
+    }
+
     @Provides
     @Singleton
     @BlockingThreadPool
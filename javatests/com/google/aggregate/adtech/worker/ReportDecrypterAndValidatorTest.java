@@ -17,6 +17,7 @@
 package com.google.aggregate.adtech.worker;
 
 import static com.google.aggregate.adtech.worker.model.SharedInfo.LATEST_VERSION;
+import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth8.assertThat;
 
 import com.google.acai.Acai;
@@ -162,6 +163,23 @@ public class ReportDecrypterAndValidatorTest {
         .containsExactly(ErrorCounter.INTERNAL_ERROR);
   }
 
+  @Test
+  public void decryptAndValidate_batch_returnsResultsInOrder() {
+    fakeRecordDecrypter.setShouldThrow(true, ErrorReason.KEY_NOT_FOUND);
+
+    ImmutableList<DecryptionValidationResult> decryptionValidationResults =
+        reportDecrypterAndValidator.decryptAndValidate(
+            ImmutableList.of(encryptedReport, encryptedReport), ctx);
+
+    assertThat(decryptionValidationResults).hasSize(2);
+    assertThat(decryptionValidationResults.get(0).report()).isEmpty();
+    assertThat(
+            decryptionValidationResults.get(0).errorMessages().stream()
+                .map(ErrorMessage::category))
+        .containsExactly(ErrorCounter.DECRYPTION_KEY_NOT_FOUND);
+    assertThat(decryptionValidationResults.get(1).report()).isPresent();
+  }
+
   public static final class TestEnv extends AbstractModule {
 
     @Override
@@ -57,10 +57,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.acai.Acai;
 import com.google.acai.TestScoped;
 import com.google.aggregate.adtech.worker.AggregationWorkerReturnCode;
+import com.google.aggregate.adtech.worker.Annotations.AggregationSpillDirectory;
 import com.google.aggregate.adtech.worker.Annotations.BlockingThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.CustomForkJoinThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.DomainOptional;
+import com.google.aggregate.adtech.worker.Annotations.EnablePrimitiveAggregationTable;
 import com.google.aggregate.adtech.worker.Annotations.EnablePrivacyBudgetKeyFiltering;
+import com.google.aggregate.adtech.worker.Annotations.EnableSpillToDiskAggregation;
 import com.google.aggregate.adtech.worker.Annotations.EnableStackTraceInResponse;
 import com.google.aggregate.adtech.worker.Annotations.EnableThresholding;
 import com.google.aggregate.adtech.worker.Annotations.MaxDepthOfStackTrace;
@@ -70,6 +73,8 @@ import com.google.aggregate.adtech.worker.Annotations.ReportErrorThresholdPercen
 import com.google.aggregate.adtech.worker.Annotations.StreamingOutputDomainProcessing;
 import com.google.aggregate.adtech.worker.ResultLogger;
 import com.google.aggregate.adtech.worker.aggregation.domain.AvroOutputDomainProcessor;
+import com.google.aggregate.adtech.worker.aggregation.domain.DomainJoinOptions;
+import com.google.aggregate.adtech.worker.aggregation.domain.OutputDomainCache;
 import com.google.aggregate.adtech.worker.aggregation.domain.OutputDomainProcessor;
 import com.google.aggregate.adtech.worker.aggregation.domain.TextOutputDomainProcessor;
 import com.google.aggregate.adtech.worker.aggregation.engine.AggregationEngine;
@@ -95,6 +100,11 @@ import com.google.aggregate.adtech.worker.model.SharedInfo;
 import com.google.aggregate.adtech.worker.model.serdes.PayloadSerdes;
 import com.google.aggregate.adtech.worker.model.serdes.SharedInfoSerdes;
 import com.google.aggregate.adtech.worker.model.serdes.cbor.CborPayloadSerdes;
+import com.google.aggregate.adtech.worker.reader.BlobPrefetcher;
+import com.google.aggregate.adtech.worker.reader.BlobVersionReader;
+import com.google.aggregate.adtech.worker.reader.FileSystemRangedBlobReader;
+import com.google.aggregate.adtech.worker.reader.RangedBlobReader;
+import com.google.aggregate.adtech.worker.reader.ReportReadOptions;
 import com.google.aggregate.adtech.worker.testing.FakeDecryptionKeyService;
 import com.google.aggregate.adtech.worker.testing.FakeReportGenerator;
 import com.google.aggregate.adtech.worker.testing.FakeValidator;
@@ -145,7 +155,9 @@ import com.google.inject.Provider;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import com.google.inject.multibindings.Multibinder;
+import com.google.inject.multibindings.OptionalBinder;
 import com.google.privacysandbox.otel.Annotations.EnableOTelLogs;
+import com.google.privacysandbox.otel.OTelConfiguration;
 import com.google.privacysandbox.otel.OtlpJsonLoggingOTelConfigurationModule;
 import com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient;
 import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
@@ -235,6 +247,12 @@ public class ConcurrentAggregationProcessorTest {
   // Run all tests with streamingOutputDomain enabled and disabled.
   @TestParameter boolean streamingOutputDomainTestParam;
 
+  // Run all tests with both the concurrent map and the primitive aggregation table.
+  @TestParameter boolean primitiveAggregationTableTestParam;
+
+  // Run all tests with both in-memory and external-memory aggregation.
+  @TestParameter boolean spillToDiskAggregationTestParam;
+
   // Under test.
   @Inject private Provider<ConcurrentAggregationProcessor> processor;
 
@@ -246,6 +264,8 @@ public class ConcurrentAggregationProcessorTest {
     fakeValidator.setReportIdShouldReturnError(ImmutableSet.of());
 
     outputDomainProcessorHelper.setStreamingOutputDomainProcessing(streamingOutputDomainTestParam);
+    featureFlagHelper.setEnablePrimitiveAggregationTable(primitiveAggregationTableTestParam);
+    featureFlagHelper.setEnableSpillToDiskAggregation(spillToDiskAggregationTestParam);
   }
 
   private EncryptedReport generateEncryptedReportWithVersion(
@@ -2123,9 +2143,21 @@ public class ConcurrentAggregationProcessorTest {
 
     boolean enablePrivacyBudgetKeyFiltering = true;
 
+    boolean enablePrimitiveAggregationTable = false;
+
+    boolean enableSpillToDiskAggregation = false;
+
     void setEnablePrivacyBudgetKeyFiltering(boolean enablePrivacyBudgetKeyFiltering) {
       this.enablePrivacyBudgetKeyFiltering = enablePrivacyBudgetKeyFiltering;
     }
+
+    void setEnablePrimitiveAggregationTable(boolean enablePrimitiveAggregationTable) {
+      this.enablePrimitiveAggregationTable = enablePrimitiveAggregationTable;
+    }
+
+    void setEnableSpillToDiskAggregation(boolean enableSpillToDiskAggregation) {
+      this.enableSpillToDiskAggregation = enableSpillToDiskAggregation;
+    }
   }
 
   public static Job generateJob(
@@ -2178,6 +2210,12 @@ public class ConcurrentAggregationProcessorTest {
       // Report reading
       install(new FSBlobStorageClientModule());
       bind(FileSystem.class).toInstance(FileSystems.getDefault());
+      // Small ranges, so that the report shards are also read by range.
+      OptionalBinder.newOptionalBinder(binder(), RangedBlobReader.class)
+          .setBinding()
+          .to(FileSystemRangedBlobReader.class);
+      OptionalBinder.newOptionalBinder(binder(), BlobVersionReader.class);
+      bind(ReportReadOptions.class).toInstance(ReportReadOptions.create(1024));
 
       // decryption
       bind(FakeDecryptionKeyService.class).in(TestScoped.class);
@@ -2226,6 +2264,7 @@ public class ConcurrentAggregationProcessorTest {
       bind(Integer.class).annotatedWith(MaxDepthOfStackTrace.class).toInstance(3);
       bind(double.class).annotatedWith(ReportErrorThresholdPercentage.class).toInstance(10.0);
       bind(OutputDomainProcessorHelper.class).toInstance(helper);
+      bind(OutputDomainCache.class).toInstance(OutputDomainCache.disabled());
 
       bind(FeatureFlagHelper.class).toInstance(new FeatureFlagHelper());
     }
@@ -2254,7 +2293,12 @@ public class ConcurrentAggregationProcessorTest {
         @NonBlockingThreadPool ListeningExecutorService nonBlockingThreadPool,
         BlobStorageClient blobStorageClient,
         StopwatchRegistry stopwatchRegistry,
+        OTelConfiguration oTelConfiguration,
         AvroOutputDomainReaderFactory avroOutputDomainReaderFactory,
+        OutputDomainCache outputDomainCache,
+        BlobPrefetcher blobPrefetcher,
+        Optional<BlobVersionReader> blobVersionReader,
+        DomainJoinOptions domainJoinOptions,
         @EnableThresholding Boolean enableThresholding,
         @DomainOptional Boolean domainOptional) {
       return helper.isAvroOutputDomainProcessor()
@@ -2264,6 +2308,11 @@ public class ConcurrentAggregationProcessorTest {
           blobStorageClient,
           avroOutputDomainReaderFactory,
           stopwatchRegistry,
+          oTelConfiguration,
+          outputDomainCache,
+          blobPrefetcher,
+          blobVersionReader,
+          domainJoinOptions,
           domainOptional,
           enableThresholding)
           : new TextOutputDomainProcessor(
@@ -2271,6 +2320,11 @@ public class ConcurrentAggregationProcessorTest {
               nonBlockingThreadPool,
               blobStorageClient,
               stopwatchRegistry,
+              oTelConfiguration,
+              outputDomainCache,
+              blobPrefetcher,
+              blobVersionReader,
+              domainJoinOptions,
               domainOptional,
               enableThresholding);
     }
@@ -2333,5 +2387,23 @@ public class ConcurrentAggregationProcessorTest {
     Boolean provideEnableBudgetKeyFiltering(FeatureFlagHelper featureFlagHelper) {
       return featureFlagHelper.enablePrivacyBudgetKeyFiltering;
     }
+
+    @Provides
+    @EnablePrimitiveAggregationTable
+    boolean provideEnablePrimitiveAggregationTable(FeatureFlagHelper featureFlagHelper) {
+      return featureFlagHelper.enablePrimitiveAggregationTable;
+    }
+
+    @Provides
+    @EnableSpillToDiskAggregation
+    boolean provideEnableSpillToDiskAggregation(FeatureFlagHelper featureFlagHelper) {
+      return featureFlagHelper.enableSpillToDiskAggregation;
+    }
+
+    @Provides
+    @AggregationSpillDirectory
+    Path provideAggregationSpillDirectory() {
+      return Path.of(System.getProperty("java.io.tmpdir"));
+    }
   }
 }
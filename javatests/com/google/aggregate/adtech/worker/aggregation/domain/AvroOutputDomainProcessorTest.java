@@ -26,9 +26,12 @@ import static org.junit.Assert.assertThrows;
 
 import com.google.acai.Acai;
 import com.google.acai.TestScoped;
+import com.google.aggregate.adtech.worker.Annotations.AggregationSpillDirectory;
 import com.google.aggregate.adtech.worker.Annotations.BlockingThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.CustomForkJoinThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.DomainOptional;
+import com.google.aggregate.adtech.worker.Annotations.EnablePrimitiveAggregationTable;
+import com.google.aggregate.adtech.worker.Annotations.EnableSpillToDiskAggregation;
 import com.google.aggregate.adtech.worker.Annotations.EnableThresholding;
 import com.google.aggregate.adtech.worker.Annotations.NonBlockingThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.ParallelAggregatedFactNoising;
@@ -41,6 +44,9 @@ import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.Nois
 import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.NoisingL1Sensitivity;
 import com.google.aggregate.adtech.worker.exceptions.DomainReadException;
 import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.aggregate.adtech.worker.reader.BlobVersionReader;
+import com.google.aggregate.adtech.worker.reader.FileSystemRangedBlobReader;
+import com.google.aggregate.adtech.worker.reader.RangedBlobReader;
 import com.google.aggregate.privacy.budgeting.budgetkeygenerator.PrivacyBudgetKeyGeneratorModule;
 import com.google.aggregate.privacy.noise.Annotations.Threshold;
 import com.google.aggregate.privacy.noise.NoiseApplier;
@@ -61,6 +67,9 @@ import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
+import com.google.inject.multibindings.OptionalBinder;
+import com.google.privacysandbox.otel.Annotations.EnableOTelLogs;
+import com.google.privacysandbox.otel.OtlpJsonLoggingOTelConfigurationModule;
 import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
 import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
 import com.google.scp.operator.cpio.blobstorageclient.testing.FSBlobStorageClientModule;
@@ -166,6 +175,38 @@ public class AvroOutputDomainProcessorTest {
         .containsExactly(BigInteger.valueOf(11), BigInteger.valueOf(22), BigInteger.valueOf(33));
   }
 
+  @Test
+  public void readSortedShards_joinsWithoutInsertingDomainKeys() throws Exception {
+    writeOutputDomain(outputDomainDirectory.resolve("domain_1.avro"), Stream.of(11, 11, 22));
+    writeOutputDomain(outputDomainDirectory.resolve("domain_2.avro"), Stream.of(5, 22, 33));
+
+    ImmutableSet<BigInteger> keys = readOutputDomain();
+
+    assertThat(keys)
+        .containsExactly(
+            BigInteger.valueOf(5),
+            BigInteger.valueOf(11),
+            BigInteger.valueOf(22),
+            BigInteger.valueOf(33));
+    assertThat(aggregationEngine.getKeySet()).isEmpty();
+  }
+
+  @Test
+  public void readUnsortedShards_insertsDomainKeys() throws Exception {
+    writeOutputDomain(outputDomainDirectory.resolve("domain_1.avro"), Stream.of(11, 22));
+    writeOutputDomain(outputDomainDirectory.resolve("domain_2.avro"), Stream.of(33, 5));
+
+    ImmutableSet<BigInteger> keys = readOutputDomain();
+
+    assertThat(keys)
+        .containsExactly(
+            BigInteger.valueOf(5),
+            BigInteger.valueOf(11),
+            BigInteger.valueOf(22),
+            BigInteger.valueOf(33));
+    assertThat(aggregationEngine.getKeySet()).containsExactlyElementsIn(keys);
+  }
+
   @Test
   public void skipsZeroByteDomains() throws Exception {
     writeOutputDomain(outputDomainDirectory.resolve("domain_1.avro"), Stream.of());
@@ -207,6 +248,7 @@ public class AvroOutputDomainProcessorTest {
   private ImmutableSet<BigInteger> readOutputDomain() {
     NoisedAggregatedResultSet noisedResultset =
         outputDomainProcessor.adjustAggregationWithDomainAndNoiseStreaming(
+            "job",
             aggregationEngine,
             Optional.of(outputDomainLocation),
             outputDomainProcessor.listShards(outputDomainLocation),
@@ -239,11 +281,24 @@ public class AvroOutputDomainProcessorTest {
     protected void configure() {
       install(new FSBlobStorageClientModule());
       install(new PrivacyBudgetKeyGeneratorModule());
+      install(new OtlpJsonLoggingOTelConfigurationModule());
+      bind(boolean.class).annotatedWith(EnableOTelLogs.class).toInstance(false);
 
       bind(FileSystem.class).toInstance(FileSystems.getDefault());
+      OptionalBinder.newOptionalBinder(binder(), RangedBlobReader.class)
+          .setBinding()
+          .to(FileSystemRangedBlobReader.class);
+      OptionalBinder.newOptionalBinder(binder(), BlobVersionReader.class);
       bind(OutputDomainProcessor.class).to(AvroOutputDomainProcessor.class);
       bind(Boolean.class).annotatedWith(DomainOptional.class).toInstance(true);
       bind(Boolean.class).annotatedWith(EnableThresholding.class).toInstance(true);
+      bind(boolean.class).annotatedWith(EnablePrimitiveAggregationTable.class).toInstance(false);
+      bind(boolean.class).annotatedWith(EnableSpillToDiskAggregation.class).toInstance(false);
+      bind(Path.class)
+          .annotatedWith(AggregationSpillDirectory.class)
+          .toInstance(Path.of(System.getProperty("java.io.tmpdir")));
+      bind(OutputDomainCache.class).toInstance(OutputDomainCache.disabled());
+      bind(DomainJoinOptions.class).toInstance(DomainJoinOptions.create(/* sortedShards= */ true));
 
       bind(FakeNoiseApplierSupplier.class).in(TestScoped.class);
       bind(NoisedAggregationRunner.class).to(NoisedAggregationRunnerImpl.class);
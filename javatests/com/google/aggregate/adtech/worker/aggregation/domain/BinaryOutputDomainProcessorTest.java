@@ -0,0 +1,320 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.aggregate.adtech.worker.aggregation.domain;
+
+import static com.google.aggregate.adtech.worker.util.NumericConversions.createBucketFromInt;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertThrows;
+
+import com.google.acai.Acai;
+import com.google.acai.TestScoped;
+import com.google.aggregate.adtech.worker.Annotations.AggregationSpillDirectory;
+import com.google.aggregate.adtech.worker.Annotations.BlockingThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.CustomForkJoinThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.DomainOptional;
+import com.google.aggregate.adtech.worker.Annotations.EnablePrimitiveAggregationTable;
+import com.google.aggregate.adtech.worker.Annotations.EnableSpillToDiskAggregation;
+import com.google.aggregate.adtech.worker.Annotations.EnableThresholding;
+import com.google.aggregate.adtech.worker.Annotations.NonBlockingThreadPool;
+import com.google.aggregate.adtech.worker.Annotations.ParallelAggregatedFactNoising;
+import com.google.aggregate.adtech.worker.aggregation.engine.AggregationEngine;
+import com.google.aggregate.adtech.worker.aggregation.engine.AggregationEngineFactory;
+import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier;
+import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.NoisingDelta;
+import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.NoisingDistribution;
+import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.NoisingEpsilon;
+import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.NoisingL1Sensitivity;
+import com.google.aggregate.adtech.worker.exceptions.DomainReadException;
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.aggregate.adtech.worker.reader.BlobVersionReader;
+import com.google.aggregate.adtech.worker.reader.FileSystemRangedBlobReader;
+import com.google.aggregate.adtech.worker.reader.RangedBlobReader;
+import com.google.aggregate.adtech.worker.util.NumericConversions;
+import com.google.aggregate.privacy.budgeting.budgetkeygenerator.PrivacyBudgetKeyGeneratorModule;
+import com.google.aggregate.privacy.noise.Annotations.Threshold;
+import com.google.aggregate.privacy.noise.NoiseApplier;
+import com.google.aggregate.privacy.noise.NoisedAggregationRunner;
+import com.google.aggregate.privacy.noise.NoisedAggregationRunnerImpl;
+import com.google.aggregate.privacy.noise.model.NoisedAggregatedResultSet;
+import com.google.aggregate.privacy.noise.proto.Params.NoiseParameters.Distribution;
+import com.google.aggregate.privacy.noise.proto.Params.PrivacyParameters;
+import com.google.aggregate.privacy.noise.testing.ConstantNoiseModule.ConstantNoiseApplier;
+import com.google.aggregate.privacy.noise.testing.FakeNoiseApplierSupplier;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+import com.google.inject.multibindings.OptionalBinder;
+import com.google.privacysandbox.otel.Annotations.EnableOTelLogs;
+import com.google.privacysandbox.otel.OtlpJsonLoggingOTelConfigurationModule;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.testing.FSBlobStorageClientModule;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import javax.inject.Inject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class BinaryOutputDomainProcessorTest {
+
+  @Rule public final TemporaryFolder testWorkingDir = new TemporaryFolder();
+  @Rule public final Acai acai = new Acai(TestEnv.class);
+  // Under test
+  @Inject BinaryOutputDomainProcessor outputDomainProcessor;
+  @Inject AggregationEngineFactory aggregationEngineFactory;
+  @Inject FakeNoiseApplierSupplier fakeNoiseApplierSupplier;
+  @Inject NoisedAggregationRunnerImpl noisedAggregationRunner;
+  private AggregationEngine aggregationEngine;
+  private Path outputDomainDirectory;
+  private DataLocation outputDomainLocation;
+
+  @Before
+  public void setUp() throws Exception {
+    outputDomainDirectory = testWorkingDir.getRoot().toPath().resolve("output_domain");
+    Files.createDirectory(outputDomainDirectory);
+    outputDomainLocation =
+        DataLocation.ofBlobStoreDataLocation(
+            BlobStoreDataLocation.create(
+                /* bucket= */ outputDomainDirectory.toAbsolutePath().toString(), /* key= */ ""));
+    aggregationEngine = aggregationEngineFactory.create(ImmutableSet.of());
+    fakeNoiseApplierSupplier.setFakeNoiseApplier(new ConstantNoiseApplier(0));
+  }
+
+  @Test
+  public void readDomain_joinsShardsWithoutInsertingKeys() throws Exception {
+    writeOutputDomain(
+        outputDomainDirectory.resolve("domain_1.bin"),
+        createBucketFromInt(11),
+        createBucketFromInt(22));
+    writeOutputDomain(
+        outputDomainDirectory.resolve("domain_2.bin"),
+        createBucketFromInt(22),
+        createBucketFromInt(33));
+
+    ImmutableSet<BigInteger> keys = readOutputDomain();
+
+    assertThat(keys)
+        .containsExactly(createBucketFromInt(11), createBucketFromInt(22), createBucketFromInt(33));
+    assertThat(aggregationEngine.getKeySet()).isEmpty();
+  }
+
+  @Test
+  public void readDomainStream_matchesMappedRead() throws Exception {
+    Random random = new Random(/* seed= */ 1);
+    TreeSet<BigInteger> expectedKeys = new TreeSet<>();
+    // Spans several buffers of the stream reader, with keys of every length.
+    while (expectedKeys.size() < 10_000) {
+      expectedKeys.add(new BigInteger(random.nextInt(129), random));
+    }
+    Path shardPath = outputDomainDirectory.resolve("domain.bin");
+    writeOutputDomain(shardPath, expectedKeys.toArray(new BigInteger[0]));
+
+    List<BigInteger> streamedKeys;
+    try (InputStream shardStream = Files.newInputStream(shardPath)) {
+      streamedKeys =
+          outputDomainProcessor.readInputStream(shardStream).collect(Collectors.toList());
+    }
+    List<BigInteger> mappedKeys = new ArrayList<>();
+    try (BinaryDomainReader reader = BinaryDomainReader.map(shardPath)) {
+      assertThat(reader.keyCount()).isEqualTo(expectedKeys.size());
+      while (reader.next()) {
+        mappedKeys.add(NumericConversions.uInt128FromLongs(reader.keyHigh(), reader.keyLow()));
+      }
+    }
+
+    assertThat(streamedKeys).containsExactlyElementsIn(expectedKeys).inOrder();
+    assertThat(mappedKeys).containsExactlyElementsIn(expectedKeys).inOrder();
+  }
+
+  @Test
+  public void readDomainStream_truncatedShard_fails() throws Exception {
+    Path shardPath = outputDomainDirectory.resolve("domain.bin");
+    writeOutputDomain(shardPath, createBucketFromInt(11), createBucketFromInt(22));
+    byte[] bytes = Files.readAllBytes(shardPath);
+    byte[] truncated = Arrays.copyOf(bytes, bytes.length - 8);
+
+    DomainReadException error =
+        assertThrows(
+            DomainReadException.class,
+            () ->
+                outputDomainProcessor
+                    .readInputStream(new ByteArrayInputStream(truncated))
+                    .collect(Collectors.toList()));
+    assertThat(error).hasCauseThat().isInstanceOf(EOFException.class);
+  }
+
+  @Test
+  public void mapDomain_keyCountOverflowingSize_fails() throws Exception {
+    Path shardPath = outputDomainDirectory.resolve("domain.bin");
+    writeOutputDomain(shardPath, createBucketFromInt(11), createBucketFromInt(22));
+    byte[] bytes = Files.readAllBytes(shardPath);
+    // 2^60 keys of 16 bytes wrap around to a size of 0.
+    ByteBuffer.wrap(bytes).putLong(/* index= */ 16, 1L << 60);
+    Files.write(shardPath, bytes);
+
+    assertThrows(EOFException.class, () -> BinaryDomainReader.map(shardPath));
+  }
+
+  @Test
+  public void readDomainStream_notBinaryShard_fails() {
+    byte[] bytes = "11\n22\n33\n".getBytes(US_ASCII);
+
+    assertThrows(
+        DomainReadException.class,
+        () -> outputDomainProcessor.readInputStream(new ByteArrayInputStream(bytes)));
+  }
+
+  @Test
+  public void writeDomain_keysNotAscending_throws() throws Exception {
+    try (BinaryDomainWriter writer =
+        BinaryDomainWriter.create(outputDomainDirectory.resolve("domain.bin"))) {
+      writer.add(/* keyHigh= */ 0, /* keyLow= */ 2);
+
+      assertThrows(IllegalArgumentException.class, () -> writer.add(0, 2));
+      assertThrows(IllegalArgumentException.class, () -> writer.add(0, 1));
+    }
+  }
+
+  private ImmutableSet<BigInteger> readOutputDomain() {
+    NoisedAggregatedResultSet noisedResultset =
+        outputDomainProcessor.adjustAggregationWithDomainAndNoiseStreaming(
+            "job",
+            aggregationEngine,
+            Optional.of(outputDomainLocation),
+            outputDomainProcessor.listShards(outputDomainLocation),
+            noisedAggregationRunner,
+            Optional.empty(),
+            false);
+
+    return noisedResultset.noisedResult().noisedAggregatedFacts().stream()
+        .map(AggregatedFact::getBucket)
+        .collect(ImmutableSet.toImmutableSet());
+  }
+
+  private static void writeOutputDomain(Path path, BigInteger... sortedKeys) throws IOException {
+    try (BinaryDomainWriter writer = BinaryDomainWriter.create(path)) {
+      for (BigInteger key : sortedKeys) {
+        writer.add(
+            NumericConversions.uInt128HighBits(key), NumericConversions.uInt128LowBits(key));
+      }
+    }
+  }
+
+  private static final class TestEnv extends AbstractModule {
+
+    @Override
+    protected void configure() {
+      install(new FSBlobStorageClientModule());
+      install(new PrivacyBudgetKeyGeneratorModule());
+      install(new OtlpJsonLoggingOTelConfigurationModule());
+      bind(boolean.class).annotatedWith(EnableOTelLogs.class).toInstance(false);
+
+      bind(FileSystem.class).toInstance(FileSystems.getDefault());
+      OptionalBinder.newOptionalBinder(binder(), RangedBlobReader.class)
+          .setBinding()
+          .to(FileSystemRangedBlobReader.class);
+      OptionalBinder.newOptionalBinder(binder(), BlobVersionReader.class);
+      bind(OutputDomainProcessor.class).to(BinaryOutputDomainProcessor.class);
+      bind(Boolean.class).annotatedWith(DomainOptional.class).toInstance(true);
+      bind(Boolean.class).annotatedWith(EnableThresholding.class).toInstance(true);
+      bind(boolean.class).annotatedWith(EnablePrimitiveAggregationTable.class).toInstance(false);
+      bind(boolean.class).annotatedWith(EnableSpillToDiskAggregation.class).toInstance(false);
+      bind(Path.class)
+          .annotatedWith(AggregationSpillDirectory.class)
+          .toInstance(Path.of(System.getProperty("java.io.tmpdir")));
+      bind(OutputDomainCache.class).toInstance(OutputDomainCache.disabled());
+
+      bind(FakeNoiseApplierSupplier.class).in(TestScoped.class);
+      bind(NoisedAggregationRunner.class).to(NoisedAggregationRunnerImpl.class);
+      bind(boolean.class).annotatedWith(ParallelAggregatedFactNoising.class).toInstance(true);
+      bind(Distribution.class)
+          .annotatedWith(NoisingDistribution.class)
+          .toInstance(Distribution.LAPLACE);
+      bind(double.class).annotatedWith(NoisingEpsilon.class).toInstance(0.1);
+      bind(long.class).annotatedWith(NoisingL1Sensitivity.class).toInstance(4L);
+      bind(double.class).annotatedWith(NoisingDelta.class).toInstance(5.00);
+    }
+
+    @Provides
+    @Threshold
+    Supplier<Double> provideThreshold() {
+      return () -> 0.0;
+    }
+
+    @Provides
+    Supplier<NoiseApplier> provideNoiseApplierSupplier(
+        FakeNoiseApplierSupplier fakeNoiseApplierSupplier) {
+      return fakeNoiseApplierSupplier;
+    }
+
+    @Provides
+    @Singleton
+    @CustomForkJoinThreadPool
+    ListeningExecutorService provideCustomForkJoinThreadPool() {
+      return newDirectExecutorService();
+    }
+
+    @Provides
+    Supplier<PrivacyParameters> providePrivacyParamConfig(PrivacyParametersSupplier supplier) {
+      return () -> supplier.get().toBuilder().setDelta(1e-5).build();
+    }
+
+    @Provides
+    @NonBlockingThreadPool
+    ListeningExecutorService provideNonBlockingThreadPool() {
+      return newDirectExecutorService();
+    }
+
+    @Provides
+    @BlockingThreadPool
+    ListeningExecutorService provideBlockingThreadPool() {
+      return newDirectExecutorService();
+    }
+
+    @Provides
+    Ticker provideTimingTicker() {
+      return Ticker.systemTicker();
+    }
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.domain;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertThrows;
+
+import com.google.aggregate.adtech.worker.aggregation.domain.OutputDomainCache.ShardVersion;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.metrics.LongCounter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class OutputDomainCacheTest {
+
+  // Header and one key.
+  private static final long SINGLE_KEY_DOMAIN_BYTES = 32 + 16;
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final AtomicInteger loads = new AtomicInteger();
+  private Path cacheDirectory;
+
+  @Before
+  public void setUp() throws IOException {
+    cacheDirectory = temporaryFolder.newFolder("cache").toPath();
+  }
+
+  @Test
+  public void open_missThenHit_loadsOnce() throws Exception {
+    OutputDomainCache cache = newCache(/* maxBytes= */ 1 << 20);
+    String key = key("domain");
+
+    try (BinaryDomainReader reader = cache.open(key, file -> writeDomain(file, 5))) {
+      assertThat(reader.keyCount()).isEqualTo(1);
+    }
+    try (BinaryDomainReader reader = cache.open(key, file -> writeDomain(file, 6))) {
+      assertThat(reader.next()).isTrue();
+      assertThat(reader.keyLow()).isEqualTo(5);
+    }
+
+    assertThat(loads.get()).isEqualTo(1);
+    assertThat(cache.missCount()).isEqualTo(1);
+    assertThat(cache.hitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void open_overBudget_evictsLeastRecentlyUsed() throws Exception {
+    OutputDomainCache cache = newCache(SINGLE_KEY_DOMAIN_BYTES);
+    String first = key("first");
+    String second = key("second");
+
+    cache.open(first, file -> writeDomain(file, 1)).close();
+    Files.setLastModifiedTime(cacheDirectory.resolve(first + ".domain"), FileTime.fromMillis(0));
+    cache.open(second, file -> writeDomain(file, 2)).close();
+    cache.open(second, file -> writeDomain(file, 2)).close();
+    cache.open(first, file -> writeDomain(file, 1)).close();
+
+    assertThat(loads.get()).isEqualTo(3);
+    assertThat(cache.hitCount()).isEqualTo(1);
+    assertThat(cache.missCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void open_failedLoad_leavesNoEntry() throws Exception {
+    OutputDomainCache cache = newCache(/* maxBytes= */ 1 << 20);
+    String key = key("domain");
+
+    assertThrows(
+        IOException.class,
+        () ->
+            cache.open(
+                key,
+                file -> {
+                  throw new IOException("Unreadable domain.");
+                }));
+    cache.open(key, file -> writeDomain(file, 1)).close();
+
+    assertThat(cache.missCount()).isEqualTo(2);
+    try (Stream<Path> files = Files.list(cacheDirectory)) {
+      assertThat(files.count()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void key_dependsOnFormatAndShards() {
+    ImmutableList<ShardVersion> shards =
+        ImmutableList.of(
+            ShardVersion.create("bucket", "domain/shard_1", /* version= */ "100-1"),
+            ShardVersion.create("bucket", "domain/shard_2", /* version= */ "200-1"));
+
+    assertThat(OutputDomainCache.key("avro", shards))
+        .isEqualTo(OutputDomainCache.key("avro", shards));
+    assertThat(OutputDomainCache.key("avro", shards))
+        .isNotEqualTo(OutputDomainCache.key("text", shards));
+    assertThat(OutputDomainCache.key("avro", shards))
+        .isNotEqualTo(
+            OutputDomainCache.key(
+                "avro",
+                ImmutableList.of(
+                    ShardVersion.create("bucket", "domain/shard_1", /* version= */ "100-1"),
+                    ShardVersion.create("bucket", "domain/shard_2", /* version= */ "201-1"))));
+    assertThat(OutputDomainCache.key("avro", shards))
+        .isNotEqualTo(
+            OutputDomainCache.key(
+                "avro",
+                ImmutableList.of(
+                    ShardVersion.create("bucket", "domain/shard_1", /* version= */ "100-1"),
+                    ShardVersion.create("bucket", "domain/shard_2", /* version= */ "200-2"))));
+  }
+
+  @Test
+  public void open_concurrentlyWithSameKey_loadsOnce() throws Exception {
+    OutputDomainCache cache = newCache(/* maxBytes= */ 1 << 20);
+    String key = key("domain");
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    try {
+      List<Future<Long>> keyCounts = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        keyCounts.add(
+            executor.submit(
+                () -> {
+                  try (BinaryDomainReader reader = cache.open(key, file -> writeDomain(file, 5))) {
+                    return reader.keyCount();
+                  }
+                }));
+      }
+      for (Future<Long> keyCount : keyCounts) {
+        assertThat(keyCount.get()).isEqualTo(1);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(loads.get()).isEqualTo(1);
+    assertThat(cache.missCount()).isEqualTo(1);
+    assertThat(cache.hitCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void open_differentKeys_loadConcurrently() throws Exception {
+    OutputDomainCache cache = newCache(/* maxBytes= */ 1 << 20);
+    CountDownLatch bothLoading = new CountDownLatch(2);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    try {
+      List<Future<Long>> keyCounts = new ArrayList<>();
+      for (String location : ImmutableList.of("first", "second")) {
+        OutputDomainCache.Loader loader =
+            file -> {
+              bothLoading.countDown();
+              if (!Uninterruptibles.awaitUninterruptibly(bothLoading, 10, SECONDS)) {
+                throw new IOException("The other key was not loaded concurrently.");
+              }
+              writeDomain(file, 1);
+            };
+        keyCounts.add(
+            executor.submit(
+                () -> {
+                  try (BinaryDomainReader reader = cache.open(key(location), loader)) {
+                    return reader.keyCount();
+                  }
+                }));
+      }
+      for (Future<Long> keyCount : keyCounts) {
+        assertThat(keyCount.get()).isEqualTo(1);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(cache.missCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void disabled_isNotEnabled() {
+    assertThat(OutputDomainCache.disabled().isEnabled()).isFalse();
+  }
+
+  private OutputDomainCache newCache(long maxBytes) {
+    LongCounter counter =
+        OpenTelemetry.noop().getMeter("test").counterBuilder("output_domain_cache").build();
+    return new OutputDomainCache(cacheDirectory, maxBytes, counter, counter);
+  }
+
+  private void writeDomain(Path file, long key) throws IOException {
+    loads.incrementAndGet();
+    try (BinaryDomainWriter writer = BinaryDomainWriter.create(file)) {
+      writer.add(0, key);
+    }
+  }
+
+  private static String key(String location) {
+    return OutputDomainCache.key(
+        "binary",
+        ImmutableList.of(ShardVersion.create("bucket", location, /* version= */ "100-1")));
+  }
+}
@@ -20,6 +20,7 @@ import static com.google.aggregate.adtech.worker.util.NumericConversions.createB
 import static com.google.aggregate.adtech.worker.util.NumericConversions.createBucketFromString;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
 import static java.nio.charset.StandardCharsets.US_ASCII;
 import static java.nio.file.StandardOpenOption.CREATE;
 import static java.nio.file.StandardOpenOption.WRITE;
@@ -27,9 +28,12 @@ import static org.junit.Assert.assertThrows;
 
 import com.google.acai.Acai;
 import com.google.acai.TestScoped;
+import com.google.aggregate.adtech.worker.Annotations.AggregationSpillDirectory;
 import com.google.aggregate.adtech.worker.Annotations.BlockingThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.CustomForkJoinThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.DomainOptional;
+import com.google.aggregate.adtech.worker.Annotations.EnablePrimitiveAggregationTable;
+import com.google.aggregate.adtech.worker.Annotations.EnableSpillToDiskAggregation;
 import com.google.aggregate.adtech.worker.Annotations.EnableThresholding;
 import com.google.aggregate.adtech.worker.Annotations.NonBlockingThreadPool;
 import com.google.aggregate.adtech.worker.Annotations.ParallelAggregatedFactNoising;
@@ -42,6 +46,10 @@ import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.Nois
 import com.google.aggregate.adtech.worker.configs.PrivacyParametersSupplier.NoisingL1Sensitivity;
 import com.google.aggregate.adtech.worker.exceptions.DomainReadException;
 import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.aggregate.adtech.worker.reader.BlobVersionReader;
+import com.google.aggregate.adtech.worker.reader.FileSystemRangedBlobReader;
+import com.google.aggregate.adtech.worker.reader.RangedBlobReader;
+import com.google.aggregate.adtech.worker.util.NumericConversions;
 import com.google.aggregate.privacy.budgeting.budgetkeygenerator.PrivacyBudgetKeyGeneratorModule;
 import com.google.aggregate.privacy.noise.Annotations.Threshold;
 import com.google.aggregate.privacy.noise.NoiseApplier;
@@ -59,9 +67,13 @@ import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
+import com.google.inject.multibindings.OptionalBinder;
+import com.google.privacysandbox.otel.Annotations.EnableOTelLogs;
+import com.google.privacysandbox.otel.OtlpJsonLoggingOTelConfigurationModule;
 import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
 import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
 import com.google.scp.operator.cpio.blobstorageclient.testing.FSBlobStorageClientModule;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
@@ -69,8 +81,10 @@ import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.inject.Inject;
@@ -152,6 +166,50 @@ public class TextOutputDomainProcessorTest {
     }
   }
 
+  @Test
+  public void readDomainStream_matchesLinesOfWholeShard() throws Exception {
+    Random random = new Random(/* seed= */ 1);
+    String[] lineTerminators = {"\n", "\r", "\r\n"};
+    StringBuilder shard = new StringBuilder();
+    // Spans several buffers of the reader, with empty lines and keys of every length.
+    for (int line = 0; line < 50_000; line++) {
+      int keyLength = random.nextInt(17);
+      for (int i = 0; i < keyLength; i++) {
+        // Any byte but the line terminators '\n' (10) and '\r' (13).
+        int value = random.nextInt(254);
+        shard.append((char) (value < 10 ? value : value < 12 ? value + 1 : value + 2));
+      }
+      shard.append(lineTerminators[random.nextInt(lineTerminators.length)]);
+    }
+    shard.append("last");
+    byte[] bytes = shard.toString().getBytes(ISO_8859_1);
+
+    List<BigInteger> keys =
+        outputDomainProcessor
+            .readInputStream(new ByteArrayInputStream(bytes))
+            .collect(Collectors.toList());
+
+    // As the shard was read before keys were streamed.
+    assertThat(keys)
+        .containsExactlyElementsIn(
+            new String(bytes, ISO_8859_1)
+                .lines()
+                .map(NumericConversions::createBucketFromString)
+                .collect(Collectors.toList()))
+        .inOrder();
+  }
+
+  @Test
+  public void readDomainStream_keyTooLong_failsWhenReached() throws Exception {
+    byte[] bytes = "11\nabcdabcdabcdabcdabcd\n22\n".getBytes(ISO_8859_1);
+    Iterator<BigInteger> keys =
+        outputDomainProcessor.readInputStream(new ByteArrayInputStream(bytes)).iterator();
+
+    assertThat(keys.next()).isEqualTo(createBucketFromInt(11));
+    DomainReadException error = assertThrows(DomainReadException.class, keys::next);
+    assertThat(error).hasCauseThat().isInstanceOf(IllegalArgumentException.class);
+  }
+
   @Test
   public void readStringDomain() throws Exception {
     writeOutputDomain(outputDomainDirectory.resolve("domain_1.txt"), "foo", "bar");
@@ -207,6 +265,7 @@ public class TextOutputDomainProcessorTest {
   private ImmutableSet<BigInteger> readOutputDomain() {
     NoisedAggregatedResultSet noisedResultset =
         outputDomainProcessor.adjustAggregationWithDomainAndNoiseStreaming(
+            "job",
             aggregationEngine,
             Optional.of(outputDomainLocation),
             outputDomainProcessor.listShards(outputDomainLocation),
@@ -229,11 +288,23 @@ public class TextOutputDomainProcessorTest {
     protected void configure() {
       install(new FSBlobStorageClientModule());
       install(new PrivacyBudgetKeyGeneratorModule());
+      install(new OtlpJsonLoggingOTelConfigurationModule());
+      bind(boolean.class).annotatedWith(EnableOTelLogs.class).toInstance(false);
 
       bind(FileSystem.class).toInstance(FileSystems.getDefault());
+      OptionalBinder.newOptionalBinder(binder(), RangedBlobReader.class)
+          .setBinding()
+          .to(FileSystemRangedBlobReader.class);
+      OptionalBinder.newOptionalBinder(binder(), BlobVersionReader.class);
       bind(OutputDomainProcessor.class).to(TextOutputDomainProcessor.class);
       bind(Boolean.class).annotatedWith(DomainOptional.class).toInstance(true);
       bind(Boolean.class).annotatedWith(EnableThresholding.class).toInstance(true);
+      bind(boolean.class).annotatedWith(EnablePrimitiveAggregationTable.class).toInstance(false);
+      bind(boolean.class).annotatedWith(EnableSpillToDiskAggregation.class).toInstance(false);
+      bind(Path.class)
+          .annotatedWith(AggregationSpillDirectory.class)
+          .toInstance(Path.of(System.getProperty("java.io.tmpdir")));
+      bind(OutputDomainCache.class).toInstance(OutputDomainCache.disabled());
 
       bind(FakeNoiseApplierSupplier.class).in(TestScoped.class);
       bind(NoisedAggregationRunner.class).to(NoisedAggregationRunnerImpl.class);
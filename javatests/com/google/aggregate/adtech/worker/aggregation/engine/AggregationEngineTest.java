@@ -17,24 +17,39 @@
 package com.google.aggregate.adtech.worker.aggregation.engine;
 
 import static com.google.aggregate.adtech.worker.util.NumericConversions.createBucketFromInt;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
 
 import com.google.acai.Acai;
+import com.google.aggregate.adtech.worker.Annotations.AggregationSpillDirectory;
+import com.google.aggregate.adtech.worker.Annotations.EnablePrimitiveAggregationTable;
+import com.google.aggregate.adtech.worker.Annotations.EnableSpillToDiskAggregation;
 import com.google.aggregate.adtech.worker.model.AggregatedFact;
 import com.google.aggregate.adtech.worker.model.Fact;
 import com.google.aggregate.adtech.worker.model.Report;
 import com.google.aggregate.adtech.worker.model.SharedInfo;
 import com.google.aggregate.adtech.worker.testing.FakeReportGenerator;
 import com.google.aggregate.adtech.worker.testing.FakeReportGenerator.FakeFactGenerator;
+import com.google.aggregate.adtech.worker.util.NumericConversions;
 import com.google.aggregate.privacy.budgeting.bridge.PrivacyBudgetingServiceBridge.PrivacyBudgetUnit;
 import com.google.aggregate.privacy.budgeting.budgetkeygenerator.PrivacyBudgetKeyGeneratorModule;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.primitives.UnsignedLong;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.inject.AbstractModule;
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 import javax.inject.Inject;
 import org.junit.Before;
 import org.junit.Rule;
@@ -168,6 +183,177 @@ public class AggregationEngineTest {
             AggregatedFact.create(createBucketFromInt(4), /* value= */ 20));
   }
 
+  @Test
+  public void mergePartialAggregations_sumsFactsAcrossPartials() {
+    Fact firstReportFact = FakeFactGenerator.generate(/* bucket= */ 1, /* value= */ 2);
+    Fact secondReportFact = FakeFactGenerator.generate(/* bucket= */ 1, /* value= */ 5);
+    Fact thirdReportFact = FakeFactGenerator.generate(/* bucket= */ 2, /* value= */ 10);
+    ImmutableList<PartialAggregation> partials =
+        ImmutableList.of(
+            engine.createPartialAggregation(),
+            engine.createPartialAggregation(),
+            engine.createPartialAggregation());
+
+    partials
+        .get(0)
+        .accept(
+            FakeReportGenerator.generateWithFactList(
+                ImmutableList.of(firstReportFact), SharedInfo.LATEST_VERSION));
+    partials
+        .get(1)
+        .accept(
+            FakeReportGenerator.generateWithFactList(
+                ImmutableList.of(secondReportFact), SharedInfo.LATEST_VERSION));
+    partials
+        .get(2)
+        .accept(
+            FakeReportGenerator.generateWithFactList(
+                ImmutableList.of(thirdReportFact), SharedInfo.LATEST_VERSION));
+    engine.mergePartialAggregations(partials, MoreExecutors.directExecutor());
+    ImmutableMap<BigInteger, AggregatedFact> aggregation = engine.makeAggregation();
+
+    assertThat(aggregation)
+        .containsExactly(
+            createBucketFromInt(1), AggregatedFact.create(createBucketFromInt(1), /* value= */ 7),
+            createBucketFromInt(2), AggregatedFact.create(createBucketFromInt(2), /* value= */ 10));
+  }
+
+  @Test
+  public void spillIfFull_partialOverBound_addsItToEngine() {
+    PartialAggregation partial = engine.createPartialAggregation();
+    partial.accept(
+        FakeReportGenerator.generateWithFactList(
+            IntStream.range(0, AggregationEngine.MAX_PARTIAL_BUCKETS)
+                .mapToObj(bucket -> FakeFactGenerator.generate(bucket, /* value= */ 1))
+                .collect(toImmutableList()),
+            SharedInfo.LATEST_VERSION));
+
+    engine.spillIfFull(partial);
+
+    assertThat(partial.table().size()).isEqualTo(0);
+    assertThat(engine.getKeySet()).hasSize(AggregationEngine.MAX_PARTIAL_BUCKETS);
+  }
+
+  @Test
+  public void spillIfFull_partialUnderBound_keepsIt() {
+    PartialAggregation partial = engine.createPartialAggregation();
+    partial.accept(
+        FakeReportGenerator.generateWithFactList(
+            ImmutableList.of(FakeFactGenerator.generate(/* bucket= */ 1, /* value= */ 2)),
+            SharedInfo.LATEST_VERSION));
+
+    engine.spillIfFull(partial);
+
+    assertThat(partial.table().size()).isEqualTo(1);
+    assertThat(engine.getKeySet()).isEmpty();
+  }
+
+  @Test
+  public void deleteSpilledFiles_closesResultFileStreamsLeftOpen() throws Exception {
+    Path resultFile = engine.createResultFile();
+    Files.write(resultFile, new byte[] {1, 2});
+    InputStream stream = engine.openResultFile(resultFile);
+    stream.read();
+
+    engine.deleteSpilledFiles();
+
+    assertThat(Files.exists(resultFile)).isFalse();
+    assertThrows(IOException.class, stream::read);
+  }
+
+  @Test
+  public void mergePartialAggregations_duplicateReportAcrossPartials_aggregatedOnce() {
+    Report report =
+        FakeReportGenerator.generateWithParam(
+            /* bucket= */ 1, /* reportVersion */ SharedInfo.LATEST_VERSION, "https://foo.com");
+    Report reportDuplicate =
+        FakeReportGenerator.generateWithParam(
+            /* bucket= */ 1, /* reportVersion */ SharedInfo.LATEST_VERSION, "https://foo.com");
+    PartialAggregation firstPartial = engine.createPartialAggregation();
+    PartialAggregation secondPartial = engine.createPartialAggregation();
+
+    firstPartial.accept(report);
+    secondPartial.accept(reportDuplicate);
+    engine.accept(createBucketFromInt(3));
+    engine.mergePartialAggregations(
+        ImmutableList.of(firstPartial, secondPartial), MoreExecutors.directExecutor());
+    ImmutableMap<BigInteger, AggregatedFact> aggregation = engine.makeAggregation();
+
+    assertThat(aggregation)
+        .containsExactly(
+            createBucketFromInt(1), AggregatedFact.create(createBucketFromInt(1), /* value= */ 1),
+            createBucketFromInt(3), AggregatedFact.create(createBucketFromInt(3), /* value= */ 0));
+    assertThat(engine.getPrivacyBudgetUnits()).hasSize(1);
+  }
+
+  @Test
+  public void forEachBucketJoined_joinsReportsWithSortedShardsInBucketOrder() {
+    Report report =
+        FakeReportGenerator.generateWithFactList(
+            ImmutableList.of(
+                FakeFactGenerator.generate(/* bucket= */ 2, /* value= */ 5),
+                FakeFactGenerator.generate(/* bucket= */ 4, /* value= */ 3)),
+            SharedInfo.LATEST_VERSION);
+    engine.accept(report);
+    List<String> buckets = new ArrayList<>();
+
+    engine.forEachBucketJoined(
+        ImmutableList.of(
+            shardOf(createBucketFromInt(1), createBucketFromInt(2)),
+            shardOf(createBucketFromInt(1), createBucketFromInt(3))),
+        (bucket, sum, inReports, inDomain) ->
+            buckets.add(bucket + ":" + sum + ":" + inReports + ":" + inDomain));
+
+    assertThat(buckets)
+        .containsExactly(
+            createBucketFromInt(1) + ":0:false:true",
+            createBucketFromInt(2) + ":5:true:true",
+            createBucketFromInt(3) + ":0:false:true",
+            createBucketFromInt(4) + ":3:true:false")
+        .inOrder();
+    assertThat(engine.getKeySet()).containsExactly(createBucketFromInt(2), createBucketFromInt(4));
+  }
+
+  @Test
+  public void forEachBucketJoined_unsortedShard_throws() {
+    assertThrows(
+        UnsortedDomainException.class,
+        () ->
+            engine.forEachBucketJoined(
+                ImmutableList.of(shardOf(createBucketFromInt(3), createBucketFromInt(1))),
+                (bucket, sum, inReports, inDomain) -> {}));
+  }
+
+  @Test
+  public void forEachBucketJoined_manyShards_opensBoundedNumberAtOnce() {
+    AtomicInteger openShards = new AtomicInteger();
+    AtomicInteger maxOpenShards = new AtomicInteger();
+    ImmutableList<SortedDomainShard> shards =
+        IntStream.rangeClosed(1, 40)
+            .mapToObj(
+                shard ->
+                    (SortedDomainShard)
+                        closer -> {
+                          maxOpenShards.accumulateAndGet(openShards.incrementAndGet(), Math::max);
+                          closer.register(openShards::decrementAndGet);
+                          return shardOf(createBucketFromInt(0), createBucketFromInt(shard))
+                              .open(closer);
+                        })
+            .collect(toImmutableList());
+    List<BigInteger> buckets = new ArrayList<>();
+
+    engine.forEachBucketJoined(shards, (bucket, sum, inReports, inDomain) -> buckets.add(bucket));
+
+    assertThat(buckets)
+        .containsExactlyElementsIn(
+            IntStream.rangeClosed(0, 40)
+                .mapToObj(NumericConversions::createBucketFromInt)
+                .collect(toImmutableList()))
+        .inOrder();
+    assertThat(maxOpenShards.get()).isAtMost(ExternalAggregation.MAX_MERGE_FAN_IN);
+    assertThat(openShards.get()).isEqualTo(0);
+  }
+
   @Test
   public void makeAggregation_nullReportsfilteredOut() {
     // Unlike reports without facts, null reports have facts with both key and value set to 0. They
@@ -257,6 +443,43 @@ public class AggregationEngineTest {
                 /* reportingOrigin= */ "https://origin2.foo.com"));
   }
 
+  @Test
+  public void privacyBudgetUnits_reportsSharingKeyFields_sameUnitPerHour() {
+    Report report =
+        FakeReportGenerator.generateWithParam(
+            /* bucket= */ 1, /* reportVersion */ SharedInfo.VERSION_0_1, "https://origin1.foo.com");
+    SharedInfo sharedInfo = report.sharedInfo();
+
+    engine.accept(report);
+    engine.accept(withSharedInfo(report, sharedInfo.toBuilder().setReportId("second").build()));
+    engine.accept(
+        withSharedInfo(
+            report,
+            sharedInfo.toBuilder()
+                .setReportId("sameHour")
+                .setScheduledReportTime(sharedInfo.scheduledReportTime().plusSeconds(1800))
+                .build()));
+    engine.accept(
+        withSharedInfo(
+            report,
+            sharedInfo.toBuilder()
+                .setReportId("nextHour")
+                .setScheduledReportTime(sharedInfo.scheduledReportTime().plusSeconds(3600))
+                .build()));
+    ImmutableList<PrivacyBudgetUnit> privacyBudgetUnits = engine.getPrivacyBudgetUnits();
+
+    assertThat(privacyBudgetUnits)
+        .containsExactly(
+            budgetUnit(
+                "686f11a611747492b911f8de3dc514c502246e78cc9d7a82e99d0b5af1cc2594",
+                Instant.parse("1970-01-01T00:00:00Z"),
+                /* reportingOrigin= */ "https://origin1.foo.com"),
+            budgetUnit(
+                "686f11a611747492b911f8de3dc514c502246e78cc9d7a82e99d0b5af1cc2594",
+                Instant.parse("1970-01-01T01:00:00Z"),
+                /* reportingOrigin= */ "https://origin1.foo.com"));
+  }
+
   @Test
   public void makeAggregation_withOutFilteringId_forReportsWithoutLabelIds_aggregatesAllTheFacts() {
     Fact factWithoutLabel1 = FakeFactGenerator.generate(/* bucket= */ 1, /* value= */ 2);
@@ -376,16 +599,29 @@ public class AggregationEngineTest {
     assertThat(privacyBudgetUnits).hasSize(8);
   }
 
+  private static Report withSharedInfo(Report report, SharedInfo sharedInfo) {
+    return Report.builder().setPayload(report.payload()).setSharedInfo(sharedInfo).build();
+  }
+
   private static PrivacyBudgetUnit budgetUnit(
       String key, Instant scheduledTime, String reportingOrigin) {
     return PrivacyBudgetUnit.create(key, scheduledTime, reportingOrigin);
   }
 
+  private static SortedDomainShard shardOf(BigInteger... keys) {
+    return closer -> DomainKeyIterator.of(ImmutableList.copyOf(keys).iterator());
+  }
+
   static final class TestEnv extends AbstractModule {
 
     @Override
     protected void configure() {
       install(new PrivacyBudgetKeyGeneratorModule());
+      bind(boolean.class).annotatedWith(EnablePrimitiveAggregationTable.class).toInstance(false);
+      bind(boolean.class).annotatedWith(EnableSpillToDiskAggregation.class).toInstance(false);
+      bind(Path.class)
+          .annotatedWith(AggregationSpillDirectory.class)
+          .toInstance(Path.of(System.getProperty("java.io.tmpdir")));
     }
   }
 }
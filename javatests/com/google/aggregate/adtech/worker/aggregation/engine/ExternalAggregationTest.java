@@ -0,0 +1,147 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ExternalAggregationTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path runDirectory;
+  private ExternalAggregation externalAggregation;
+
+  @Before
+  public void setUp() throws IOException {
+    runDirectory = temporaryFolder.newFolder("runs").toPath();
+    externalAggregation = new ExternalAggregation(runDirectory, /* maxTableEntries= */ 2);
+  }
+
+  @Test
+  public void isFull_comparesTableSizeWithMaximum() {
+    BucketSumTable table = new BucketSumTable(/* initialCapacity= */ 4);
+    table.add(0, 1, 1);
+
+    assertThat(externalAggregation.isFull(table)).isFalse();
+
+    table.add(0, 2, 1);
+
+    assertThat(externalAggregation.isFull(table)).isTrue();
+  }
+
+  @Test
+  public void mergeJoin_sumsBucketsAcrossSpilledAndInMemoryRuns() throws IOException {
+    BucketSumTable table = new BucketSumTable(/* initialCapacity= */ 4);
+    table.add(0, 5, 1);
+    table.add(1, 0, 2);
+    externalAggregation.spillReports(table);
+    table.add(0, 5, 10);
+    table.add(-1, 3, 7);
+    externalAggregation.keepReports(table);
+
+    assertThat(table.size()).isEqualTo(0);
+    assertThat(joinedEntries())
+        .containsExactly(
+            entry(0, 5, 11, /* inReports= */ true, /* inDomain= */ false),
+            entry(1, 0, 2, /* inReports= */ true, /* inDomain= */ false),
+            entry(-1, 3, 7, /* inReports= */ true, /* inDomain= */ false))
+        .inOrder();
+  }
+
+  @Test
+  public void mergeJoin_flagsReportAndDomainMembership() throws IOException {
+    BucketSumTable reports = new BucketSumTable(/* initialCapacity= */ 4);
+    reports.add(0, 1, 3);
+    reports.add(0, 2, 4);
+    externalAggregation.spillReports(reports);
+    BucketSumTable domainKeys = new BucketSumTable(/* initialCapacity= */ 4);
+    domainKeys.add(0, 2, 0);
+    externalAggregation.spillDomainKeys(domainKeys);
+    domainKeys.add(0, 2, 0);
+    domainKeys.add(0, 3, 0);
+    externalAggregation.keepDomainKeys(domainKeys);
+
+    assertThat(joinedEntries())
+        .containsExactly(
+            entry(0, 1, 3, /* inReports= */ true, /* inDomain= */ false),
+            entry(0, 2, 4, /* inReports= */ true, /* inDomain= */ true),
+            entry(0, 3, 0, /* inReports= */ false, /* inDomain= */ true))
+        .inOrder();
+  }
+
+  @Test
+  public void mergeJoin_moreRunsThanFanIn_mergesInPasses() throws IOException {
+    int runCount = ExternalAggregation.MAX_MERGE_FAN_IN * ExternalAggregation.MAX_MERGE_FAN_IN + 1;
+    BucketSumTable table = new BucketSumTable(/* initialCapacity= */ 4);
+    for (int i = 0; i < runCount; i++) {
+      table.add(0, i % 3, 1);
+      externalAggregation.spillReports(table);
+    }
+
+    assertThat(joinedEntries())
+        .containsExactly(
+            entry(0, 0, 86, /* inReports= */ true, /* inDomain= */ false),
+            entry(0, 1, 86, /* inReports= */ true, /* inDomain= */ false),
+            entry(0, 2, 85, /* inReports= */ true, /* inDomain= */ false))
+        .inOrder();
+    try (Stream<Path> runFiles = Files.list(runDirectory)) {
+      assertThat(runFiles.count()).isAtMost(ExternalAggregation.MAX_MERGE_FAN_IN);
+    }
+  }
+
+  @Test
+  public void deleteRuns_removesRunFilesAndDirectory() throws IOException {
+    BucketSumTable table = new BucketSumTable(/* initialCapacity= */ 4);
+    table.add(0, 1, 1);
+    externalAggregation.spillReports(table);
+    table.add(0, 2, 0);
+    externalAggregation.spillDomainKeys(table);
+
+    externalAggregation.deleteRuns();
+
+    assertThat(Files.exists(runDirectory)).isFalse();
+    assertThat(joinedEntries()).isEmpty();
+  }
+
+  private ImmutableList<String> joinedEntries() throws IOException {
+    List<String> entries = new ArrayList<>();
+    externalAggregation.mergeJoin(
+        (bucketHigh, bucketLow, sum, inReports, inDomain) ->
+            entries.add(entry(bucketHigh, bucketLow, sum, inReports, inDomain)));
+    return ImmutableList.copyOf(entries);
+  }
+
+  private static String entry(
+      long bucketHigh, long bucketLow, long sum, boolean inReports, boolean inDomain) {
+    return String.format("%d:%d=%d,%b,%b", bucketHigh, bucketLow, sum, inReports, inDomain);
+  }
+}
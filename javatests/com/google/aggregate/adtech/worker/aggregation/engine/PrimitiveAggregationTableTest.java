@@ -0,0 +1,160 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import static com.google.aggregate.adtech.worker.util.NumericConversions.UINT_128_MAX;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PrimitiveAggregationTableTest {
+
+  @Test
+  public void add_sumsValuesPerBucket() {
+    PrimitiveAggregationTable table = new PrimitiveAggregationTable(/* concurrencyHint= */ 1);
+
+    table.add(BigInteger.ONE, 2);
+    table.add(BigInteger.ONE, 5);
+    table.add(BigInteger.TWO, 10);
+
+    assertThat(table.makeAggregation())
+        .containsExactly(
+            BigInteger.ONE, AggregatedFact.create(BigInteger.ONE, 7),
+            BigInteger.TWO, AggregatedFact.create(BigInteger.TWO, 10));
+  }
+
+  @Test
+  public void add_zeroValue_insertsKey() {
+    PrimitiveAggregationTable table = new PrimitiveAggregationTable(/* concurrencyHint= */ 1);
+
+    table.add(BigInteger.TEN, 0);
+
+    assertThat(table.containsKey(BigInteger.TEN)).isTrue();
+    assertThat(table.containsKey(BigInteger.ONE)).isFalse();
+    assertThat(table.keySet()).containsExactly(BigInteger.TEN);
+    assertThat(table.makeAggregation())
+        .containsExactly(BigInteger.TEN, AggregatedFact.create(BigInteger.TEN, 0));
+  }
+
+  @Test
+  public void add_fullRangeBuckets_keepsBucketsDistinct() {
+    PrimitiveAggregationTable table = new PrimitiveAggregationTable(/* concurrencyHint= */ 1);
+    ImmutableList<BigInteger> buckets =
+        ImmutableList.of(
+            BigInteger.ZERO,
+            BigInteger.valueOf(Long.MAX_VALUE),
+            BigInteger.ONE.shiftLeft(63),
+            BigInteger.ONE.shiftLeft(64),
+            BigInteger.ONE.shiftLeft(64).add(BigInteger.ONE),
+            UINT_128_MAX);
+
+    buckets.forEach(bucket -> table.add(bucket, 1));
+
+    assertThat(table.keySet()).containsExactlyElementsIn(buckets);
+    assertThat(table.size()).isEqualTo(buckets.size());
+  }
+
+  @Test
+  public void add_manyBuckets_resizesStripes() {
+    PrimitiveAggregationTable table = new PrimitiveAggregationTable(/* concurrencyHint= */ 1);
+    int bucketCount = 100_000;
+
+    for (int i = 0; i < bucketCount; i++) {
+      table.add(BigInteger.valueOf(i), i);
+    }
+
+    ImmutableMap<BigInteger, AggregatedFact> aggregation = table.makeAggregation();
+    assertThat(aggregation).hasSize(bucketCount);
+    assertThat(aggregation.get(BigInteger.valueOf(12345)).getMetric()).isEqualTo(12345);
+  }
+
+  @Test
+  public void forEachBucket_reportsWhereBucketsWereSeen() {
+    PrimitiveAggregationTable table = new PrimitiveAggregationTable(/* concurrencyHint= */ 1);
+    int bucketCount = 10_000;
+
+    // Buckets divisible by 2 are in reports and those divisible by 3 in the domain. Inserting many
+    // buckets resizes the stripes, which must keep the flags.
+    for (int i = 0; i < bucketCount; i++) {
+      if (i % 3 == 0) {
+        table.addDomainKey(BigInteger.valueOf(i));
+      }
+      if (i % 2 == 0) {
+        table.add(BigInteger.valueOf(i), i);
+      }
+    }
+
+    Map<BigInteger, String> buckets = new HashMap<>();
+    table.forEachBucket(
+        (bucket, sum, inReports, inDomain) ->
+            buckets.put(bucket, sum + "," + inReports + "," + inDomain));
+    // 5000 buckets divisible by 2, plus 3334 divisible by 3, minus 1667 divisible by both.
+    assertThat(buckets).hasSize(6_667);
+    assertThat(buckets).containsEntry(BigInteger.valueOf(6), "6,true,true");
+    assertThat(buckets).containsEntry(BigInteger.valueOf(4), "4,true,false");
+    assertThat(buckets).containsEntry(BigInteger.valueOf(9), "0,false,true");
+    assertThat(buckets).doesNotContainKey(BigInteger.valueOf(5));
+  }
+
+  @Test
+  public void add_concurrentWriters_sumsAllContributions() throws Exception {
+    int threads = 8;
+    int bucketCount = 1000;
+    int contributionsPerThread = 10_000;
+    PrimitiveAggregationTable table = new PrimitiveAggregationTable(threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+    try {
+      ImmutableList.Builder<Future<?>> futures = ImmutableList.builder();
+      for (int thread = 0; thread < threads; thread++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < contributionsPerThread; i++) {
+                    table.add(BigInteger.valueOf(i % bucketCount), 1);
+                  }
+                }));
+      }
+      for (Future<?> future : futures.build()) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    ImmutableMap<BigInteger, AggregatedFact> aggregation = table.makeAggregation();
+    assertThat(aggregation).hasSize(bucketCount);
+    aggregation
+        .values()
+        .forEach(
+            fact ->
+                assertThat(fact.getMetric())
+                    .isEqualTo((long) threads * contributionsPerThread / bucketCount));
+  }
+}
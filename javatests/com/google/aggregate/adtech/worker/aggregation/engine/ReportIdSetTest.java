@@ -0,0 +1,93 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.aggregation.engine;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.UUID;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ReportIdSetTest {
+
+  private final ReportIdSet reportIdSet = new ReportIdSet(/* concurrencyHint= */ 1);
+
+  @Test
+  public void add_newId_returnsTrue() {
+    assertThat(reportIdSet.add("c1a0bd1e-2a2f-4a1c-9f0e-8f6f1c7b0a11")).isTrue();
+    assertThat(reportIdSet.add("c1a0bd1e-2a2f-4a1c-9f0e-8f6f1c7b0a12")).isTrue();
+    assertThat(reportIdSet.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void add_duplicateId_returnsFalse() {
+    reportIdSet.add("c1a0bd1e-2a2f-4a1c-9f0e-8f6f1c7b0a11");
+
+    assertThat(reportIdSet.add("c1a0bd1e-2a2f-4a1c-9f0e-8f6f1c7b0a11")).isFalse();
+    assertThat(reportIdSet.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void add_sameIdDifferentCase_isDuplicate() {
+    reportIdSet.add("c1a0bd1e-2a2f-4a1c-9f0e-8f6f1c7b0a11");
+
+    assertThat(reportIdSet.add("C1A0BD1E-2A2F-4A1C-9F0E-8F6F1C7B0A11")).isFalse();
+  }
+
+  @Test
+  public void add_matchesUuidBits() {
+    UUID uuid = UUID.fromString("ffffffff-ffff-ffff-8000-000000000001");
+    reportIdSet.add(uuid.toString());
+
+    assertThat(reportIdSet.add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()))
+        .isFalse();
+  }
+
+  @Test
+  public void add_nonCanonicalId_parsedAsUuid() {
+    reportIdSet.add("1-2-3-4-5");
+
+    assertThat(reportIdSet.add("00000001-0002-0003-0004-000000000005")).isFalse();
+  }
+
+  @Test
+  public void add_invalidId_throws() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> reportIdSet.add("c1a0bd1e-2a2f-4a1c-9f0e-8f6f1c7b0a1z"));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> reportIdSet.add("c1a0bd1e+2a2f-4a1c-9f0e-8f6f1c7b0a11"));
+    assertThrows(IllegalArgumentException.class, () -> reportIdSet.add("not-a-uuid"));
+  }
+
+  @Test
+  public void add_manyIds_resizesAndGrowsFootprint() {
+    long initialFootprint = reportIdSet.memoryFootprintBytes();
+
+    for (int i = 0; i < 100_000; i++) {
+      assertThat(reportIdSet.add(new UUID(/* mostSigBits= */ i, /* leastSigBits= */ -i).toString()))
+          .isTrue();
+    }
+
+    assertThat(reportIdSet.size()).isEqualTo(100_000);
+    assertThat(reportIdSet.memoryFootprintBytes()).isGreaterThan(initialFootprint);
+  }
+}
@@ -18,14 +18,17 @@ package com.google.aggregate.adtech.worker.decryption;
 
 import static com.google.aggregate.adtech.worker.model.SharedInfo.LATEST_VERSION;
 import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.acai.Acai;
 import com.google.acai.TestScoped;
+import com.google.aggregate.adtech.worker.decryption.DecryptionCipherFactory.CipherCreationException;
 import com.google.aggregate.adtech.worker.decryption.RecordDecrypter.DecryptionException;
 import com.google.aggregate.adtech.worker.decryption.hybrid.HybridDecryptionCipherFactory;
+import com.google.aggregate.adtech.worker.decryption.noop.NoopDecryptionCipher;
 import com.google.aggregate.adtech.worker.encryption.EncryptionCipher;
 import com.google.aggregate.adtech.worker.encryption.hybrid.HybridEncryptionCipher;
 import com.google.aggregate.adtech.worker.model.EncryptedReport;
@@ -37,13 +40,16 @@ import com.google.aggregate.adtech.worker.model.serdes.cbor.CborPayloadSerdes;
 import com.google.aggregate.adtech.worker.testing.FakeDecryptionKeyService;
 import com.google.aggregate.adtech.worker.testing.FakeReportGenerator;
 import com.google.aggregate.shared.mapper.TimeObjectMapper;
+import com.google.common.collect.ImmutableList;
 import com.google.common.io.ByteSource;
 import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
 import com.google.inject.Provides;
 import com.google.scp.operator.cpio.cryptoclient.DecryptionKeyService;
+import com.google.scp.operator.cpio.cryptoclient.model.ErrorReason;
 import java.security.GeneralSecurityException;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -60,6 +66,8 @@ public class DeserializingReportDecrypterTest {
 
   @Inject EncryptionCipher encryptionCipher;
 
+  @Inject FakeDecryptionKeyService fakeDecryptionKeyService;
+
   @Inject PayloadSerdes payloadSerdes;
   @Inject SharedInfoSerdes sharedInfoSerdes;
 
@@ -226,6 +234,62 @@ public class DeserializingReportDecrypterTest {
     assertTrue(decryptedReport.sharedInfo().sourceRegistrationTime().isEmpty());
   }
 
+  @Test
+  public void decryptBatch_returnsResultsInOrder() {
+    ImmutableList<ReportDecryptionResult> results =
+        deserializingReportDecrypter.decryptBatch(
+            ImmutableList.of(
+                encryptedReport, garbageReportEncryptedWithCorrectKey, encryptedReport));
+
+    assertThat(results).hasSize(3);
+    assertThat(results.get(0).report()).hasValue(report);
+    assertThat(results.get(1).report()).isEmpty();
+    assertThat(results.get(1).error().get())
+        .hasCauseThat()
+        .hasMessageThat()
+        .contains("Decrypted payload could not be deserialized");
+    assertThat(results.get(2).report()).hasValue(report);
+  }
+
+  @Test
+  public void decryptBatch_keyFetchFailure_failsEveryReportOfTheKey() {
+    fakeDecryptionKeyService.setShouldThrow(true, ErrorReason.KEY_NOT_FOUND);
+
+    ImmutableList<ReportDecryptionResult> results =
+        deserializingReportDecrypter.decryptBatch(
+            ImmutableList.of(encryptedReport, encryptedReport));
+
+    assertThat(results).hasSize(2);
+    for (ReportDecryptionResult result : results) {
+      assertThat(result.report()).isEmpty();
+      assertThat(result.error().get()).hasCauseThat().isInstanceOf(CipherCreationException.class);
+    }
+  }
+
+  @Test
+  public void cachingPerKeyId_createsOneCipherPerKeyId() throws Exception {
+    AtomicInteger ciphersCreated = new AtomicInteger();
+    DecryptionCipherFactory countingFactory =
+        report -> {
+          ciphersCreated.incrementAndGet();
+          return new NoopDecryptionCipher();
+        };
+    DecryptionCipherFactory cachingFactory = countingFactory.cachingPerKeyId();
+    EncryptedReport otherKeyReport =
+        EncryptedReport.builder()
+            .setPayload(encryptedReport.payload())
+            .setKeyId("other_key")
+            .setSharedInfo(encryptedReport.sharedInfo())
+            .build();
+
+    DecryptionCipher first = cachingFactory.decryptionCipherFor(encryptedReport);
+    DecryptionCipher second = cachingFactory.decryptionCipherFor(encryptedReport);
+    cachingFactory.decryptionCipherFor(otherKeyReport);
+
+    assertThat(second).isSameInstanceAs(first);
+    assertThat(ciphersCreated.get()).isEqualTo(2);
+  }
+
   private void encryptReport() throws Exception {
     ByteSource serializedPayload = payloadSerdes.reverse().convert(Optional.of(report.payload()));
     encryptedReport =
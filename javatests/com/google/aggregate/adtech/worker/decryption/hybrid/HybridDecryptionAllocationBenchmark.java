@@ -0,0 +1,102 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.decryption.hybrid;
+
+import static com.google.aggregate.adtech.worker.decryption.hybrid.HybridDecryptionCipher.ASSOCIATED_DATA_PREFIX;
+import static com.google.aggregate.adtech.worker.model.SharedInfo.LATEST_VERSION;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.aggregate.adtech.worker.model.EncryptedReport;
+import com.google.aggregate.adtech.worker.util.ByteBufferSource;
+import com.google.common.base.Strings;
+import com.google.common.io.ByteSource;
+import com.google.crypto.tink.HybridDecrypt;
+import com.google.crypto.tink.HybridEncrypt;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.hybrid.EciesAeadHkdfPrivateKeyManager;
+import com.google.crypto.tink.hybrid.HybridConfig;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the bytes allocated per report by {@link HybridDecryptionCipher}, for a payload and a
+ * shared info passed as a {@code ByteSource} and a string, and for a report carrying the bytes as
+ * they were read from the input.
+ *
+ * <p>Run the {@code HybridDecryptionAllocationBenchmark} target of this package with {@code bazel
+ * run}. The numbers include the allocations of the decryption itself, so only their difference is
+ * attributable to the cipher.
+ */
+public final class HybridDecryptionAllocationBenchmark {
+
+  private static final int WARMUP_REPORTS = 20_000;
+  private static final int MEASURED_REPORTS = 100_000;
+
+  public static void main(String[] args) throws Exception {
+    HybridConfig.register();
+    KeysetHandle keysetHandle =
+        KeysetHandle.generateNew(
+            EciesAeadHkdfPrivateKeyManager.eciesP256HkdfHmacSha256Aes128GcmTemplate());
+    HybridDecryptionCipher cipher =
+        HybridDecryptionCipher.of(keysetHandle.getPrimitive(HybridDecrypt.class));
+    // Sizes close to those of a report with one contribution.
+    byte[] plaintext = new byte[64];
+    String sharedInfo = "{\"api\":\"attribution-reporting\"," + Strings.repeat("x", 200) + "}";
+    byte[] payload =
+        keysetHandle
+            .getPublicKeysetHandle()
+            .getPrimitive(HybridEncrypt.class)
+            .encrypt(plaintext, (ASSOCIATED_DATA_PREFIX + sharedInfo).getBytes(UTF_8));
+    EncryptedReport report =
+        EncryptedReport.builder()
+            .setPayload(ByteBufferSource.wrap(payload))
+            .setKeyId("key_id")
+            .setSharedInfo(sharedInfo)
+            .setSharedInfoBytes(ByteBufferSource.wrap(sharedInfo.getBytes(UTF_8)))
+            .build();
+
+    Decryption stringPath =
+        () -> cipher.decrypt(ByteSource.wrap(payload), sharedInfo, LATEST_VERSION);
+    Decryption reportPath = () -> cipher.decrypt(report, LATEST_VERSION);
+
+    measure(stringPath, WARMUP_REPORTS);
+    measure(reportPath, WARMUP_REPORTS);
+    System.out.printf(
+        "ByteSource and string: %d bytes allocated per report%n",
+        measure(stringPath, MEASURED_REPORTS) / MEASURED_REPORTS);
+    System.out.printf(
+        "Report bytes:          %d bytes allocated per report%n",
+        measure(reportPath, MEASURED_REPORTS) / MEASURED_REPORTS);
+  }
+
+  private static long measure(Decryption decryption, int reports) throws Exception {
+    com.sun.management.ThreadMXBean threadBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < reports; i++) {
+      decryption.decrypt();
+    }
+    return threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+  }
+
+  @FunctionalInterface
+  private interface Decryption {
+    ByteSource decrypt() throws Exception;
+  }
+
+  private HybridDecryptionAllocationBenchmark() {}
+}
@@ -24,7 +24,9 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertThrows;
 
 import com.google.aggregate.adtech.worker.decryption.DecryptionCipher.PayloadDecryptionException;
+import com.google.aggregate.adtech.worker.model.EncryptedReport;
 import com.google.aggregate.adtech.worker.model.SharedInfo;
+import com.google.aggregate.adtech.worker.util.ByteBufferSource;
 import com.google.common.base.Strings;
 import com.google.common.io.ByteSource;
 import com.google.crypto.tink.HybridDecrypt;
@@ -32,6 +34,7 @@ import com.google.crypto.tink.HybridEncrypt;
 import com.google.crypto.tink.KeysetHandle;
 import com.google.crypto.tink.hybrid.EciesAeadHkdfPrivateKeyManager;
 import com.google.crypto.tink.hybrid.HybridConfig;
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import org.junit.Before;
 import org.junit.Test;
@@ -133,6 +136,31 @@ public class HybridDecryptionCipherTest {
                 ByteSource.wrap(encryptedPayload), sharedInfo, LATEST_VERSION));
   }
 
+  @Test
+  public void decryptReport_payloadSliceAndSharedInfoBytes() throws Exception {
+    String message = Strings.repeat("This is a secret", 10000);
+    String sharedInfo = "Context info";
+    byte[] encryptedPayload =
+        hybridEncryptData(
+            message.getBytes(UTF_8), (ASSOCIATED_DATA_PREFIX + sharedInfo).getBytes(UTF_8));
+    // Place the payload in the middle of a larger buffer, like a field of a decoded block.
+    ByteBuffer block = ByteBuffer.allocate(encryptedPayload.length + 8);
+    block.position(4);
+    block.put(encryptedPayload);
+    block.position(4).limit(4 + encryptedPayload.length);
+    EncryptedReport encryptedReport =
+        EncryptedReport.builder()
+            .setPayload(ByteBufferSource.wrap(block))
+            .setKeyId("key_id")
+            .setSharedInfo(sharedInfo)
+            .setSharedInfoBytes(ByteBufferSource.wrap(sharedInfo.getBytes(UTF_8)))
+            .build();
+
+    ByteSource decryptedPayload = hybridDecryptionCipher.decrypt(encryptedReport, LATEST_VERSION);
+
+    assertThat(new String(decryptedPayload.read(), UTF_8)).isEqualTo(message);
+  }
+
   private byte[] hybridEncryptData(byte[] plaintextPayload, byte[] contextInfo) throws Exception {
     return hybridEncryptData(plaintextPayload, contextInfo, keysetHandle);
   }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.local;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient.getDataLocation;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import java.io.InputStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class LocalBlobStorageClientTest {
+
+  private FileSystem fileSystem;
+  private LocalBlobStorageClient blobStorageClient;
+
+  @Before
+  public void setUp() throws Exception {
+    fileSystem = Jimfs.newFileSystem(Configuration.unix());
+    blobStorageClient = new LocalBlobStorageClient(fileSystem);
+    writeFile("bucket/reports.avro");
+    writeFile("bucket/shards/reports-2.avro");
+    writeFile("bucket/shards/reports-1.avro");
+    writeFile("bucket/shards/nested/reports-3.avro");
+    writeFile("bucket/shards/.hidden");
+    writeFile("bucket/shards-extra/reports-4.avro");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    fileSystem.close();
+  }
+
+  @Test
+  public void listBlobs_file_listsFile() throws Exception {
+    assertThat(blobStorageClient.listBlobs(getDataLocation("bucket", "reports.avro")))
+        .containsExactly("reports.avro");
+  }
+
+  @Test
+  public void listBlobs_directory_listsFilesUnderIt() throws Exception {
+    assertThat(blobStorageClient.listBlobs(getDataLocation("bucket", "shards")))
+        .containsExactly(
+            "shards/nested/reports-3.avro", "shards/reports-1.avro", "shards/reports-2.avro")
+        .inOrder();
+  }
+
+  @Test
+  public void listBlobs_prefix_listsFilesWithPrefix() throws Exception {
+    assertThat(blobStorageClient.listBlobs(getDataLocation("bucket", "shards/reports-")))
+        .containsExactly("shards/reports-1.avro", "shards/reports-2.avro")
+        .inOrder();
+    assertThat(blobStorageClient.listBlobs(getDataLocation("bucket", "shard")))
+        .containsExactly(
+            "shards-extra/reports-4.avro",
+            "shards/nested/reports-3.avro",
+            "shards/reports-1.avro",
+            "shards/reports-2.avro");
+  }
+
+  @Test
+  public void listBlobs_noMatch_listsNothing() throws Exception {
+    assertThat(blobStorageClient.listBlobs(getDataLocation("bucket", "missing/reports")))
+        .isEmpty();
+  }
+
+  @Test
+  public void getBlob_readsFile() throws Exception {
+    try (InputStream blob =
+        blobStorageClient.getBlob(getDataLocation("bucket", "shards/reports-1.avro"))) {
+      assertThat(ByteStreams.toByteArray(blob)).isEqualTo("shards/reports-1.avro".getBytes());
+    }
+  }
+
+  private void writeFile(String name) throws Exception {
+    Path file = fileSystem.getPath(name);
+    Files.createDirectories(file.getParent());
+    Files.write(file, name.substring("bucket/".length()).getBytes());
+  }
+}
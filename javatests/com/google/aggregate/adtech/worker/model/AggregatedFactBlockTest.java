@@ -0,0 +1,195 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.model;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.aggregate.adtech.worker.util.NumericConversions;
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class AggregatedFactBlockTest {
+
+  private static final BigInteger LARGE_BUCKET = NumericConversions.UINT_128_MAX;
+
+  @Test
+  public void add_readsRowsAsFacts() {
+    AggregatedFactBlock block = AggregatedFactBlock.create();
+
+    // More rows than the initial capacity.
+    for (int i = 0; i < 100; i++) {
+      block.add(BigInteger.valueOf(i), i * 10L);
+    }
+    block.add(LARGE_BUCKET, -1L);
+
+    assertThat(block.size()).isEqualTo(101);
+    assertThat(block.hasUnnoisedMetrics()).isFalse();
+    assertThat(block.hasDebugAnnotations()).isFalse();
+    assertThat(block.get(42)).isEqualTo(AggregatedFact.create(BigInteger.valueOf(42), 420L));
+    assertThat(block.bucketHigh(100)).isEqualTo(-1L);
+    assertThat(block.bucketLow(100)).isEqualTo(-1L);
+    assertThat(block.asFacts().get(100)).isEqualTo(AggregatedFact.create(LARGE_BUCKET, -1L));
+  }
+
+  @Test
+  public void get_rowOutOfRange_throwsException() {
+    AggregatedFactBlock block = AggregatedFactBlock.create();
+    block.add(BigInteger.ONE, 1L);
+
+    assertThrows(IndexOutOfBoundsException.class, () -> block.get(1));
+    assertThrows(IndexOutOfBoundsException.class, () -> block.metric(-1));
+  }
+
+  @Test
+  public void noiseMetrics_keepsUnnoisedMetrics() {
+    AggregatedFactBlock block = AggregatedFactBlock.create();
+    block.add(BigInteger.ONE, 5L);
+    block.add(BigInteger.valueOf(2), 500L);
+
+    block.noiseMetrics(metric -> metric + 10, /* parallel= */ false);
+
+    assertThat(block.asFacts())
+        .containsExactly(
+            AggregatedFact.create(BigInteger.ONE, 15L, 5L),
+            AggregatedFact.create(BigInteger.valueOf(2), 510L, 500L))
+        .inOrder();
+  }
+
+  @Test
+  public void filter_keepsAcceptedRowsInOrder() {
+    AggregatedFactBlock block = AggregatedFactBlock.create();
+    for (int i = 0; i < 10; i++) {
+      block.add(BigInteger.valueOf(i), i);
+    }
+    block.noiseMetrics(metric -> -metric, /* parallel= */ false);
+
+    AggregatedFactBlock filtered = block.filter(row -> row % 3 == 0);
+
+    assertThat(filtered.asFacts())
+        .containsExactly(
+            AggregatedFact.create(BigInteger.ZERO, 0L, 0L),
+            AggregatedFact.create(BigInteger.valueOf(3), -3L, 3L),
+            AggregatedFact.create(BigInteger.valueOf(6), -6L, 6L),
+            AggregatedFact.create(BigInteger.valueOf(9), -9L, 9L))
+        .inOrder();
+    assertThat(block.filter(row -> false).size()).isEqualTo(0);
+  }
+
+  @Test
+  public void filter_testsEachRowOnce() {
+    AggregatedFactBlock block = AggregatedFactBlock.create();
+    for (int i = 0; i < 100; i++) {
+      block.add(BigInteger.valueOf(i), i);
+    }
+    int[] tests = new int[block.size()];
+
+    AggregatedFactBlock filtered = block.filter(row -> tests[row]++ == 0 && row >= 98);
+
+    assertThat(tests).asList().containsExactlyElementsIn(Collections.nCopies(100, 1));
+    assertThat(filtered.asFacts())
+        .containsExactly(
+            AggregatedFact.create(BigInteger.valueOf(98), 98L),
+            AggregatedFact.create(BigInteger.valueOf(99), 99L))
+        .inOrder();
+  }
+
+  @Test
+  public void withDebugAnnotations_annotatesCopyOfBlock() {
+    AggregatedFactBlock block = AggregatedFactBlock.create();
+    block.add(BigInteger.ONE, 5L);
+    block.noiseMetrics(metric -> metric + 1, /* parallel= */ false);
+
+    AggregatedFactBlock annotated =
+        block.withDebugAnnotations(
+            AggregatedFactBlock.toFlags(
+                List.of(DebugBucketAnnotation.IN_DOMAIN, DebugBucketAnnotation.IN_REPORTS)));
+
+    assertThat(block.hasDebugAnnotations()).isFalse();
+    // Annotations are read in a fixed order, whatever the order they were given in.
+    assertThat(annotated.get(0))
+        .isEqualTo(
+            AggregatedFact.create(
+                BigInteger.ONE,
+                6L,
+                5L,
+                List.of(DebugBucketAnnotation.IN_REPORTS, DebugBucketAnnotation.IN_DOMAIN)));
+  }
+
+  @Test
+  public void withDebugAnnotations_notNoised_throwsException() {
+    AggregatedFactBlock block = AggregatedFactBlock.create();
+
+    assertThrows(
+        IllegalStateException.class,
+        () -> block.withDebugAnnotations(AggregatedFactBlock.IN_REPORTS));
+  }
+
+  @Test
+  public void copyOf_readsBackFacts() {
+    ImmutableList<AggregatedFact> facts =
+        ImmutableList.of(
+            AggregatedFact.create(
+                BigInteger.ONE, 1L, 2L, List.of(DebugBucketAnnotation.IN_REPORTS)),
+            AggregatedFact.create(LARGE_BUCKET, 3L, 4L, List.of()));
+
+    assertThat(AggregatedFactBlock.copyOf(facts).asFacts()).containsExactlyElementsIn(facts);
+  }
+
+  @Test
+  public void writeTo_readFrom_roundTripsRows() throws IOException {
+    ImmutableList<AggregatedFact> facts =
+        ImmutableList.of(
+            AggregatedFact.create(
+                BigInteger.ONE, 1L, 2L, List.of(DebugBucketAnnotation.IN_REPORTS)),
+            AggregatedFact.create(LARGE_BUCKET, -3L, 4L, List.of(DebugBucketAnnotation.IN_DOMAIN)));
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    AggregatedFactBlock.copyOf(facts).writeTo(output);
+    AggregatedFactBlock.create().writeTo(output);
+
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+
+    assertThat(AggregatedFactBlock.readFrom(input).asFacts())
+        .containsExactlyElementsIn(facts)
+        .inOrder();
+    AggregatedFactBlock empty = AggregatedFactBlock.readFrom(input);
+    assertThat(empty.size()).isEqualTo(0);
+    assertThat(empty.hasUnnoisedMetrics()).isFalse();
+  }
+
+  @Test
+  public void copyOf_mixedOptionalFields_throwsException() {
+    ImmutableList<AggregatedFact> facts =
+        ImmutableList.of(
+            AggregatedFact.create(BigInteger.ONE, 1L),
+            AggregatedFact.create(BigInteger.valueOf(2), 3L, 4L));
+
+    assertThrows(IllegalArgumentException.class, () -> AggregatedFactBlock.copyOf(facts));
+  }
+}
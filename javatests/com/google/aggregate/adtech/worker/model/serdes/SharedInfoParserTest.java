@@ -0,0 +1,233 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.model.serdes;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.aggregate.adtech.worker.model.SharedInfo;
+import com.google.aggregate.shared.mapper.TimeObjectMapper;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests of {@link SharedInfoParser}, including differential tests against Jackson: every string it
+ * parses must parse to the same result with Jackson.
+ */
+@RunWith(JUnit4.class)
+public class SharedInfoParserTest {
+
+  private static final String CHROME_SHARED_INFO =
+      "{\"api\":\"attribution-reporting\",\"attribution_destination\":\"https://conversion.test\","
+          + "\"debug_mode\":\"enabled\",\"report_id\":\"21abd97f-73e8-4b88-9389-a9fee6abda5e\","
+          + "\"reporting_origin\":\"https://report.test\",\"scheduled_report_time\":\"1234486400\","
+          + "\"source_registration_time\":\"1234483200\",\"version\":\"0.1\"}";
+
+  private static final String[] APIS = {
+    SharedInfo.ATTRIBUTION_REPORTING_API,
+    SharedInfo.ATTRIBUTION_REPORTING_DEBUG_API,
+    SharedInfo.PROTECTED_AUDIENCE_API,
+    SharedInfo.SHARED_STORAGE_API
+  };
+
+  private static final String MUTATION_CHARACTERS = "{}[]:,\"\\ 0123456789.-+eEtrufalsné";
+
+  private final TimeObjectMapper objectMapper = new TimeObjectMapper();
+  private final SharedInfoParser parser = new SharedInfoParser(/* maxCachedTemplates= */ 100);
+
+  @Test
+  public void parse_chromeSharedInfo() throws Exception {
+    Optional<SharedInfo> parsed = parser.parse(CHROME_SHARED_INFO);
+
+    assertThat(parsed)
+        .hasValue(
+            SharedInfo.builder()
+                .setVersion("0.1")
+                .setApi(SharedInfo.ATTRIBUTION_REPORTING_API)
+                .setReportId("21abd97f-73e8-4b88-9389-a9fee6abda5e")
+                .setDestination("https://conversion.test")
+                .setReportingOrigin("https://report.test")
+                .setScheduledReportTime(Instant.ofEpochSecond(1234486400))
+                .setSourceRegistrationTime(Instant.ofEpochSecond(1234483200))
+                .setReportDebugMode(true)
+                .build());
+    assertThat(parseWithJackson(CHROME_SHARED_INFO)).isEqualTo(parsed);
+  }
+
+  @Test
+  public void parse_sameTemplate_parsedOnce() throws Exception {
+    String otherReport =
+        CHROME_SHARED_INFO
+            .replace("21abd97f-73e8-4b88-9389-a9fee6abda5e", "0222ce51-8596-4dec-9994-90df2508ae90")
+            .replace("1234486400", "1234490000")
+            .replace("1234483200", "1234480000")
+            .replace("\"enabled\"", "\"disabled\"");
+
+    Optional<SharedInfo> first = parser.parse(CHROME_SHARED_INFO);
+    Optional<SharedInfo> second = parser.parse(otherReport);
+
+    assertThat(parser.cachedTemplateCount()).isEqualTo(1);
+    assertThat(first).isEqualTo(parseWithJackson(CHROME_SHARED_INFO));
+    assertThat(second).isEqualTo(parseWithJackson(otherReport));
+    assertThat(second.get().reportingOrigin()).isSameInstanceAs(first.get().reportingOrigin());
+  }
+
+  @Test
+  public void parse_otherDestination_cachedSeparately() throws Exception {
+    String otherDestination =
+        CHROME_SHARED_INFO.replace("https://conversion.test", "https://other.test");
+    String withoutDestination =
+        CHROME_SHARED_INFO.replace(
+            "\"attribution_destination\":\"https://conversion.test\",", "");
+
+    for (String sharedInfo :
+        new String[] {CHROME_SHARED_INFO, otherDestination, withoutDestination}) {
+      assertThat(parser.parse(sharedInfo)).isEqualTo(parseWithJackson(sharedInfo));
+    }
+
+    assertThat(parser.cachedTemplateCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void parse_withoutReportId() throws Exception {
+    String sharedInfo =
+        "{\"version\": \"1.0\", \"scheduled_report_time\": \"1609459200\","
+            + " \"reporting_origin\": \"https://example.com\"}";
+
+    Optional<SharedInfo> parsed = parser.parse(sharedInfo);
+
+    assertThat(parsed).isPresent();
+    assertThat(parsed.get().reportId()).isEmpty();
+    assertThat(parseWithJackson(sharedInfo)).isEqualTo(parsed);
+  }
+
+  @Test
+  public void parse_cacheIsBounded() {
+    SharedInfoParser smallParser = new SharedInfoParser(/* maxCachedTemplates= */ 2);
+
+    for (int i = 0; i < 10; i++) {
+      String sharedInfo = CHROME_SHARED_INFO.replace("report.test", "report" + i + ".test");
+      assertThat(smallParser.parse(sharedInfo)).isPresent();
+    }
+
+    assertThat(smallParser.cachedTemplateCount()).isAtMost(2);
+  }
+
+  @Test
+  public void parse_unhandledInputs_leftToJackson() {
+    String[] sharedInfos = {
+      // Escaped characters.
+      CHROME_SHARED_INFO.replace("https://report.test", "https:\\/\\/report.test"),
+      // Time as a number.
+      CHROME_SHARED_INFO.replace("\"1234483200\"", "1234483200"),
+      // Duplicate field.
+      CHROME_SHARED_INFO.replace("{", "{\"version\":\"1.0\","),
+      // Trailing content.
+      CHROME_SHARED_INFO + "}",
+      // Missing required field.
+      CHROME_SHARED_INFO.replace("\"version\"", "\"unknown\""),
+      // Not an object.
+      "invalid string",
+    };
+
+    for (String sharedInfo : sharedInfos) {
+      assertThat(parser.parse(sharedInfo)).isEmpty();
+    }
+    assertThat(parser.cachedTemplateCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void parse_unknownFields_skipped() throws Exception {
+    String sharedInfo =
+        CHROME_SHARED_INFO.replace(
+            "{",
+            "{\"padding\": [1, -2.5e3, true, false, null, {\"a\": [[]]}, {}],"
+                + " \"privacy_budget_key\": \"key\", \"n\": 0, ");
+
+    Optional<SharedInfo> parsed = parser.parse(sharedInfo);
+
+    assertThat(parsed).isPresent();
+    assertThat(parseWithJackson(sharedInfo)).isEqualTo(parsed);
+  }
+
+  @Test
+  public void parse_mutatedInputs_matchesJackson() throws Exception {
+    Random random = new Random(/* seed= */ 1);
+
+    for (int i = 0; i < 2_000; i++) {
+      String sharedInfo = randomSharedInfo(random);
+      assertThat(parser.parse(sharedInfo)).isEqualTo(parseWithJackson(sharedInfo));
+      for (int mutation = 0; mutation < 20; mutation++) {
+        String mutated = mutate(sharedInfo, random);
+        Optional<SharedInfo> parsed = parser.parse(mutated);
+        if (parsed.isPresent()) {
+          assertThat(parseWithJackson(mutated)).isEqualTo(parsed);
+        }
+      }
+    }
+  }
+
+  /** Parses as {@link SharedInfoSerdes} did before it used {@link SharedInfoParser}. */
+  private Optional<SharedInfo> parseWithJackson(String sharedInfo) {
+    try {
+      return Optional.of(objectMapper.readValue(sharedInfo, SharedInfo.class));
+    } catch (JsonProcessingException e) {
+      return Optional.empty();
+    }
+  }
+
+  private static String randomSharedInfo(Random random) {
+    StringBuilder sharedInfo = new StringBuilder("{");
+    sharedInfo.append("\"api\":\"").append(APIS[random.nextInt(APIS.length)]).append("\",");
+    if (random.nextBoolean()) {
+      sharedInfo.append("\"attribution_destination\":\"https://d").append(random.nextInt(10));
+      sharedInfo.append(".test\",");
+    }
+    if (random.nextBoolean()) {
+      sharedInfo.append("\"debug_mode\":\"enabled\",");
+    }
+    sharedInfo.append("\"report_id\":\"").append(random.nextLong()).append("\",");
+    sharedInfo.append("\"reporting_origin\":\"https://r").append(random.nextInt(10));
+    sharedInfo.append(".test\",");
+    sharedInfo.append("\"scheduled_report_time\":\"");
+    sharedInfo.append(1_600_000_000 + random.nextInt(100_000_000)).append("\",");
+    if (random.nextBoolean()) {
+      sharedInfo.append("\"source_registration_time\":\"");
+      sharedInfo.append(random.nextInt(1_700_000_000)).append("\",");
+    }
+    sharedInfo.append("\"version\":\"").append(random.nextBoolean() ? "0.1" : "1.0").append("\"}");
+    return sharedInfo.toString();
+  }
+
+  private static String mutate(String sharedInfo, Random random) {
+    int position = random.nextInt(sharedInfo.length());
+    char character = MUTATION_CHARACTERS.charAt(random.nextInt(MUTATION_CHARACTERS.length()));
+    switch (random.nextInt(3)) {
+      case 0:
+        return sharedInfo.substring(0, position) + character + sharedInfo.substring(position + 1);
+      case 1:
+        return sharedInfo.substring(0, position) + character + sharedInfo.substring(position);
+      default:
+        return sharedInfo.substring(0, position) + sharedInfo.substring(position + 1);
+    }
+  }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.model.serdes.cbor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import com.google.aggregate.adtech.worker.model.Contributions;
+import com.google.aggregate.adtech.worker.model.Fact;
+import com.google.aggregate.adtech.worker.model.Payload;
+import com.google.aggregate.adtech.worker.util.NumericConversions;
+import com.google.common.io.ByteSource;
+import com.google.common.primitives.UnsignedLong;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Differential tests of {@link CborPayloadDecoder}: every input must decode to the same result as
+ * with Jackson alone.
+ */
+@RunWith(JUnit4.class)
+public class CborPayloadDecoderTest {
+
+  private static final int FUZZ_PAYLOADS = 2_000;
+  private static final int MUTATIONS_PER_PAYLOAD = 20;
+
+  private final EnhancedCborMapper cborMapper = new EnhancedCborMapper();
+  private final CborPayloadSerdes cborPayloadSerdes = new CborPayloadSerdes(cborMapper);
+
+  @Test
+  public void decode_jacksonEncoding_matchesJackson() throws Exception {
+    Random random = new Random(/* seed= */ 1);
+
+    for (int i = 0; i < 100; i++) {
+      Payload payload = randomPayload(random);
+      byte[] bytes = cborMapper.writeValueAsBytes(payload);
+
+      assertThat(decode(bytes)).hasValue(payload);
+      assertThat(cborPayloadSerdes.convert(ByteSource.wrap(bytes))).hasValue(payload);
+    }
+  }
+
+  @Test
+  public void decode_browserEncoding_matchesJackson() throws Exception {
+    Random random = new Random(/* seed= */ 2);
+
+    for (int i = 0; i < 100; i++) {
+      Payload payload = randomPayload(random);
+      byte[] bytes = definiteLengthEncoding(payload, /* padding= */ random.nextBoolean());
+
+      assertThat(decode(bytes)).hasValue(payload);
+      assertThat(decodeWithJackson(bytes)).hasValue(payload);
+    }
+  }
+
+  @Test
+  public void decode_mutatedInputs_matchesJackson() throws Exception {
+    Random random = new Random(/* seed= */ 3);
+
+    for (int i = 0; i < FUZZ_PAYLOADS; i++) {
+      Payload payload = randomPayload(random);
+      byte[] bytes =
+          random.nextBoolean()
+              ? cborMapper.writeValueAsBytes(payload)
+              : definiteLengthEncoding(payload, /* padding= */ random.nextBoolean());
+      for (int mutation = 0; mutation < MUTATIONS_PER_PAYLOAD; mutation++) {
+        assertMatchesJackson(mutate(bytes, random));
+      }
+    }
+  }
+
+  @Test
+  public void decode_duplicateBucket_leftToJackson() throws Exception {
+    CborWriter cbor = new CborWriter();
+    cbor.header(CborWriter.MAP, 2);
+    cbor.text("operation").text(Payload.HISTOGRAM_OPERATION);
+    cbor.text("data").header(CborWriter.ARRAY, 1);
+    cbor.header(CborWriter.MAP, 3);
+    cbor.text("bucket").bytes(new byte[] {1});
+    cbor.text("bucket").bytes(new byte[] {2});
+    cbor.text("value").bytes(new byte[] {3});
+
+    assertThat(decode(cbor.toByteArray())).isEmpty();
+    assertMatchesJackson(cbor.toByteArray());
+  }
+
+  @Test
+  public void decode_tag_leftToJackson() throws Exception {
+    Payload payload = randomPayload(new Random(/* seed= */ 4));
+    CborWriter cbor = new CborWriter();
+    cbor.header(CborWriter.TAG, 55799); // Self-describe CBOR.
+    cbor.raw(definiteLengthEncoding(payload, /* padding= */ false));
+
+    assertThat(decode(cbor.toByteArray())).isEmpty();
+    assertThat(cborPayloadSerdes.convert(ByteSource.wrap(cbor.toByteArray()))).hasValue(payload);
+  }
+
+  @Test
+  public void decode_bucketTooLong_rejected() throws Exception {
+    CborWriter cbor = new CborWriter();
+    cbor.header(CborWriter.MAP, 2);
+    cbor.text("operation").text(Payload.HISTOGRAM_OPERATION);
+    cbor.text("data").header(CborWriter.ARRAY, 1);
+    cbor.header(CborWriter.MAP, 2);
+    cbor.text("bucket").bytes(new byte[17]);
+    cbor.text("value").bytes(new byte[] {1});
+
+    assertThat(decode(cbor.toByteArray())).isEmpty();
+    assertThat(cborPayloadSerdes.convert(ByteSource.wrap(cbor.toByteArray()))).isEmpty();
+  }
+
+  @Test
+  public void decode_trailingBytes_leftToJackson() throws Exception {
+    Payload payload = randomPayload(new Random(/* seed= */ 5));
+    byte[] bytes = definiteLengthEncoding(payload, /* padding= */ false);
+    byte[] withTrailingByte = Arrays.copyOf(bytes, bytes.length + 1);
+
+    assertThat(decode(withTrailingByte)).isEmpty();
+    assertMatchesJackson(withTrailingByte);
+  }
+
+  @Test
+  public void decode_maxBucketAndId() throws Exception {
+    Payload payload =
+        Payload.builder()
+            .addFact(
+                Fact.builder()
+                    .setBucket(NumericConversions.UINT_128_MAX)
+                    .setValue(NumericConversions.UINT_32_MAX)
+                    .setId(UnsignedLong.MAX_VALUE)
+                    .build())
+            .build();
+
+    assertThat(decode(definiteLengthEncoding(payload, /* padding= */ false))).hasValue(payload);
+  }
+
+  private void assertMatchesJackson(byte[] bytes) {
+    Optional<Payload> decoded = decode(bytes);
+    Optional<Payload> decodedWithJackson = decodeWithJackson(bytes);
+
+    if (decoded.isPresent()) {
+      assertThat(decodedWithJackson).isEqualTo(decoded);
+    }
+    assertThat(cborPayloadSerdes.convert(ByteSource.wrap(bytes))).isEqualTo(decodedWithJackson);
+  }
+
+  /** Decodes with {@link CborPayloadDecoder} alone; empty if it gave up. */
+  private static Optional<Payload> decode(byte[] bytes) {
+    Contributions.Builder contributions = Contributions.builder();
+    return CborPayloadDecoder.decode(bytes, contributions)
+        .map(
+            operation ->
+                Payload.builder()
+                    .setOperation(operation)
+                    .setContributions(contributions.build())
+                    .build());
+  }
+
+  /** Decodes as {@link CborPayloadSerdes} did before it used {@link CborPayloadDecoder}. */
+  private Optional<Payload> decodeWithJackson(byte[] bytes) {
+    if (bytes.length == 0) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(cborMapper.readValue(bytes, Payload.class));
+    } catch (IOException | ClassCastException | NullPointerException e) {
+      return Optional.empty();
+    }
+  }
+
+  private static Payload randomPayload(Random random) {
+    Payload.Builder payload = Payload.builder();
+    int contributions = random.nextInt(25);
+    for (int i = 0; i < contributions; i++) {
+      Fact.Builder fact =
+          Fact.builder()
+              .setBucket(new BigInteger(random.nextInt(129), random))
+              .setValue(random.nextInt(Integer.MAX_VALUE));
+      if (random.nextBoolean()) {
+        fact.setId(UnsignedLong.fromLongBits(random.nextLong()));
+      }
+      payload.addFact(fact.build());
+    }
+    return payload.build();
+  }
+
+  /** Encodes the payload with definite lengths and minimal byte strings, as browsers do. */
+  private static byte[] definiteLengthEncoding(Payload payload, boolean padding) {
+    CborWriter cbor = new CborWriter();
+    cbor.header(CborWriter.MAP, padding ? 3 : 2);
+    cbor.text("data").header(CborWriter.ARRAY, payload.data().size());
+    for (Fact fact : payload.data()) {
+      cbor.header(CborWriter.MAP, fact.id().isPresent() ? 3 : 2);
+      cbor.text("bucket").bytes(unsignedBytes(fact.bucket()));
+      cbor.text("value").bytes(unsignedBytes(BigInteger.valueOf(fact.value())));
+      if (fact.id().isPresent()) {
+        cbor.text("id").bytes(unsignedBytes(fact.id().get().bigIntegerValue()));
+      }
+    }
+    cbor.text("operation").text(payload.operation());
+    if (padding) {
+      cbor.text("padding").bytes(new byte[32]);
+    }
+    return cbor.toByteArray();
+  }
+
+  private static byte[] unsignedBytes(BigInteger value) {
+    byte[] bytes = value.toByteArray();
+    return bytes[0] == 0 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes;
+  }
+
+  private static byte[] mutate(byte[] bytes, Random random) {
+    int position = random.nextInt(bytes.length);
+    switch (random.nextInt(5)) {
+      case 0:
+        {
+          byte[] mutated = bytes.clone();
+          mutated[position] ^= (byte) (1 << random.nextInt(8));
+          return mutated;
+        }
+      case 1:
+        {
+          byte[] mutated = bytes.clone();
+          mutated[position] = (byte) random.nextInt(256);
+          return mutated;
+        }
+      case 2:
+        return Arrays.copyOf(bytes, position);
+      case 3:
+        {
+          byte[] mutated = new byte[bytes.length + 1];
+          System.arraycopy(bytes, 0, mutated, 0, position);
+          mutated[position] = (byte) random.nextInt(256);
+          System.arraycopy(bytes, position, mutated, position + 1, bytes.length - position);
+          return mutated;
+        }
+      default:
+        {
+          byte[] mutated = bytes.clone();
+          mutated[position] = (byte) 0xff; // Break.
+          return mutated;
+        }
+    }
+  }
+
+  /** Writes CBOR items for the tests. */
+  private static final class CborWriter {
+
+    static final int BYTE_STRING = 2;
+    static final int TEXT_STRING = 3;
+    static final int ARRAY = 4;
+    static final int MAP = 5;
+    static final int TAG = 6;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    CborWriter header(int majorType, long argument) {
+      int type = majorType << 5;
+      if (argument < 24) {
+        out.write(type | (int) argument);
+      } else if (argument < 0x100) {
+        out.write(type | 24);
+        writeBigEndian(argument, 1);
+      } else if (argument < 0x10000) {
+        out.write(type | 25);
+        writeBigEndian(argument, 2);
+      } else {
+        out.write(type | 26);
+        writeBigEndian(argument, 4);
+      }
+      return this;
+    }
+
+    CborWriter text(String text) {
+      byte[] bytes = text.getBytes(US_ASCII);
+      header(TEXT_STRING, bytes.length);
+      return raw(bytes);
+    }
+
+    CborWriter bytes(byte[] bytes) {
+      header(BYTE_STRING, bytes.length);
+      return raw(bytes);
+    }
+
+    CborWriter raw(byte[] bytes) {
+      out.write(bytes, 0, bytes.length);
+      return this;
+    }
+
+    byte[] toByteArray() {
+      return out.toByteArray();
+    }
+
+    private void writeBigEndian(long argument, int length) {
+      for (int i = length - 1; i >= 0; i--) {
+        out.write((int) (argument >>> (8 * i)));
+      }
+    }
+  }
+}
@@ -21,6 +21,7 @@ import static com.google.common.truth.Truth8.assertThat;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.acai.Acai;
 import com.google.aggregate.adtech.worker.model.Fact;
 import com.google.aggregate.adtech.worker.model.Payload;
@@ -268,14 +269,20 @@ public class CborPayloadSerdesTest {
   }
 
   @Test
-  public void testWithInvalidBucket() {
-    BigInteger bucketTooLarge = BigInteger.valueOf(1).shiftLeft(128); // 2^128
-    Payload payloadBucketTooLarge =
-        Payload.builder()
-            .addFact(Fact.builder().setBucket(bucketTooLarge).setValue(1).build())
-            .build();
-
-    ByteSource serialized = cborPayloadSerdes.reverse().convert(Optional.of(payloadBucketTooLarge));
+  public void testWithInvalidBucket() throws Exception {
+    // A Payload can't hold a bucket of 2^128, so the CBOR is written directly.
+    EnhancedCborMapper cborMapper = new EnhancedCborMapper();
+    byte[] bucketTooLarge = new byte[17];
+    bucketTooLarge[0] = 1; // 2^128
+    ObjectNode payloadBucketTooLarge = cborMapper.createObjectNode();
+    payloadBucketTooLarge.put("operation", Payload.HISTOGRAM_OPERATION);
+    payloadBucketTooLarge
+        .putArray("data")
+        .addObject()
+        .put("bucket", bucketTooLarge)
+        .put("value", new byte[] {1});
+
+    ByteSource serialized = ByteSource.wrap(cborMapper.writeValueAsBytes(payloadBucketTooLarge));
     Optional<Payload> deserialized = cborPayloadSerdes.convert(serialized);
 
     assertThat(deserialized).isEmpty();
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader;
+
+import static com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient.getDataLocation;
+
+import com.google.aggregate.adtech.worker.testing.ThrottledBlobStorageClient;
+import com.google.aggregate.adtech.worker.testing.ThrottledRangedBlobReader;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Measures the read throughput of a blob with the latency and bandwidth of blob storage, read as a
+ * single stream and read ahead by {@link PrefetchingBlobReader}, by a reader that decodes what it
+ * reads.
+ *
+ * <p>Run the {@code BlobPrefetchBenchmark} target of this package with {@code bazel run}. The blob
+ * is a local temporary file, throttled to {@link #FIRST_BYTE_LATENCY} and {@link
+ * #BYTES_PER_SECOND} per read, and decoding is simulated at {@link #DECODE_BYTES_PER_SECOND}.
+ */
+public final class BlobPrefetchBenchmark {
+
+  private static final int BLOB_SIZE_BYTES = 256 << 20;
+  private static final Duration FIRST_BYTE_LATENCY = Duration.ofMillis(50);
+  private static final long BYTES_PER_SECOND = 64L << 20;
+  private static final long DECODE_BYTES_PER_SECOND = 128L << 20;
+  private static final int READ_SIZE_BYTES = 64 << 10;
+
+  public static void main(String[] args) throws Exception {
+    FileSystem fileSystem = FileSystems.getDefault();
+    Path bucket = Files.createTempDirectory("blob-prefetch-benchmark");
+    Path blob = bucket.resolve("blob");
+    writeRandomBlob(blob);
+    DataLocation location = getDataLocation(bucket.toString(), "blob");
+    ListeningExecutorService executor =
+        MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+    try {
+      ThrottledBlobStorageClient blobStorageClient =
+          new ThrottledBlobStorageClient(fileSystem, FIRST_BYTE_LATENCY, BYTES_PER_SECOND);
+      measure("Stream", blobStorageClient.getBlob(location));
+
+      RangedBlobReader prefetchingReader =
+          new PrefetchingBlobReader(
+              new ThrottledRangedBlobReader(
+                  new FileSystemRangedBlobReader(fileSystem),
+                  FIRST_BYTE_LATENCY,
+                  BYTES_PER_SECOND),
+              BlobPrefetchOptions.defaults(),
+              executor);
+      measure("Prefetch", prefetchingReader.getBlobRange(location, 0, BLOB_SIZE_BYTES));
+    } finally {
+      executor.shutdownNow();
+      Files.delete(blob);
+      Files.delete(bucket);
+    }
+  }
+
+  private static void writeRandomBlob(Path blob) throws IOException {
+    Random random = new Random(42);
+    byte[] chunk = new byte[1 << 20];
+    try (OutputStream outputStream = Files.newOutputStream(blob)) {
+      for (int written = 0; written < BLOB_SIZE_BYTES; written += chunk.length) {
+        random.nextBytes(chunk);
+        outputStream.write(chunk);
+      }
+    }
+  }
+
+  private static void measure(String name, InputStream blobStream) throws Exception {
+    byte[] buffer = new byte[READ_SIZE_BYTES];
+    CRC32 checksum = new CRC32();
+    long start = System.nanoTime();
+    try (InputStream inputStream = blobStream) {
+      for (int read = inputStream.read(buffer); read >= 0; read = inputStream.read(buffer)) {
+        checksum.update(buffer, 0, read);
+        // Decoding time of the bytes read.
+        TimeUnit.NANOSECONDS.sleep(read * TimeUnit.SECONDS.toNanos(1) / DECODE_BYTES_PER_SECOND);
+      }
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf(
+        "%-10s %,8.1f MB/s %,8.2f s checksum %08x%n",
+        name + ":", BLOB_SIZE_BYTES / seconds / (1 << 20), seconds, checksum.getValue());
+  }
+
+  private BlobPrefetchBenchmark() {}
+}
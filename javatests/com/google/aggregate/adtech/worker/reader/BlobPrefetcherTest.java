@@ -0,0 +1,90 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystem;
+import java.util.Optional;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class BlobPrefetcherTest {
+
+  private FileSystem fileSystem;
+
+  @Before
+  public void setUp() {
+    fileSystem = Jimfs.newFileSystem(Configuration.unix());
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    fileSystem.close();
+  }
+
+  @Test
+  public void reader_blobStorageReader_readsAhead() {
+    RangedBlobReader blobStorageReader =
+        (location, offset, length) -> InputStream.nullInputStream();
+
+    BlobPrefetcher prefetcher =
+        new BlobPrefetcher(Optional.of(blobStorageReader), BlobPrefetchOptions.defaults());
+
+    assertThat(prefetcher.reader().get()).isInstanceOf(PrefetchingBlobReader.class);
+  }
+
+  @Test
+  public void reader_zeroBudget_readsDirectly() {
+    RangedBlobReader blobStorageReader =
+        (location, offset, length) -> InputStream.nullInputStream();
+
+    BlobPrefetcher prefetcher =
+        new BlobPrefetcher(
+            Optional.of(blobStorageReader),
+            BlobPrefetchOptions.create(/* chunkSizeBytes= */ 4 << 20, /* budgetBytes= */ 0));
+
+    assertThat(prefetcher.reader().get()).isSameInstanceAs(blobStorageReader);
+  }
+
+  @Test
+  public void reader_mappedReader_readsDirectly() {
+    MappedBlobReader mappedReader = new MappedBlobReader(fileSystem);
+
+    BlobPrefetcher prefetcher =
+        new BlobPrefetcher(Optional.of(mappedReader), BlobPrefetchOptions.defaults());
+
+    assertThat(prefetcher.reader().get()).isSameInstanceAs(mappedReader);
+  }
+
+  @Test
+  public void reader_noRangedReader_isEmpty() {
+    BlobPrefetcher prefetcher =
+        new BlobPrefetcher(Optional.empty(), BlobPrefetchOptions.defaults());
+
+    assertThat(prefetcher.reader()).isEmpty();
+  }
+}
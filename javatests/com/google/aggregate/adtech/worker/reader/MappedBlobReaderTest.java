@@ -0,0 +1,122 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient.getDataLocation;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import java.io.InputStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class MappedBlobReaderTest {
+
+  @Rule public final TemporaryFolder bucket = new TemporaryFolder();
+
+  private final byte[] blob = new byte[10_000];
+  private DataLocation location;
+
+  @Before
+  public void setUp() throws Exception {
+    new Random(7).nextBytes(blob);
+    Files.write(bucket.getRoot().toPath().resolve("blob"), blob);
+    location = getDataLocation(bucket.getRoot().getPath(), "blob");
+  }
+
+  @Test
+  public void getBlobRange_readsRangesAcrossWindows() throws Exception {
+    MappedBlobReader reader =
+        new MappedBlobReader(FileSystems.getDefault(), /* maxMappingSizeBytes= */ 1000);
+    int[][] ranges = {{0, 0}, {0, 10_000}, {999, 2}, {1500, 3333}, {9999, 1}};
+
+    for (int[] range : ranges) {
+      try (InputStream rangeStream = reader.getBlobRange(location, range[0], range[1])) {
+        assertThat(ByteStreams.toByteArray(rangeStream))
+            .isEqualTo(Arrays.copyOfRange(blob, range[0], range[0] + range[1]));
+      }
+    }
+  }
+
+  @Test
+  public void getBlobRange_rangePastEnd_readsToEnd() throws Exception {
+    MappedBlobReader reader = new MappedBlobReader(FileSystems.getDefault());
+
+    try (InputStream rangeStream = reader.getBlobRange(location, 9000, Long.MAX_VALUE - 9000)) {
+      assertThat(ByteStreams.toByteArray(rangeStream))
+          .isEqualTo(Arrays.copyOfRange(blob, 9000, 10_000));
+    }
+  }
+
+  @Test
+  public void getBlobRange_lengthOverflowsOffset_readsToEnd() throws Exception {
+    MappedBlobReader reader = new MappedBlobReader(FileSystems.getDefault());
+
+    try (InputStream rangeStream = reader.getBlobRange(location, 9000, Long.MAX_VALUE)) {
+      assertThat(ByteStreams.toByteArray(rangeStream))
+          .isEqualTo(Arrays.copyOfRange(blob, 9000, 10_000));
+    }
+  }
+
+  @Test
+  public void getBlobRange_offsetPastEnd_readsNothing() throws Exception {
+    MappedBlobReader reader = new MappedBlobReader(FileSystems.getDefault());
+
+    try (InputStream rangeStream = reader.getBlobRange(location, 20_000, Long.MAX_VALUE)) {
+      assertThat(ByteStreams.toByteArray(rangeStream)).isEmpty();
+    }
+  }
+
+  @Test
+  public void getBlobRange_skipsAndReadsSingleBytes() throws Exception {
+    MappedBlobReader reader =
+        new MappedBlobReader(FileSystems.getDefault(), /* maxMappingSizeBytes= */ 1000);
+
+    try (InputStream rangeStream = reader.getBlobRange(location, 100, 5000)) {
+      ByteStreams.skipFully(rangeStream, 2500);
+      assertThat(rangeStream.read()).isEqualTo(blob[2600] & 0xff);
+    }
+  }
+
+  @Test
+  public void getBlobRange_fileSystemWithoutMapping_readsStream() throws Exception {
+    try (FileSystem fileSystem = Jimfs.newFileSystem(Configuration.unix())) {
+      Files.createDirectories(fileSystem.getPath("bucket"));
+      Files.write(fileSystem.getPath("bucket", "blob"), blob);
+      MappedBlobReader reader = new MappedBlobReader(fileSystem);
+
+      try (InputStream rangeStream =
+          reader.getBlobRange(getDataLocation("bucket", "blob"), 20, 300)) {
+        assertThat(ByteStreams.toByteArray(rangeStream))
+            .isEqualTo(Arrays.copyOfRange(blob, 20, 320));
+      }
+    }
+  }
+}
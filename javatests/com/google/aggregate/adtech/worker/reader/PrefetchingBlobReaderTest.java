@@ -0,0 +1,117 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient.getDataLocation;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import java.io.InputStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PrefetchingBlobReaderTest {
+
+  private static final int CHUNK_SIZE_BYTES = 1 << 10;
+  private static final int BUDGET_CHUNKS = 3;
+
+  private FileSystem fileSystem;
+  private ListeningExecutorService executor;
+  private PrefetchingBlobReader reader;
+  private DataLocation location;
+  private byte[] blob;
+
+  @Before
+  public void setUp() throws Exception {
+    fileSystem = Jimfs.newFileSystem(Configuration.unix());
+    executor = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+    reader =
+        new PrefetchingBlobReader(
+            new FileSystemRangedBlobReader(fileSystem),
+            BlobPrefetchOptions.create(CHUNK_SIZE_BYTES, BUDGET_CHUNKS * CHUNK_SIZE_BYTES),
+            executor);
+    // Spans many chunks, with a partial last one.
+    blob = new byte[(100 << 10) + 123];
+    new Random(7).nextBytes(blob);
+    Files.createDirectories(fileSystem.getPath("bucket"));
+    Files.write(fileSystem.getPath("bucket", "blob"), blob);
+    location = getDataLocation("bucket", "blob");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+    fileSystem.close();
+  }
+
+  @Test
+  public void getBlobRange_readsWholeBlob() throws Exception {
+    try (InputStream range = reader.getBlobRange(location, 0, blob.length)) {
+      assertThat(ByteStreams.toByteArray(range)).isEqualTo(blob);
+    }
+  }
+
+  @Test
+  public void getBlobRange_readsRangesAcrossChunkBoundaries() throws Exception {
+    int[][] ranges = {{0, 0}, {0, 1}, {5, CHUNK_SIZE_BYTES}, {70_000, 30_123}, {65_535, 2}};
+
+    for (int[] range : ranges) {
+      try (InputStream rangeStream = reader.getBlobRange(location, range[0], range[1])) {
+        assertThat(ByteStreams.toByteArray(rangeStream))
+            .isEqualTo(Arrays.copyOfRange(blob, range[0], range[0] + range[1]));
+      }
+    }
+  }
+
+  @Test
+  public void getBlobRange_singleByteReads() throws Exception {
+    try (InputStream range = reader.getBlobRange(location, 10, 3000)) {
+      for (int i = 10; i < 3010; i++) {
+        assertThat(range.read()).isEqualTo(blob[i] & 0xff);
+      }
+      assertThat(range.read()).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  public void close_releasesBudget() throws Exception {
+    InputStream first = reader.getBlobRange(location, 0, blob.length);
+    InputStream second = reader.getBlobRange(location, 0, blob.length);
+    byte[] buffer = new byte[80 << 10];
+    ByteStreams.readFully(first, buffer);
+    ByteStreams.readFully(second, buffer);
+
+    first.close();
+    second.close();
+
+    assertThat(reader.availableBudgetChunks()).isEqualTo(BUDGET_CHUNKS);
+  }
+}
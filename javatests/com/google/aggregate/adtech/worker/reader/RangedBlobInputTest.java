@@ -0,0 +1,132 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient.getDataLocation;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class RangedBlobInputTest {
+
+  private static final DataLocation LOCATION = getDataLocation("bucket", "dir/blob");
+
+  private FileSystem fileSystem;
+  private byte[] content;
+
+  @Before
+  public void setUp() throws IOException {
+    fileSystem =
+        Jimfs.newFileSystem(Configuration.unix().toBuilder().setWorkingDirectory("/").build());
+    content = new byte[1000];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) i;
+    }
+    Files.createDirectories(fileSystem.getPath("bucket", "dir"));
+    Files.write(fileSystem.getPath("bucket", "dir/blob"), content);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    fileSystem.close();
+  }
+
+  @Test
+  public void read_afterSeek_readsFromPosition() throws IOException {
+    byte[] read = new byte[100];
+
+    try (RangedBlobInput input =
+        new RangedBlobInput(new FileSystemRangedBlobReader(fileSystem), LOCATION, 1000)) {
+      input.seek(900);
+      assertThat(input.read(read, 0, 100)).isEqualTo(100);
+      assertThat(read).isEqualTo(Arrays.copyOfRange(content, 900, 1000));
+      assertThat(input.tell()).isEqualTo(1000);
+      assertThat(input.read(read, 0, 100)).isEqualTo(-1);
+
+      input.seek(10);
+      assertThat(input.read(read, 0, 100)).isEqualTo(100);
+      assertThat(read).isEqualTo(Arrays.copyOfRange(content, 10, 110));
+      assertThat(input.tell()).isEqualTo(110);
+      assertThat(input.length()).isEqualTo(1000);
+    }
+  }
+
+  @Test
+  public void read_withRangeEnd_readsOneBlockPastRange() throws IOException {
+    List<Long> readEnds = new ArrayList<>();
+    RangedBlobReader recordingReader =
+        (location, offset, length) -> {
+          readEnds.add(offset + length);
+          return new FileSystemRangedBlobReader(fileSystem).getBlobRange(location, offset, length);
+        };
+    long blobSize = 4 * RangedBlobInput.BLOCK_SLACK_BYTES;
+    Files.write(fileSystem.getPath("bucket", "dir/blob"), new byte[(int) blobSize]);
+    byte[] read = new byte[100];
+
+    try (RangedBlobInput input =
+        new RangedBlobInput(recordingReader, LOCATION, blobSize, /* rangeEnd= */ 100)) {
+      input.seek(10);
+      assertThat(input.read(read, 0, 100)).isEqualTo(100);
+      input.seek(RangedBlobInput.BLOCK_SLACK_BYTES + 50);
+      assertThat(input.read(read, 0, 100)).isEqualTo(50);
+      assertThat(input.read(read, 0, 100)).isEqualTo(100);
+    }
+
+    assertThat(readEnds)
+        .containsExactly(
+            RangedBlobInput.BLOCK_SLACK_BYTES + 100,
+            RangedBlobInput.BLOCK_SLACK_BYTES + 100,
+            blobSize)
+        .inOrder();
+  }
+
+  @Test
+  public void split_coversBlobWithAdjacentRanges() {
+    ImmutableList<BlobRange> ranges = BlobRange.split(LOCATION, 1000, 300);
+
+    assertThat(ranges.stream().map(BlobRange::start).collect(toImmutableList()))
+        .containsExactly(0L, 300L, 600L, 900L)
+        .inOrder();
+    assertThat(ranges.stream().map(BlobRange::end).collect(toImmutableList()))
+        .containsExactly(300L, 600L, 900L, 1000L)
+        .inOrder();
+    assertThat(ranges.stream().anyMatch(BlobRange::isWholeBlob)).isFalse();
+  }
+
+  @Test
+  public void split_smallBlob_returnsWholeBlob() {
+    assertThat(BlobRange.split(LOCATION, 300, 300))
+        .containsExactly(BlobRange.wholeBlob(LOCATION, 300));
+    assertThat(BlobRange.wholeBlob(LOCATION, 300).isWholeBlob()).isTrue();
+  }
+}
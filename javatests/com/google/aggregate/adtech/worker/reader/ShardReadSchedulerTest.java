@@ -0,0 +1,168 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient.getDataLocation;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.testing.FSBlobStorageClient;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.context.Context;
+import io.reactivex.rxjava3.core.Flowable;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ShardReadSchedulerTest {
+
+  private FileSystem fileSystem;
+  private ListeningExecutorService executor;
+
+  @Before
+  public void setUp() {
+    fileSystem =
+        Jimfs.newFileSystem(Configuration.unix().toBuilder().setWorkingDirectory("/").build());
+    executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(4));
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    executor.shutdownNow();
+    fileSystem.close();
+  }
+
+  @Test
+  public void sizeShards_returnsWholeBlobsInListingOrder() throws Exception {
+    Files.createDirectories(fileSystem.getPath("bucket"));
+    Files.write(fileSystem.getPath("bucket", "shard-1"), new byte[10]);
+    Files.write(fileSystem.getPath("bucket", "shard-2"), new byte[1000]);
+    Files.write(fileSystem.getPath("bucket", "shard-3"), new byte[0]);
+    ImmutableList<DataLocation> shards =
+        ImmutableList.of(
+            getDataLocation("bucket", "shard-1"),
+            getDataLocation("bucket", "shard-2"),
+            getDataLocation("bucket", "shard-3"));
+
+    ImmutableList<BlobRange> sizedShards =
+        ShardReadScheduler.sizeShards(new FSBlobStorageClient(fileSystem), shards, executor);
+
+    assertThat(sizedShards)
+        .containsExactly(
+            BlobRange.wholeBlob(shards.get(0), 10),
+            BlobRange.wholeBlob(shards.get(1), 1000),
+            BlobRange.wholeBlob(shards.get(2), 0))
+        .inOrder();
+  }
+
+  @Test
+  public void schedule_readsLargestFirstAndCombinesSmallShards() {
+    BlobRange small1 = shard("small-1", 30);
+    BlobRange small2 = shard("small-2", 40);
+    BlobRange small3 = shard("small-3", 50);
+    BlobRange large1 = shard("large-1", 200);
+    BlobRange large2 = shard("large-2", 1000);
+
+    ImmutableList<ImmutableList<BlobRange>> tasks =
+        ShardReadScheduler.schedule(
+            ImmutableList.of(small1, large1, small2, large2, small3),
+            /* combinedReadSizeBytes= */ 100);
+
+    assertThat(tasks)
+        .containsExactly(
+            ImmutableList.of(large2),
+            ImmutableList.of(large1),
+            ImmutableList.of(small3, small2),
+            ImmutableList.of(small1))
+        .inOrder();
+  }
+
+  @Test
+  public void schedule_limitsShardsCombined() {
+    ImmutableList.Builder<BlobRange> shards = ImmutableList.builder();
+    for (int i = 0; i < ShardReadScheduler.MAX_COMBINED_READS * 2 + 1; i++) {
+      shards.add(shard("empty-" + i, 0));
+    }
+
+    ImmutableList<ImmutableList<BlobRange>> tasks =
+        ShardReadScheduler.schedule(shards.build(), /* combinedReadSizeBytes= */ 100);
+
+    assertThat(tasks.stream().map(ImmutableList::size).collect(toImmutableList()))
+        .containsExactly(
+            ShardReadScheduler.MAX_COMBINED_READS, ShardReadScheduler.MAX_COMBINED_READS, 1)
+        .inOrder();
+  }
+
+  @Test
+  public void timeRead_recordsReadsWithJobAttributes() {
+    RecordingHistogram readTimes = new RecordingHistogram();
+    Attributes jobAttributes = ShardReadScheduler.jobAttributes("job");
+
+    for (int i = 0; i < 3; i++) {
+      ShardReadScheduler.timeRead(readTimes, jobAttributes, Flowable.just(1, 2, 3))
+          .blockingSubscribe();
+    }
+    ShardReadScheduler.timeRead(
+            readTimes, jobAttributes, Flowable.error(new IOException("read failed")))
+        .onErrorComplete()
+        .blockingSubscribe();
+
+    assertThat(readTimes.attributes)
+        .containsExactlyElementsIn(Collections.nCopies(4, jobAttributes));
+  }
+
+  private static BlobRange shard(String key, long size) {
+    return BlobRange.wholeBlob(getDataLocation("bucket", key), size);
+  }
+
+  private static final class RecordingHistogram implements LongHistogram {
+
+    private final List<Attributes> attributes = new ArrayList<>();
+
+    @Override
+    public void record(long value) {
+      record(value, Attributes.empty());
+    }
+
+    @Override
+    public void record(long value, Attributes attributes) {
+      this.attributes.add(attributes);
+    }
+
+    @Override
+    public void record(long value, Attributes attributes, Context context) {
+      record(value, attributes);
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader.aws;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+@RunWith(JUnit4.class)
+public class S3BlobVersionReaderTest {
+
+  private static final DataLocation LOCATION =
+      DataLocation.ofBlobStoreDataLocation(BlobStoreDataLocation.create("bucket", "domain/shard"));
+
+  @Rule public final MockitoRule mockito = MockitoJUnit.rule();
+
+  @Mock private S3Client s3Client;
+
+  private S3BlobVersionReader versionReader;
+
+  @Before
+  public void setUp() {
+    versionReader = new S3BlobVersionReader(s3Client);
+  }
+
+  @Test
+  public void getBlobVersion_returnsEntityTag() throws Exception {
+    when(s3Client.headObject(any(HeadObjectRequest.class)))
+        .thenReturn(HeadObjectResponse.builder().eTag("\"etag\"").build());
+
+    assertThat(versionReader.getBlobVersion(LOCATION)).isEqualTo("\"etag\"");
+    verify(s3Client)
+        .headObject(HeadObjectRequest.builder().bucket("bucket").key("domain/shard").build());
+  }
+
+  @Test
+  public void getBlobVersion_requestFails_throwsIOException() {
+    when(s3Client.headObject(any(HeadObjectRequest.class)))
+        .thenThrow(NoSuchKeyException.builder().message("No such key.").build());
+
+    assertThrows(IOException.class, () -> versionReader.getBlobVersion(LOCATION));
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader.aws;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.Abortable;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+@RunWith(JUnit4.class)
+public class S3RangedBlobReaderTest {
+
+  private static final DataLocation LOCATION =
+      DataLocation.ofBlobStoreDataLocation(BlobStoreDataLocation.create("bucket", "reports/shard"));
+
+  @Rule public final MockitoRule mockito = MockitoJUnit.rule();
+
+  @Mock private S3Client s3Client;
+  @Mock private Abortable request;
+
+  private S3RangedBlobReader blobReader;
+
+  @Before
+  public void setUp() {
+    blobReader = new S3RangedBlobReader(s3Client);
+  }
+
+  @Test
+  public void getBlobRange_requestsRangeOfBlob() throws Exception {
+    respondWith(new byte[] {1, 2, 3, 4});
+
+    try (InputStream range = blobReader.getBlobRange(LOCATION, /* offset= */ 10, /* length= */ 4)) {
+      assertThat(range.readAllBytes()).isEqualTo(new byte[] {1, 2, 3, 4});
+    }
+
+    ArgumentCaptor<GetObjectRequest> getObject = ArgumentCaptor.forClass(GetObjectRequest.class);
+    verify(s3Client).getObject(getObject.capture());
+    assertThat(getObject.getValue().bucket()).isEqualTo("bucket");
+    assertThat(getObject.getValue().key()).isEqualTo("reports/shard");
+    assertThat(getObject.getValue().range()).isEqualTo("bytes=10-13");
+  }
+
+  @Test
+  public void getBlobRange_toEndOfBlob_requestsOpenRange() throws Exception {
+    respondWith(new byte[] {1, 2});
+
+    blobReader.getBlobRange(LOCATION, /* offset= */ 10, /* length= */ Long.MAX_VALUE).close();
+
+    ArgumentCaptor<GetObjectRequest> getObject = ArgumentCaptor.forClass(GetObjectRequest.class);
+    verify(s3Client).getObject(getObject.capture());
+    assertThat(getObject.getValue().range()).isEqualTo("bytes=10-");
+  }
+
+  @Test
+  public void getBlobRange_emptyRange_sendsNoRequest() throws Exception {
+    try (InputStream range = blobReader.getBlobRange(LOCATION, /* offset= */ 10, /* length= */ 0)) {
+      assertThat(range.read()).isEqualTo(-1);
+    }
+
+    verifyNoInteractions(s3Client);
+  }
+
+  @Test
+  public void getBlobRange_rangePastEndOfBlob_readsOnlyToEnd() throws Exception {
+    // S3 clamps the range to the end of the object.
+    respondWith(new byte[] {1, 2});
+
+    try (InputStream range = blobReader.getBlobRange(LOCATION, /* offset= */ 10, /* length= */ 8)) {
+      assertThat(range.readAllBytes()).isEqualTo(new byte[] {1, 2});
+    }
+
+    verify(request, never()).abort();
+  }
+
+  @Test
+  public void getBlobRange_rangeStartsPastEndOfBlob_returnsEmptyStream() throws Exception {
+    when(s3Client.getObject(any(GetObjectRequest.class)))
+        .thenThrow(S3Exception.builder().statusCode(416).message("Range not satisfiable.").build());
+
+    try (InputStream range = blobReader.getBlobRange(LOCATION, /* offset= */ 10, /* length= */ 4)) {
+      assertThat(range.read()).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  public void getBlobRange_requestFails_throwsIOException() {
+    when(s3Client.getObject(any(GetObjectRequest.class)))
+        .thenThrow(S3Exception.builder().statusCode(500).message("Internal error.").build());
+
+    assertThrows(
+        IOException.class,
+        () -> blobReader.getBlobRange(LOCATION, /* offset= */ 10, /* length= */ 4));
+  }
+
+  @Test
+  public void close_beforeEndOfRange_abortsRequest() throws Exception {
+    respondWith(new byte[] {1, 2, 3, 4});
+
+    InputStream range = blobReader.getBlobRange(LOCATION, /* offset= */ 10, /* length= */ 4);
+    range.read();
+    range.close();
+
+    verify(request).abort();
+  }
+
+  @Test
+  public void close_atEndOfRange_keepsConnection() throws Exception {
+    respondWith(new byte[] {1, 2, 3, 4});
+
+    InputStream range = blobReader.getBlobRange(LOCATION, /* offset= */ 10, /* length= */ 4);
+    range.readAllBytes();
+    range.close();
+
+    verify(request, never()).abort();
+  }
+
+  private void respondWith(byte[] content) {
+    when(s3Client.getObject(any(GetObjectRequest.class)))
+        .thenReturn(
+            new ResponseInputStream<>(
+                GetObjectResponse.builder().contentLength((long) content.length).build(),
+                AbortableInputStream.create(new ByteArrayInputStream(content), request)));
+  }
+}
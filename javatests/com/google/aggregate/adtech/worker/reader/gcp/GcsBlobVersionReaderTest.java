@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader.gcp;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.Storage.BlobGetOption;
+import com.google.cloud.storage.StorageException;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+@RunWith(JUnit4.class)
+public class GcsBlobVersionReaderTest {
+
+  private static final DataLocation LOCATION =
+      DataLocation.ofBlobStoreDataLocation(BlobStoreDataLocation.create("bucket", "domain/shard"));
+  private static final BlobId BLOB_ID = BlobId.of("bucket", "domain/shard");
+
+  @Rule public final MockitoRule mockito = MockitoJUnit.rule();
+
+  @Mock private Storage storage;
+
+  private GcsBlobVersionReader versionReader;
+
+  @Before
+  public void setUp() {
+    versionReader = new GcsBlobVersionReader(storage);
+  }
+
+  @Test
+  public void getBlobVersion_returnsGeneration() throws Exception {
+    Blob blob = mock(Blob.class);
+    when(blob.getGeneration()).thenReturn(1234L);
+    when(storage.get(eq(BLOB_ID), any(BlobGetOption.class))).thenReturn(blob);
+
+    assertThat(versionReader.getBlobVersion(LOCATION)).isEqualTo("1234");
+  }
+
+  @Test
+  public void getBlobVersion_missingBlob_throwsFileNotFound() {
+    when(storage.get(eq(BLOB_ID), any(BlobGetOption.class))).thenReturn(null);
+
+    assertThrows(FileNotFoundException.class, () -> versionReader.getBlobVersion(LOCATION));
+  }
+
+  @Test
+  public void getBlobVersion_requestFails_throwsIOException() {
+    when(storage.get(eq(BLOB_ID), any(BlobGetOption.class)))
+        .thenThrow(new StorageException(503, "Service unavailable."));
+
+    assertThrows(IOException.class, () -> versionReader.getBlobVersion(LOCATION));
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.reader.gcp;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.ReadChannel;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+@RunWith(JUnit4.class)
+public class GcsRangedBlobReaderTest {
+
+  private static final DataLocation LOCATION =
+      DataLocation.ofBlobStoreDataLocation(BlobStoreDataLocation.create("bucket", "reports/shard"));
+  private static final BlobId BLOB_ID = BlobId.of("bucket", "reports/shard");
+
+  @Rule public final MockitoRule mockito = MockitoJUnit.rule();
+
+  @Mock private Storage storage;
+  @Mock private ReadChannel channel;
+
+  private GcsRangedBlobReader blobReader;
+
+  @Before
+  public void setUp() {
+    blobReader = new GcsRangedBlobReader(storage);
+  }
+
+  @Test
+  public void getBlobRange_seeksToRangeAndLimitsToItsEnd() throws Exception {
+    when(storage.reader(BLOB_ID)).thenReturn(channel);
+
+    blobReader.getBlobRange(LOCATION, /* offset= */ 10, /* length= */ 4);
+
+    verify(channel).seek(10);
+    verify(channel).limit(14);
+  }
+
+  @Test
+  public void getBlobRange_toEndOfBlob_limitsWithoutOverflow() throws Exception {
+    when(storage.reader(BLOB_ID)).thenReturn(channel);
+
+    blobReader.getBlobRange(LOCATION, /* offset= */ 10, /* length= */ Long.MAX_VALUE);
+
+    verify(channel).limit(Long.MAX_VALUE);
+  }
+
+  @Test
+  public void getBlobRange_emptyRange_opensNoChannel() throws Exception {
+    try (InputStream range = blobReader.getBlobRange(LOCATION, /* offset= */ 10, /* length= */ 0)) {
+      assertThat(range.read()).isEqualTo(-1);
+    }
+
+    verifyNoInteractions(storage);
+  }
+
+  @Test
+  public void getBlobRange_rangePastEndOfBlob_endsAtEndOfBlob() throws Exception {
+    when(storage.reader(BLOB_ID)).thenReturn(channel);
+    when(channel.read(any(ByteBuffer.class)))
+        .thenAnswer(
+            invocation -> {
+              invocation.<ByteBuffer>getArgument(0).put(new byte[] {1, 2});
+              return 2;
+            })
+        .thenReturn(-1);
+
+    try (InputStream range = blobReader.getBlobRange(LOCATION, /* offset= */ 10, /* length= */ 8)) {
+      assertThat(range.readAllBytes()).isEqualTo(new byte[] {1, 2});
+    }
+  }
+
+  @Test
+  public void getBlobRange_readerFails_throwsIOException() {
+    when(storage.reader(BLOB_ID)).thenThrow(new StorageException(503, "Service unavailable."));
+
+    assertThrows(
+        IOException.class,
+        () -> blobReader.getBlobRange(LOCATION, /* offset= */ 10, /* length= */ 4));
+  }
+
+  @Test
+  public void getBlobRange_seekFails_closesChannel() throws Exception {
+    when(storage.reader(BLOB_ID)).thenReturn(channel);
+    doThrow(new IOException("Connection reset.")).when(channel).seek(anyLong());
+
+    assertThrows(
+        IOException.class,
+        () -> blobReader.getBlobRange(LOCATION, /* offset= */ 10, /* length= */ 4));
+    verify(channel).close();
+  }
+
+  @Test
+  public void close_beforeEndOfRange_closesChannel() throws Exception {
+    when(storage.reader(BLOB_ID)).thenReturn(channel);
+
+    blobReader.getBlobRange(LOCATION, /* offset= */ 10, /* length= */ 4).close();
+
+    verify(channel).close();
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.upload;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient.getDataLocation;
+import static org.junit.Assert.assertThrows;
+
+import com.google.aggregate.adtech.worker.upload.MultipartBlobUploader.MultipartUpload;
+import com.google.common.collect.ImmutableList;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class FileSystemMultipartBlobUploaderTest {
+
+  private FileSystem fileSystem;
+  private FileSystemMultipartBlobUploader uploader;
+
+  @Before
+  public void setUp() {
+    fileSystem =
+        Jimfs.newFileSystem(Configuration.unix().toBuilder().setWorkingDirectory("/").build());
+    uploader = new FileSystemMultipartBlobUploader(fileSystem);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    fileSystem.close();
+  }
+
+  @Test
+  public void complete_partsUploadedOutOfOrder_writesPartsInPlace() throws Exception {
+    MultipartUpload upload =
+        uploader.start(getDataLocation("bucket", "dir/blob"), /* partSizeBytes= */ 2);
+
+    upload.uploadPart(3, ByteBuffer.wrap(new byte[] {5}));
+    upload.uploadPart(1, ByteBuffer.wrap(new byte[] {1, 2}));
+    upload.uploadPart(2, ByteBuffer.wrap(new byte[] {3, 4}));
+    upload.complete();
+
+    assertThat(Files.readAllBytes(fileSystem.getPath("/bucket/dir/blob")))
+        .isEqualTo(new byte[] {1, 2, 3, 4, 5});
+    assertThat(listFiles(fileSystem.getPath("/bucket/dir"))).containsExactly("blob");
+  }
+
+  @Test
+  public void complete_missingPart_throwsException() throws Exception {
+    MultipartUpload upload =
+        uploader.start(getDataLocation("bucket", "blob"), /* partSizeBytes= */ 2);
+    upload.uploadPart(2, ByteBuffer.wrap(new byte[] {3, 4}));
+
+    assertThrows(IOException.class, upload::complete);
+  }
+
+  @Test
+  public void complete_shortPartBeforeLast_throwsException() throws Exception {
+    MultipartUpload upload =
+        uploader.start(getDataLocation("bucket", "blob"), /* partSizeBytes= */ 2);
+    upload.uploadPart(1, ByteBuffer.wrap(new byte[] {1}));
+    upload.uploadPart(2, ByteBuffer.wrap(new byte[] {3, 4}));
+
+    assertThrows(IOException.class, upload::complete);
+  }
+
+  @Test
+  public void abort_leavesNoFiles() throws Exception {
+    MultipartUpload upload =
+        uploader.start(getDataLocation("bucket", "blob"), /* partSizeBytes= */ 2);
+    upload.uploadPart(1, ByteBuffer.wrap(new byte[] {1, 2}));
+
+    upload.abort();
+
+    assertThat(listFiles(fileSystem.getPath("/bucket"))).isEmpty();
+  }
+
+  private static ImmutableList<String> listFiles(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.map(file -> file.getFileName().toString()).collect(toImmutableList());
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.upload;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.scp.operator.cpio.blobstorageclient.BlobStorageClient.getDataLocation;
+import static org.junit.Assert.assertThrows;
+
+import com.google.aggregate.adtech.worker.upload.MultipartBlobUploader.MultipartUpload;
+import com.google.common.collect.ImmutableList;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class PartUploadOutputStreamTest {
+
+  private FileSystem fileSystem;
+  private ListeningExecutorService executor;
+  private FileSystemMultipartBlobUploader uploader;
+
+  @Before
+  public void setUp() {
+    fileSystem =
+        Jimfs.newFileSystem(Configuration.unix().toBuilder().setWorkingDirectory("/").build());
+    executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(4));
+    uploader = new FileSystemMultipartBlobUploader(fileSystem);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    executor.shutdownNow();
+    fileSystem.close();
+  }
+
+  @Test
+  public void complete_writesPartsInOrder() throws Exception {
+    byte[] content = new byte[1000];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) i;
+    }
+
+    PartUploadOutputStream outputStream =
+        new PartUploadOutputStream(
+            uploader.start(getDataLocation("bucket", "dir/blob"), /* partSizeBytes= */ 64),
+            /* partSizeBytes= */ 64,
+            /* maxBufferedParts= */ 2,
+            executor);
+    outputStream.write(content, 0, 500);
+    for (int i = 500; i < content.length; i++) {
+      outputStream.write(content[i]);
+    }
+    outputStream.complete();
+
+    assertThat(Files.readAllBytes(fileSystem.getPath("/bucket/dir/blob"))).isEqualTo(content);
+    assertThat(listFiles(fileSystem.getPath("/bucket/dir"))).containsExactly("blob");
+  }
+
+  @Test
+  public void complete_withoutWrites_writesEmptyBlob() throws Exception {
+    PartUploadOutputStream outputStream =
+        new PartUploadOutputStream(
+            uploader.start(getDataLocation("bucket", "blob"), /* partSizeBytes= */ 64),
+            /* partSizeBytes= */ 64,
+            /* maxBufferedParts= */ 2,
+            executor);
+    outputStream.complete();
+
+    assertThat(Files.readAllBytes(fileSystem.getPath("/bucket/blob"))).isEmpty();
+  }
+
+  @Test
+  public void abort_leavesNoBlob() throws Exception {
+    PartUploadOutputStream outputStream =
+        new PartUploadOutputStream(
+            uploader.start(getDataLocation("bucket", "blob"), /* partSizeBytes= */ 64),
+            /* partSizeBytes= */ 64,
+            /* maxBufferedParts= */ 2,
+            executor);
+    outputStream.write(new byte[200]);
+    outputStream.abort();
+
+    assertThat(listFiles(fileSystem.getPath("/bucket"))).isEmpty();
+  }
+
+  @Test
+  public void complete_failedPartUpload_throwsException() throws Exception {
+    MultipartUpload failingUpload =
+        new MultipartUpload() {
+          @Override
+          public void uploadPart(int partNumber, ByteBuffer part) throws IOException {
+            throw new IOException("part upload failed");
+          }
+
+          @Override
+          public void complete() {
+            throw new AssertionError("A failed upload must not be completed.");
+          }
+
+          @Override
+          public void abort() {}
+        };
+    PartUploadOutputStream outputStream =
+        new PartUploadOutputStream(
+            failingUpload, /* partSizeBytes= */ 64, /* maxBufferedParts= */ 1, executor);
+
+    IOException exception =
+        assertThrows(
+            IOException.class,
+            () -> {
+              outputStream.write(new byte[1000]);
+              outputStream.complete();
+            });
+
+    assertThat(exception).hasCauseThat().hasMessageThat().isEqualTo("part upload failed");
+  }
+
+  private static ImmutableList<String> listFiles(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.map(file -> file.getFileName().toString()).collect(toImmutableList());
+    }
+  }
+}
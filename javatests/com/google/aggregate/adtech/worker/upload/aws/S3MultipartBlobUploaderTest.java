@@ -0,0 +1,163 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.upload.aws;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.aggregate.adtech.worker.upload.MultipartBlobUploader;
+import com.google.aggregate.adtech.worker.upload.MultipartBlobUploader.MultipartUpload;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+@RunWith(JUnit4.class)
+public class S3MultipartBlobUploaderTest {
+
+  private static final DataLocation LOCATION =
+      DataLocation.ofBlobStoreDataLocation(
+          BlobStoreDataLocation.create("bucket", "summary/shard.avro"));
+  private static final String UPLOAD_ID = "upload-id";
+
+  @Rule public final MockitoRule mockito = MockitoJUnit.rule();
+
+  @Mock private S3Client s3Client;
+
+  private S3MultipartBlobUploader uploader;
+
+  @Before
+  public void setUp() {
+    uploader = new S3MultipartBlobUploader(s3Client);
+    when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+        .thenReturn(CreateMultipartUploadResponse.builder().uploadId(UPLOAD_ID).build());
+  }
+
+  @Test
+  public void start_createsMultipartUploadOfBlob() throws Exception {
+    uploader.start(LOCATION, MultipartBlobUploader.MIN_PART_SIZE_BYTES);
+
+    verify(s3Client)
+        .createMultipartUpload(
+            CreateMultipartUploadRequest.builder()
+                .bucket("bucket")
+                .key("summary/shard.avro")
+                .build());
+  }
+
+  @Test
+  public void start_partSizeBelowMinimum_throws() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> uploader.start(LOCATION, MultipartBlobUploader.MIN_PART_SIZE_BYTES - 1));
+  }
+
+  @Test
+  public void uploadPart_sendsPartNumberAndLength() throws Exception {
+    when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenReturn(UploadPartResponse.builder().eTag("etag-1").build());
+    MultipartUpload upload = uploader.start(LOCATION, MultipartBlobUploader.MIN_PART_SIZE_BYTES);
+
+    upload.uploadPart(1, ByteBuffer.wrap(new byte[10]));
+
+    ArgumentCaptor<UploadPartRequest> request = ArgumentCaptor.forClass(UploadPartRequest.class);
+    verify(s3Client).uploadPart(request.capture(), any(RequestBody.class));
+    assertThat(request.getValue().uploadId()).isEqualTo(UPLOAD_ID);
+    assertThat(request.getValue().partNumber()).isEqualTo(1);
+    assertThat(request.getValue().contentLength()).isEqualTo(10);
+  }
+
+  @Test
+  public void complete_listsPartETagsByPartNumber() throws Exception {
+    when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenAnswer(
+            invocation ->
+                UploadPartResponse.builder()
+                    .eTag("etag-" + invocation.<UploadPartRequest>getArgument(0).partNumber())
+                    .build());
+    MultipartUpload upload = uploader.start(LOCATION, MultipartBlobUploader.MIN_PART_SIZE_BYTES);
+
+    upload.uploadPart(2, ByteBuffer.wrap(new byte[1]));
+    upload.uploadPart(1, ByteBuffer.wrap(new byte[1]));
+    upload.complete();
+
+    ArgumentCaptor<CompleteMultipartUploadRequest> request =
+        ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+    verify(s3Client).completeMultipartUpload(request.capture());
+    assertThat(request.getValue().uploadId()).isEqualTo(UPLOAD_ID);
+    assertThat(request.getValue().multipartUpload().parts())
+        .containsExactly(
+            CompletedPart.builder().partNumber(1).eTag("etag-1").build(),
+            CompletedPart.builder().partNumber(2).eTag("etag-2").build())
+        .inOrder();
+  }
+
+  @Test
+  public void uploadPart_requestFails_throwsIOException() throws Exception {
+    when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenThrow(S3Exception.builder().statusCode(500).message("Internal error.").build());
+    MultipartUpload upload = uploader.start(LOCATION, MultipartBlobUploader.MIN_PART_SIZE_BYTES);
+
+    assertThrows(IOException.class, () -> upload.uploadPart(1, ByteBuffer.wrap(new byte[1])));
+  }
+
+  @Test
+  public void complete_requestFails_throwsIOException() throws Exception {
+    when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+        .thenThrow(S3Exception.builder().statusCode(400).message("Invalid part.").build());
+    MultipartUpload upload = uploader.start(LOCATION, MultipartBlobUploader.MIN_PART_SIZE_BYTES);
+
+    assertThrows(IOException.class, upload::complete);
+  }
+
+  @Test
+  public void abort_abortsMultipartUpload() throws Exception {
+    MultipartUpload upload = uploader.start(LOCATION, MultipartBlobUploader.MIN_PART_SIZE_BYTES);
+
+    upload.abort();
+
+    verify(s3Client)
+        .abortMultipartUpload(
+            AbortMultipartUploadRequest.builder()
+                .bucket("bucket")
+                .key("summary/shard.avro")
+                .uploadId(UPLOAD_ID)
+                .build());
+  }
+}
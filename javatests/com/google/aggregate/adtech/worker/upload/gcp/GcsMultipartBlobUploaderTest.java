@@ -0,0 +1,158 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.upload.gcp;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.aggregate.adtech.worker.upload.MultipartBlobUploader.MultipartUpload;
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation;
+import com.google.scp.operator.cpio.blobstorageclient.model.DataLocation.BlobStoreDataLocation;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+@RunWith(JUnit4.class)
+public class GcsMultipartBlobUploaderTest {
+
+  private static final DataLocation LOCATION =
+      DataLocation.ofBlobStoreDataLocation(
+          BlobStoreDataLocation.create("bucket", "summary/shard.avro"));
+  private static final int PART_SIZE_BYTES = 1 << 20;
+
+  @Rule public final MockitoRule mockito = MockitoJUnit.rule();
+
+  @Mock private Storage storage;
+  @Mock private WriteChannel writer;
+
+  // Bytes written to the resumable upload, in order.
+  private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+  private GcsMultipartBlobUploader uploader;
+
+  @Before
+  public void setUp() throws Exception {
+    uploader = new GcsMultipartBlobUploader(storage);
+    when(storage.writer(any(BlobInfo.class))).thenReturn(writer);
+    when(writer.write(any(ByteBuffer.class)))
+        .thenAnswer(
+            invocation -> {
+              ByteBuffer source = invocation.getArgument(0);
+              byte[] bytes = new byte[source.remaining()];
+              source.get(bytes);
+              written.write(bytes);
+              return bytes.length;
+            });
+  }
+
+  @Test
+  public void start_opensResumableUploadOfBlob() throws Exception {
+    uploader.start(LOCATION, PART_SIZE_BYTES);
+
+    ArgumentCaptor<BlobInfo> blobInfo = ArgumentCaptor.forClass(BlobInfo.class);
+    verify(storage).writer(blobInfo.capture());
+    assertThat(blobInfo.getValue().getBlobId())
+        .isEqualTo(BlobId.of("bucket", "summary/shard.avro"));
+    verify(writer).setChunkSize(PART_SIZE_BYTES);
+  }
+
+  @Test
+  public void uploadPart_outOfOrder_writesPartsInOrder() throws Exception {
+    MultipartUpload upload = uploader.start(LOCATION, PART_SIZE_BYTES);
+
+    upload.uploadPart(2, bytes("bb"));
+    upload.uploadPart(3, bytes("cc"));
+    upload.uploadPart(1, bytes("aa"));
+    upload.complete();
+
+    assertThat(written.toString(US_ASCII)).isEqualTo("aabbcc");
+    verify(writer).close();
+  }
+
+  @Test
+  public void uploadPart_bufferReusedAfterReturn_writesPartAsUploaded() throws Exception {
+    MultipartUpload upload = uploader.start(LOCATION, PART_SIZE_BYTES);
+    byte[] buffer = "bb".getBytes(US_ASCII);
+
+    upload.uploadPart(2, ByteBuffer.wrap(buffer));
+    buffer[0] = 'x';
+    upload.uploadPart(1, bytes("aa"));
+
+    assertThat(written.toString(US_ASCII)).isEqualTo("aabb");
+  }
+
+  @Test
+  public void complete_noParts_createsEmptyBlob() throws Exception {
+    MultipartUpload upload = uploader.start(LOCATION, PART_SIZE_BYTES);
+
+    upload.complete();
+
+    assertThat(written.size()).isEqualTo(0);
+    verify(writer).close();
+  }
+
+  @Test
+  public void complete_missingPart_throwsWithoutCreatingBlob() throws Exception {
+    MultipartUpload upload = uploader.start(LOCATION, PART_SIZE_BYTES);
+    upload.uploadPart(2, bytes("bb"));
+
+    assertThrows(IOException.class, upload::complete);
+    verify(writer, never()).close();
+  }
+
+  @Test
+  public void uploadPart_writeFails_failsUpload() throws Exception {
+    when(writer.write(any(ByteBuffer.class))).thenThrow(new IOException("Connection reset."));
+    MultipartUpload upload = uploader.start(LOCATION, PART_SIZE_BYTES);
+
+    assertThrows(IOException.class, () -> upload.uploadPart(1, bytes("aa")));
+    assertThrows(IOException.class, upload::complete);
+    verify(writer, never()).close();
+  }
+
+  @Test
+  public void abort_leavesUploadUnfinished() throws Exception {
+    MultipartUpload upload = uploader.start(LOCATION, PART_SIZE_BYTES);
+    upload.uploadPart(1, bytes("aa"));
+
+    upload.abort();
+
+    assertThrows(IOException.class, () -> upload.uploadPart(2, bytes("bb")));
+    verify(writer, never()).close();
+  }
+
+  private static ByteBuffer bytes(String content) {
+    return ByteBuffer.wrap(content.getBytes(US_ASCII));
+  }
+}
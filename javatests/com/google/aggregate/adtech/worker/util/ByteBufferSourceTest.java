@@ -0,0 +1,64 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ByteBufferSourceTest {
+
+  @Test
+  public void wrap_wholeArray_unsafeArrayDoesNotCopy() {
+    byte[] bytes = {0x01, 0x02, 0x03};
+
+    ByteBufferSource source = ByteBufferSource.wrap(ByteBuffer.wrap(bytes));
+
+    assertThat(source.unsafeArray()).isSameInstanceAs(bytes);
+    assertThat(source.read()).isNotSameInstanceAs(bytes);
+    assertThat(source.read()).isEqualTo(bytes);
+  }
+
+  @Test
+  public void wrap_slice_exposesOnlyRemainingBytes() throws Exception {
+    ByteBuffer buffer = ByteBuffer.wrap(new byte[] {0x01, 0x02, 0x03, 0x04});
+    buffer.position(1).limit(3);
+
+    ByteBufferSource source = ByteBufferSource.wrap(buffer);
+
+    assertThat(source.size()).isEqualTo(2);
+    assertThat(source.unsafeArray()).isEqualTo(new byte[] {0x02, 0x03});
+    assertThat(source.openStream().readAllBytes()).isEqualTo(new byte[] {0x02, 0x03});
+    assertThat(source.asReadOnlyBuffer().isReadOnly()).isTrue();
+    assertThat(source.asReadOnlyBuffer().remaining()).isEqualTo(2);
+  }
+
+  @Test
+  public void wrap_readOnlyBuffer_readsBytes() throws Exception {
+    ByteBuffer buffer = ByteBuffer.wrap(new byte[] {0x01, 0x02}).asReadOnlyBuffer();
+
+    ByteBufferSource source = ByteBufferSource.wrap(buffer);
+
+    assertThat(source.read()).isEqualTo(new byte[] {0x01, 0x02});
+    assertThat(source.openStream().readAllBytes()).isEqualTo(new byte[] {0x01, 0x02});
+    assertThat(buffer.position()).isEqualTo(0);
+  }
+}
@@ -371,6 +371,33 @@ public class NumericConversionsTest {
     assertThat(convertedBigInteger).isEqualTo(bigInteger);
   }
 
+  @Test
+  public void uInt128FromLongs_roundTripsHighAndLowBits() {
+    BigInteger[] values =
+        new BigInteger[] {
+          BigInteger.ZERO,
+          BigInteger.ONE,
+          BigInteger.valueOf(Long.MAX_VALUE),
+          BigInteger.ONE.shiftLeft(63),
+          BigInteger.ONE.shiftLeft(64),
+          new BigInteger("1234567890123456789012345678901234567"),
+          NumericConversions.UINT_128_MAX
+        };
+
+    for (BigInteger value : values) {
+      long highBits = NumericConversions.uInt128HighBits(value);
+      long lowBits = NumericConversions.uInt128LowBits(value);
+
+      assertThat(NumericConversions.uInt128FromLongs(highBits, lowBits)).isEqualTo(value);
+    }
+  }
+
+  @Test
+  public void uInt128HighAndLowBits_maxValue() {
+    assertThat(NumericConversions.uInt128HighBits(NumericConversions.UINT_128_MAX)).isEqualTo(-1L);
+    assertThat(NumericConversions.uInt128LowBits(NumericConversions.UINT_128_MAX)).isEqualTo(-1L);
+  }
+
   private void convertUInt32FromBytesAndAssert(byte[] bytes, long expected) {
     Long value = NumericConversions.uInt32FromBytes(bytes);
 
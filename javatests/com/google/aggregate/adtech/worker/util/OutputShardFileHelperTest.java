@@ -115,6 +115,21 @@ public class OutputShardFileHelperTest {
     assertThat(numShards).isEqualTo(expectedNumShards);
   }
 
+  /**
+   * getMaxRecordsPerShard would return the number of records fitting in a single shard size.
+   */
+  @Test
+  public void testGetMaxRecordsPerShard() {
+    // Configure a single shard to have 7 records.
+    OutputShardFileHelper.setOutputShardFileSizeBytes(
+        7 * OutputShardFileHelper.getOneRecordFileSizeBytes()
+            + OutputShardFileHelper.getAvroMetadataSizeBytes());
+
+    long maxRecordsPerShard = OutputShardFileHelper.getMaxRecordsPerShard();
+
+    assertThat(maxRecordsPerShard).isEqualTo(7);
+  }
+
   /**
    * getNumShards with 0 record count would return 1 because 0 record
    * case would be dealt in a single shard process.
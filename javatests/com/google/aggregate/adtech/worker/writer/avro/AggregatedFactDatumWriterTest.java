@@ -0,0 +1,127 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.writer.avro;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.aggregate.adtech.worker.model.DebugBucketAnnotation;
+import com.google.aggregate.adtech.worker.util.NumericConversions;
+import com.google.aggregate.protocol.avro.AvroDebugResultsSchemaSupplier;
+import com.google.aggregate.protocol.avro.AvroResultsSchemaSupplier;
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericData.EnumSymbol;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class AggregatedFactDatumWriterTest {
+
+  private static final ImmutableList<BigInteger> BUCKETS =
+      ImmutableList.of(
+          BigInteger.ZERO,
+          BigInteger.ONE,
+          BigInteger.valueOf(255),
+          BigInteger.valueOf(256),
+          BigInteger.ONE.shiftLeft(63),
+          BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE),
+          BigInteger.ONE.shiftLeft(64),
+          new BigInteger("1234567890123456789012345678901234567"),
+          NumericConversions.UINT_128_MAX);
+
+  private final Schema resultsSchema = new AvroResultsSchemaSupplier().get();
+  private final Schema debugResultsSchema = new AvroDebugResultsSchemaSupplier().get();
+
+  @Test
+  public void forResults_encodesAsGenericRecords() throws Exception {
+    AggregatedFactDatumWriter writer = AggregatedFactDatumWriter.forResults();
+
+    for (BigInteger bucket : BUCKETS) {
+      AggregatedFact fact = AggregatedFact.create(bucket, -42L);
+      GenericRecord record = new GenericData.Record(resultsSchema);
+      record.put("bucket", ByteBuffer.wrap(NumericConversions.toUnsignedByteArray(bucket)));
+      record.put("metric", -42L);
+
+      assertThat(encode(writer, fact))
+          .isEqualTo(encode(new GenericDatumWriter<>(resultsSchema), record));
+    }
+  }
+
+  @Test
+  public void forDebugResults_encodesAsGenericRecords() throws Exception {
+    AggregatedFactDatumWriter writer =
+        AggregatedFactDatumWriter.forDebugResults(debugResultsSchema);
+    ImmutableList<ImmutableList<DebugBucketAnnotation>> annotationLists =
+        ImmutableList.of(
+            ImmutableList.of(),
+            ImmutableList.of(DebugBucketAnnotation.IN_REPORTS),
+            ImmutableList.of(DebugBucketAnnotation.IN_DOMAIN, DebugBucketAnnotation.IN_REPORTS));
+
+    Schema annotationSchema = debugResultsSchema.getField("annotations").schema().getElementType();
+
+    for (BigInteger bucket : BUCKETS) {
+      for (ImmutableList<DebugBucketAnnotation> annotations : annotationLists) {
+        AggregatedFact fact = AggregatedFact.create(bucket, 70L, 100L, annotations);
+        GenericRecord record = new GenericData.Record(debugResultsSchema);
+        record.put("bucket", ByteBuffer.wrap(NumericConversions.toUnsignedByteArray(bucket)));
+        record.put("unnoised_metric", 100L);
+        record.put("noise", -30L);
+        record.put(
+            "annotations",
+            annotations.stream()
+                .map(annotation -> new EnumSymbol(annotationSchema, annotation.toString()))
+                .collect(ImmutableList.toImmutableList()));
+
+        assertThat(encode(writer, fact))
+            .isEqualTo(encode(new GenericDatumWriter<>(debugResultsSchema), record));
+      }
+    }
+  }
+
+  @Test
+  public void forResults_bucketOutOfRange_throwsException() {
+    AggregatedFactDatumWriter writer = AggregatedFactDatumWriter.forResults();
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> encode(writer, AggregatedFact.create(BigInteger.ONE.shiftLeft(128), 1L)));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> encode(writer, AggregatedFact.create(BigInteger.valueOf(-1), 1L)));
+  }
+
+  private static <T> byte[] encode(DatumWriter<T> writer, T datum) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(bytes, null);
+    writer.write(datum, encoder);
+    encoder.flush();
+    return bytes.toByteArray();
+  }
+}
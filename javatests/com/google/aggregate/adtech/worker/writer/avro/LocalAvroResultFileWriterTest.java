@@ -23,6 +23,7 @@ import com.google.acai.Acai;
 import com.google.aggregate.adtech.worker.model.AggregatedFact;
 import com.google.aggregate.adtech.worker.testing.AvroResultsFileReader;
 import com.google.aggregate.adtech.worker.writer.LocalResultFileWriter.FileWriteException;
+import com.google.aggregate.protocol.avro.AvroResultsSchemaSupplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.jimfs.Configuration;
 import com.google.common.jimfs.Jimfs;
@@ -30,6 +31,7 @@ import com.google.inject.AbstractModule;
 import java.math.BigInteger;
 import java.nio.file.FileSystem;
 import java.nio.file.Path;
+import java.util.stream.IntStream;
 import javax.inject.Inject;
 import org.junit.Before;
 import org.junit.Rule;
@@ -75,6 +77,25 @@ public class LocalAvroResultFileWriterTest {
     assertThat(writtenResults).containsExactly(results.toArray());
   }
 
+  /** Results written in many compressed blocks are read back the same. */
+  @Test
+  public void testWriteFileWithCodecAndSmallBlocks() throws Exception {
+    LocalAvroResultFileWriter writer =
+        new LocalAvroResultFileWriter(
+            new AvroResultsSchemaSupplier(),
+            AvroResultsFileOptions.create(/* blockSizeBytes= */ 64, "deflate"));
+    ImmutableList<AggregatedFact> manyResults =
+        IntStream.range(0, 1000)
+            .mapToObj(i -> AggregatedFact.create(BigInteger.valueOf(i).shiftLeft(100), i))
+            .collect(ImmutableList.toImmutableList());
+
+    writer.writeLocalFile(manyResults.stream(), avroFile);
+
+    ImmutableList<AggregatedFact> writtenResults =
+        avroResultsFileReader.readAvroResultsFile(avroFile);
+    assertThat(writtenResults).containsExactlyElementsIn(manyResults).inOrder();
+  }
+
   @Test
   public void testExceptionOnFailedWrite() throws Exception {
     Path nonExistentDirectory =
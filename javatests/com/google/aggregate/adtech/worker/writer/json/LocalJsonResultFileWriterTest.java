@@ -17,6 +17,7 @@
 package com.google.aggregate.adtech.worker.writer.json;
 
 import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertThrows;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -25,17 +26,31 @@ import com.google.acai.Acai;
 import com.google.aggregate.adtech.worker.model.AggregatedFact;
 import com.google.aggregate.adtech.worker.util.NumericConversions;
 import com.google.aggregate.adtech.worker.writer.LocalResultFileWriter.FileWriteException;
+import com.google.aggregate.protocol.avro.AvroResultsSchemaSupplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.jimfs.Configuration;
 import com.google.common.jimfs.Jimfs;
 import com.google.inject.AbstractModule;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 import javax.inject.Inject;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.io.JsonEncoder;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -75,19 +90,59 @@ public class LocalJsonResultFileWriterTest {
   @Test
   public void testWriteFile() throws Exception {
     localJsonResultFileWriter.writeLocalFile(results.stream(), jsonFile);
-    ObjectMapper mapper = new ObjectMapper();
-    JsonNode jsonNode = mapper.readTree(Files.newInputStream(jsonFile));
+
+    assertThat(readResults(Files.newInputStream(jsonFile))).containsExactly(results.toArray());
+  }
+
+  /**
+   * The results are written as an array of the Avro JSON encodings of their records, as by an
+   * encoder flushed after every record.
+   */
+  @Test
+  public void testWriteFileFormat() throws Exception {
+    localJsonResultFileWriter.writeLocalFile(results.stream(), jsonFile);
+
+    assertThat(new String(Files.readAllBytes(jsonFile), UTF_8))
+        .isEqualTo(writeRecordByRecord(results));
+  }
+
+  @Test
+  public void testWriteFileWithoutResults() throws Exception {
+    localJsonResultFileWriter.writeLocalFile(ImmutableList.<AggregatedFact>of().stream(), jsonFile);
+
+    assertThat(new String(Files.readAllBytes(jsonFile), UTF_8)).isEqualTo("[]");
+  }
+
+  @Test
+  public void testWriteFileWithGzip() throws Exception {
+    LocalJsonResultFileWriter gzipWriter =
+        new LocalJsonResultFileWriter(
+            new AvroResultsSchemaSupplier(), JsonResultsFileOptions.create(/* gzip= */ true));
+
+    gzipWriter.writeLocalFile(results.stream(), jsonFile);
+
+    assertThat(readResults(new GZIPInputStream(Files.newInputStream(jsonFile))))
+        .containsExactly(results.toArray());
+    assertThat(gzipWriter.getFileExtension()).isEqualTo(".json.gz");
+  }
+
+  /** A shard ends with the first result reaching the byte budget. */
+  @Test
+  public void testWriteShard() throws Exception {
+    Iterator<AggregatedFact> resultsIterator = results.iterator();
     List<AggregatedFact> writtenResults = new ArrayList<>();
-    jsonNode
-        .iterator()
-        .forEachRemaining(
-            entry -> {
-              writtenResults.add(
-                  AggregatedFact.create(
-                      NumericConversions.createBucketFromString(entry.get("bucket").asText()),
-                      entry.get("metric").asLong()));
-            });
-    assertThat(writtenResults).containsExactly(results.toArray());
+
+    for (int i = 0; i < results.size(); i++) {
+      ByteArrayOutputStream shard = new ByteArrayOutputStream();
+      localJsonResultFileWriter.writeShard(resultsIterator, shard, /* maxShardBytes= */ 1);
+      List<AggregatedFact> shardResults =
+          readResults(new ByteArrayInputStream(shard.toByteArray()));
+      assertThat(shardResults).hasSize(1);
+      writtenResults.addAll(shardResults);
+    }
+
+    assertThat(resultsIterator.hasNext()).isFalse();
+    assertThat(writtenResults).containsExactlyElementsIn(results).inOrder();
   }
 
   @Test
@@ -105,5 +160,43 @@ public class LocalJsonResultFileWriterTest {
     assertThat(localJsonResultFileWriter.getFileExtension()).isEqualTo(".json");
   }
 
+  private static String writeRecordByRecord(ImmutableList<AggregatedFact> facts)
+      throws Exception {
+    Schema schema = new AvroResultsSchemaSupplier().get();
+    DatumWriter<Object> writer = new GenericDatumWriter<>(schema);
+    ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+    JsonEncoder jsonEncoder = EncoderFactory.get().jsonEncoder(schema, outStream, true);
+    outStream.write('[');
+    for (int i = 0; i < facts.size(); i++) {
+      if (i > 0) {
+        outStream.write(',');
+      }
+      GenericRecord record = new GenericData.Record(schema);
+      record.put(
+          "bucket",
+          ByteBuffer.wrap(NumericConversions.toUnsignedByteArray(facts.get(i).getBucket())));
+      record.put("metric", facts.get(i).getMetric());
+      writer.write(record, jsonEncoder);
+      jsonEncoder.flush();
+    }
+    outStream.write(']');
+    return new String(outStream.toByteArray(), UTF_8);
+  }
+
+  private static List<AggregatedFact> readResults(InputStream jsonStream) throws Exception {
+    JsonNode jsonNode = new ObjectMapper().readTree(jsonStream);
+    List<AggregatedFact> writtenResults = new ArrayList<>();
+    jsonNode
+        .iterator()
+        .forEachRemaining(
+            entry -> {
+              writtenResults.add(
+                  AggregatedFact.create(
+                      NumericConversions.createBucketFromString(entry.get("bucket").asText()),
+                      entry.get("metric").asLong()));
+            });
+    return writtenResults;
+  }
+
   public static final class TestEnv extends AbstractModule {}
 }
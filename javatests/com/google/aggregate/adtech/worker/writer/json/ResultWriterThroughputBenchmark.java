@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.aggregate.adtech.worker.writer.json;
+
+import com.google.aggregate.adtech.worker.model.AggregatedFact;
+import com.google.aggregate.adtech.worker.writer.LocalResultFileWriter;
+import com.google.aggregate.adtech.worker.writer.avro.LocalAvroResultFileWriter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Measures the throughput of the JSON summary writer, plain and gzipped, against the Avro one for
+ * the same results.
+ *
+ * <p>Run the {@code ResultWriterThroughputBenchmark} target of this package with {@code bazel run}.
+ * The results are written to a stream discarding them, so the numbers leave out the disk.
+ */
+public final class ResultWriterThroughputBenchmark {
+
+  private static final int RESULT_COUNT = 1_000_000;
+  private static final int WARMUP_ROUNDS = 3;
+
+  public static void main(String[] args) throws Exception {
+    Random random = new Random(42);
+    ImmutableList<AggregatedFact> results =
+        IntStream.range(0, RESULT_COUNT)
+            .mapToObj(
+                i -> AggregatedFact.create(new BigInteger(128, random), random.nextInt(1 << 16)))
+            .collect(ImmutableList.toImmutableList());
+    Injector injector = Guice.createInjector();
+
+    measure("Avro", injector.getInstance(LocalAvroResultFileWriter.class), results);
+    measure("JSON", injector.getInstance(LocalJsonResultFileWriter.class), results);
+    measure(
+        "JSON gzip",
+        injector
+            .createChildInjector(
+                binder ->
+                    binder
+                        .bind(JsonResultsFileOptions.class)
+                        .toInstance(JsonResultsFileOptions.create(/* gzip= */ true)))
+            .getInstance(LocalJsonResultFileWriter.class),
+        results);
+  }
+
+  private static void measure(
+      String name, LocalResultFileWriter writer, ImmutableList<AggregatedFact> results)
+      throws Exception {
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      writer.writeResults(results.stream(), ByteStreams.nullOutputStream());
+    }
+    CountingOutputStream outputStream = new CountingOutputStream(ByteStreams.nullOutputStream());
+    long start = System.nanoTime();
+    writer.writeResults(results.stream(), outputStream);
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf(
+        "%-10s %,12.0f results/s %,8.1f MB/s %,14d bytes%n",
+        name + ":",
+        results.size() / seconds,
+        outputStream.getCount() / seconds / (1 << 20),
+        outputStream.getCount());
+  }
+
+  private ResultWriterThroughputBenchmark() {}
+}
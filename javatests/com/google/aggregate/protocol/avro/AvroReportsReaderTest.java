@@ -20,6 +20,7 @@ import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.MoreCollectors.onlyElement;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth8.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.StandardOpenOption.CREATE;
 import static org.junit.Assert.assertThrows;
 
@@ -48,6 +49,7 @@ import org.apache.avro.AvroRuntimeException;
 import org.apache.avro.Schema;
 import org.apache.avro.SchemaBuilder;
 import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.file.SeekableByteArrayInput;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
@@ -143,6 +145,8 @@ public class AvroReportsReaderTest {
     assertThat(records.get(1).keyId().toString()).isEqualTo(UUID2);
     assertThat(records.get(0).sharedInfo()).isEqualTo("foo");
     assertThat(records.get(1).sharedInfo()).isEqualTo("bar");
+    assertThat(records.get(0).sharedInfoBytes().read()).isEqualTo("foo".getBytes(UTF_8));
+    assertThat(records.get(1).sharedInfoBytes().read()).isEqualTo("bar".getBytes(UTF_8));
     assertThat(metaFoo).hasValue("bar");
     assertThat(metaAbc).hasValue("xyz");
     assertThat(metaNonExistent).isEmpty();
@@ -286,6 +290,74 @@ public class AvroReportsReaderTest {
     assertThat(records.get(0).sharedInfo()).isEqualTo("foo");
   }
 
+  @Test
+  public void fieldsInOtherOrderAreDecoded() throws Exception {
+    Schema schema =
+        SchemaBuilder.record("AggregatableReport")
+            .fields()
+            .requiredString("shared_info")
+            .requiredLong("extraLong")
+            .requiredString("key_id")
+            .name("extraArray")
+            .type()
+            .array()
+            .items()
+            .stringType()
+            .noDefault()
+            .requiredBytes("payload")
+            .endRecord();
+    DataFileWriter<GenericRecord> avroWriter =
+        new DataFileWriter<>(new GenericDatumWriter<>(schema));
+    try (OutputStream outputAvroStream = Files.newOutputStream(avroFile, CREATE);
+        DataFileWriter<GenericRecord> openAvroWriter =
+            avroWriter.create(schema, outputAvroStream)) {
+      GenericRecord record = new GenericData.Record(schema);
+      record.put("shared_info", "foo");
+      record.put("extraLong", 42L);
+      record.put("key_id", UUID1);
+      record.put("extraArray", ImmutableList.of("a", "b"));
+      record.put("payload", ByteBuffer.wrap(new byte[] {0x01, 0x02}));
+      openAvroWriter.append(record);
+    }
+
+    ImmutableList<AvroReportRecord> records = ImmutableList.of();
+    try (AvroReportsReader reader = getReader()) {
+      records = reader.streamRecords().collect(toImmutableList());
+    }
+
+    assertThat(records).hasSize(1);
+    assertThat(readBytes(records.get(0).payload()))
+        .asList()
+        .containsExactly((byte) 0x01, (byte) 0x02)
+        .inOrder();
+    assertThat(records.get(0).keyId()).isEqualTo(UUID1);
+    assertThat(records.get(0).sharedInfo()).isEqualTo("foo");
+    assertThat(records.get(0).sharedInfoBytes().read()).isEqualTo("foo".getBytes(UTF_8));
+  }
+
+  @Test
+  public void forEach_readsRecordsWithInternedKeyIds() throws Exception {
+    writeRecords(
+        ImmutableList.of(
+            createAvroReportRecord(UUID1, new byte[] {0x01}, /* sharedInfo= */ "foo"),
+            createAvroReportRecord(UUID2, new byte[] {0x02}, /* sharedInfo= */ "bar"),
+            createAvroReportRecord(UUID1, new byte[] {0x03}, /* sharedInfo= */ "baz")));
+
+    ImmutableList.Builder<AvroReportRecord> records = ImmutableList.builder();
+    try (AvroReportsReader reader = getReader()) {
+      reader.forEach(records::add);
+    }
+
+    ImmutableList<AvroReportRecord> read = records.build();
+    assertThat(read.stream().map(AvroReportRecord::sharedInfo))
+        .containsExactly("foo", "bar", "baz")
+        .inOrder();
+    assertThat(readBytes(read.get(2).payload())).asList().containsExactly((byte) 0x03);
+    assertThat(read.get(0).keyId()).isEqualTo(UUID1);
+    assertThat(read.get(1).keyId()).isEqualTo(UUID2);
+    assertThat(read.get(2).keyId()).isSameInstanceAs(read.get(0).keyId());
+  }
+
   @Test
   public void readLargeRecords() throws Exception {
     byte[] record1 = Strings.repeat("foo", 10000).getBytes(StandardCharsets.UTF_8);
@@ -333,6 +405,36 @@ public class AvroReportsReaderTest {
     assertThat(exception).hasMessageThat().isEqualTo("java.io.IOException: stream is closed");
   }
 
+  @Test
+  public void readRanges_readsEachRecordOnce() throws Exception {
+    // Large enough payloads for the records to be written in many blocks.
+    ImmutableList.Builder<AvroReportRecord> written = ImmutableList.builder();
+    for (int i = 0; i < 200; i++) {
+      byte[] payload = Strings.repeat(Integer.toString(i), 2000).getBytes(StandardCharsets.UTF_8);
+      written.add(createAvroReportRecord(UUID1, payload, /* sharedInfo= */ "record" + i));
+    }
+    writeRecords(written.build());
+    byte[] file = Files.readAllBytes(avroFile);
+
+    for (long rangeSize : new long[] {100, 1000, 64_000, 100_000, file.length}) {
+      ImmutableList.Builder<String> read = ImmutableList.builder();
+      for (long start = 0; start < file.length; start += rangeSize) {
+        try (AvroReportsReader reader =
+            readerFactory.create(
+                new SeekableByteArrayInput(file),
+                start,
+                Math.min(start + rangeSize, file.length))) {
+          reader.streamRecords().map(AvroReportRecord::sharedInfo).forEach(read::add);
+        }
+      }
+
+      assertThat(read.build())
+          .containsExactlyElementsIn(
+              written.build().stream().map(AvroReportRecord::sharedInfo).collect(toImmutableList()))
+          .inOrder();
+    }
+  }
+
   @Test
   public void genericReadSharedInfo() throws Exception {
     writeRecords(
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.aggregate.tools.shard;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+import com.google.aggregate.adtech.worker.aggregation.domain.BinaryDomainReader;
+import com.google.aggregate.adtech.worker.util.NumericConversions;
+import com.google.aggregate.protocol.avro.AvroOutputDomainReader;
+import com.google.aggregate.protocol.avro.AvroOutputDomainReaderFactory;
+import com.google.aggregate.protocol.avro.AvroOutputDomainRecord;
+import com.google.aggregate.tools.shard.DomainConverter.InputFormat;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class DomainConverterTest {
+
+  @Rule public final TemporaryFolder testWorkingDir = new TemporaryFolder();
+  private Path outputDirectory;
+  private Path baseDirectory;
+  static Injector injector = Guice.createInjector(new TestEnv());
+
+  @Before
+  public void setUp() {
+    outputDirectory = testWorkingDir.getRoot().toPath();
+    baseDirectory = Path.of("worker/testing/data/library/");
+  }
+
+  @Test
+  public void convertAvroDomain_writesSortedDistinctKeys() throws IOException {
+    Path domainPath = baseDirectory.resolve("input_set_attribution_1/domain.avro");
+    Path outputPath = outputDirectory.resolve("domain.bin");
+
+    DomainConverter.main(
+        new String[] {
+          "--input", domainPath.toString(),
+          "--output", outputPath.toString()
+        });
+
+    TreeSet<BigInteger> expectedKeys = new TreeSet<>();
+    readDomain(domainPath).forEach(record -> expectedKeys.add(record.bucket()));
+    assertThat(readBinaryDomain(outputPath)).containsExactlyElementsIn(expectedKeys).inOrder();
+  }
+
+  @Test
+  public void convertTextShards_mergesRunsAndDeletesThem() throws IOException {
+    Path inputDirectory = Files.createDirectory(outputDirectory.resolve("text_domain"));
+    Random random = new Random(/* seed= */ 1);
+    TreeSet<BigInteger> expectedKeys = new TreeSet<>();
+    for (int shard = 0; shard < 3; shard++) {
+      StringBuilder lines = new StringBuilder();
+      for (int i = 0; i < 1_000; i++) {
+        // Shards overlap, so that keys repeat within and across runs.
+        int key = random.nextInt(2_000);
+        expectedKeys.add(NumericConversions.createBucketFromInt(key));
+        lines.append(key).append('\n');
+      }
+      Files.writeString(inputDirectory.resolve("shard-" + shard + ".txt"), lines, ISO_8859_1);
+    }
+    Path outputPath = outputDirectory.resolve("domain.bin");
+
+    long keyCount =
+        DomainConverter.convert(
+            ImmutableList.of(
+                inputDirectory.resolve("shard-0.txt"),
+                inputDirectory.resolve("shard-1.txt"),
+                inputDirectory.resolve("shard-2.txt")),
+            InputFormat.TEXT_FILE,
+            outputPath,
+            /* maxKeysInMemory= */ 128);
+
+    assertThat(keyCount).isEqualTo(expectedKeys.size());
+    assertThat(readBinaryDomain(outputPath)).containsExactlyElementsIn(expectedKeys).inOrder();
+    try (Stream<Path> files = Files.list(outputDirectory)) {
+      assertThat(files.map(path -> path.getFileName().toString()).collect(toImmutableList()))
+          .containsExactly("text_domain", "domain.bin");
+    }
+  }
+
+  private static List<BigInteger> readBinaryDomain(Path domainPath) throws IOException {
+    List<BigInteger> keys = new ArrayList<>();
+    try (BinaryDomainReader reader = BinaryDomainReader.map(domainPath)) {
+      while (reader.next()) {
+        keys.add(NumericConversions.uInt128FromLongs(reader.keyHigh(), reader.keyLow()));
+      }
+    }
+    return keys;
+  }
+
+  private ImmutableList<AvroOutputDomainRecord> readDomain(Path domainPath) throws IOException {
+    AvroOutputDomainReaderFactory domainReaderFactory =
+        injector.getInstance(AvroOutputDomainReaderFactory.class);
+    try (InputStream avroStream = Files.newInputStream(domainPath);
+        AvroOutputDomainReader reader = domainReaderFactory.create(avroStream)) {
+      return reader.streamRecords().collect(toImmutableList());
+    }
+  }
+
+  private static final class TestEnv extends AbstractModule {}
+}
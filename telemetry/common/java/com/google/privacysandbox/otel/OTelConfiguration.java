@@ -20,6 +20,7 @@ import io.opentelemetry.api.GlobalOpenTelemetry;
 import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.api.logs.Severity;
 import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
 import java.util.Map;
 
 /**
@@ -54,6 +55,15 @@ public interface OTelConfiguration {
    */
   LongCounter createDebugCounter(String name);
 
+  /**
+   * Creates a histogram meter in debug environments only
+   *
+   * @param name {@link String}
+   * @param unit {@link String} unit of the recorded values
+   * @return {@link LongHistogram}
+   */
+  LongHistogram createDebugHistogram(String name, String unit);
+
   /**
    * Creates a {@link Timer} given name in both debug and prod environments
    *
@@ -24,6 +24,7 @@ import io.opentelemetry.api.common.AttributesBuilder;
 import io.opentelemetry.api.logs.Logger;
 import io.opentelemetry.api.logs.Severity;
 import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
 import io.opentelemetry.api.metrics.Meter;
 import io.opentelemetry.api.trace.SpanBuilder;
 import io.opentelemetry.api.trace.Tracer;
@@ -106,6 +107,17 @@ public class OTelConfigurationImplHelper {
     return meter.counterBuilder(name).build();
   }
 
+  /**
+   * Creates a {@link LongHistogram} meter
+   *
+   * @param name {@link String}
+   * @param unit {@link String}
+   * @return {@link LongHistogram}
+   */
+  public LongHistogram createHistogram(String name, String unit) {
+    return meter.histogramBuilder(name).setUnit(unit).ofLongs().build();
+  }
+
   /**
    * Creates a {@link Timer}
    *
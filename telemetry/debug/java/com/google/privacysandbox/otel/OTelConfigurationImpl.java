@@ -21,6 +21,7 @@ import com.google.errorprone.annotations.MustBeClosed;
 import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.api.logs.Severity;
 import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
 import java.util.Map;
 
 /**
@@ -69,6 +70,11 @@ public final class OTelConfigurationImpl implements OTelConfiguration {
     return oTelConfigurationImplHelper.createCounter(name);
   }
 
+  @Override
+  public LongHistogram createDebugHistogram(String name, String unit) {
+    return oTelConfigurationImplHelper.createHistogram(name, unit);
+  }
+
   @Override
   @MustBeClosed
   public Timer createProdTimerStarted(String name) {
@@ -26,7 +26,9 @@ import com.google.common.collect.ImmutableMap;
 import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.logs.Severity;
+import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
 import io.opentelemetry.sdk.OpenTelemetrySdk;
 import io.opentelemetry.sdk.common.Clock;
 import io.opentelemetry.sdk.logs.SdkLoggerProvider;
@@ -34,6 +36,7 @@ import io.opentelemetry.sdk.logs.data.LogRecordData;
 import io.opentelemetry.sdk.logs.export.SimpleLogRecordProcessor;
 import io.opentelemetry.sdk.metrics.SdkMeterProvider;
 import io.opentelemetry.sdk.metrics.data.DoublePointData;
+import io.opentelemetry.sdk.metrics.data.HistogramPointData;
 import io.opentelemetry.sdk.metrics.data.LongPointData;
 import io.opentelemetry.sdk.metrics.data.MetricData;
 import io.opentelemetry.sdk.resources.Resource;
@@ -131,6 +134,23 @@ public final class OTelConfigurationImplTest {
     assertCounterValue(counterName, counterValue1 + counterValue2);
   }
 
+  @Test
+  public void createDebugHistogram_recordsValuesWithAttributes() {
+    LongHistogram histogram = oTelConfigurationImpl.createDebugHistogram("histogram", "ms");
+
+    histogram.record(3, Attributes.of(JOB_ID_KEY, "testJob"));
+    histogram.record(5, Attributes.of(JOB_ID_KEY, "testJob"));
+
+    MetricData metric = metricReader.collectAllMetrics().stream().collect(toImmutableList()).get(0);
+    HistogramPointData point =
+        metric.getHistogramData().getPoints().stream().collect(toImmutableList()).get(0);
+    assertThat(metric.getName()).isEqualTo("histogram");
+    assertThat(metric.getUnit()).isEqualTo("ms");
+    assertThat(point.getCount()).isEqualTo(2);
+    assertThat(point.getSum()).isEqualTo(8.0);
+    assertThat(point.getAttributes().get(JOB_ID_KEY)).isEqualTo("testJob");
+  }
+
   @Test
   public void createDebugCounter_ensuresNoDecrement() {
     String counterName = "counter";
@@ -23,6 +23,7 @@ import com.google.common.collect.ImmutableMap;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.logs.Severity;
 import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
 import io.opentelemetry.sdk.common.Clock;
 import io.opentelemetry.sdk.logs.data.LogRecordData;
 import io.opentelemetry.sdk.metrics.data.MetricData;
@@ -80,6 +81,18 @@ public final class OTelConfigurationImplTest {
     assertThat(allMetrics).isEmpty();
   }
 
+  @Test
+  public void createDebugHistogram_isAlwaysEmpty() {
+    LongHistogram histogram = oTelConfigurationImpl.createDebugHistogram("histogram", "ms");
+
+    histogram.record(3);
+    histogram.record(4);
+
+    List<MetricData> allMetrics =
+        metricReader.collectAllMetrics().stream().collect(toImmutableList());
+    assertThat(allMetrics).isEmpty();
+  }
+
   @Test
   public void createProdCounter_isAlwaysEmpty() {
     String counterName = "counter";
@@ -21,6 +21,7 @@ import com.google.errorprone.annotations.MustBeClosed;
 import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.api.logs.Severity;
 import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
 import java.util.Map;
 
 /**
@@ -31,6 +32,7 @@ import java.util.Map;
 public final class OTelConfigurationImpl implements OTelConfiguration {
 
   private static final NoopLongCounter NOOP_LONG_COUNTER = new NoopLongCounter();
+  private static final NoopLongHistogram NOOP_LONG_HISTOGRAM = new NoopLongHistogram();
   private static final NoopTimer NOOP_TIMER = new NoopTimer();
   private final OTelConfigurationImplHelper oTelConfigurationImplHelper;
 
@@ -72,6 +74,11 @@ public final class OTelConfigurationImpl implements OTelConfiguration {
     return NOOP_LONG_COUNTER;
   }
 
+  @Override
+  public LongHistogram createDebugHistogram(String name, String unit) {
+    return NOOP_LONG_HISTOGRAM;
+  }
+
   @Override
   @MustBeClosed
   public Timer createProdTimerStarted(String name) {
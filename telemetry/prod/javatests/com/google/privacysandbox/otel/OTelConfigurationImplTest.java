@@ -27,6 +27,7 @@ import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.logs.Severity;
 import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
 import io.opentelemetry.sdk.OpenTelemetrySdk;
 import io.opentelemetry.sdk.common.Clock;
 import io.opentelemetry.sdk.logs.SdkLoggerProvider;
@@ -134,6 +135,18 @@ public final class OTelConfigurationImplTest {
     assertThat(allMetrics).isEmpty();
   }
 
+  @Test
+  public void createDebugHistogram_isAlwaysEmpty() {
+    LongHistogram histogram = oTelConfigurationImpl.createDebugHistogram("histogram", "ms");
+
+    histogram.record(3);
+    histogram.record(4);
+
+    List<MetricData> allMetrics =
+        metricReader.collectAllMetrics().stream().collect(toImmutableList());
+    assertThat(allMetrics).isEmpty();
+  }
+
   @Test
   public void createProdCounter_ensuresIncrement() {
     String counterName = "counter";